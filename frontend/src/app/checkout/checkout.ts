@@ -1,6 +1,6 @@
 import { Component, OnInit, signal, computed, ViewEncapsulation  } from '@angular/core';
 import { CommonModule } from '@angular/common';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpHeaders } from '@angular/common/http';
 import { RouterLink } from '@angular/router';
 import { CartSummaryDto, CartItemDto } from '../cart/cart';
 import { CartService } from '../cart.service';
@@ -79,6 +79,10 @@ export class Checkout implements OnInit {
   toastVisible = signal(false);
   private toastTimer: any;
 
+  // Idempotency-Key of the checkout being attempted. Kept across retries of the
+  // same order so the server places it at most once; cleared once it succeeds.
+  private checkoutKey: { key: string; body: string } | null = null;
+
   // ── Computed ──────────────────────────────────────────
 
   items   = computed<CartItemDto[]>(() => this.cart()?.items ?? []);
@@ -203,11 +207,14 @@ export class Checkout implements OnInit {
       return;
     }
 
+    const headers = new HttpHeaders({ 'Idempotency-Key': this.idempotencyKeyFor(body) });
+
     this.http.post<{ orderId: number }>('/api/payment/process', body).subscribe({
       next: res => {
-        this.http.post<{ orderId: number }>('/api/checkout/process', body).subscribe({
+        this.http.post<{ orderId: number }>('/api/checkout/process', body, { headers }).subscribe({
           next: res => {
             this.placing.set(false);
+            this.checkoutKey = null;
             // Store snapshot for the modal
             this.confirmedOrderId.set(res.orderId);
             this.confirmedCart.set(cartSnapshot);
@@ -232,6 +239,15 @@ export class Checkout implements OnInit {
 
   }
 
+  /** Reuses the key while the order is unchanged, so a retry after a lost response replays it. */
+  private idempotencyKeyFor(body: object): string {
+    const json = JSON.stringify(body);
+    if (this.checkoutKey?.body !== json) {
+      this.checkoutKey = { key: crypto.randomUUID(), body: json };
+    }
+    return this.checkoutKey.key;
+  }
+
   // ── Modal ─────────────────────────────────────────────
 
   closeModal(): void {
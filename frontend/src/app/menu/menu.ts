@@ -2,7 +2,6 @@ import { Component, OnInit, signal } from '@angular/core';
 import { CommonModule }  from '@angular/common';
 import { FormsModule, ReactiveFormsModule }  from '@angular/forms';
 import { HttpClient }   from '@angular/common/http';
-import { forkJoin } from 'rxjs';
 import { CartService } from '../cart.service';
 
 
@@ -38,6 +37,14 @@ export interface Topping {
   extraCost: number;
 }
 
+export interface MenuResponse {
+  categories: Category[];
+  products: Product[];
+  sizes: PizzaSize[];
+  crusts: CrustType[];
+  toppings: Topping[];
+}
+
 export interface CartItemResponse {
   cartItemId: number;
   productId:  number | null;
@@ -143,7 +150,12 @@ export class Menu implements OnInit {
 
   // ── Computed price ────────────────────────────────────
 
-  /** Computed total price shown in the modal footer */
+  /**
+   * Computed total price shown in the modal footer. Priced the way the server
+   * prices the cart: a whole-pizza topping costs its extra cost, a half-pizza
+   * topping half of it (rounded to the cent), and a topping on both halves
+   * counts as a whole-pizza topping. Worked in cents to avoid float drift.
+   */
   get modalPrice(): string {
     const product  = this.selectedProduct();
     const base  = product?.basePrice ?? 11.99;
@@ -151,7 +163,28 @@ export class Menu implements OnInit {
     const crust = this.crustTypes().find(c => c.crustId === this.selectedCrustId());
     const sizeAdd  = size?.price ?? 0;
     const crustAdd = crust?.price     ?? 0;
-    return ((base + sizeAdd + crustAdd) * this.quantity()).toFixed(2);
+    const unitCents = this.cents(base) + this.cents(sizeAdd) + this.cents(crustAdd) + this.toppingCents();
+    return (unitCents * this.quantity() / 100).toFixed(2);
+  }
+
+  private toppingCents(): number {
+    const whole = this.halfPizzaMode() ? new Set<number>() : new Set(this.selectedToppingIds());
+    const left  = this.halfPizzaMode() ? new Set(this.leftToppingIds())  : new Set<number>();
+    const right = this.halfPizzaMode() ? new Set(this.rightToppingIds()) : new Set<number>();
+    for (const id of left) {
+      if (right.delete(id)) whole.add(id);
+    }
+    for (const id of whole) left.delete(id);
+
+    const costCents = (id: number) => this.cents(this.toppings().find(t => t.toppingId === id)?.extraCost ?? 0);
+    let total = 0;
+    for (const id of whole) total += costCents(id);
+    for (const id of [...left, ...right]) total += Math.round(costCents(id) / 2);
+    return total;
+  }
+
+  private cents(amount: number): number {
+    return Math.round(amount * 100);
   }
 
   sauceLabelMap: Record<number, string> = { 1: 'Light', 2: 'Regular', 3: 'Heavy' };
@@ -170,13 +203,8 @@ export class Menu implements OnInit {
     this.loading.set(true);
     this.loadError.set('');
 
-    forkJoin({
-      categories: this.http.get<Category[]>('/api/productCategory/getProductCategories'),
-      products:   this.http.get<Product[]>('/api/product/getProducts'),
-      sizes:      this.http.get<PizzaSize[]>('/api/pizzaSize/getPizzaSizes'),
-      crusts:     this.http.get<CrustType[]>('/api/crust/getCrusts'),
-      toppings:   this.http.get<Topping[]>('/api/topping/getToppings'),
-    }).subscribe({
+    // One request for the whole catalog; the browser revalidates it with the ETag.
+    this.http.get<MenuResponse>('/api/menu').subscribe({
       next: ({ categories, products, sizes, crusts, toppings }) => {
         this.categories = categories;
         this.products.set(products);
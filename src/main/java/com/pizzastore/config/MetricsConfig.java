@@ -0,0 +1,63 @@
+package com.pizzastore.config;
+
+import com.pizzastore.service.MetricsService;
+import com.pizzastore.service.QueryStatsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * The in-process meter registry behind /api/admin/metrics, and the hooks that
+ * time endpoints and SQL statements and count SQL statements per request.
+ * Nothing is exported to an external monitoring system; swapping this bean for
+ * another Micrometer registry would publish the same timers there.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    /**
+     * Spring Boot adds every ExecuteListenerProvider bean to the shared DSLContext.
+     */
+    @Bean
+    public ExecuteListenerProvider sqlTimingListenerProvider(MetricsService metrics) {
+        return new DefaultExecuteListenerProvider(new SqlTimingListener(metrics));
+    }
+
+    @Bean
+    public ExecuteListenerProvider queryCountingListenerProvider(QueryStatsService queryStats) {
+        return new DefaultExecuteListenerProvider(new QueryCountingListener(queryStats));
+    }
+
+    /**
+     * Lets TimingAspect classify endpoint calls that threw by the status their
+     * exception handler answered with.
+     */
+    @Bean
+    public WebMvcConfigurer timingInterceptor(TimingAspect timingAspect) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(timingAspect.interceptor());
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryBudgetFilter> queryBudgetFilter(QueryStatsService queryStats) {
+        FilterRegistrationBean<QueryBudgetFilter> registration =
+                new FilterRegistrationBean<>(new QueryBudgetFilter(queryStats));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
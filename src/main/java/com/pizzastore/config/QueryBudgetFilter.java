@@ -0,0 +1,34 @@
+package com.pizzastore.config;
+
+import com.pizzastore.service.QueryStatsService;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Opens a QueryStatsService scope around each API request so the statements it
+ * runs are counted against the per-request query budget.
+ */
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    private final QueryStatsService queryStats;
+
+    public QueryBudgetFilter(QueryStatsService queryStats) {
+        this.queryStats = queryStats;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        queryStats.beginRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            queryStats.endRequest(request.getMethod() + " " + request.getRequestURI());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.pizzastore.config;
+
+import com.pizzastore.service.QueryStatsService;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+
+/**
+ * Reports every statement run through the shared DSLContext to QueryStatsService.
+ * Time is measured from execution until the result has been fetched, so it
+ * covers the round trip and the row transfer but not SQL rendering.
+ */
+public class QueryCountingListener extends DefaultExecuteListener {
+
+    private static final String STARTED_AT = QueryCountingListener.class.getName() + ".startedAt";
+
+    private final QueryStatsService queryStats;
+
+    public QueryCountingListener(QueryStatsService queryStats) {
+        this.queryStats = queryStats;
+    }
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        ctx.data(STARTED_AT, System.nanoTime());
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        Object startedAt = ctx.data(STARTED_AT);
+        if (!(startedAt instanceof Long start)) {
+            return; // failed before reaching the database
+        }
+        String sql = ctx.sql() != null ? ctx.sql() : String.join("; ", ctx.batchSQL());
+        queryStats.record(sql, System.nanoTime() - start);
+    }
+}
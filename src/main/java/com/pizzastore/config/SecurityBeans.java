@@ -1,10 +1,17 @@
 package com.pizzastore.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
 /**
  * This class sets up shared objects that the rest of the app can use.
  * "@Configuration" tells Spring "this class contains setup instructions."
@@ -16,6 +23,36 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class SecurityBeans {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecurityBeans.class);
+
+    /**
+     * The BCrypt "strength" (also called cost or log rounds) decides how slow one
+     * hash is: every +1 doubles the work. Spring's default is 10. We never go below
+     * that, and above 16 a single login would take seconds on any hardware.
+     */
+    static final int MIN_STRENGTH = 10;
+    static final int MAX_STRENGTH = 16;
+
+    /**
+     * Named cost profiles, each a target time for one hash on this machine.
+     * LOW favours login throughput, HIGH favours resistance to brute force.
+     */
+    public enum CostProfile {
+        LOW(100),
+        BALANCED(250),
+        HIGH(750);
+
+        private final long targetMillis;
+
+        CostProfile(long targetMillis) {
+            this.targetMillis = targetMillis;
+        }
+
+        public long targetMillis() {
+            return targetMillis;
+        }
+    }
+
     /**
      * This method creates and provides a PasswordEncoder for the entire application.
      * "@Bean" tells Spring to call this method at startup and store the result.
@@ -52,9 +89,63 @@ public class SecurityBeans {
      * Returning the interface type rather than the specific class means we could
      * swap BCrypt for a different algorithm in the future by only changing this
      * one file — nothing else in the app would need to change.
+     * HOW SLOW SHOULD IT BE?
+     * That depends on the machine, so instead of hardcoding a strength we measure
+     * it at startup: we time a few cheap hashes and pick the highest strength whose
+     * hash still fits the target time of the configured cost profile
+     * (auth.password.cost-profile = LOW, BALANCED or HIGH). Setting
+     * auth.password.strength pins the strength and skips the measurement.
+     * WHY A DELEGATING ENCODER?
+     * New hashes are stored with an algorithm prefix, e.g. "{bcrypt}$2a$12$...".
+     * The DelegatingPasswordEncoder reads that prefix to pick the right algorithm
+     * when checking a password, and still accepts the older hashes that have no
+     * prefix. Its upgradeEncoding() tells AuthController when a stored hash was
+     * made with an older algorithm or a lower strength, so the hash can be redone
+     * at the current cost the next time that person signs in.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${auth.password.cost-profile:BALANCED}") CostProfile profile,
+            @Value("${auth.password.strength:0}") int fixedStrength) {
+        int strength = fixedStrength > 0
+                ? fixedStrength
+                : chooseStrength(profile.targetMillis(), SecurityBeans::timeOneHash);
+        logger.info("Using BCrypt strength {} (cost profile {}, fixed strength {})", strength, profile, fixedStrength);
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt",
+                Map.of("bcrypt", new BCryptPasswordEncoder(strength)));
+        // Hashes stored before we added the "{bcrypt}" prefix are plain BCrypt hashes
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder(strength));
+        return encoder;
+    }
+
+    /**
+     * Picks the highest strength whose estimated hash time stays within the target.
+     * Each strength step doubles the work, so we time the cheapest strength we'd
+     * accept and extrapolate instead of timing the expensive ones.
+     * @param targetMillis  how long one hash may take
+     * @param timer         nanoseconds taken by one hash at the given strength
+     */
+    static int chooseStrength(long targetMillis, IntToLongFunction timer) {
+        // Best of three, so a one-off pause (JIT, GC) doesn't skew the measurement
+        long nanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            nanos = Math.min(nanos, timer.applyAsLong(MIN_STRENGTH));
+        }
+
+        int strength = MIN_STRENGTH;
+        long targetNanos = targetMillis * 1_000_000;
+        while (strength < MAX_STRENGTH && nanos * 2 <= targetNanos) {
+            nanos *= 2;
+            strength++;
+        }
+        return strength;
+    }
+
+    private static long timeOneHash(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long start = System.nanoTime();
+        encoder.encode("cost-benchmark");
+        return System.nanoTime() - start;
     }
-}
\ No newline at end of file
+}
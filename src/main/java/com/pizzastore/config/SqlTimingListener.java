@@ -0,0 +1,48 @@
+package com.pizzastore.config;
+
+import com.pizzastore.service.MetricsService;
+import com.pizzastore.service.MetricsService.Kind;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+
+/**
+ * Times every statement run through the shared DSLContext and records it in
+ * MetricsService under the repository method that issued it (see TimingAspect),
+ * e.g. "OrderRepository.save". A method that runs three statements adds three
+ * samples; a repository call answered without SQL, such as a catalog read
+ * served by CatalogCache, adds none. A statement that throws counts as an error.
+ * Time is measured from execution until the result has been fetched.
+ */
+public class SqlTimingListener extends DefaultExecuteListener {
+
+    /**
+     * Name for statements run outside any @Repository method.
+     */
+    static final String OUTSIDE_REPOSITORIES = "other";
+
+    private static final String NAME = SqlTimingListener.class.getName() + ".name";
+    private static final String STARTED_AT = SqlTimingListener.class.getName() + ".startedAt";
+
+    private final MetricsService metrics;
+
+    public SqlTimingListener(MetricsService metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        String name = TimingAspect.currentRepositoryMethod();
+        if (name == null) {
+            name = OUTSIDE_REPOSITORIES;
+        }
+        ctx.data(NAME, name);
+        ctx.data(STARTED_AT, metrics.start(Kind.SQL, name));
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        if (ctx.data(STARTED_AT) instanceof Long start) {
+            metrics.stop(Kind.SQL, (String) ctx.data(NAME), start, ctx.exception() != null);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.pizzastore.config;
+
+import com.pizzastore.service.MetricsService;
+import com.pizzastore.service.MetricsService.Kind;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times every @RestController endpoint and records the results in MetricsService.
+ * Endpoints are named by HTTP method and mapping pattern ("POST /api/checkout/process").
+ * An endpoint call counts as an error when it answers with a 5xx status.
+ * SQL is timed per statement by SqlTimingListener; this aspect only tells it which
+ * repository method is running ("OrderRepository.save"), so calls served from
+ * memory are not reported as queries.
+ * When an endpoint throws, its status is only known once an @ExceptionHandler
+ * has turned the exception into a response (e.g. a BusyException into a 429),
+ * so the call is stopped by {@link #interceptor()}, which MetricsConfig
+ * registers with Spring MVC. @ExceptionHandler methods are not timed themselves.
+ * Streaming endpoints are timed until the handler returns, not until the last byte is written.
+ */
+@Aspect
+@Component
+public class TimingAspect {
+
+    private static final String PENDING = TimingAspect.class.getName() + ".pending";
+
+    private static final ThreadLocal<String> CURRENT_REPOSITORY_METHOD = new ThreadLocal<>();
+
+    /**
+     * An endpoint call that threw, waiting for its response status.
+     */
+    private record PendingCall(String name, long startNanos) {}
+
+    private final MetricsService metrics;
+
+    public TimingAspect(MetricsService metrics) {
+        this.metrics = metrics;
+    }
+
+    @Around("@within(org.springframework.web.bind.annotation.RestController) && execution(public * *(..))"
+            + " && !@annotation(org.springframework.web.bind.annotation.ExceptionHandler)")
+    public Object timeEndpoint(ProceedingJoinPoint call) throws Throwable {
+        String name = endpointName(call);
+        long start = metrics.start(Kind.HTTP, name);
+        Object result;
+        try {
+            result = call.proceed();
+        } catch (Throwable ex) {
+            HttpServletRequest request = currentRequest();
+            if (request != null) {
+                request.setAttribute(PENDING, new PendingCall(name, start));
+            } else {
+                metrics.stop(Kind.HTTP, name, start, true);
+            }
+            throw ex;
+        }
+        metrics.stop(Kind.HTTP, name, start,
+                result instanceof ResponseEntity<?> response && response.getStatusCode().is5xxServerError());
+        return result;
+    }
+
+    /**
+     * Stops endpoint calls that threw, once the exception has been handled and
+     * the response status is known. An exception nothing handled is an error.
+     */
+    public HandlerInterceptor interceptor() {
+        return new HandlerInterceptor() {
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                if (request.getAttribute(PENDING) instanceof PendingCall pending) {
+                    request.removeAttribute(PENDING);
+                    metrics.stop(Kind.HTTP, pending.name(), pending.startNanos(),
+                            ex != null || response.getStatus() >= 500);
+                }
+            }
+        };
+    }
+
+    /**
+     * The repository method running on this thread, e.g. "OrderRepository.save",
+     * or null outside of one. A repository called from another one takes over
+     * the name until it returns.
+     */
+    static String currentRepositoryMethod() {
+        return CURRENT_REPOSITORY_METHOD.get();
+    }
+
+    @Around("@within(org.springframework.stereotype.Repository) && execution(public * *(..))")
+    public Object nameQueries(ProceedingJoinPoint call) throws Throwable {
+        String previous = CURRENT_REPOSITORY_METHOD.get();
+        CURRENT_REPOSITORY_METHOD.set(call.getSignature().getDeclaringType().getSimpleName() + "." + call.getSignature().getName());
+        try {
+            return call.proceed();
+        } finally {
+            if (previous == null) {
+                CURRENT_REPOSITORY_METHOD.remove();
+            } else {
+                CURRENT_REPOSITORY_METHOD.set(previous);
+            }
+        }
+    }
+
+    private static String endpointName(ProceedingJoinPoint call) {
+        HttpServletRequest request = currentRequest();
+        if (request != null) {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                return request.getMethod() + " " + pattern;
+            }
+        }
+        return call.getSignature().getDeclaringType().getSimpleName() + "." + call.getSignature().getName();
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servlet ? servlet.getRequest() : null;
+    }
+}
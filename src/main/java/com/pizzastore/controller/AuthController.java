@@ -6,17 +6,20 @@ import com.pizzastore.model.LoginType;
 import com.pizzastore.model.User;
 import com.pizzastore.repository.EmployeeRepository;
 import com.pizzastore.repository.UserRepository;
+import com.pizzastore.service.PasswordHashingService;
 import com.pizzastore.service.UserTypeResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpSession;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -45,18 +48,18 @@ public class AuthController {
     private final UserRepository userRepository;
     private final UserTypeResolver userTypeResolver;
     private final EmployeeRepository employeeRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashing;
 
     public AuthController(
             UserRepository userRepository,
             UserTypeResolver userTypeResolver,
             EmployeeRepository employeeRepository,
-            PasswordEncoder passwordEncoder
+            PasswordHashingService passwordHashing
     ) {
         this.userRepository = userRepository;
         this.userTypeResolver = userTypeResolver;
         this.employeeRepository = employeeRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashing = passwordHashing;
     }
 
     /**
@@ -111,6 +114,18 @@ public class AuthController {
         return ResponseEntity.ok(Map.of("loginType", loginType));
     }
 
+    /**
+     * Password hashing runs on a bounded pool (see PasswordHashingService); when that
+     * pool is saturated the sign-in and register endpoints answer 429 instead of
+     * piling more work onto the request threads.
+     */
+    @ExceptionHandler(PasswordHashingService.BusyException.class)
+    public ResponseEntity<Map<String, String>> handleHashingBusy(PasswordHashingService.BusyException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", e.getMessage()));
+    }
+
     @PostMapping("/signIn/customer")
     public ResponseEntity<?> handleCustomerSignIn(@RequestBody SignInRequest request, HttpSession session) {
         String username = request.username();
@@ -132,8 +147,10 @@ public class AuthController {
             logger.info("Found user: {}", username);
             logger.info("User: {}", user);
 
-            if (passwordEncoder.matches(password, user.getPassword())) {
+            if (passwordHashing.matches(password, user.getPassword())) {
                     logger.info("Password Match");
+                    rehashIfOutdated(password, user.getPassword(),
+                            hash -> userRepository.updatePasswordHash(user.getId(), hash));
 
                     session.setAttribute("userId", user.getId());
                     session.setAttribute("role", "Customer");
@@ -180,7 +197,9 @@ public class AuthController {
             Employee employee = employees.get(0);
             logger.info("Found employee: {}", employee.getEmail());
 
-            if (passwordEncoder.matches(password, employee.getPassword())) {
+            if (passwordHashing.matches(password, employee.getPassword())) {
+                rehashIfOutdated(password, employee.getPassword(),
+                        hash -> employeeRepository.updatePasswordHash(employee.getEmployeeId(), hash));
 
                 session.setAttribute("userId", employee.getEmployeeId());
                 session.setAttribute("role", employee.getRole());
@@ -213,7 +232,7 @@ public class AuthController {
             return ResponseEntity.status(409).body(error);
         }
 
-        String hashedPassword = passwordEncoder.encode(request.password());
+        String hashedPassword = passwordHashing.encode(request.password());
 
         User newUser = new User();
         newUser.setEmail(request.email());
@@ -244,6 +263,23 @@ public class AuthController {
         return ResponseEntity.status(201).body(response);
     }
 
+    /**
+     * After a successful sign-in we briefly have the plain password, which is the
+     * only time a hash made at an outdated cost can be redone. A failure here is
+     * logged and ignored; the old hash still works and we try again next time.
+     */
+    private void rehashIfOutdated(String rawPassword, String storedHash, Consumer<String> saveHash) {
+        if (!passwordHashing.upgradeEncoding(storedHash)) {
+            return;
+        }
+        try {
+            saveHash.accept(passwordHashing.encode(rawPassword));
+            logger.info("Upgraded outdated password hash");
+        } catch (RuntimeException e) {
+            logger.warn("Could not upgrade outdated password hash: {}", e.getMessage());
+        }
+    }
+
     private Map<String, Object> buildUserResponse(String message, long id, String email, String firstName, String lastName, String role) {
         Map<String, Object> userDto = new HashMap<>();
         userDto.put("id", id);
@@ -1,17 +1,25 @@
 package com.pizzastore.controller;
 
 import com.pizzastore.model.CartItem;
+import com.pizzastore.model.Money;
 import com.pizzastore.model.Promotion;
 import com.pizzastore.repository.CartRepository;
-import com.pizzastore.repository.PromotionRepository;
+import com.pizzastore.repository.PromoCodeIndex;
+import com.pizzastore.service.PricingService;
+import com.pizzastore.service.PromotionEngine;
+import com.pizzastore.service.PromotionEngine.Evaluation;
+import com.pizzastore.service.TaxService;
+import com.pizzastore.service.TotalsCalculator;
+import com.pizzastore.service.TotalsCalculator.Totals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDate;
+import javax.servlet.http.HttpSession;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -22,32 +30,50 @@ record UpdateQuantityRequest(Long cartItemId, int quantity) {}
 public class CartController {
 
     private final CartRepository cartRepository;
-    private final PromotionRepository promotionRepository;
+    private final PromoCodeIndex promoCodeIndex;
+    private final PricingService pricingService;
+    private final TaxService taxService;
+    private final PromotionEngine promotionEngine;
 
     private static final Logger logger = LoggerFactory.getLogger(CartController.class);
 
-    public CartController(CartRepository cartRepository, PromotionRepository promotionRepository) {
+    public CartController(CartRepository cartRepository, PromoCodeIndex promoCodeIndex,
+                          PricingService pricingService, TaxService taxService,
+                          PromotionEngine promotionEngine) {
         this.cartRepository = cartRepository;
-        this.promotionRepository = promotionRepository;
+        this.promoCodeIndex = promoCodeIndex;
+        this.pricingService = pricingService;
+        this.taxService = taxService;
+        this.promotionEngine = promotionEngine;
     }
 
     @GetMapping
-    public Map<String, Object> getCart() {
+    public Map<String, Object> getCart(HttpSession session) {
         logger.info("getCart called");
-        return buildCartSummary();
+        return buildCartSummary(session.getId());
     }
 
+    /**
+     * Adds an item to the cart. Any price sent by the client is ignored; the item
+     * is priced from the catalog by PricingService.
+     */
     @PostMapping("/add")
-    public ResponseEntity<CartItem> addToCart(@RequestBody CartItem item) {
-        logger.info("Adding to cart item {}", item);
-        CartItem saved = cartRepository.addItem(item);
+    public ResponseEntity<CartItem> addToCart(@RequestBody CartItem item, HttpSession session) {
+        logger.info("Adding to cart productId={} quantity={}", item.getProductId(), item.getQuantity());
+        try {
+            pricingService.price(item);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Rejected cart item: {}", ex.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        CartItem saved = cartRepository.addItem(session.getId(), item);
         return ResponseEntity.ok(saved);
     }
 
     @PutMapping("/update")
-    public ResponseEntity<Map<String, Object>> updateQuantity(@RequestBody UpdateQuantityRequest body) {
+    public ResponseEntity<Map<String, Object>> updateQuantity(@RequestBody UpdateQuantityRequest body, HttpSession session) {
         logger.info("Updating quantity for cart item {}", body.cartItemId());
-        boolean updated = cartRepository.updateQuantity(body.cartItemId(), body.quantity());
+        boolean updated = cartRepository.updateQuantity(session.getId(), body.cartItemId(), body.quantity());
         if (updated) {
             logger.info("updated cart item {}", body.cartItemId());
             return ResponseEntity.ok(Map.of("message", "Quantity updated"));
@@ -58,53 +84,72 @@ public class CartController {
     }
 
     @PostMapping("/promo")
-    public ResponseEntity<Map<String, Object>> applyPromo(@RequestParam String code) {
+    public ResponseEntity<Map<String, Object>> applyPromo(@RequestParam String code, HttpSession session) {
         logger.info("Applying promo code {}", code);
 
-        Optional<Promotion> promoOpt = promotionRepository.findByCode(code);
+        Optional<Promotion> promoOpt = promoCodeIndex.findActive(code);
         if (promoOpt.isEmpty()) {
+            if (promoCodeIndex.isExpired(code)) {
+                return ResponseEntity.badRequest().body(Map.of("message", "This promo code has expired."));
+            }
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Promo code not found."));
         }
 
         Promotion promo = promoOpt.get();
-
-        if (promo.getExpDt() != null && !promo.getExpDt().isAfter(LocalDate.now())) {
-            return ResponseEntity.badRequest().body(Map.of("message", "This promo code has expired."));
+        String cartId = session.getId();
+        Evaluation evaluation = promotionEngine.evaluate(promo, cartRepository.findAll(cartId));
+        if (!evaluation.applies()) {
+            return ResponseEntity.badRequest().body(Map.of("message", evaluation.failure()));
         }
 
-        double subtotal = cartRepository.getTotal();
-        if (promo.getMinOrderAmt() != null && subtotal < promo.getMinOrderAmt()) {
-            return ResponseEntity.badRequest().body(
-                Map.of("message", String.format("Minimum order of $%.2f required for this promo.", promo.getMinOrderAmt()))
-            );
-        }
+        cartRepository.applyPromo(cartId, promo.getPromotionId(), promo.getCode());
+        logger.info("Promo {} applied, discount {}", promo.getCode(), Money.toDouble(evaluation.discountCents()));
+        return ResponseEntity.ok(buildCartSummary(cartId));
+    }
 
-        cartRepository.applyPromo(promo.getCode(), promo.getDiscountValue());
-        logger.info("Promo {} applied, discount {}", promo.getCode(), promo.getDiscountValue());
-        return ResponseEntity.ok(buildCartSummary());
+    /**
+     * The active promotions the session's cart qualifies for right now, biggest discount first.
+     */
+    @GetMapping("/promo/eligible")
+    public List<Map<String, Object>> getEligiblePromos(HttpSession session) {
+        return promotionEngine.eligible(cartRepository.findAll(session.getId())).stream()
+                .map(eligible -> {
+                    Map<String, Object> promo = new HashMap<>();
+                    promo.put("code", eligible.code());
+                    promo.put("summary", eligible.summary());
+                    promo.put("discount", Money.toDouble(eligible.discountCents()));
+                    return promo;
+                })
+                .toList();
     }
 
     @DeleteMapping("/promo")
-    public ResponseEntity<Map<String, Object>> removePromo() {
+    public ResponseEntity<Map<String, Object>> removePromo(HttpSession session) {
         logger.info("Removing promo code");
-        cartRepository.clearPromo();
-        return ResponseEntity.ok(buildCartSummary());
+        cartRepository.clearPromo(session.getId());
+        return ResponseEntity.ok(buildCartSummary(session.getId()));
     }
 
-    private Map<String, Object> buildCartSummary() {
-        double subtotal  = cartRepository.getTotal();
-        double discount  = cartRepository.getAppliedDiscount();
-        double taxable   = Math.max(0, subtotal - discount);
-        double tax       = Math.round(taxable * 0.08 * 100.0) / 100.0;
-        double total     = Math.round((taxable + tax) * 100.0) / 100.0;
+    private Map<String, Object> buildCartSummary(String cartId) {
+        // The discount follows the cart: it is worked out again from the items every time
+        List<CartItem> items = cartRepository.findAll(cartId);
+        Long promotionId = cartRepository.getAppliedPromotionId(cartId);
+        Evaluation promo = promotionEngine.evaluate(promotionId, items);
+
+        // No address yet, so the cart is taxed at the restaurant's location
+        Totals totals = TotalsCalculator.totals(cartRepository.getSubtotalCents(cartId),
+                promo.discountCents(), taxService.restaurantRatePpm());
 
         Map<String, Object> cart = new HashMap<>();
-        cart.put("items",     cartRepository.findAll());
-        cart.put("subtotal",  subtotal);
-        cart.put("discount",  discount);
-        cart.put("promoCode", cartRepository.getAppliedPromoCode());
-        cart.put("tax",       tax);
-        cart.put("total",     total);
+        cart.put("items",     items);
+        cart.put("subtotal",  Money.toDouble(totals.subtotal()));
+        cart.put("discount",  Money.toDouble(totals.discount()));
+        cart.put("promoCode", cartRepository.getAppliedPromoCode(cartId));
+        if (promotionId != null && !promo.applies()) {
+            cart.put("promoMessage", promo.failure());
+        }
+        cart.put("tax",       Money.toDouble(totals.tax()));
+        cart.put("total",     Money.toDouble(totals.total()));
         return cart;
     }
 }
\ No newline at end of file
@@ -1,13 +1,25 @@
 package com.pizzastore.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pizzastore.dto.CheckoutRequestDto;
 import com.pizzastore.dto.OrderConfirmationDto;
+import com.pizzastore.event.OrderLifecycleEvent;
+import com.pizzastore.event.OrderPlacedEvent;
 import com.pizzastore.model.CartItem;
+import com.pizzastore.model.Money;
 import com.pizzastore.model.Order;
-import com.pizzastore.model.Promotion;
+import com.pizzastore.model.Payment;
 import com.pizzastore.repository.CartRepository;
+import com.pizzastore.repository.OrderOutboxRepository.NewMessage;
 import com.pizzastore.repository.OrderRepository;
-import com.pizzastore.repository.PromotionRepository;
+import com.pizzastore.service.IdempotencyService;
+import com.pizzastore.service.IdempotencyService.Claim;
+import com.pizzastore.service.PromotionEngine;
+import com.pizzastore.service.PromotionEngine.Evaluation;
+import com.pizzastore.service.TaxService;
+import com.pizzastore.service.TotalsCalculator;
+import com.pizzastore.service.TotalsCalculator.Totals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -16,12 +28,11 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpSession;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/checkout")
@@ -29,38 +40,127 @@ public class CheckoutController {
 
     private static final Logger logger = LoggerFactory.getLogger(CheckoutController.class);
 
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final CartRepository cartRepository;
     private final OrderRepository orderRepository;
-    private final PromotionRepository promotionRepository;
+    private final PromotionEngine promotionEngine;
 
     private final PaymentController paymentController;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyService idempotencyService;
+    private final TaxService taxService;
 
     public CheckoutController(CartRepository cartRepository,
                               OrderRepository orderRepository,
-                              PromotionRepository promotionRepository,
-                              PaymentController paymentController) {
+                              PromotionEngine promotionEngine,
+                              PaymentController paymentController,
+                              ObjectMapper objectMapper,
+                              IdempotencyService idempotencyService,
+                              TaxService taxService) {
         this.cartRepository = cartRepository;
         this.orderRepository = orderRepository;
-        this.promotionRepository = promotionRepository;
+        this.promotionEngine = promotionEngine;
         this.paymentController = paymentController;
+        this.objectMapper = objectMapper;
+        this.idempotencyService = idempotencyService;
+        this.taxService = taxService;
     }
 
     @GetMapping("/summary")
-    public Map<String, Object> getSummary() {
-        return buildSummary();
+    public Map<String, Object> getSummary(HttpSession session) {
+        return buildSummary(session.getId());
     }
 
+    /**
+     * Places the order for the session's cart.
+     * Clients should send an Idempotency-Key header (any unique string per order
+     * attempt, e.g. a UUID) and reuse it when retrying. A repeat of a key that
+     * already placed an order gets the same confirmation back, marked with
+     * Idempotent-Replayed: true, and no second order is written. A repeat that
+     * arrives while the first is still running waits for it; if it is still
+     * running after the wait the answer is 409. Reusing a key for a different
+     * checkout request is a 422.
+     * The order, its items, the payment record and the ORDER_PLACED event are
+     * committed together; the response waits only for that, and the event is
+     * delivered afterwards by OrderEventRelay.
+     */
     @PostMapping("/process")
     public ResponseEntity<OrderConfirmationDto> processCheckout(
             @RequestBody CheckoutRequestDto request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             HttpSession session) {
-        logger.info("Received request to process checkout {}", request);
-
         if (request == null) {
             throw new IllegalArgumentException("Order request cannot be null");
         }
+        logger.info("Received request to process checkout deliveryMethod={} addressId={}",
+                request.getDeliveryMethod(), request.getAddressId());
+
+        Object userIdObj = session.getAttribute("userId");
+        if (idempotencyKey == null || idempotencyKey.isBlank() || userIdObj == null) {
+            return placeOrder(request, session);
+        }
+        if (idempotencyKey.length() > IdempotencyService.MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(new OrderConfirmationDto(null, null, null, null,
+                            IDEMPOTENCY_KEY_HEADER + " must be at most " + IdempotencyService.MAX_KEY_LENGTH + " characters"));
+        }
+
+        long customerId = ((Number) userIdObj).longValue();
+        Claim claim = idempotencyService.claim(customerId, idempotencyKey, requestHash(request));
+        switch (claim.outcome()) {
+            case REPLAY -> {
+                logger.info("Replaying checkout result for order {}", claim.confirmation().getOrderId());
+                return ResponseEntity.ok()
+                        .header(IDEMPOTENT_REPLAYED_HEADER, "true")
+                        .body(claim.confirmation());
+            }
+            case IN_PROGRESS -> {
+                logger.warn("Checkout with the same {} is still running", IDEMPOTENCY_KEY_HEADER);
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(new OrderConfirmationDto(null, null, null, null,
+                                "This order is still being processed. Please try again shortly."));
+            }
+            case KEY_REUSED -> {
+                logger.warn("{} reused for a different checkout request", IDEMPOTENCY_KEY_HEADER);
+                return ResponseEntity.unprocessableEntity()
+                        .body(new OrderConfirmationDto(null, null, null, null,
+                                IDEMPOTENCY_KEY_HEADER + " was already used for a different checkout"));
+            }
+            default -> { }
+        }
+
+        boolean completed = false;
+        try {
+            ResponseEntity<OrderConfirmationDto> response = placeOrder(request, session);
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                idempotencyService.complete(customerId, idempotencyKey, response.getBody());
+                completed = true;
+            }
+            return response;
+        } finally {
+            if (!completed) {
+                // Rejected or failed: nothing was placed, so let the client retry with the same key.
+                idempotencyService.release(customerId, idempotencyKey);
+            }
+        }
+    }
+
+    /**
+     * Identifies what a checkout request asks for, so a key reused for a different
+     * order is caught. Payment details are left out.
+     */
+    private static int requestHash(CheckoutRequestDto request) {
+        return Objects.hash(
+                request.getDeliveryMethod() == null ? null : request.getDeliveryMethod().trim().toUpperCase(),
+                request.getDeliveryAddress() == null ? null : request.getDeliveryAddress().trim(),
+                request.getAddressId());
+    }
 
-        List<CartItem> items = cartRepository.findAll();
+    private ResponseEntity<OrderConfirmationDto> placeOrder(CheckoutRequestDto request, HttpSession session) {
+        String cartId = session.getId();
+        List<CartItem> items = cartRepository.findAll(cartId);
 
         ResponseEntity<OrderConfirmationDto> validationError = validateInput(request, session, items);
         if (validationError != null) return validationError;
@@ -68,38 +168,48 @@ public class CheckoutController {
         Object userIdObj = session.getAttribute("userId");
         Long customerId = ((Number) userIdObj).longValue();
         String deliveryMethod = request.getDeliveryMethod().trim().toUpperCase();
+        Payment payment;
+        try {
+            payment = paymentController.preparePayment(request.getCardNumber(), request.getCvv(), request.getExpirationDate());
+        } catch (IllegalArgumentException ex) {
+            logger.error("invalid payment details");
+            return ResponseEntity.badRequest()
+                    .body(new OrderConfirmationDto(null, null, deliveryMethod, null, ex.getMessage()));
+        }
+
         Long addressIdInput = request.getAddressId();
         String deliveryAddress = request.getDeliveryAddress() == null ? null : request.getDeliveryAddress().trim();
         Long addressId;
+        long taxRatePpm;
         if ("DELIVERY".equals(deliveryMethod)) {
             addressId = orderRepository.findOrCreateAddressId(addressIdInput, customerId, deliveryAddress);
+            taxRatePpm = orderRepository.findAddressLocation(addressId)
+                    .map(address -> taxService.ratePpm(address.getState(), address.getZip()))
+                    .orElseGet(taxService::restaurantRatePpm);
         } else {
             // For PICKUP, use an existing saved address if available (some DB schemas require address_id NOT NULL)
             addressId = orderRepository.findExistingAddressId(addressIdInput);
+            taxRatePpm = taxService.restaurantRatePpm();
         }
+        payment.setAddressId(addressId);
 
-        BigDecimal subtotal = BigDecimal.valueOf(cartRepository.getTotal()).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal discount = BigDecimal.valueOf(cartRepository.getAppliedDiscount()).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal taxable = subtotal.subtract(discount).max(BigDecimal.ZERO);
-        BigDecimal tax = taxable.multiply(BigDecimal.valueOf(0.08)).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal total = taxable.add(tax).setScale(2, RoundingMode.HALF_UP);
-
-        Long promotionsId = null;
-        String promoCode = cartRepository.getAppliedPromoCode();
-        if (promoCode != null && !promoCode.isBlank()) {
-            Optional<Promotion> promo = promotionRepository.findByCode(promoCode);
-            if (promo.isPresent()) {
-                promotionsId = promo.get().getPromotionId();
-            }
+        // The promotion is checked against the cart as it is now; one that no longer applies is dropped
+        Long promotionsId = cartRepository.getAppliedPromotionId(cartId);
+        Evaluation promo = promotionEngine.evaluate(promotionsId, items);
+        if (!promo.applies()) {
+            promotionsId = null;
         }
 
+        Totals totals = TotalsCalculator.totals(cartRepository.getSubtotalCents(cartId),
+                promo.discountCents(), taxRatePpm);
+        BigDecimal discount = Money.toBigDecimal(totals.discount());
+        BigDecimal total = Money.toBigDecimal(totals.total());
 
-        Long orderId = buildAndSaveOrder(customerId, addressId, promotionsId,
-                deliveryMethod, total, discount, items);
-
-        paymentController.savePayment(orderId, addressId, request.getCardNumber(), request.getCvv(), request.getExpirationDate());
+        Order order = buildAndSaveOrder(customerId, addressId, promotionsId,
+                deliveryMethod, total, discount, items, payment);
+        Long orderId = order.getOrderId();
 
-        cartRepository.clearCart();
+        cartRepository.clearCart(cartId);
 
         return ResponseEntity.ok(new OrderConfirmationDto(
                 orderId,
@@ -149,9 +259,9 @@ public class CheckoutController {
         return null;
     }
 
-    private Long buildAndSaveOrder(Long customerId, Long addressId, Long promotionsId,
+    private Order buildAndSaveOrder(Long customerId, Long addressId, Long promotionsId,
                                    String deliveryMethod, BigDecimal total, BigDecimal discount,
-                                   List<CartItem> items) {
+                                   List<CartItem> items, Payment payment) {
 
         Order order = new Order();
         order.setCustomerId(customerId);
@@ -164,55 +274,41 @@ public class CheckoutController {
         order.setStatus("PENDING");
         order.setDeliveryMethod(deliveryMethod);
 
-        Long orderId = orderRepository.save(order);
-
-        for (CartItem cartItem : items) {
-            if (cartItem.getProductId() != null) {
-                Long orderItemId = orderRepository.saveRegularItem(orderId, cartItem);
-                logger.info("Regular orderItem: {} is item id: {}", orderItemId, orderItemId);
-            } else {
-                Long orderItemId = orderRepository.saveCustomItem(orderId, cartItem);
-
-                if (cartItem.getToppingIdsFull() != null && cartItem.getToppingIdsFull().length > 0) {
-                    logger.info("toppingIds full: {}", cartItem.getToppingIdsFull());
-                    for (Long toppingId : cartItem.getToppingIdsFull()) {
-                        orderRepository.saveCustomItemTopping(orderItemId, "FULL", toppingId);
-                    }
-                } else {
-                    if (cartItem.getToppingIdsLeft() != null && cartItem.getToppingIdsLeft().length > 0) {
-                        logger.info("toppingIds left: {}", cartItem.getToppingIdsLeft());
-                        for (Long toppingId : cartItem.getToppingIdsLeft()) {
-                            orderRepository.saveCustomItemTopping(orderItemId, "LEFT", toppingId);
-                        }
-                    }
-                    if (cartItem.getToppingIdsRight() != null && cartItem.getToppingIdsRight().length > 0) {
-                        logger.info("toppingIds right: {}", cartItem.getToppingIdsRight());
-                        for (Long toppingId : cartItem.getToppingIdsRight()) {
-                            orderRepository.saveCustomItemTopping(orderItemId, "RIGHT", toppingId);
-                        }
-                    }
-                }
-
-                logger.info("Custom orderItem: {} is item id: {}", orderItemId, orderItemId);
-            }
-        }
+        // The payment and the ORDER_PLACED event commit or roll back with the order
+        NewMessage placed = orderPlacedMessage(new OrderPlacedEvent(
+                null, customerId, order.getOrderTimestamp(), total, deliveryMethod, List.copyOf(items)));
+        Long orderId = orderRepository.save(order, items, payment, List.of(placed));
+        order.setOrderId(orderId);
+        logger.info("Saved order {} with {} cart items", orderId, items.size());
 
-        return orderId;
+        return order;
+    }
+
+    /**
+     * The outbox row for a new order. Its orderId is left null, since the order
+     * has no id yet; the relay fills it in from the row.
+     */
+    private NewMessage orderPlacedMessage(OrderPlacedEvent placed) {
+        try {
+            return new NewMessage(OrderLifecycleEvent.ORDER_PLACED, objectMapper.writeValueAsString(placed));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize ORDER_PLACED event", ex);
+        }
     }
 
-    private Map<String, Object> buildSummary() {
-        double subtotal = cartRepository.getTotal();
-        double discount = cartRepository.getAppliedDiscount();
-        double taxable = Math.max(0, subtotal - discount);
-        double tax = Math.round(taxable * 0.08 * 100.0) / 100.0;
-        double total = Math.round((taxable + tax) * 100.0) / 100.0;
+    private Map<String, Object> buildSummary(String cartId) {
+        // Taxed at the restaurant's location; a delivery is re-taxed at its address when placed
+        List<CartItem> items = cartRepository.findAll(cartId);
+        Totals totals = TotalsCalculator.totals(cartRepository.getSubtotalCents(cartId),
+                promotionEngine.evaluate(cartRepository.getAppliedPromotionId(cartId), items).discountCents(),
+                taxService.restaurantRatePpm());
 
         Map<String, Object> summary = new HashMap<>();
-        summary.put("items", cartRepository.findAll().stream().map(this::summaryItem).toList());
-        summary.put("subtotal", subtotal);
-        summary.put("discount", discount);
-        summary.put("tax", tax);
-        summary.put("total", total);
+        summary.put("items", items.stream().map(this::summaryItem).toList());
+        summary.put("subtotal", Money.toDouble(totals.subtotal()));
+        summary.put("discount", Money.toDouble(totals.discount()));
+        summary.put("tax", Money.toDouble(totals.tax()));
+        summary.put("total", Money.toDouble(totals.total()));
         return summary;
     }
 
@@ -0,0 +1,121 @@
+package com.pizzastore.controller;
+
+import com.pizzastore.model.OrderStatus;
+import com.pizzastore.service.KitchenQueueService;
+import com.pizzastore.service.KitchenQueueService.TransitionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpSession;
+import java.util.Map;
+
+/**
+ * The kitchen order queue for staff screens. Screens load the queue once and
+ * then either keep an event stream open ({@code /stream}) or long-poll
+ * {@code /changes} with the version they last saw, instead of re-reading every
+ * order every few seconds.
+ */
+@RestController
+@RequestMapping("/api/kitchen/orders")
+public class KitchenController {
+
+    private static final Logger logger = LoggerFactory.getLogger(KitchenController.class);
+
+    private final KitchenQueueService kitchenQueueService;
+
+    @Value("${kitchen.queue.long-poll-ms:25000}")
+    private long longPollMs = 25000;
+
+    public KitchenController(KitchenQueueService kitchenQueueService) {
+        this.kitchenQueueService = kitchenQueueService;
+    }
+
+    /**
+     * Every order still in the queue, oldest first.
+     */
+    @GetMapping
+    public ResponseEntity<?> getQueue(HttpSession session) {
+        ResponseEntity<?> denied = requireStaff(session);
+        if (denied != null) return denied;
+
+        return ResponseEntity.ok(kitchenQueueService.snapshot());
+    }
+
+    /**
+     * Server-sent events: "snapshot" with the whole queue, then an "order" event
+     * for every order that is added or changes status. The event id is the queue version.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<?> stream(HttpSession session) {
+        ResponseEntity<?> denied = requireStaff(session);
+        if (denied != null) return denied;
+
+        logger.info("kitchen stream opened");
+        return ResponseEntity.ok(kitchenQueueService.subscribe());
+    }
+
+    /**
+     * Long poll: answers as soon as something changed after version {@code since},
+     * or with no orders after {@code kitchen.queue.long-poll-ms}.
+     */
+    @GetMapping("/changes")
+    public DeferredResult<ResponseEntity<?>> changes(@RequestParam long since, HttpSession session) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(longPollMs);
+        ResponseEntity<?> denied = requireStaff(session);
+        if (denied != null) {
+            result.setResult(denied);
+            return result;
+        }
+
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(kitchenQueueService.changesSince(since))));
+        Runnable stopWaiting = kitchenQueueService.awaitChanges(since, feed -> result.setResult(ResponseEntity.ok(feed)));
+        result.onCompletion(stopWaiting);
+        return result;
+    }
+
+    /**
+     * Moves an order to the next status. Body: {@code { "status": "PREPARING" }}.
+     */
+    @PutMapping("/{orderId}/status")
+    public ResponseEntity<?> updateStatus(@PathVariable long orderId,
+                                          @RequestBody Map<String, String> body,
+                                          HttpSession session) {
+        ResponseEntity<?> denied = requireStaff(session);
+        if (denied != null) return denied;
+
+        OrderStatus to = OrderStatus.parse(body == null ? null : body.get("status"));
+        if (to == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Unknown status"));
+        }
+        Long employeeId = ((Number) session.getAttribute("userId")).longValue();
+        logger.info("updateStatus orderId={} to={} employeeId={}", orderId, to, employeeId);
+
+        TransitionResult result = kitchenQueueService.transition(orderId, to, employeeId);
+        return switch (result.outcome()) {
+            case UPDATED -> ResponseEntity.ok(result.order());
+            case NOT_FOUND -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Order is not in the kitchen queue"));
+            case INVALID_TRANSITION -> ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", "Order is " + result.order().getStatus() + " and cannot move to " + to));
+            case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", "Order was changed by someone else, reload and try again"));
+        };
+    }
+
+    private static ResponseEntity<?> requireStaff(HttpSession session) {
+        if (session.getAttribute("userId") == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "Authentication required"));
+        }
+        if ("Customer".equals(session.getAttribute("role"))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "Staff only"));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+package com.pizzastore.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.CrustTypeRepository;
+import com.pizzastore.repository.PizzaSizeRepository;
+import com.pizzastore.repository.ProductCategoryRepository;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.ToppingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Returns the whole menu catalog (categories, products, sizes, crusts and
+ * toppings) in one response, so the menu page needs a single request.
+ * The JSON is serialized once per catalog version and reused byte-for-byte
+ * until a manager changes the catalog. Responses carry a strong ETag, and a
+ * request whose If-None-Match matches it gets an empty 304.
+ */
+@RestController
+@RequestMapping("/api/menu")
+public class MenuController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MenuController.class);
+
+    private final CatalogCache catalogCache;
+    private final ProductCategoryRepository productCategoryRepository;
+    private final ProductRepository productRepository;
+    private final PizzaSizeRepository pizzaSizeRepository;
+    private final CrustTypeRepository crustTypeRepository;
+    private final ToppingRepository toppingRepository;
+    private final ObjectMapper objectMapper;
+
+    private record RenderedMenu(long version, byte[] json, String etag) {}
+
+    private volatile RenderedMenu rendered;
+
+    public MenuController(CatalogCache catalogCache,
+                          ProductCategoryRepository productCategoryRepository,
+                          ProductRepository productRepository,
+                          PizzaSizeRepository pizzaSizeRepository,
+                          CrustTypeRepository crustTypeRepository,
+                          ToppingRepository toppingRepository,
+                          ObjectMapper objectMapper) {
+        this.catalogCache = catalogCache;
+        this.productCategoryRepository = productCategoryRepository;
+        this.productRepository = productRepository;
+        this.pizzaSizeRepository = pizzaSizeRepository;
+        this.crustTypeRepository = crustTypeRepository;
+        this.toppingRepository = toppingRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping
+    public ResponseEntity<byte[]> getMenu(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) throws JsonProcessingException {
+        RenderedMenu menu = currentMenu();
+
+        if (matches(ifNoneMatch, menu.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(menu.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(menu.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(menu.json());
+    }
+
+    private RenderedMenu currentMenu() throws JsonProcessingException {
+        // Read the version before the data: if the catalog changes while we render,
+        // the next request sees a newer version and renders again.
+        long version = catalogCache.version();
+        RenderedMenu menu = rendered;
+        if (menu != null && menu.version() == version) {
+            return menu;
+        }
+
+        logger.info("Rendering menu for catalog version {}", version);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("categories", productCategoryRepository.findAll());
+        body.put("products", productRepository.findAll());
+        body.put("sizes", pizzaSizeRepository.findAll());
+        body.put("crusts", crustTypeRepository.findAll());
+        body.put("toppings", toppingRepository.findAll());
+
+        byte[] json = objectMapper.writeValueAsBytes(body);
+        String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        menu = new RenderedMenu(version, json, etag);
+        rendered = menu;
+        return menu;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(etag));
+    }
+}
@@ -0,0 +1,65 @@
+package com.pizzastore.controller;
+
+import com.pizzastore.service.MetricsService;
+import com.pizzastore.service.MetricsService.Kind;
+import com.pizzastore.service.PasswordHashingService;
+import com.pizzastore.service.QueryStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpSession;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operational metrics for staff: per-endpoint and per-query latency
+ * (see TimingAspect), slow SQL statements grouped by shape (see
+ * QueryStatsService) and the password hashing pool.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class MetricsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsController.class);
+
+    private final MetricsService metricsService;
+    private final QueryStatsService queryStatsService;
+    private final PasswordHashingService passwordHashing;
+
+    public MetricsController(MetricsService metricsService,
+                             QueryStatsService queryStatsService,
+                             PasswordHashingService passwordHashing) {
+        this.metricsService = metricsService;
+        this.queryStatsService = queryStatsService;
+        this.passwordHashing = passwordHashing;
+    }
+
+    /**
+     * Endpoints and queries are each sorted slowest p99 first, slow statements
+     * by total time spent in them.
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<?> getMetrics(HttpSession session) {
+        if (session.getAttribute("userId") == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "Authentication required"));
+        }
+        if ("Customer".equals(session.getAttribute("role"))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "Staff only"));
+        }
+        logger.info("getMetrics called");
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("endpoints", metricsService.snapshot(Kind.HTTP));
+        body.put("queries", metricsService.snapshot(Kind.SQL));
+        body.put("slowQueries", queryStatsService.slowQueries());
+        body.put("passwordHashing", passwordHashing.stats());
+        return ResponseEntity.ok(body);
+    }
+}
@@ -1,20 +1,29 @@
 package com.pizzastore.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pizzastore.dto.OrderDto;
+import com.pizzastore.dto.OrderHistoryPageDto;
 import com.pizzastore.dto.OrderItemDto;
+import com.pizzastore.model.Money;
 import com.pizzastore.model.Order;
 import com.pizzastore.repository.OrderRepository;
+import com.pizzastore.service.TotalsCalculator;
+import com.pizzastore.service.TotalsCalculator.Totals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpSession;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.ArrayList;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -24,10 +33,45 @@ import java.util.stream.Collectors;
 public class OrderController {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
+
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int STREAM_BATCH_SIZE = 50;
+
     private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Position in a customer's history: the (order_timestamp, order_id) of the last
+     * order the client has seen. Sent to clients as an opaque base64 token; a
+     * missing timestamp is encoded as an empty string.
+     */
+    private record Cursor(LocalDateTime timestamp, Long orderId) {
 
-    public OrderController(OrderRepository orderRepository) {
+        static Cursor after(Order order) {
+            return new Cursor(order.getOrderTimestamp(), order.getOrderId());
+        }
+
+        String encode() {
+            String raw = (timestamp == null ? "" : timestamp.toString()) + "|" + orderId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", 2);
+                return new Cursor(parts[0].isEmpty() ? null : LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+        }
+    }
+
+    public OrderController(OrderRepository orderRepository, ObjectMapper objectMapper) {
         this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/history")
@@ -43,30 +87,117 @@ public class OrderController {
 
         List<Order> orders = orderRepository.findByCustomerId(customerId);
 
-        List<OrderDto> result = orders.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return ResponseEntity.ok(toDtos(orders));
+    }
+
+    /**
+     * Returns one page of the customer's history, newest first. Pass the returned
+     * nextCursor back as {@code cursor} to get the following page; nextCursor is
+     * null on the last page.
+     */
+    @GetMapping("/history/page")
+    public ResponseEntity<?> getOrderHistoryPage(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                                 HttpSession session) {
+        Object userIdObj = session.getAttribute("userId");
+        if (userIdObj == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "Authentication required"));
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "limit must be between 1 and " + MAX_PAGE_SIZE));
+        }
+
+        Cursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : Cursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
 
-        return ResponseEntity.ok(result);
+        Long customerId = ((Number) userIdObj).longValue();
+        logger.info("getOrderHistoryPage customerId={} limit={}", customerId, limit);
+
+        // Ask for one extra row so we know whether another page exists.
+        List<Order> orders = findPage(customerId, after, limit + 1);
+        boolean hasMore = orders.size() > limit;
+        if (hasMore) {
+            orders = orders.subList(0, limit);
+        }
+
+        String nextCursor = hasMore ? Cursor.after(orders.get(orders.size() - 1)).encode() : null;
+        return ResponseEntity.ok(new OrderHistoryPageDto(toDtos(orders), nextCursor));
     }
 
-    private OrderDto toDto(Order order) {
-        List<OrderItemDto> items = new ArrayList<>();
-        items.addAll(orderRepository.findRegularItemsByOrderId(order.getOrderId()));
-        items.addAll(orderRepository.findCustomItemsByOrderId(order.getOrderId()));
+    /**
+     * Streams the customer's whole history as newline-delimited JSON, one OrderDto
+     * per line. Orders are read and written in keyset batches, so memory use stays
+     * flat and the client starts receiving orders before the last batch is loaded.
+     */
+    @GetMapping("/history/stream")
+    public ResponseEntity<?> streamOrderHistory(HttpSession session) {
+        Object userIdObj = session.getAttribute("userId");
+        if (userIdObj == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "Authentication required"));
+        }
+
+        Long customerId = ((Number) userIdObj).longValue();
+        logger.info("streamOrderHistory customerId={}", customerId);
 
-        BigDecimal subtotal = items.stream()
-                .map(i -> i.getLineTotal() != null ? i.getLineTotal() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal tax = subtotal.multiply(new BigDecimal("0.08")).setScale(2, RoundingMode.HALF_UP);
+        StreamingResponseBody body = out -> {
+            Cursor after = null;
+            List<Order> batch;
+            do {
+                batch = findPage(customerId, after, STREAM_BATCH_SIZE);
+                for (OrderDto dto : toDtos(batch)) {
+                    out.write(objectMapper.writeValueAsBytes(dto));
+                    out.write('\n');
+                }
+                out.flush();
+                if (!batch.isEmpty()) {
+                    after = Cursor.after(batch.get(batch.size() - 1));
+                }
+            } while (batch.size() == STREAM_BATCH_SIZE);
+        };
+
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+
+    private List<Order> findPage(Long customerId, Cursor after, int limit) {
+        return orderRepository.findPageByCustomerId(customerId,
+                after == null ? null : after.timestamp(),
+                after == null ? null : after.orderId(),
+                limit);
+    }
+
+    private List<OrderDto> toDtos(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<OrderItemDto>> itemsByOrder = orderRepository.findItemsByOrderIds(
+                orders.stream().map(Order::getOrderId).collect(Collectors.toList()));
+        return orders.stream()
+                .map(order -> toDto(order, itemsByOrder.getOrDefault(order.getOrderId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    private OrderDto toDto(Order order, List<OrderItemDto> items) {
+        long subtotal = 0;
+        for (OrderItemDto item : items) {
+            subtotal += Money.cents(item.getLineTotal());
+        }
+        Totals totals = TotalsCalculator.placed(subtotal, Money.cents(order.getDiscountAmount()),
+                Money.cents(order.getTotalAmount()));
 
         OrderDto dto = new OrderDto();
         dto.setOrderId(order.getOrderId());
-        dto.setPlacedAt(order.getOrderTimestamp().toInstant(ZoneOffset.UTC));
+        dto.setPlacedAt(order.getOrderTimestamp() != null ? order.getOrderTimestamp().toInstant(ZoneOffset.UTC) : null);
         dto.setStatus(order.getStatus());
         dto.setDeliveryMethod(order.getDeliveryMethod());
-        dto.setSubtotal(subtotal);
-        dto.setTax(tax);
+        dto.setSubtotal(Money.toBigDecimal(totals.subtotal()));
+        dto.setTax(Money.toBigDecimal(totals.tax()));
         dto.setTotal(order.getTotalAmount());
         dto.setDiscount(order.getDiscountAmount() != null ? order.getDiscountAmount() : BigDecimal.ZERO);
         dto.setItems(items);
@@ -26,7 +26,7 @@ public class PaymentController {
 
     @PostMapping("/process")
     public ResponseEntity<Map<String, Object>> processPayment(@RequestBody PaymentRequest request) {
-        logger.info("processPayment {}", request);
+        logger.info("processPayment deliveryMethod={}", request.getDeliveryMethod());
         // Validate required fields
         if (request.getCardNumber() == null || request.getCardNumber().isBlank() ||
                 request.getExpirationDate() == null || request.getExpirationDate().isBlank() ||
@@ -49,11 +49,23 @@ public class PaymentController {
     }
 
     public void savePayment(Long orderId, Long addressId, String cardNumber, String cvv, String expDt) {
-        String maskedCard = cardNumber != null && cardNumber.length() > 4
-                ? "**** **** **** " + cardNumber.substring(cardNumber.length() - 4)
-                : "****";
-        logger.info("savePayment orderId={} addressId={} card={}", orderId, addressId, maskedCard);
+        Payment payment = preparePayment(cardNumber, cvv, expDt);
+        payment.setOrderId(orderId);
+        payment.setAddressId(addressId);
+        logger.info("savePayment orderId={} addressId={} card={}", orderId, addressId, maskCard(cardNumber));
+
+        paymentRepository.insertNewPayment(payment);
+    }
 
+    /**
+     * Validates the card details and builds the payment row for them, without
+     * order or address ids and without writing anything. Checkout calls this
+     * before saving the order so bad card details are rejected up front, then
+     * has the row written in the order's transaction.
+     *
+     * @throws IllegalArgumentException if the CVV or expiration date is missing or malformed
+     */
+    public Payment preparePayment(String cardNumber, String cvv, String expDt) {
         if (expDt == null || !expDt.contains("/")) {
             throw new IllegalArgumentException("Expiration date must be in MM/YY format.");
         }
@@ -74,13 +86,16 @@ public class PaymentController {
         }
 
         Payment payment = new Payment();
-        payment.setOrderId(orderId);
-        payment.setAddressId(addressId);
         payment.setCcNumber(cardNumber);
         payment.setCcvNumber(cvv);
         payment.setExpMonth(expMonth);
         payment.setExpYear(expYear);
+        return payment;
+    }
 
-        paymentRepository.insertNewPayment(payment);
+    private static String maskCard(String cardNumber) {
+        return cardNumber != null && cardNumber.length() > 4
+                ? "**** **** **** " + cardNumber.substring(cardNumber.length() - 4)
+                : "****";
     }
 }
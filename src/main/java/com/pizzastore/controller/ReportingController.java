@@ -1,11 +1,14 @@
 package com.pizzastore.controller;
 
+import com.pizzastore.service.ReportingService;
+import com.pizzastore.service.ReportingService.ProductSales;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -13,21 +16,23 @@ import java.util.Map;
 @RequestMapping("/api")
 public class ReportingController {
 
+    private static final Logger logger = LoggerFactory.getLogger(ReportingController.class);
+
+    private final ReportingService reportingService;
+
+    public ReportingController(ReportingService reportingService) {
+        this.reportingService = reportingService;
+    }
+
     @GetMapping("/reports")
     public List<Map<String, Object>> getReports() {
-        return Arrays.asList(
-            report("Total Orders", 1248),
-            report("Revenue This Month", 38420),
-            report("Average Order Value", 30.79),
-            report("Top Selling Pizza", "Margherita"),
-            report("Active Customers", 342)
-        );
+        logger.info("getReports called");
+        return reportingService.getReports();
     }
 
-    private Map<String, Object> report(String name, Object value) {
-        Map<String, Object> r = new HashMap<>();
-        r.put("name", name);
-        r.put("value", value);
-        return r;
+    @GetMapping("/reports/top-products")
+    public List<ProductSales> getTopProducts(@RequestParam(defaultValue = "5") int limit) {
+        logger.info("getTopProducts limit={}", limit);
+        return reportingService.getTopProducts(Math.max(0, limit));
     }
 }
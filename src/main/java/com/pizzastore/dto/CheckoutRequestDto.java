@@ -4,6 +4,7 @@ import com.pizzastore.model.CartItem;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
 @NoArgsConstructor
@@ -12,7 +13,9 @@ public class CheckoutRequestDto {
     private String deliveryMethod;
     private String deliveryAddress;
     private Long addressId;
+    @ToString.Exclude
     private String cardNumber;
     private String expirationDate;
+    @ToString.Exclude
     private String cvv;
 }
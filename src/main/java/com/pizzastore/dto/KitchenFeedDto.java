@@ -0,0 +1,22 @@
+package com.pizzastore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kitchen queue contents or changes. version identifies the queue state the
+ * orders bring a screen up to; pass it back as {@code since} to get only what
+ * changed after it. When reset is true, orders is the whole queue and replaces
+ * what the screen has; otherwise it holds just the orders that changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KitchenFeedDto {
+    private long version;
+    private boolean reset;
+    private List<KitchenOrderDto> orders;
+}
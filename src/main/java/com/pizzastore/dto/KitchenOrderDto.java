@@ -0,0 +1,25 @@
+package com.pizzastore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * An order as shown on the kitchen screens. An order whose status is COMPLETED
+ * has left the queue; screens should drop it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KitchenOrderDto {
+    private Long orderId;
+    private Long customerId;
+    private String status;
+    private String deliveryMethod;
+    private Instant placedAt;
+    private Instant updatedAt;
+    private List<OrderItemDto> items;
+}
@@ -0,0 +1,15 @@
+package com.pizzastore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryPageDto {
+    private List<OrderDto> orders;
+    private String nextCursor;
+}
@@ -0,0 +1,56 @@
+package com.pizzastore.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Delivers order events to in-process listeners: each OrderLifecycleEvent is
+ * published on the application event bus, followed by the OrderPlacedEvent or
+ * OrderStatusChangedEvent it carries (sales rollups listen for OrderPlacedEvent).
+ */
+@Component
+public class ApplicationEventOrderSink implements OrderEventSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    public ApplicationEventOrderSink(ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper) {
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String name() {
+        return "in-process";
+    }
+
+    @Override
+    public void publish(List<OrderLifecycleEvent> events) {
+        for (OrderLifecycleEvent event : events) {
+            eventPublisher.publishEvent(event);
+            if (OrderLifecycleEvent.ORDER_PLACED.equals(event.type())) {
+                eventPublisher.publishEvent(orderPlaced(event));
+            } else if (OrderLifecycleEvent.ORDER_STATUS_CHANGED.equals(event.type())) {
+                eventPublisher.publishEvent(read(event, OrderStatusChangedEvent.class));
+            }
+        }
+    }
+
+    private OrderPlacedEvent orderPlaced(OrderLifecycleEvent event) {
+        OrderPlacedEvent placed = read(event, OrderPlacedEvent.class);
+        return new OrderPlacedEvent(event.orderId(), placed.customerId(), placed.orderTimestamp(),
+                placed.totalAmount(), placed.deliveryMethod(), placed.items());
+    }
+
+    private <T> T read(OrderLifecycleEvent event, Class<T> type) {
+        try {
+            return objectMapper.readValue(event.payload(), type);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unreadable " + event.type() + " payload for order " + event.orderId(), ex);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.pizzastore.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends order events to a local file, one JSON object per line, for tools that
+ * tail a file instead of calling the API. Each batch is a single append.
+ * Enabled with {@code order.events.file.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "order.events.file.enabled", havingValue = "true")
+public class FileOrderEventSink implements OrderEventSink {
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+
+    public FileOrderEventSink(ObjectMapper objectMapper,
+                              @Value("${order.events.file.path:./logs/pizzastore/order-events.ndjson}") String path) {
+        this.objectMapper = objectMapper;
+        this.path = Path.of(path);
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void publish(List<OrderLifecycleEvent> events) {
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (OrderLifecycleEvent event : events) {
+                ObjectNode line = objectMapper.createObjectNode();
+                line.put("eventId", event.eventId());
+                line.put("orderId", event.orderId());
+                line.put("type", event.type());
+                line.put("occurredAt", event.occurredAt() == null ? null : event.occurredAt().toString());
+                line.set("payload", objectMapper.readTree(event.payload()));
+                lines.append(objectMapper.writeValueAsString(line)).append('\n');
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not write order events as JSON", ex);
+        }
+
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not append order events to " + path, ex);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.pizzastore.event;
+
+import java.util.List;
+
+/**
+ * A destination for order lifecycle events. Every sink bean receives every batch
+ * OrderEventRelay drains from the outbox, oldest event first. Throwing fails the
+ * batch: it stays in the outbox and is delivered again, to every sink, later,
+ * so a sink may receive an event it has already handled.
+ */
+public interface OrderEventSink {
+
+    /**
+     * Short name used in logs.
+     */
+    String name();
+
+    void publish(List<OrderLifecycleEvent> events);
+}
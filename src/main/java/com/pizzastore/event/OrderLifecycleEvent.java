@@ -0,0 +1,22 @@
+package com.pizzastore.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the order event feed that OrderEventRelay hands to every
+ * OrderEventSink. eventId is unique and increases in the order events were
+ * recorded, so a consumer can drop repeats: delivery is at-least-once.
+ * payload is the event's JSON body: an OrderPlacedEvent for ORDER_PLACED and an
+ * OrderStatusChangedEvent for ORDER_STATUS_CHANGED.
+ */
+public record OrderLifecycleEvent(
+        long eventId,
+        long orderId,
+        String type,
+        String payload,
+        LocalDateTime occurredAt
+) {
+
+    public static final String ORDER_PLACED = "ORDER_PLACED";
+    public static final String ORDER_STATUS_CHANGED = "ORDER_STATUS_CHANGED";
+}
@@ -0,0 +1,24 @@
+package com.pizzastore.event;
+
+import com.pizzastore.model.CartItem;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Published for every committed order by ApplicationEventOrderSink, from the
+ * order event feed rather than the checkout request. Delivery is at-least-once
+ * and may come some time after the order was placed, or after a restart;
+ * orderTimestamp is when the order was placed. It carries everything the
+ * kitchen shows for an order, so listeners never have to read the order back.
+ * Listeners must be quick and must not throw.
+ */
+public record OrderPlacedEvent(
+        Long orderId,
+        Long customerId,
+        LocalDateTime orderTimestamp,
+        BigDecimal totalAmount,
+        String deliveryMethod,
+        List<CartItem> items
+) {}
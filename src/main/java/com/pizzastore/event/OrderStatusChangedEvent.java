@@ -0,0 +1,15 @@
+package com.pizzastore.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Body of an ORDER_STATUS_CHANGED order event, recorded in the same transaction
+ * as the status update. employeeId is the staff member who made the change.
+ */
+public record OrderStatusChangedEvent(
+        Long orderId,
+        String fromStatus,
+        String toStatus,
+        Long employeeId,
+        LocalDateTime changedAt
+) {}
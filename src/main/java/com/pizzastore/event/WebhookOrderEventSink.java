@@ -0,0 +1,39 @@
+package com.pizzastore.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Placeholder for pushing order events to an external service such as kitchen
+ * display or delivery dispatch. Nothing is sent yet: it only logs what it would
+ * POST to {@code order.events.webhook.url}, so the relay and the other sinks can
+ * be exercised with a webhook configured. Enabled by setting that property.
+ */
+@Component
+@ConditionalOnProperty(name = "order.events.webhook.url")
+public class WebhookOrderEventSink implements OrderEventSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookOrderEventSink.class);
+
+    private final String url;
+
+    public WebhookOrderEventSink(@Value("${order.events.webhook.url}") String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+
+    @Override
+    public void publish(List<OrderLifecycleEvent> events) {
+        logger.info("webhook stub: would POST {} order events (ids {}..{}) to {}",
+                events.size(), events.get(0).eventId(), events.get(events.size() - 1).eventId(), url);
+    }
+}
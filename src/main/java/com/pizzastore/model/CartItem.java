@@ -1,5 +1,6 @@
 package com.pizzastore.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -21,6 +22,11 @@ public class CartItem {
     private Double price;
 
     public double getLineTotal() {
-        return price != null ? Math.round(price * quantity * 100.0) / 100.0 : 0.0;
+        return Money.toDouble(getLineTotalCents());
+    }
+
+    @JsonIgnore
+    public long getLineTotalCents() {
+        return Money.times(Money.cents(price), quantity);
     }
 }
@@ -0,0 +1,64 @@
+package com.pizzastore.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money as a whole number of cents in a {@code long}.
+ * Cart, checkout and order history do their arithmetic on cents so that the
+ * totals a customer sees and the total_amount that gets stored are computed the
+ * same way, with no floating-point drift and no BigDecimal garbage on every cart
+ * refresh. Amounts are converted at the edges only: from the catalog's and the
+ * cart item's prices on the way in, and to BigDecimal (database, order DTOs) or
+ * double (cart JSON) on the way out.
+ */
+public final class Money {
+
+    /** Rates are given in parts per million: 8% is 80_000. */
+    public static final long RATE_SCALE = 1_000_000L;
+
+    private Money() {
+    }
+
+    /**
+     * The amount in cents, rounded half up; null counts as zero.
+     */
+    public static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * The amount in cents, rounded half up; null counts as zero.
+     */
+    public static long cents(Double amount) {
+        return amount == null ? 0 : Math.round(amount * 100);
+    }
+
+    /**
+     * A rate given as a fraction (0.08 for 8%) in parts per million.
+     */
+    public static long ratePpm(BigDecimal rate) {
+        return rate.movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /**
+     * {@code cents} times a rate in parts per million, rounded half up to the cent.
+     */
+    public static long applyRate(long cents, long ratePpm) {
+        long product = Math.multiplyExact(cents, ratePpm);
+        long half = RATE_SCALE / 2;
+        return product >= 0 ? (product + half) / RATE_SCALE : -((-product + half) / RATE_SCALE);
+    }
+}
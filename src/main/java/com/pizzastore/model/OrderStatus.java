@@ -0,0 +1,45 @@
+package com.pizzastore.model;
+
+/**
+ * Where an order is in the kitchen. Orders move forward one step at a time:
+ * PENDING → PREPARING → READY → OUT_FOR_DELIVERY → COMPLETED. Pickup orders
+ * never go out for delivery, so they go from READY straight to COMPLETED.
+ */
+public enum OrderStatus {
+    PENDING,
+    PREPARING,
+    READY,
+    OUT_FOR_DELIVERY,
+    COMPLETED;
+
+    public boolean isActive() {
+        return this != COMPLETED;
+    }
+
+    public boolean canMoveTo(OrderStatus next, String deliveryMethod) {
+        boolean pickup = "PICKUP".equalsIgnoreCase(deliveryMethod);
+        return switch (this) {
+            case PENDING -> next == PREPARING;
+            case PREPARING -> next == READY;
+            case READY -> pickup ? next == COMPLETED : next == OUT_FOR_DELIVERY;
+            case OUT_FOR_DELIVERY -> next == COMPLETED;
+            case COMPLETED -> false;
+        };
+    }
+
+    /**
+     * Parses a status name, ignoring case and surrounding spaces.
+     *
+     * @return null if the name is not a status
+     */
+    public static OrderStatus parse(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -3,13 +3,16 @@ package com.pizzastore.model;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class PaymentRequest {
+    @ToString.Exclude
     private String cardNumber;
     private String expirationDate;
+    @ToString.Exclude
     private String cvv;
     private String deliveryMethod; // "DELIVERY" or "PICKUP"
 }
\ No newline at end of file
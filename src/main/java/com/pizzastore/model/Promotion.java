@@ -1,5 +1,6 @@
 package com.pizzastore.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -36,5 +37,12 @@ public class Promotion {
     @Column(name = "min_order_amt")
     private Double minOrderAmt;
 
+    /**
+     * JSON rule from promotion_rules, or null for a plain fixed discount. See PromotionEngine.
+     */
+    @JsonIgnore
+    @Column(name = "rule_definition")
+    private String ruleDefinition;
+
     // getters and setters come from Lombok
 }
\ No newline at end of file
@@ -3,94 +3,332 @@ package com.pizzastore.repository;
 import com.pizzastore.model.CartItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * In-memory store of shopping carts, one per cart id (the caller's HTTP session id).
+ * Carts live in a concurrent map and each cart is guarded by its own lock, so
+ * requests for different customers never contend with each other. The store is
+ * bounded: idle carts are swept on a schedule, and when the store is full a
+ * cart that has not been used recently is evicted to make room for a new one.
+ * Eviction follows the "second chance" (CLOCK) approximation of LRU: carts wait
+ * in a queue in creation order, and a cart used since it was last looked at goes
+ * to the back of the queue instead of being evicted, so making room costs O(1)
+ * amortized rather than a scan of every cart.
+ */
 @Repository
 public class CartRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(CartRepository.class);
 
-    private final List<CartItem> cartItems = new ArrayList<>();
+    @Value("${cart.store.max-carts:10000}")
+    private int maxCarts = 10000;
+
+    @Value("${cart.store.idle-timeout-minutes:120}")
+    private long idleTimeoutMinutes = 120;
+
+    private final Map<String, Cart> carts = new ConcurrentHashMap<>();
+    /** Every cart in the store, next eviction candidate first. */
+    private final Queue<Cart> evictionQueue = new ConcurrentLinkedQueue<>();
     private final AtomicLong idSequence = new AtomicLong(1);
 
-    private String appliedPromoCode = null;
-    private double appliedDiscount  = 0.0;
+    /**
+     * One customer's cart. All reads and writes of the fields below happen while
+     * holding the cart's own monitor.
+     */
+    private static class Cart {
+        final String id;
+        final List<CartItem> items = new ArrayList<>();
+        String appliedPromoCode = null;
+        Long appliedPromotionId = null;
+        /** Set once the cart has been removed from the store; writers then start a new one. */
+        boolean evicted = false;
+        volatile long lastAccessMillis = System.currentTimeMillis();
+        /** Set on every use, cleared when eviction gives the cart its second chance. */
+        volatile boolean recentlyUsed = true;
+
+        Cart(String id) {
+            this.id = id;
+        }
+
+        void touch() {
+            lastAccessMillis = System.currentTimeMillis();
+            recentlyUsed = true;
+        }
+    }
+
+    /**
+     * Returns the cart for the given id, creating it if needed.
+     * Used by every write path; read paths use {@link #existingCart} so that
+     * anonymous page loads don't allocate empty carts.
+     */
+    private Cart cartFor(String cartId) {
+        Objects.requireNonNull(cartId, "cartId");
+        Cart cart = carts.get(cartId);
+        if (cart == null) {
+            cart = carts.computeIfAbsent(cartId, id -> {
+                Cart created = new Cart(id);
+                evictionQueue.add(created);
+                return created;
+            });
+            // Room is made after adding, so new sessions arriving together can't all
+            // pass a size check first and push the store past its bound
+            while (carts.size() > maxCarts) {
+                if (!evictOne()) {
+                    break;
+                }
+            }
+        }
+        cart.touch();
+        return cart;
+    }
+
+    /**
+     * Runs the update on the cart for the given id while holding the cart's lock.
+     * If the cart is evicted between being looked up and being locked, the update
+     * goes to a new cart instead of being lost with the evicted one.
+     */
+    private <T> T updateCart(String cartId, Function<Cart, T> update) {
+        while (true) {
+            Cart cart = cartFor(cartId);
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    return update.apply(cart);
+                }
+            }
+        }
+    }
+
+    private Optional<Cart> existingCart(String cartId) {
+        Cart cart = cartId == null ? null : carts.get(cartId);
+        if (cart != null) {
+            cart.touch();
+        }
+        return Optional.ofNullable(cart);
+    }
+
+    /**
+     * Evicts the first cart in the queue that has not been used since its last
+     * turn at the front; the used ones it passes over go to the back.
+     *
+     * @return false if the queue was empty
+     */
+    private boolean evictOne() {
+        Cart cart;
+        while ((cart = evictionQueue.poll()) != null) {
+            synchronized (cart) {
+                if (cart.evicted) {
+                    continue;
+                }
+                if (cart.recentlyUsed) {
+                    cart.recentlyUsed = false;
+                    evictionQueue.add(cart);
+                    continue;
+                }
+                logger.warn("Cart store full ({} carts), evicting a least recently used cart", carts.size());
+                evict(cart);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Must be called holding the cart's lock.
+     */
+    private void evict(Cart cart) {
+        carts.remove(cart.id, cart);
+        cart.evicted = true;
+    }
+
+    /**
+     * Drops carts that have not been touched within the idle timeout.
+     *
+     * @return the number of carts evicted
+     */
+    @Scheduled(fixedDelayString = "${cart.store.sweep-interval-ms:60000}")
+    public int evictIdleCarts() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMinutes * 60_000L;
+        int evicted = 0;
+        for (Iterator<Cart> it = evictionQueue.iterator(); it.hasNext(); ) {
+            Cart cart = it.next();
+            synchronized (cart) {
+                if (cart.evicted) {
+                    it.remove();
+                } else if (cart.lastAccessMillis < cutoff) {
+                    evict(cart);
+                    it.remove();
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            logger.info("Evicted {} idle carts, {} remaining", evicted, carts.size());
+        }
+        return evicted;
+    }
 
-    public void applyPromo(String code, double discount) {
-        this.appliedPromoCode = code;
-        this.appliedDiscount  = discount;
+    public int size() {
+        return carts.size();
     }
 
-    public void clearPromo() {
-        this.appliedPromoCode = null;
-        this.appliedDiscount  = 0.0;
+    /**
+     * Remembers which promotion the customer applied. The discount itself is
+     * worked out again from the cart's current items whenever it is shown.
+     */
+    public void applyPromo(String cartId, Long promotionId, String code) {
+        updateCart(cartId, cart -> {
+            cart.appliedPromotionId = promotionId;
+            cart.appliedPromoCode = code;
+            return null;
+        });
     }
 
-    public String getAppliedPromoCode() { return appliedPromoCode; }
-    public double getAppliedDiscount()  { return appliedDiscount; }
+    public void clearPromo(String cartId) {
+        existingCart(cartId).ifPresent(cart -> {
+            synchronized (cart) {
+                cart.appliedPromoCode = null;
+                cart.appliedPromotionId = null;
+            }
+        });
+    }
 
-    public List<CartItem> findAll() {
-        return List.copyOf(cartItems);
+    public String getAppliedPromoCode(String cartId) {
+        return existingCart(cartId).map(cart -> {
+            synchronized (cart) {
+                return cart.appliedPromoCode;
+            }
+        }).orElse(null);
     }
 
-    public CartItem addItem(CartItem newItem) {
-        logger.info("Adding item to cart {}", newItem);
+    public Long getAppliedPromotionId(String cartId) {
+        return existingCart(cartId).map(cart -> {
+            synchronized (cart) {
+                return cart.appliedPromotionId;
+            }
+        }).orElse(null);
+    }
 
-        Optional<CartItem> existing = newItem.getProductId() == null
-                ? Optional.empty()
-                : cartItems.stream()
-                        .filter(i -> Objects.equals(i.getProductId(), newItem.getProductId()))
-                        .findFirst();
+    public List<CartItem> findAll(String cartId) {
+        return existingCart(cartId).map(cart -> {
+            synchronized (cart) {
+                return List.copyOf(cart.items);
+            }
+        }).orElse(List.of());
+    }
 
-        if (existing.isPresent()) {
-            logger.info("existing product id {}", existing.get().getProductId());
-            existing.get().setQuantity(existing.get().getQuantity() + newItem.getQuantity());
-            return existing.get();
-        } else {
-            logger.info("new product id {}", newItem.getProductId());
-            newItem.setCartItemId(idSequence.getAndIncrement());
-            cartItems.add(newItem);
-            return newItem;
+    public CartItem addItem(String cartId, CartItem newItem) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Adding item to cart {}", newItem);
         }
+
+        return updateCart(cartId, cart -> {
+            Optional<CartItem> existing = newItem.getProductId() == null
+                    ? Optional.empty()
+                    : cart.items.stream()
+                            .filter(i -> sameConfiguration(i, newItem))
+                            .findFirst();
+
+            if (existing.isPresent()) {
+                logger.debug("existing product id {}", existing.get().getProductId());
+                existing.get().setQuantity(existing.get().getQuantity() + newItem.getQuantity());
+                return existing.get();
+            } else {
+                logger.debug("new product id {}", newItem.getProductId());
+                newItem.setCartItemId(idSequence.getAndIncrement());
+                cart.items.add(newItem);
+                return newItem;
+            }
+        });
     }
 
+    /**
+     * Same product made the same way, so the two lines can share one quantity and price.
+     */
+    private static boolean sameConfiguration(CartItem a, CartItem b) {
+        return Objects.equals(a.getProductId(), b.getProductId())
+                && Objects.equals(a.getSizeId(), b.getSizeId())
+                && Objects.equals(a.getCrustTypeId(), b.getCrustTypeId())
+                && Objects.equals(a.getSauceName(), b.getSauceName())
+                && Arrays.equals(a.getToppingIdsFull(), b.getToppingIdsFull())
+                && Arrays.equals(a.getToppingIdsLeft(), b.getToppingIdsLeft())
+                && Arrays.equals(a.getToppingIdsRight(), b.getToppingIdsRight());
+    }
 
-    public boolean isEmpty() {
-        return cartItems.isEmpty();
+    public boolean isEmpty(String cartId) {
+        return existingCart(cartId).map(cart -> {
+            synchronized (cart) {
+                return cart.items.isEmpty();
+            }
+        }).orElse(true);
     }
 
-    public void clearCart() {
-        cartItems.clear();
-        clearPromo();
+    public void clearCart(String cartId) {
+        existingCart(cartId).ifPresent(cart -> {
+            synchronized (cart) {
+                cart.items.clear();
+                cart.appliedPromoCode = null;
+                cart.appliedPromotionId = null;
+            }
+        });
     }
 
-    public double getTotal() {
+    /**
+     * Sum of price × quantity over the cart's items, in cents.
+     */
+    public long getSubtotalCents(String cartId) {
         logger.debug("Calculating total of cart items");
-        return cartItems.stream()
-                .mapToDouble(i -> i.getPrice() != null ? i.getPrice() * i.getQuantity() : 0.0)
-                .sum();
+        return existingCart(cartId).map(cart -> {
+            synchronized (cart) {
+                long subtotal = 0;
+                for (CartItem item : cart.items) {
+                    subtotal += item.getLineTotalCents();
+                }
+                return subtotal;
+            }
+        }).orElse(0L);
     }
 
-    public boolean updateQuantity(Long cartItemId, int quantity) {
+    public boolean updateQuantity(String cartId, Long cartItemId, int quantity) {
         logger.info("Updating quantity for cart item {} quantity {}", cartItemId, quantity);
-        Optional<CartItem> existing = cartItems.stream()
-                .filter(i -> Objects.equals(i.getCartItemId(), cartItemId))
-                .findFirst();
+        Optional<Cart> cartOpt = existingCart(cartId);
+        if (cartOpt.isEmpty()) {
+            return false;
+        }
 
-        if (existing.isPresent()) {
-            if (quantity <= 0) {
-                cartItems.remove(existing.get());
-            } else {
-                existing.get().setQuantity(quantity);
+        Cart cart = cartOpt.get();
+        synchronized (cart) {
+            if (cart.evicted) {
+                return false;
             }
-            return true;
+            Optional<CartItem> existing = cart.items.stream()
+                    .filter(i -> Objects.equals(i.getCartItemId(), cartItemId))
+                    .findFirst();
+
+            if (existing.isPresent()) {
+                if (quantity <= 0) {
+                    cart.items.remove(existing.get());
+                } else {
+                    existing.get().setQuantity(quantity);
+                }
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 }
@@ -0,0 +1,81 @@
+package com.pizzastore.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Read-through, in-memory cache for the menu catalog (products, toppings, sizes,
+ * crust types and categories).
+ * The catalog is read on every menu page load but only changes when a manager
+ * edits it, so the repositories keep each table's rows here as an immutable list
+ * and only go to the database when the list is missing. Every write to a catalog
+ * table calls {@link #invalidate()}, which throws away the whole snapshot at once
+ * and bumps the catalog version.
+ * Cached lists are shared between requests: callers must not modify the
+ * returned objects.
+ */
+@Component
+public class CatalogCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogCache.class);
+
+    /**
+     * An immutable view of everything cached for one catalog version.
+     */
+    private record Snapshot(long version, Map<Class<?>, List<?>> entries) {}
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(1, Map.of()));
+
+    /**
+     * Returns the cached rows of the given type, loading them with {@code loader}
+     * if they are not cached yet. If the catalog is invalidated while the loader is
+     * running, the freshly loaded rows are returned but not cached, so a slow read
+     * can never put pre-update data back into the cache.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(Class<T> type, Supplier<List<T>> loader) {
+        Snapshot snapshot = current.get();
+        List<?> cached = snapshot.entries().get(type);
+        if (cached != null) {
+            return (List<T>) cached;
+        }
+
+        logger.info("Catalog cache miss for {} (version {})", type.getSimpleName(), snapshot.version());
+        List<T> loaded = List.copyOf(loader.get());
+
+        while (true) {
+            Snapshot latest = current.get();
+            if (latest.version() != snapshot.version()) {
+                return loaded;
+            }
+            Map<Class<?>, List<?>> entries = new HashMap<>(latest.entries());
+            entries.putIfAbsent(type, loaded);
+            if (current.compareAndSet(latest, new Snapshot(latest.version(), Map.copyOf(entries)))) {
+                return (List<T>) entries.get(type);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached list and starts a new catalog version. Call after any
+     * insert, update or delete on a catalog table.
+     */
+    public void invalidate() {
+        Snapshot previous = current.getAndUpdate(s -> new Snapshot(s.version() + 1, Map.of()));
+        logger.info("Catalog cache invalidated, version {} -> {}", previous.version(), previous.version() + 1);
+    }
+
+    /**
+     * Current catalog version. Changes every time the catalog is invalidated.
+     */
+    public long version() {
+        return current.get().version();
+    }
+}
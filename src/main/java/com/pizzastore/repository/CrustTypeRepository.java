@@ -11,20 +11,23 @@ import java.util.List;
 public class CrustTypeRepository {
 
     private final DSLContext dsl;
+    private final CatalogCache catalogCache;
 
-    public CrustTypeRepository(DSLContext dsl) {
+    public CrustTypeRepository(DSLContext dsl, CatalogCache catalogCache) {
         this.dsl = dsl;
+        this.catalogCache = catalogCache;
     }
 
     //    This is just like a SQL statement
     public List<CrustType> findAll() {
-        return dsl.select(
-                        DSL.field("crust_id"),
-                        DSL.field("crust_name"),
-                        DSL.field("price")
-                )
-                .from(DSL.table("crust_types"))
-                .fetchInto(CrustType.class);
+        return catalogCache.get(CrustType.class, () ->
+                dsl.select(
+                                DSL.field("crust_id"),
+                                DSL.field("crust_name"),
+                                DSL.field("price")
+                        )
+                        .from(DSL.table("crust_types"))
+                        .fetchInto(CrustType.class));
     }
 
     public void insertNewCrustType(CrustType crust) {
@@ -33,6 +36,8 @@ public class CrustTypeRepository {
                 .set(DSL.field("crust_name"), crust.getCrustName())
                 .set(DSL.field("price"), crust.getPrice())
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void deleteCrustType(Long crustId) {
@@ -40,6 +45,8 @@ public class CrustTypeRepository {
         dsl.deleteFrom(DSL.table("crust_types"))
                 .where(DSL.field("crust_id").eq(crustId))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void updateCrustType(CrustType crust) {
@@ -49,5 +56,7 @@ public class CrustTypeRepository {
                 .set(DSL.field("price"), crust.getPrice())
                 .where(DSL.field("crust_id").eq(crust.getCrustId()))
                 .execute();
+
+        catalogCache.invalidate();
     }
 }
\ No newline at end of file
@@ -72,4 +72,22 @@ public class EmployeeRepository {
                 .where(DSL.field("email").eq(username))
                 .fetchInto(Employee.class);
     }
-}
\ No newline at end of file
+
+    /**
+     * Replaces an employee's stored password hash.
+     * Sign-in calls this after a successful login when the stored hash was made
+     * with an older (cheaper) BCrypt cost than the one we use now, so hashes
+     * are upgraded gradually without asking anyone to reset their password.
+     * @param employeeId    the employee whose hash to replace
+     * @param passwordHash  the new hash
+     */
+    @SuppressWarnings("resource")
+    public void updatePasswordHash(long employeeId, String passwordHash) {
+        logger.info("Updating password hash for employee id {}", employeeId);
+
+        dsl.update(DSL.table("employees"))
+                .set(DSL.field("password_hash"), passwordHash)
+                .where(DSL.field("employee_id").eq(employeeId))
+                .execute();
+    }
+}
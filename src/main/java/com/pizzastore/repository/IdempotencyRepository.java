@@ -0,0 +1,114 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.dto.OrderConfirmationDto;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Reads and writes the checkout_idempotency table (see schema.sql), the shared
+ * backing store for Idempotency-Key results when several instances serve checkout.
+ */
+@Repository
+public class IdempotencyRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyRepository.class);
+
+    private static final Table<Record> CHECKOUT_IDEMPOTENCY = DSL.table("checkout_idempotency");
+    private static final Field<Long> CUSTOMER_ID = DSL.field("customer_id", Long.class);
+    private static final Field<String> IDEMPOTENCY_KEY = DSL.field("idempotency_key", String.class);
+    private static final Field<Integer> REQUEST_HASH = DSL.field("request_hash", Integer.class);
+    private static final Field<Long> ORDER_ID = DSL.field("order_id", Long.class);
+    private static final Field<String> STATUS = DSL.field("status", String.class);
+    private static final Field<String> DELIVERY_METHOD = DSL.field("delivery_method", String.class);
+    private static final Field<BigDecimal> TOTAL = DSL.field("total", BigDecimal.class);
+    private static final Field<String> MESSAGE = DSL.field("message", String.class);
+    private static final Field<LocalDateTime> CREATED_AT = DSL.field("created_at", LocalDateTime.class);
+
+    private final DSLContext dsl;
+
+    public IdempotencyRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * A stored key. confirmation is null while the checkout that claimed it is still running.
+     */
+    public record StoredKey(int requestHash, LocalDateTime createdAt, OrderConfirmationDto confirmation) {}
+
+    /**
+     * Inserts a pending row for the key.
+     *
+     * @return false if the key already has a row
+     */
+    public boolean tryClaim(long customerId, String key, int requestHash, LocalDateTime createdAt) {
+        logger.info("tryClaim customerId={}", customerId);
+        return dsl.insertInto(CHECKOUT_IDEMPOTENCY)
+                .set(CUSTOMER_ID, customerId)
+                .set(IDEMPOTENCY_KEY, key)
+                .set(REQUEST_HASH, requestHash)
+                .set(CREATED_AT, createdAt)
+                .onConflictDoNothing()
+                .execute() == 1;
+    }
+
+    public Optional<StoredKey> find(long customerId, String key) {
+        return dsl.select(REQUEST_HASH, CREATED_AT, ORDER_ID, STATUS, DELIVERY_METHOD, TOTAL, MESSAGE)
+                .from(CHECKOUT_IDEMPOTENCY)
+                .where(CUSTOMER_ID.eq(customerId))
+                .and(IDEMPOTENCY_KEY.eq(key))
+                .fetchOptional(r -> new StoredKey(
+                        r.get(REQUEST_HASH),
+                        r.get(CREATED_AT),
+                        r.get(ORDER_ID) == null ? null : new OrderConfirmationDto(
+                                r.get(ORDER_ID), r.get(STATUS), r.get(DELIVERY_METHOD), r.get(TOTAL), r.get(MESSAGE))));
+    }
+
+    public void complete(long customerId, String key, OrderConfirmationDto confirmation) {
+        dsl.update(CHECKOUT_IDEMPOTENCY)
+                .set(ORDER_ID, confirmation.getOrderId())
+                .set(STATUS, confirmation.getStatus())
+                .set(DELIVERY_METHOD, confirmation.getDeliveryMethod())
+                .set(TOTAL, confirmation.getTotal())
+                .set(MESSAGE, confirmation.getMessage())
+                .where(CUSTOMER_ID.eq(customerId))
+                .and(IDEMPOTENCY_KEY.eq(key))
+                .execute();
+    }
+
+    public void delete(long customerId, String key) {
+        dsl.deleteFrom(CHECKOUT_IDEMPOTENCY)
+                .where(CUSTOMER_ID.eq(customerId))
+                .and(IDEMPOTENCY_KEY.eq(key))
+                .execute();
+    }
+
+    /**
+     * Deletes the key's row only if it is still the one created at createdAt.
+     */
+    public void deleteClaimedAt(long customerId, String key, LocalDateTime createdAt) {
+        dsl.deleteFrom(CHECKOUT_IDEMPOTENCY)
+                .where(CUSTOMER_ID.eq(customerId))
+                .and(IDEMPOTENCY_KEY.eq(key))
+                .and(CREATED_AT.eq(createdAt))
+                .execute();
+    }
+
+    /**
+     * @return the number of rows removed
+     */
+    public int deleteCreatedBefore(LocalDateTime cutoff) {
+        return dsl.deleteFrom(CHECKOUT_IDEMPOTENCY)
+                .where(CREATED_AT.lt(cutoff))
+                .execute();
+    }
+}
@@ -0,0 +1,122 @@
+package com.pizzastore.repository;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes the order_outbox table (see schema.sql): order lifecycle events
+ * queued in an order's own transaction and handed to the OrderEventSinks by
+ * OrderEventRelay.
+ */
+@Repository
+public class OrderOutboxRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderOutboxRepository.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final Table<Record> ORDER_OUTBOX = DSL.table("order_outbox");
+    private static final Field<Long> OUTBOX_ID = DSL.field("outbox_id", Long.class);
+    private static final Field<Long> ORDER_ID = DSL.field("order_id", Long.class);
+    private static final Field<String> EVENT_TYPE = DSL.field("event_type", String.class);
+    private static final Field<String> PAYLOAD = DSL.field("payload", String.class);
+    private static final Field<LocalDateTime> CREATED_AT = DSL.field("created_at", LocalDateTime.class);
+    private static final Field<LocalDateTime> AVAILABLE_AT = DSL.field("available_at", LocalDateTime.class);
+    private static final Field<Integer> ATTEMPTS = DSL.field("attempts", Integer.class);
+    private static final Field<String> LAST_ERROR = DSL.field("last_error", String.class);
+
+    private final DSLContext dsl;
+
+    public OrderOutboxRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * A message to queue for an order that is being saved.
+     */
+    public record NewMessage(String eventType, String payload) {}
+
+    /**
+     * A queued message. attempts counts the earlier tries that failed.
+     */
+    public record OutboxMessage(long outboxId, long orderId, String eventType, String payload,
+                                LocalDateTime createdAt, int attempts) {}
+
+    /**
+     * Queues a message inside the caller's transaction, so it is committed
+     * together with the order or not at all.
+     */
+    public void insert(DSLContext tx, long orderId, NewMessage message, LocalDateTime createdAt) {
+        tx.insertInto(ORDER_OUTBOX)
+                .set(ORDER_ID, orderId)
+                .set(EVENT_TYPE, message.eventType())
+                .set(PAYLOAD, message.payload())
+                .set(CREATED_AT, createdAt)
+                .set(AVAILABLE_AT, createdAt)
+                .execute();
+    }
+
+    /**
+     * Locks up to limit due messages of the given types with SELECT ... FOR UPDATE
+     * SKIP LOCKED, hands them to the handler and deletes them, all in one
+     * transaction. Rows another poller has locked are skipped rather than waited
+     * for, so two pollers never take the same message; each message is handled by
+     * only one of them. If the handler throws, nothing is deleted and the
+     * exception is passed on.
+     *
+     * @return the messages handled, empty if none were due
+     */
+    public List<OutboxMessage> drainBatch(Collection<String> eventTypes, LocalDateTime now, int limit,
+                                          Consumer<List<OutboxMessage>> handler) {
+        return dsl.transactionResult(cfg -> {
+            DSLContext tx = DSL.using(cfg);
+            List<OutboxMessage> batch = tx.select(OUTBOX_ID, ORDER_ID, EVENT_TYPE, PAYLOAD, CREATED_AT, ATTEMPTS)
+                    .from(ORDER_OUTBOX)
+                    .where(AVAILABLE_AT.le(now))
+                    .and(EVENT_TYPE.in(eventTypes))
+                    .orderBy(OUTBOX_ID)
+                    .limit(limit)
+                    .forUpdate()
+                    .skipLocked()
+                    .fetch(OrderOutboxRepository::toMessage);
+            if (batch.isEmpty()) {
+                return batch;
+            }
+            handler.accept(batch);
+            tx.deleteFrom(ORDER_OUTBOX)
+                    .where(OUTBOX_ID.in(batch.stream().map(OutboxMessage::outboxId).toList()))
+                    .execute();
+            return batch;
+        });
+    }
+
+    /**
+     * Records a failed attempt on each message and makes them due again at availableAt.
+     */
+    public void rescheduleAll(Collection<Long> outboxIds, LocalDateTime availableAt, String error) {
+        logger.info("reschedule outboxIds={} availableAt={}", outboxIds, availableAt);
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        dsl.update(ORDER_OUTBOX)
+                .set(ATTEMPTS, ATTEMPTS.plus(1))
+                .set(AVAILABLE_AT, availableAt)
+                .set(LAST_ERROR, lastError)
+                .where(OUTBOX_ID.in(outboxIds))
+                .execute();
+    }
+
+    private static OutboxMessage toMessage(Record r) {
+        return new OutboxMessage(r.get(OUTBOX_ID), r.get(ORDER_ID), r.get(EVENT_TYPE),
+                r.get(PAYLOAD), r.get(CREATED_AT), r.get(ATTEMPTS));
+    }
+}
@@ -1,58 +1,65 @@
 package com.pizzastore.repository;
 
 import com.pizzastore.dto.OrderItemDto;
+import com.pizzastore.model.Address;
 import com.pizzastore.model.CartItem;
 import com.pizzastore.model.Order;
+import com.pizzastore.model.OrderStatus;
+import com.pizzastore.model.Payment;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.Record1;
 import org.jooq.Result;
-import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Repository
 public class OrderRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderRepository.class);
 
+    /**
+     * The sequence behind order_custom_item.order_item_id; PostgreSQL gives a
+     * serial or identity column's sequence this name.
+     */
+    private static final String CUSTOM_ITEM_ID_SEQUENCE = "order_custom_item_order_item_id_seq";
+
     private final DSLContext dsl;
+    private final SchemaDescriptor schema;
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final PaymentRepository paymentRepository;
 
-    public OrderRepository(DSLContext dsl) {
+    public OrderRepository(DSLContext dsl, SchemaDescriptor schema, OrderOutboxRepository orderOutboxRepository,
+                           PaymentRepository paymentRepository) {
         this.dsl = dsl;
+        this.schema = schema;
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.paymentRepository = paymentRepository;
     }
 
-    private static class ParsedAddress {
+    static class ParsedAddress {
         String street1;
         String city;
         String state;
         String zip;
     }
 
-    /**
-     * Some environments name the addresses primary key column "address_id",
-     * others name it "id". This helper makes our checkout code tolerant.
-     */
-    private String resolveAddressPkColumn() {
-        try {
-            dsl.select(DSL.field("address_id"))
-                    .from(DSL.table("addresses"))
-                    .limit(1)
-                    .fetch();
-            return "address_id";
-        } catch (DataAccessException ex) {
-            logger.warn("addresses.address_id not found, falling back to addresses.id");
-            return "id";
-        }
-    }
-
-    private ParsedAddress parseAddress(String deliveryAddress) {
+    static ParsedAddress parseAddress(String deliveryAddress) {
         if (deliveryAddress == null || deliveryAddress.trim().isEmpty()) {
             throw new IllegalArgumentException("Delivery address is required.");
         }
@@ -90,11 +97,11 @@ public class OrderRepository {
     public Long findExistingAddressId(Long addressId) {
         if (addressId == null) return null;
 
-        String pk = resolveAddressPkColumn();
+        String pk = schema.addressPkColumn();
 
         Record1<Integer> existing = dsl.select(DSL.field(pk, Integer.class))
                 .from(DSL.table("addresses"))
-                .where(DSL.field("address_id", Long.class).eq(addressId))
+                .where(DSL.field(pk, Long.class).eq(addressId))
                 .limit(1)
                 .fetchOne();
 
@@ -109,13 +116,13 @@ public class OrderRepository {
         logger.info("findOrCreateAddressId addressId={}, customerId={}", addressId, customerId);
 
         ParsedAddress addr = parseAddress(deliveryAddress);
-        String pk = resolveAddressPkColumn();
+        String pk = schema.addressPkColumn();
 
         // If we already have an addressId, look it up and return it
         if (addressId != null) {
             Record1<Integer> existing = dsl.select(DSL.field(pk, Integer.class))
                     .from(DSL.table("addresses"))
-                    .where(DSL.field("address_id", Long.class).eq(addressId))
+                    .where(DSL.field(pk, Long.class).eq(addressId))
                     .fetchOne();
 
             if (existing != null && existing.value1() != null) {
@@ -143,6 +150,23 @@ public class OrderRepository {
         return addressIdReturn.longValue();
     }
 
+    /**
+     * The state and ZIP of a saved address; the other Address fields are left null.
+     */
+    public Optional<Address> findAddressLocation(Long addressId) {
+        if (addressId == null) return Optional.empty();
+
+        return dsl.select(DSL.field("state", String.class), DSL.field("zip_code", String.class))
+                .from(DSL.table("addresses"))
+                .where(DSL.field(schema.addressPkColumn(), Long.class).eq(addressId))
+                .fetchOptional(r -> {
+                    Address address = new Address();
+                    address.setState(r.value1());
+                    address.setZip(r.value2());
+                    return address;
+                });
+    }
+
     @SuppressWarnings("resource")
     public List<Order> findByCustomerId(Long customerId) {
         logger.info("findByCustomerId customerId={}", customerId);
@@ -154,11 +178,133 @@ public class OrderRepository {
                 .fetchInto(Order.class);
     }
 
+    /**
+     * Orders placed after the given time that are still in the kitchen queue
+     * (any status but COMPLETED), oldest first.
+     */
+    public List<Order> findActive(LocalDateTime placedAfter) {
+        logger.info("findActive placedAfter={}", placedAfter);
+
+        List<String> active = Arrays.stream(OrderStatus.values())
+                .filter(OrderStatus::isActive)
+                .map(Enum::name)
+                .toList();
+        return dsl.select()
+                .from(DSL.table("orders"))
+                .where(DSL.field("status", String.class).in(active))
+                .and(DSL.field("order_timestamp", LocalDateTime.class).gt(placedAfter))
+                .orderBy(DSL.field("order_timestamp").asc(), DSL.field("order_id").asc())
+                .fetchInto(Order.class);
+    }
+
+    /**
+     * Moves an order from one status to another and queues the given outbox event,
+     * in one transaction. The update only applies while the order still has status
+     * {@code from}, so of two staff members changing the same order at once only
+     * the first succeeds.
+     *
+     * @param employeeId recorded as the order's employee_id when not null
+     * @return false if the order was not in status {@code from}
+     */
+    public boolean updateStatus(long orderId, OrderStatus from, OrderStatus to, Long employeeId,
+                                OrderOutboxRepository.NewMessage event, LocalDateTime changedAt) {
+        logger.info("updateStatus orderId={} {} -> {}", orderId, from, to);
+
+        return dsl.transactionResult(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+
+            var update = tx.update(DSL.table("orders"))
+                    .set(DSL.field("status", String.class), to.name());
+            if (employeeId != null) {
+                update = update.set(DSL.field("employee_id", Integer.class), intOrNull(employeeId));
+            }
+            int updated = update
+                    .where(DSL.field("order_id", Long.class).eq(orderId))
+                    .and(DSL.field("status", String.class).eq(from.name()))
+                    .execute();
+            if (updated == 0) {
+                return false;
+            }
+            orderOutboxRepository.insert(tx, orderId, event, changedAt);
+            return true;
+        });
+    }
+
+    /**
+     * Returns one page of a customer's orders, newest first, using keyset pagination.
+     * Orders are sorted by (order_timestamp, order_id) descending, orders without a
+     * timestamp first; when a cursor is given, only orders strictly after it in that
+     * order are returned. Unlike OFFSET,
+     * the cost of a page does not grow with how deep into the history it is.
+     *
+     * @param afterTimestamp order_timestamp of the last order on the previous page; null for the first
+     *                       page, or when that order has no timestamp
+     * @param afterOrderId   order_id of the last order on the previous page, or null for the first page
+     * @param limit          maximum number of orders to return
+     */
     @SuppressWarnings("resource")
-    public List<OrderItemDto> findRegularItemsByOrderId(Long orderId) {
-        logger.info("findRegularItemsByOrderId orderId={}", orderId);
+    public List<Order> findPageByCustomerId(Long customerId, LocalDateTime afterTimestamp, Long afterOrderId, int limit) {
+        logger.info("findPageByCustomerId customerId={} after={}/{} limit={}", customerId, afterTimestamp, afterOrderId, limit);
+
+        Field<LocalDateTime> timestamp = DSL.field("order_timestamp", LocalDateTime.class);
+        Field<Long> id = DSL.field("order_id", Long.class);
+
+        Condition condition = DSL.field("customer_id").eq(customerId);
+        if (afterOrderId != null) {
+            // Orders without a timestamp sort first, so after one of them come the
+            // rest of the timestamp-less orders and then every timestamped one.
+            condition = condition.and(afterTimestamp != null
+                    ? DSL.row(timestamp, id).lt(afterTimestamp, afterOrderId)
+                    : timestamp.isNull().and(id.lt(afterOrderId)).or(timestamp.isNotNull()));
+        }
+
+        return dsl.select()
+                .from(DSL.table("orders"))
+                .where(condition)
+                .orderBy(timestamp.desc().nullsFirst(), id.desc())
+                .limit(limit)
+                .fetchInto(Order.class);
+    }
+
+    /**
+     * Loads the items of many orders at once and groups them by order_id.
+     * Runs exactly three queries regardless of how many orders or items there are:
+     * one for regular items, one for custom pizzas and one for all of the custom
+     * pizzas' toppings. Within each order, regular items come before custom ones.
+     *
+     * @return a map from order_id to that order's items; orders without items are absent
+     */
+    public Map<Long, List<OrderItemDto>> findItemsByOrderIds(Collection<Long> orderIds) {
+        logger.info("findItemsByOrderIds orders={}", orderIds.size());
+
+        Map<Long, List<OrderItemDto>> itemsByOrder = new LinkedHashMap<>();
+        if (orderIds.isEmpty()) {
+            return itemsByOrder;
+        }
+
+        for (Record r : fetchRegularItems(orderIds)) {
+            itemsByOrder.computeIfAbsent(r.get("order_id", Long.class), id -> new ArrayList<>())
+                    .add(toRegularItemDto(r));
+        }
+
+        Map<Long, List<Record>> toppingsByItem = new HashMap<>();
+        for (Record t : fetchCustomItemToppings(orderIds)) {
+            toppingsByItem.computeIfAbsent(t.get("order_item_id", Long.class), id -> new ArrayList<>()).add(t);
+        }
+
+        for (Record r : fetchCustomItems(orderIds)) {
+            List<Record> toppings = toppingsByItem.getOrDefault(r.get("order_item_id", Long.class), List.of());
+            itemsByOrder.computeIfAbsent(r.get("order_id", Long.class), id -> new ArrayList<>())
+                    .add(toCustomItemDto(r, toppings));
+        }
+
+        return itemsByOrder;
+    }
 
+    @SuppressWarnings("resource")
+    private Result<? extends Record> fetchRegularItems(Collection<Long> orderIds) {
         return dsl.select(
+                        DSL.field("oi.order_id").as("order_id"),
                         DSL.field("oi.order_item_id").as("order_item_id"),
                         DSL.field("p.product_name").as("product_name"),
                         DSL.field("oi.quantity").as("quantity"),
@@ -176,29 +322,15 @@ public class OrderRepository {
                     .on(DSL.field("oi.size_id").eq(DSL.field("ps.size_id")))
                 .leftJoin(DSL.table("crust_types").as("ct"))
                     .on(DSL.field("oi.crust_id").eq(DSL.field("ct.crust_id")))
-                .where(DSL.field("oi.order_id").eq(orderId))
-                .fetch()
-                .map(r -> {
-                    OrderItemDto dto = new OrderItemDto();
-                    dto.setCartItemId(r.get("order_item_id", Long.class));
-                    dto.setName(r.get("product_name", String.class));
-                    dto.setQuantity(r.get("quantity", Integer.class));
-                    BigDecimal pricePer = r.get("price_per", BigDecimal.class);
-                    dto.setLineTotal(pricePer != null && dto.getQuantity() != null ? pricePer.multiply(BigDecimal.valueOf(dto.getQuantity())) : BigDecimal.ZERO);
-                    dto.setSizeId(r.get("size_id", Integer.class));
-                    dto.setSizeName(r.get("size_name", String.class));
-                    dto.setCrustTypeId(r.get("crust_id", Integer.class));
-                    dto.setCrustName(r.get("crust_name", String.class));
-                    dto.setSauceName(r.get("sauce_name", String.class));
-                    return dto;
-                });
+                .where(DSL.field("oi.order_id", Long.class).in(orderIds))
+                .orderBy(DSL.field("oi.order_item_id"))
+                .fetch();
     }
 
     @SuppressWarnings("resource")
-    public List<OrderItemDto> findCustomItemsByOrderId(Long orderId) {
-        logger.info("findCustomItemsByOrderId orderId={}", orderId);
-
-        Result<? extends Record> items = dsl.select(
+    private Result<? extends Record> fetchCustomItems(Collection<Long> orderIds) {
+        return dsl.select(
+                        DSL.field("oci.order_id").as("order_id"),
                         DSL.field("oci.order_item_id").as("order_item_id"),
                         DSL.field("oci.quantity").as("quantity"),
                         DSL.field("oci.price_per").as("price_per"),
@@ -213,62 +345,138 @@ public class OrderRepository {
                     .on(DSL.field("oci.size_id").eq(DSL.field("ps.size_id")))
                 .leftJoin(DSL.table("crust_types").as("ct"))
                     .on(DSL.field("oci.crust_id").eq(DSL.field("ct.crust_id")))
-                .where(DSL.field("oci.order_id").eq(orderId))
+                .where(DSL.field("oci.order_id", Long.class).in(orderIds))
+                .orderBy(DSL.field("oci.order_item_id"))
                 .fetch();
+    }
 
-        List<OrderItemDto> result = new ArrayList<>();
+    @SuppressWarnings("resource")
+    private Result<? extends Record> fetchCustomItemToppings(Collection<Long> orderIds) {
+        return dsl.select(
+                        DSL.field("t.order_item_id").as("order_item_id"),
+                        DSL.field("t.pizza_half").as("pizza_half"),
+                        DSL.field("t.topping_id").as("topping_id")
+                )
+                .from(DSL.table("order_custom_item_topping").as("t"))
+                .join(DSL.table("order_custom_item").as("oci"))
+                    .on(DSL.field("t.order_item_id").eq(DSL.field("oci.order_item_id")))
+                .where(DSL.field("oci.order_id", Long.class).in(orderIds))
+                .orderBy(DSL.field("t.custom_topping_id"))
+                .fetch();
+    }
 
-        for (Record item : items) {
-            Long itemId = item.get("order_item_id", Long.class);
+    private OrderItemDto toRegularItemDto(Record r) {
+        OrderItemDto dto = new OrderItemDto();
+        dto.setCartItemId(r.get("order_item_id", Long.class));
+        dto.setName(r.get("product_name", String.class));
+        dto.setQuantity(r.get("quantity", Integer.class));
+        BigDecimal pricePer = r.get("price_per", BigDecimal.class);
+        dto.setLineTotal(pricePer != null && dto.getQuantity() != null ? pricePer.multiply(BigDecimal.valueOf(dto.getQuantity())) : BigDecimal.ZERO);
+        dto.setSizeId(r.get("size_id", Integer.class));
+        dto.setSizeName(r.get("size_name", String.class));
+        dto.setCrustTypeId(r.get("crust_id", Integer.class));
+        dto.setCrustName(r.get("crust_name", String.class));
+        dto.setSauceName(r.get("sauce_name", String.class));
+        return dto;
+    }
 
-            Result<Record> toppingRecords = dsl.select()
-                    .from(DSL.table("order_custom_item_topping"))
-                    .where(DSL.field("order_item_id").eq(itemId))
-                    .fetch();
+    private OrderItemDto toCustomItemDto(Record item, List<Record> toppingRecords) {
+        List<Integer> full  = new ArrayList<>();
+        List<Integer> left  = new ArrayList<>();
+        List<Integer> right = new ArrayList<>();
+
+        for (Record t : toppingRecords) {
+            String half       = t.get("pizza_half", String.class);
+            Integer toppingId = t.get("topping_id", Integer.class);
+            if ("LEFT".equalsIgnoreCase(half))       left.add(toppingId);
+            else if ("RIGHT".equalsIgnoreCase(half)) right.add(toppingId);
+            else                                      full.add(toppingId);
+        }
 
-            List<Integer> full  = new ArrayList<>();
-            List<Integer> left  = new ArrayList<>();
-            List<Integer> right = new ArrayList<>();
+        OrderItemDto dto = new OrderItemDto();
+        dto.setCartItemId(item.get("order_item_id", Long.class));
+        dto.setName("Custom Pizza");
+        dto.setQuantity(item.get("quantity", Integer.class));
+        BigDecimal pricePer = item.get("price_per", BigDecimal.class);
+        Integer qty = item.get("quantity", Integer.class);
+        dto.setLineTotal(pricePer != null && qty != null ? pricePer.multiply(BigDecimal.valueOf(qty)) : BigDecimal.ZERO);
+        dto.setSizeId(item.get("size_id", Integer.class));
+        dto.setSizeName(item.get("size_name", String.class));
+        dto.setCrustTypeId(item.get("crust_id", Integer.class));
+        dto.setCrustName(item.get("crust_name", String.class));
+        dto.setSauceName(item.get("sauce_name", String.class));
+        dto.setToppingIdsFull(full.isEmpty()  ? null : full);
+        dto.setToppingIdsLeft(left.isEmpty()  ? null : left);
+        dto.setToppingIdsRight(right.isEmpty() ? null : right);
+        return dto;
+    }
 
-            for (Record t : toppingRecords) {
-                String half       = t.get("pizza_half", String.class);
-                Integer toppingId = t.get("topping_id", Integer.class);
-                if ("LEFT".equalsIgnoreCase(half))       left.add(toppingId);
-                else if ("RIGHT".equalsIgnoreCase(half)) right.add(toppingId);
-                else                                      full.add(toppingId);
-            }
+    /**
+     * Saves an order together with all of its cart items and custom toppings in a
+     * single transaction. Items and toppings are written with multi-row inserts, so
+     * the number of round trips stays the same no matter how big the cart is:
+     * one for the order, one for regular items, two for custom pizzas (reserving
+     * their ids, then inserting them) and one for all of their toppings. If any
+     * statement fails, nothing is committed.
+     *
+     * @return the generated order_id
+     */
+    public Long save(Order order, List<CartItem> items) {
+        return save(order, items, null, List.of());
+    }
 
-            OrderItemDto dto = new OrderItemDto();
-            dto.setCartItemId(itemId);
-            dto.setName("Custom Pizza");
-            dto.setQuantity(item.get("quantity", Integer.class));
-            BigDecimal pricePer = item.get("price_per", BigDecimal.class);
-            Integer qty = item.get("quantity", Integer.class);
-            dto.setLineTotal(pricePer != null && qty != null ? pricePer.multiply(BigDecimal.valueOf(qty)) : BigDecimal.ZERO);
-            dto.setSizeId(item.get("size_id", Integer.class));
-            dto.setSizeName(item.get("size_name", String.class));
-            dto.setCrustTypeId(item.get("crust_id", Integer.class));
-            dto.setCrustName(item.get("crust_name", String.class));
-            dto.setSauceName(item.get("sauce_name", String.class));
-            dto.setToppingIdsFull(full.isEmpty()  ? null : full);
-            dto.setToppingIdsLeft(left.isEmpty()  ? null : left);
-            dto.setToppingIdsRight(right.isEmpty() ? null : right);
-
-            result.add(dto);
+    /**
+     * Same as {@link #save(Order, List)}, and also writes the payment row and
+     * queues the given outbox messages in the same transaction, so the payment
+     * and the work the messages describe exist for exactly the orders that were
+     * committed. Card details go straight to payment_methods and never into the outbox.
+     *
+     * @param payment the payment for the order, or null if there is none; its
+     *                order id is filled in here
+     */
+    public Long save(Order order, List<CartItem> items, Payment payment, List<OrderOutboxRepository.NewMessage> outbox) {
+        logger.info("save order customerId={} total={} items={}", order.getCustomerId(), order.getTotalAmount(), items.size());
+        if (logger.isDebugEnabled()) {
+            logger.debug("save order={} items={}", order, items);
         }
 
-        return result;
+        return dsl.transactionResult(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+
+            Long orderId = insertOrder(tx, order);
+
+            List<CartItem> regularItems = new ArrayList<>();
+            List<CartItem> customItems = new ArrayList<>();
+            for (CartItem item : items) {
+                if (item.getProductId() != null) regularItems.add(item);
+                else                             customItems.add(item);
+            }
+
+            insertRegularItems(tx, orderId, regularItems);
+            List<Long> customItemIds = insertCustomItems(tx, orderId, customItems);
+            insertCustomItemToppings(tx, customItems, customItemIds);
+
+            if (payment != null) {
+                payment.setOrderId(orderId);
+                paymentRepository.insertNewPayment(tx, payment);
+            }
+
+            for (OrderOutboxRepository.NewMessage message : outbox) {
+                orderOutboxRepository.insert(tx, orderId, message,
+                        order.getOrderTimestamp() != null ? order.getOrderTimestamp() : LocalDateTime.now());
+            }
+
+            return orderId;
+        });
     }
 
     @SuppressWarnings("resource")
-    public Long save(Order order) {
-        logger.info("save order={}", order);
-
-        Record inserted = dsl.insertInto(DSL.table("orders"))
-                .set(DSL.field("customer_id", Integer.class), order.getCustomerId() == null ? null : order.getCustomerId().intValue())
-                .set(DSL.field("address_id", Integer.class), order.getAddressId() == null ? null : order.getAddressId().intValue())
-                .set(DSL.field("promotion_id", Integer.class), order.getPromotionsId() == null ? null : order.getPromotionsId().intValue())
-                .set(DSL.field("employee_id", Integer.class), order.getEmployeeId() == null ? null : order.getEmployeeId().intValue())
+    private Long insertOrder(DSLContext tx, Order order) {
+        Record inserted = tx.insertInto(DSL.table("orders"))
+                .set(DSL.field("customer_id", Integer.class), intOrNull(order.getCustomerId()))
+                .set(DSL.field("address_id", Integer.class), intOrNull(order.getAddressId()))
+                .set(DSL.field("promotion_id", Integer.class), intOrNull(order.getPromotionsId()))
+                .set(DSL.field("employee_id", Integer.class), intOrNull(order.getEmployeeId()))
                 .set(DSL.field("order_timestamp", java.time.LocalDateTime.class), order.getOrderTimestamp())
                 .set(DSL.field("total_amount", java.math.BigDecimal.class), order.getTotalAmount())
                 .set(DSL.field("discount_amount", java.math.BigDecimal.class), order.getDiscountAmount())
@@ -286,71 +494,116 @@ public class OrderRepository {
         return orderId.longValue();
     }
 
-    @SuppressWarnings("resource")
-    public Long saveRegularItem(Long orderId, CartItem cartItem) {
-        logger.info("saveRegularItem orderId={}, cartItem={}", orderId, cartItem);
-
-        Record inserted = dsl.insertInto(DSL.table("order_items"))
-                .set(DSL.field("order_id", Integer.class), orderId.intValue())
-                .set(DSL.field("product_id", Integer.class), cartItem.getProductId().intValue())
-                .set(DSL.field("size_id", Integer.class), cartItem.getSizeId() == null ? null : cartItem.getSizeId().intValue())
-                .set(DSL.field("crust_id", Integer.class), cartItem.getCrustTypeId() == null ? null : cartItem.getCrustTypeId().intValue())
-                .set(DSL.field("sauce_name", String.class), cartItem.getSauceName() == null ? null : cartItem.getSauceName())
-                .set(DSL.field("quantity", Integer.class), cartItem.getQuantity())
-                .set(DSL.field("price_per", Double.class), cartItem.getPrice())
-                .set(DSL.field("item_notes", String.class), (String) null)
-                .returning(DSL.field("order_item_id", Integer.class))
-                .fetchOne();
-
-        Integer orderItemId = inserted == null ? null : inserted.get(DSL.field("order_item_id", Integer.class));
-        if (orderItemId == null) {
-            logger.error("order item id is null");
-            throw new RuntimeException("Failed to save order item.");
+    private void insertRegularItems(DSLContext tx, Long orderId, List<CartItem> regularItems) {
+        if (regularItems.isEmpty()) return;
+
+        var insert = tx.insertInto(DSL.table("order_items"),
+                DSL.field("order_id", Integer.class),
+                DSL.field("product_id", Integer.class),
+                DSL.field("size_id", Integer.class),
+                DSL.field("crust_id", Integer.class),
+                DSL.field("sauce_name", String.class),
+                DSL.field("quantity", Integer.class),
+                DSL.field("price_per", Double.class),
+                DSL.field("item_notes", String.class));
+
+        for (CartItem item : regularItems) {
+            insert = insert.values(orderId.intValue(), item.getProductId().intValue(),
+                    intOrNull(item.getSizeId()), intOrNull(item.getCrustTypeId()), item.getSauceName(),
+                    item.getQuantity(), item.getPrice(), null);
         }
 
-        return orderItemId.longValue();
+        int inserted = insert.execute();
+        if (inserted != regularItems.size()) {
+            logger.error("expected {} order items, inserted {}", regularItems.size(), inserted);
+            throw new RuntimeException("Failed to save order items.");
+        }
     }
 
+    /**
+     * Inserts all custom pizzas in one statement. Their ids are taken from the
+     * order_item_id sequence first, in a single query, and inserted explicitly,
+     * so each pizza's id is known without relying on the order in which a
+     * multi-row INSERT ... RETURNING hands back generated keys.
+     */
     @SuppressWarnings("resource")
-    public Long saveCustomItem(Long orderId, CartItem cartItem) {
-        logger.info("saveCustomItem orderId={}, cartItem={}", orderId, cartItem);
-
-        Record inserted = dsl.insertInto(DSL.table("order_custom_item"))
-                .set(DSL.field("order_id", Integer.class), orderId.intValue())
-                .set(DSL.field("size_id", Integer.class), cartItem.getSizeId() == null ? null : cartItem.getSizeId().intValue())
-                .set(DSL.field("crust_id", Integer.class), cartItem.getCrustTypeId() == null ? null : cartItem.getCrustTypeId().intValue())
-                .set(DSL.field("sauce_name", String.class), cartItem.getSauceName() == null ? null : cartItem.getSauceName())
-                .set(DSL.field("quantity", Integer.class), cartItem.getQuantity())
-                .set(DSL.field("price_per", Double.class), cartItem.getPrice())
-                .returning(DSL.field("order_item_id", Integer.class))
-                .fetchOne();
-
-        Integer orderItemId = inserted == null ? null : inserted.get(DSL.field("order_item_id", Integer.class));
-        if (orderItemId == null) {
-            logger.error("custom order item id is null");
+    private List<Long> insertCustomItems(DSLContext tx, Long orderId, List<CartItem> customItems) {
+        if (customItems.isEmpty()) return List.of();
+
+        List<Long> ids = tx.fetch("SELECT nextval('" + CUSTOM_ITEM_ID_SEQUENCE + "') FROM generate_series(1, ?)",
+                        customItems.size())
+                .getValues(0, Long.class);
+        if (ids.size() != customItems.size()) {
+            logger.error("expected {} custom item ids, got {}", customItems.size(), ids.size());
             throw new RuntimeException("Failed to save custom order item.");
         }
 
-        return orderItemId.longValue();
+        var insert = tx.insertInto(DSL.table("order_custom_item"),
+                DSL.field("order_item_id", Integer.class),
+                DSL.field("order_id", Integer.class),
+                DSL.field("size_id", Integer.class),
+                DSL.field("crust_id", Integer.class),
+                DSL.field("sauce_name", String.class),
+                DSL.field("quantity", Integer.class),
+                DSL.field("price_per", Double.class));
+
+        for (int i = 0; i < customItems.size(); i++) {
+            CartItem item = customItems.get(i);
+            insert = insert.values(ids.get(i).intValue(), orderId.intValue(), intOrNull(item.getSizeId()),
+                    intOrNull(item.getCrustTypeId()), item.getSauceName(), item.getQuantity(), item.getPrice());
+        }
+
+        int inserted = insert.execute();
+        if (inserted != customItems.size()) {
+            logger.error("expected {} custom items, inserted {}", customItems.size(), inserted);
+            throw new RuntimeException("Failed to save custom order item.");
+        }
+        return ids;
     }
 
-    @SuppressWarnings("resource")
-    public Long saveCustomItemTopping(Long orderItemId, String pizzaHalf, Long toppingId) {
-        logger.info("saveCustomItemTopping orderItemId={} pizzaHalf={} toppingId={}", orderItemId, pizzaHalf, toppingId);
-
-        Record inserted = dsl.insertInto(DSL.table("order_custom_item_topping"))
-                .set(DSL.field("order_item_id", Integer.class), orderItemId.intValue())
-                .set(DSL.field("pizza_half", String.class), pizzaHalf)
-                .set(DSL.field("topping_id", Integer.class), toppingId.intValue())
-                .returning(DSL.field("custom_topping_id", Integer.class))
-                .fetchOne();
+    private void insertCustomItemToppings(DSLContext tx, List<CartItem> customItems, List<Long> customItemIds) {
+        var insert = tx.insertInto(DSL.table("order_custom_item_topping"),
+                DSL.field("order_item_id", Integer.class),
+                DSL.field("pizza_half", String.class),
+                DSL.field("topping_id", Integer.class));
+
+        int rows = 0;
+        for (int i = 0; i < customItems.size(); i++) {
+            CartItem item = customItems.get(i);
+            int orderItemId = customItemIds.get(i).intValue();
+
+            // A whole-pizza topping list wins over half-and-half selections.
+            if (item.getToppingIdsFull() != null && item.getToppingIdsFull().length > 0) {
+                for (Long toppingId : item.getToppingIdsFull()) {
+                    insert = insert.values(orderItemId, "FULL", toppingId.intValue());
+                    rows++;
+                }
+            } else {
+                if (item.getToppingIdsLeft() != null) {
+                    for (Long toppingId : item.getToppingIdsLeft()) {
+                        insert = insert.values(orderItemId, "LEFT", toppingId.intValue());
+                        rows++;
+                    }
+                }
+                if (item.getToppingIdsRight() != null) {
+                    for (Long toppingId : item.getToppingIdsRight()) {
+                        insert = insert.values(orderItemId, "RIGHT", toppingId.intValue());
+                        rows++;
+                    }
+                }
+            }
+        }
+
+        if (rows == 0) return;
 
-        Integer customToppingId = inserted == null ? null : inserted.get(DSL.field("custom_topping_id", Integer.class));
-        if (customToppingId == null) {
-            logger.error("custom topping id is null");
-            throw new RuntimeException("Failed to save custom topping.");
+        int inserted = insert.execute();
+        if (inserted != rows) {
+            logger.error("expected {} custom toppings, inserted {}", rows, inserted);
+            throw new RuntimeException("Failed to save custom toppings.");
         }
+    }
 
-        return customToppingId.longValue();
+    private static Integer intOrNull(Long value) {
+        return value == null ? null : value.intValue();
     }
 }
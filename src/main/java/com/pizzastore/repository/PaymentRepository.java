@@ -15,8 +15,14 @@ public class PaymentRepository {
     }
 
     public void insertNewPayment(Payment payment) {
+        insertNewPayment(dsl, payment);
+    }
 
-        dsl.insertInto(DSL.table("payment_methods"))
+    /**
+     * Inserts the payment inside the caller's transaction.
+     */
+    public void insertNewPayment(DSLContext tx, Payment payment) {
+        tx.insertInto(DSL.table("payment_methods"))
                 .set(DSL.field("order_id"), payment.getOrderId())
                 .set(DSL.field("address_id"), payment.getAddressId())
                 .set(DSL.field("cc_number"), payment.getCcNumber())
@@ -11,19 +11,22 @@ import java.util.List;
 public class PizzaSizeRepository {
 
     private final DSLContext dsl;
+    private final CatalogCache catalogCache;
 
-    public PizzaSizeRepository(DSLContext dsl) {
+    public PizzaSizeRepository(DSLContext dsl, CatalogCache catalogCache) {
         this.dsl = dsl;
+        this.catalogCache = catalogCache;
     }
 
     public List<PizzaSize> findAll() {
-        return dsl.select(
-                        DSL.field("size_id"),
-                        DSL.field("size_name"),
-                        DSL.field("price")
-                )
-                .from(DSL.table("pizza_sizes"))
-                .fetchInto(PizzaSize.class);
+        return catalogCache.get(PizzaSize.class, () ->
+                dsl.select(
+                                DSL.field("size_id"),
+                                DSL.field("size_name"),
+                                DSL.field("price")
+                        )
+                        .from(DSL.table("pizza_sizes"))
+                        .fetchInto(PizzaSize.class));
     }
 
     public void insertNewPizzaSize(PizzaSize pizzaSize) {
@@ -32,6 +35,8 @@ public class PizzaSizeRepository {
                 .set(DSL.field("size_name"), pizzaSize.getSizeName())
                 .set(DSL.field("price"), pizzaSize.getPrice())
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void deletePizzaSize(Long pizzaSizeId) {
@@ -39,6 +44,8 @@ public class PizzaSizeRepository {
         dsl.deleteFrom(DSL.table("pizza_sizes"))
                 .where(DSL.field("size_id").eq(pizzaSizeId))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void updatePizzaSize(PizzaSize pizzaSize) {
@@ -48,6 +55,8 @@ public class PizzaSizeRepository {
                 .set(DSL.field("price"), pizzaSize.getPrice())
                 .where(DSL.field("size_id").eq(pizzaSize.getSizeId()))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
 }
\ No newline at end of file
@@ -11,18 +11,21 @@ import java.util.List;
 public class ProductCategoryRepository {
 
     private final DSLContext dsl;
+    private final CatalogCache catalogCache;
 
-    public ProductCategoryRepository(DSLContext dsl) {
+    public ProductCategoryRepository(DSLContext dsl, CatalogCache catalogCache) {
         this.dsl = dsl;
+        this.catalogCache = catalogCache;
     }
 
     public List<ProductCategory> findAll() {
-        return dsl.select(
-                        DSL.field("category_id"),
-                        DSL.field("category_name")
-                )
-                .from(DSL.table("product_categories"))
-                .fetchInto(ProductCategory.class);
+        return catalogCache.get(ProductCategory.class, () ->
+                dsl.select(
+                                DSL.field("category_id"),
+                                DSL.field("category_name")
+                        )
+                        .from(DSL.table("product_categories"))
+                        .fetchInto(ProductCategory.class));
     }
 
     public void insertNewProductCategory(ProductCategory productCategory) {
@@ -30,6 +33,8 @@ public class ProductCategoryRepository {
         dsl.insertInto(DSL.table("product_categories"))
                 .set(DSL.field("category_name"), productCategory.getCategoryName())
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void deleteProductCategory(Long productCategoryId) {
@@ -37,6 +42,8 @@ public class ProductCategoryRepository {
         dsl.deleteFrom(DSL.table("product_categories"))
                 .where(DSL.field("category_id").eq(productCategoryId))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void updateProductCategory(ProductCategory productCategory) {
@@ -45,6 +52,8 @@ public class ProductCategoryRepository {
                 .set(DSL.field("category_name"), productCategory.getCategoryName())
                 .where(DSL.field("category_id").eq(productCategory.getCategoryId()))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
 }
\ No newline at end of file
@@ -11,21 +11,24 @@ import java.util.List;
 public class ProductRepository {
 
     private final DSLContext dsl;
+    private final CatalogCache catalogCache;
 
-    public ProductRepository(DSLContext dsl) {
+    public ProductRepository(DSLContext dsl, CatalogCache catalogCache) {
         this.dsl = dsl;
+        this.catalogCache = catalogCache;
     }
 
     public List<Product> findAll() {
-        return dsl.select(
-                        DSL.field("product_id"),
-                        DSL.field("category_id"),
-                        DSL.field("product_name"),
-                        DSL.field("base_price"),
-                        DSL.field("is_customizable")
-                )
-                .from(DSL.table("products"))
-                .fetchInto(Product.class);
+        return catalogCache.get(Product.class, () ->
+                dsl.select(
+                                DSL.field("product_id"),
+                                DSL.field("category_id"),
+                                DSL.field("product_name"),
+                                DSL.field("base_price"),
+                                DSL.field("is_customizable")
+                        )
+                        .from(DSL.table("products"))
+                        .fetchInto(Product.class));
     }
 
     public void insertNewProduct(Product product) {
@@ -36,6 +39,8 @@ public class ProductRepository {
                 .set(DSL.field("base_price"), product.getBasePrice())
                 .set(DSL.field("is_customizable"), product.isCustomizable())
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void deleteProduct(Long productId) {
@@ -43,6 +48,8 @@ public class ProductRepository {
         dsl.deleteFrom(DSL.table("products"))
                 .where(DSL.field("product_id").eq(productId))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void updateProduct(Product product) {
@@ -54,6 +61,8 @@ public class ProductRepository {
                 .set(DSL.field("is_customizable"), product.isCustomizable())
                 .where(DSL.field("product_id").eq(product.getProductId()))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
 }
@@ -0,0 +1,222 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.model.Promotion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of promo codes, so applying a code is a hash lookup rather
+ * than a case-insensitive query on the promotions table.
+ * Codes are keyed by their trimmed, upper-cased form. Every promotion is
+ * loaded, and each one is either active or expired: expired codes are kept
+ * only as keys so a customer can be told the code has expired rather than
+ * that it doesn't exist.
+ * Expiry is handled by {@link #sweepExpired()}, which runs every
+ * {@code promotions.index.sweep-interval-ms} and moves promotions whose exp_dt
+ * has come out of the active map, so a lookup never compares dates.
+ * Writes through PromotionsRepository call {@link #invalidate()}, and the
+ * next lookup reloads the index; it is also reloaded every
+ * {@code promotions.index.reload-interval-ms} to pick up rows changed by
+ * other instances or directly in the database (e.g. promotion_rules).
+ * If a reload fails, the promotions already loaded stay in use until the next
+ * write or scheduled reload.
+ */
+@Component
+public class PromoCodeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromoCodeIndex.class);
+
+    /**
+     * One load of the promotions table. {@code nextExpiry} is the earliest exp_dt
+     * among the active promotions, or null if none of them expires; the sweep has
+     * nothing to do before that day.
+     */
+    private record Snapshot(long generation,
+                            Map<String, Promotion> activeByCode,
+                            Map<Long, Promotion> activeById,
+                            Set<String> expiredCodes,
+                            LocalDate nextExpiry) {}
+
+    private final PromotionRepository promotionRepository;
+    private final Clock clock;
+
+    /** Bumped by every write, so a snapshot loaded before the write is known to be stale. */
+    private final AtomicLong generation = new AtomicLong(1);
+
+    /** Null until the first load. Replaced as a whole, guarded by this for writes. */
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public PromoCodeIndex(PromotionRepository promotionRepository) {
+        this(promotionRepository, Clock.systemDefaultZone());
+    }
+
+    PromoCodeIndex(PromotionRepository promotionRepository, Clock clock) {
+        this.promotionRepository = promotionRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * The active promotion with this code, ignoring case and surrounding spaces.
+     */
+    public Optional<Promotion> findActive(String code) {
+        String key = normalize(code);
+        return key == null ? Optional.empty() : Optional.ofNullable(current().activeByCode().get(key));
+    }
+
+    public Optional<Promotion> findActiveById(Long promotionId) {
+        return promotionId == null ? Optional.empty() : Optional.ofNullable(current().activeById().get(promotionId));
+    }
+
+    /**
+     * Whether the code belongs to a promotion that has expired and has no active
+     * promotion with the same code.
+     */
+    public boolean isExpired(String code) {
+        String key = normalize(code);
+        return key != null && current().expiredCodes().contains(key);
+    }
+
+    public Collection<Promotion> active() {
+        return current().activeById().values();
+    }
+
+    /**
+     * Marks the index stale; the next lookup reloads it. Call after any insert,
+     * update or delete on the promotions table.
+     */
+    public void invalidate() {
+        long next = generation.incrementAndGet();
+        logger.info("Promo code index invalidated, generation {}", next);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${promotions.index.reload-interval-ms:300000}",
+            fixedDelayString = "${promotions.index.reload-interval-ms:300000}")
+    public void reload() {
+        generation.incrementAndGet();
+        try {
+            current();
+        } catch (RuntimeException ex) {
+            logger.error("Could not load promotions", ex);
+        }
+    }
+
+    /**
+     * Moves the promotions that have expired since the last load or sweep out of
+     * the active map.
+     */
+    @Scheduled(fixedDelayString = "${promotions.index.sweep-interval-ms:60000}")
+    public synchronized void sweepExpired() {
+        Snapshot current = snapshot;
+        LocalDate today = LocalDate.now(clock);
+        if (current == null || current.nextExpiry() == null || current.nextExpiry().isAfter(today)) {
+            return;
+        }
+        Snapshot swept = build(current.generation(), current.activeById().values(), current.expiredCodes(), today);
+        snapshot = swept;
+        logger.info("Swept {} expired promotions", current.activeById().size() - swept.activeById().size());
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && current.generation() == generation.get()) {
+            return current;
+        }
+        return load();
+    }
+
+    /**
+     * Loads the table once no matter how many lookups find the index stale at the
+     * same time, e.g. right after a campaign's code is created.
+     */
+    private synchronized Snapshot load() {
+        long loading = generation.get();
+        Snapshot current = snapshot;
+        if (current != null && current.generation() == loading) {
+            return current;
+        }
+        try {
+            Snapshot loaded = build(loading, promotionRepository.findAllIncludingExpired(), Set.of(), LocalDate.now(clock));
+            snapshot = loaded;
+            logger.info("Loaded {} active promo codes ({} expired)", loaded.activeByCode().size(), loaded.expiredCodes().size());
+            return loaded;
+        } catch (RuntimeException ex) {
+            if (current == null) {
+                throw ex;
+            }
+            // Keep serving the old codes until the next write or scheduled reload rather
+            // than sending every lookup back to a failing database
+            logger.error("Could not reload promo codes, keeping the ones already loaded", ex);
+            Snapshot kept = new Snapshot(loading, current.activeByCode(), current.activeById(),
+                    current.expiredCodes(), current.nextExpiry());
+            snapshot = kept;
+            return kept;
+        }
+    }
+
+    /**
+     * Sorts promotions into active and expired as of {@code today}. If two active
+     * promotions share a code, the one with the lower id wins.
+     */
+    private static Snapshot build(long generation, Collection<Promotion> promotions, Set<String> alreadyExpired,
+                                  LocalDate today) {
+        Map<String, Promotion> byCode = new HashMap<>();
+        Set<String> expired = new HashSet<>(alreadyExpired);
+        LocalDate nextExpiry = null;
+        for (Promotion promotion : promotions) {
+            String key = normalize(promotion.getCode());
+            if (key == null || promotion.getPromotionId() == null) {
+                continue;
+            }
+            LocalDate expDt = promotion.getExpDt();
+            if (expDt != null && !expDt.isAfter(today)) {
+                expired.add(key);
+                continue;
+            }
+            Promotion existing = byCode.get(key);
+            if (existing != null) {
+                logger.warn("Promo code {} is used by promotions {} and {}", key, existing.getPromotionId(),
+                        promotion.getPromotionId());
+                if (existing.getPromotionId() < promotion.getPromotionId()) {
+                    continue;
+                }
+            }
+            byCode.put(key, promotion);
+        }
+
+        Map<Long, Promotion> byId = new HashMap<>();
+        for (Promotion promotion : byCode.values()) {
+            byId.put(promotion.getPromotionId(), promotion);
+            LocalDate expDt = promotion.getExpDt();
+            if (expDt != null && (nextExpiry == null || expDt.isBefore(nextExpiry))) {
+                nextExpiry = expDt;
+            }
+        }
+        expired.removeAll(byCode.keySet());
+        return new Snapshot(generation, Map.copyOf(byCode), Map.copyOf(byId), Set.copyOf(expired), nextExpiry);
+    }
+
+    private static String normalize(String code) {
+        if (code == null || code.isBlank()) {
+            return null;
+        }
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -2,6 +2,8 @@ package com.pizzastore.repository;
 
 import com.pizzastore.model.Promotion;
 import org.jooq.DSLContext;
+import org.jooq.SelectField;
+import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,7 +11,6 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public class PromotionRepository {
@@ -32,39 +33,50 @@ public class PromotionRepository {
 
         // Build the SELECT query using jOOQ.
         // This is equivalent to the following SQL:
-        //   SELECT *
+        //   SELECT promotions.*, promotion_rules.definition AS rule_definition
         //   FROM promotions
+        //   LEFT JOIN promotion_rules ON promotion_rules.promotion_id = promotions.promotion_id
         //   WHERE exp_dt is null or exp_dt > current date
         //
-        return dsl.select(
-                        DSL.field("promotion_id"),
-                        DSL.field("code"),
-                        DSL.field("discount_value"),
-                        DSL.field("promotion_desc"),
-                        DSL.field("promotion_summary"),
-                        DSL.field("exp_dt", LocalDate.class),
-                        DSL.field("min_order_amt")
-                )
-                .from(DSL.table("promotions"))
-                .where(DSL.field("exp_dt").isNull()
-                        .or(DSL.field("exp_dt", LocalDate.class).greaterThan(LocalDate.now()))
+        return dsl.select(promotionFields())
+                .from(promotionsWithRules())
+                .where(DSL.field("promotions.exp_dt").isNull()
+                        .or(DSL.field("promotions.exp_dt", LocalDate.class).greaterThan(LocalDate.now()))
                 )
                 .fetchInto(Promotion.class);
     }
 
-    public Optional<Promotion> findByCode(String code) {
-        return dsl.select(
-                        DSL.field("promotion_id"),
-                        DSL.field("code"),
-                        DSL.field("discount_value"),
-                        DSL.field("promotion_desc"),
-                        DSL.field("promotion_summary"),
-                        DSL.field("exp_dt", LocalDate.class),
-                        DSL.field("min_order_amt")
-                )
-                .from(DSL.table("promotions"))
-                .where(DSL.field("code").equalIgnoreCase(code))
-                .fetchOptionalInto(Promotion.class);
+    /**
+     * Every promotion, expired or not, with its rule. Loaded by PromoCodeIndex,
+     * which looks promo codes up in memory instead of querying by code.
+     */
+    public List<Promotion> findAllIncludingExpired() {
+        return dsl.select(promotionFields())
+                .from(promotionsWithRules())
+                .fetchInto(Promotion.class);
+    }
+
+    /**
+     * The promotion's columns plus its rule, if it has one. The join makes
+     * promotion_id ambiguous, so every column is qualified.
+     */
+    private static List<SelectField<?>> promotionFields() {
+        return List.of(
+                DSL.field("promotions.promotion_id").as("promotion_id"),
+                DSL.field("promotions.code").as("code"),
+                DSL.field("promotions.discount_value").as("discount_value"),
+                DSL.field("promotions.promotion_desc").as("promotion_desc"),
+                DSL.field("promotions.promotion_summary").as("promotion_summary"),
+                DSL.field("promotions.exp_dt", LocalDate.class).as("exp_dt"),
+                DSL.field("promotions.min_order_amt").as("min_order_amt"),
+                DSL.field("promotion_rules.definition", String.class).as("rule_definition")
+        );
+    }
+
+    private static Table<?> promotionsWithRules() {
+        return DSL.table("promotions")
+                .leftJoin(DSL.table("promotion_rules"))
+                .on(DSL.field("promotion_rules.promotion_id").eq(DSL.field("promotions.promotion_id")));
     }
 
 }
\ No newline at end of file
@@ -13,9 +13,11 @@ import java.util.Map;
 public class PromotionsRepository {
 
     private final DSLContext dsl;
+    private final PromoCodeIndex promoCodeIndex;
 
-    public PromotionsRepository(DSLContext dsl) {
+    public PromotionsRepository(DSLContext dsl, PromoCodeIndex promoCodeIndex) {
         this.dsl = dsl;
+        this.promoCodeIndex = promoCodeIndex;
     }
 
     /**
@@ -50,6 +52,7 @@ public class PromotionsRepository {
                 .values(code, discountValue, promotionDesc, promotionSummary, expDt, minOrderAmt)
                 .execute();
 
+        promoCodeIndex.invalidate();
         return inserted == 1;
     }
 
@@ -76,6 +79,7 @@ public class PromotionsRepository {
                 .where(DSL.field("promotion_id").eq(promotionId))
                 .execute();
 
+        promoCodeIndex.invalidate();
         return updated == 1;
     }
 
@@ -89,6 +93,7 @@ public class PromotionsRepository {
                 .where(DSL.field("promotion_id").eq(promotionId))
                 .execute();
 
+        promoCodeIndex.invalidate();
         return deleted == 1;
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.repository.SalesRollupRepository.Dimension;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Queries behind the manager reports.
+ * Sales figures come from the pre-aggregated sales_rollup table (one row per
+ * day, or per product per day), so their cost grows with the number of days
+ * of history rather than the number of orders.
+ */
+@Repository
+public class ReportingRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportingRepository.class);
+
+    private final DSLContext dsl;
+
+    public ReportingRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * Order count and revenue over some period.
+     */
+    public record OrderTotals(long orderCount, BigDecimal revenue) {}
+
+    /**
+     * Units sold of one product, or of all custom pizzas when dimension is CUSTOM.
+     */
+    public record ProductUnits(Dimension dimension, long productId, long units) {}
+
+    /**
+     * Order count and revenue of the orders placed on or after the given time,
+     * or of all orders when since is null.
+     */
+    @SuppressWarnings("resource")
+    public OrderTotals findOrderTotals(LocalDateTime since) {
+        logger.info("findOrderTotals since {}", since);
+
+        Condition condition = rows(Dimension.ORDER);
+        if (since != null) {
+            condition = condition.and(DSL.field("bucket_start", LocalDateTime.class).ge(since));
+        }
+
+        Record r = dsl.select(
+                        DSL.sum(DSL.field("order_count", Long.class)).as("order_count"),
+                        DSL.sum(DSL.field("revenue", BigDecimal.class)).as("revenue"))
+                .from(DSL.table("sales_rollup"))
+                .where(condition)
+                .fetchOne();
+
+        Long orderCount = r == null ? null : r.get("order_count", Long.class);
+        BigDecimal revenue = r == null ? null : r.get("revenue", BigDecimal.class);
+        return new OrderTotals(
+                orderCount == null ? 0 : orderCount,
+                revenue == null ? BigDecimal.ZERO : revenue);
+    }
+
+    /**
+     * All-time units sold per product, plus one CUSTOM entry for custom pizzas.
+     */
+    @SuppressWarnings("resource")
+    public List<ProductUnits> findProductUnits() {
+        logger.info("findProductUnits");
+
+        List<ProductUnits> result = new ArrayList<>();
+        for (Record r : dsl.select(
+                        DSL.field("dimension", String.class).as("dimension"),
+                        DSL.field("product_id", Long.class).as("product_id"),
+                        DSL.sum(DSL.field("units", Long.class)).as("units"))
+                .from(DSL.table("sales_rollup"))
+                .where(rows(Dimension.PRODUCT).or(rows(Dimension.CUSTOM)))
+                .groupBy(DSL.field("dimension"), DSL.field("product_id"))
+                .fetch()) {
+            result.add(new ProductUnits(
+                    Dimension.valueOf(r.get("dimension", String.class)),
+                    r.get("product_id", Long.class),
+                    r.get("units", Long.class)));
+        }
+        return result;
+    }
+
+    /**
+     * Number of distinct customers with an order placed on or after the given time.
+     * Distinct counts don't add up across buckets, so this one reads the orders
+     * table, limited to the recent range of order_timestamp.
+     */
+    @SuppressWarnings("resource")
+    public long countActiveCustomers(LocalDateTime since) {
+        logger.info("countActiveCustomers since {}", since);
+
+        Integer count = dsl.select(DSL.countDistinct(DSL.field("customer_id")))
+                .from(DSL.table("orders"))
+                .where(DSL.field("order_timestamp", LocalDateTime.class).ge(since))
+                .fetchOne(0, Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    private static Condition rows(Dimension dimension) {
+        return DSL.field("dimension", String.class).eq(dimension.name());
+    }
+}
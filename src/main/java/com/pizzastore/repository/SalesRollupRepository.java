@@ -0,0 +1,163 @@
+package com.pizzastore.repository;
+
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep6;
+import org.jooq.Record;
+import org.jooq.Record1;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes the sales_rollup table (see schema.sql). Rows hold pre-aggregated
+ * order counts, units and revenue per day, so reports never need to
+ * re-aggregate the raw orders tables.
+ */
+@Repository
+public class SalesRollupRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupRepository.class);
+
+    private static final Table<Record> SALES_ROLLUP = DSL.table("sales_rollup");
+    private static final Field<LocalDateTime> BUCKET_START = DSL.field("bucket_start", LocalDateTime.class);
+    private static final Field<String> DIMENSION = DSL.field("dimension", String.class);
+    private static final Field<Long> PRODUCT_ID = DSL.field("product_id", Long.class);
+    private static final Field<Long> ORDER_COUNT = DSL.field("order_count", Long.class);
+    private static final Field<Long> UNITS = DSL.field("units", Long.class);
+    private static final Field<BigDecimal> REVENUE = DSL.field("revenue", BigDecimal.class);
+
+    private static final Table<Record> SALES_ROLLUP_WATERMARK = DSL.table("sales_rollup_watermark");
+    private static final Field<Integer> WATERMARK_ID = DSL.field("watermark_id", Integer.class);
+    private static final Field<LocalDateTime> REBUILT_BEFORE = DSL.field("rebuilt_before", LocalDateTime.class);
+
+    private final DSLContext dsl;
+
+    public SalesRollupRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * ORDER rows count whole orders, PRODUCT rows one menu product (by product_id)
+     * and CUSTOM rows all custom pizzas together.
+     */
+    public enum Dimension { ORDER, PRODUCT, CUSTOM }
+
+    /**
+     * Amounts to add to one sales_rollup row. bucketStart is the midnight of the order's day.
+     */
+    public record RollupDelta(LocalDateTime bucketStart,
+                              Dimension dimension,
+                              long productId,
+                              long orderCount,
+                              long units,
+                              BigDecimal revenue) {}
+
+    /**
+     * Adds the deltas to their rows, creating rows that don't exist yet.
+     * All deltas go to the database in a single statement.
+     */
+    @SuppressWarnings("resource")
+    public void addAll(List<RollupDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        logger.info("addAll {} sales rollup deltas", deltas.size());
+
+        InsertValuesStep6<Record, LocalDateTime, String, Long, Long, Long, BigDecimal> insert =
+                dsl.insertInto(SALES_ROLLUP, BUCKET_START, DIMENSION, PRODUCT_ID, ORDER_COUNT, UNITS, REVENUE);
+        for (RollupDelta d : deltas) {
+            insert = insert.values(d.bucketStart(), d.dimension().name(),
+                    d.productId(), d.orderCount(), d.units(), d.revenue());
+        }
+
+        insert.onConflict(BUCKET_START, DIMENSION, PRODUCT_ID)
+                .doUpdate()
+                .set(ORDER_COUNT, DSL.field("sales_rollup.order_count", Long.class)
+                        .plus(DSL.field("excluded.order_count", Long.class)))
+                .set(UNITS, DSL.field("sales_rollup.units", Long.class)
+                        .plus(DSL.field("excluded.units", Long.class)))
+                .set(REVENUE, DSL.field("sales_rollup.revenue", BigDecimal.class)
+                        .plus(DSL.field("excluded.revenue", BigDecimal.class)))
+                .execute();
+    }
+
+    /**
+     * Rebuilds the days before the cutoff that no earlier rebuild covered from the
+     * orders table. The cutoff must be a midnight. sales_rollup_watermark holds the
+     * cutoff of the last rebuild; only the buckets from that day up to this cutoff
+     * are deleted and re-aggregated, which also repairs deltas for those days that
+     * an instance lost in a crash before flushing. Buckets from the cutoff on are
+     * never touched, so the deltas other running instances flush for the current
+     * day survive. If an earlier rebuild already reached the cutoff, nothing is
+     * done. The first rebuild, with no watermark yet, covers every day before the
+     * cutoff.
+     * Runs in one transaction holding the watermark row lock, so concurrent
+     * startups rebuild one after the other and readers see either the old rollup
+     * or the new one.
+     */
+    public void rebuildBefore(LocalDateTime cutoff) {
+        dsl.transaction(cfg -> {
+            DSLContext tx = DSL.using(cfg);
+            Record1<LocalDateTime> row = tx.select(REBUILT_BEFORE)
+                    .from(SALES_ROLLUP_WATERMARK)
+                    .where(WATERMARK_ID.eq(1))
+                    .forUpdate()
+                    .fetchOne();
+            LocalDateTime from = row == null ? null : row.value1();
+            if (from != null && !from.isBefore(cutoff)) {
+                logger.info("rebuildBefore {}: already rebuilt before {}", cutoff, from);
+                return;
+            }
+            logger.info("rebuildBefore {} from {}", cutoff, from);
+
+            Condition buckets = BUCKET_START.lt(cutoff);
+            if (from != null) {
+                buckets = buckets.and(BUCKET_START.ge(from));
+            }
+            tx.deleteFrom(SALES_ROLLUP).where(buckets).execute();
+
+            // Both bounds are midnights on the order's own timestamp, so the
+            // rebuilt orders fill exactly the buckets that were deleted
+            String range = from == null ? "o.order_timestamp < ?" : "o.order_timestamp >= ? AND o.order_timestamp < ?";
+            Object[] bounds = from == null ? new Object[]{cutoff} : new Object[]{from, cutoff};
+
+            String day = "date_trunc('day', o.order_timestamp)";
+            tx.execute("INSERT INTO sales_rollup (bucket_start, dimension, product_id, order_count, units, revenue) "
+                    + "SELECT " + day + ", 'ORDER', 0, count(*), 0, coalesce(sum(o.total_amount), 0) "
+                    + "FROM orders o WHERE " + range + " GROUP BY " + day,
+                    bounds);
+            tx.execute("INSERT INTO sales_rollup (bucket_start, dimension, product_id, order_count, units, revenue) "
+                    + "SELECT " + day + ", 'PRODUCT', oi.product_id, 0, sum(oi.quantity), sum(oi.price_per * oi.quantity) "
+                    + "FROM order_items oi JOIN orders o ON o.order_id = oi.order_id "
+                    + "WHERE " + range + " AND oi.product_id IS NOT NULL "
+                    + "GROUP BY " + day + ", oi.product_id",
+                    bounds);
+            tx.execute("INSERT INTO sales_rollup (bucket_start, dimension, product_id, order_count, units, revenue) "
+                    + "SELECT " + day + ", 'CUSTOM', 0, 0, sum(ci.quantity), sum(ci.price_per * ci.quantity) "
+                    + "FROM order_custom_item ci JOIN orders o ON o.order_id = ci.order_id "
+                    + "WHERE " + range + " "
+                    + "GROUP BY " + day,
+                    bounds);
+
+            if (row == null) {
+                tx.insertInto(SALES_ROLLUP_WATERMARK)
+                        .set(WATERMARK_ID, 1)
+                        .set(REBUILT_BEFORE, cutoff)
+                        .execute();
+            } else {
+                tx.update(SALES_ROLLUP_WATERMARK)
+                        .set(REBUILT_BEFORE, cutoff)
+                        .where(WATERMARK_ID.eq(1))
+                        .execute();
+            }
+        });
+    }
+}
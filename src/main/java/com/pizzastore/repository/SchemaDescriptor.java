@@ -0,0 +1,85 @@
+package com.pizzastore.repository;
+
+import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Schema details that differ between our environments, read once from the
+ * database metadata and then served from memory.
+ * Our environments don't all share the exact same schema: the addresses primary
+ * key is "address_id" in some databases and "id" in others. Instead of probing
+ * with a throwaway query on every request, repositories ask this component,
+ * which introspects the addresses table at startup.
+ * If the database is unreachable at startup, the introspection is retried on
+ * first use.
+ */
+@Component
+public class SchemaDescriptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaDescriptor.class);
+
+    private final DSLContext dsl;
+
+    private volatile String addressPkColumn;
+
+    public SchemaDescriptor(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void introspectOnStartup() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            logger.warn("Schema introspection failed at startup, will retry on first use: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Name of the addresses primary key column: "id" where the table has an "id"
+     * column and no "address_id", otherwise "address_id". If the metadata lists
+     * no columns for addresses, "address_id" is assumed.
+     */
+    public String addressPkColumn() {
+        String pk = addressPkColumn;
+        if (pk == null) {
+            pk = load();
+        }
+        return pk;
+    }
+
+    private synchronized String load() {
+        if (addressPkColumn != null) {
+            return addressPkColumn;
+        }
+
+        Set<String> addressColumns = dsl.connectionResult(connection -> {
+            DatabaseMetaData meta = connection.getMetaData();
+            Set<String> names = new HashSet<>();
+            try (ResultSet rs = meta.getColumns(connection.getCatalog(), connection.getSchema(), "addresses", null)) {
+                while (rs.next()) {
+                    names.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+                }
+            }
+            return names;
+        });
+
+        if (addressColumns.isEmpty()) {
+            logger.warn("No columns found for addresses, assuming its primary key is address_id");
+        }
+        String pk = !addressColumns.contains("address_id") && addressColumns.contains("id") ? "id" : "address_id";
+        addressPkColumn = pk;
+        logger.info("Introspected addresses, primary key is {}", pk);
+        return pk;
+    }
+}
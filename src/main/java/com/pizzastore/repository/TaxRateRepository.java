@@ -0,0 +1,47 @@
+package com.pizzastore.repository;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Reads the tax_rates table (see schema.sql). TaxService loads every row at once
+ * and answers rate lookups from memory.
+ */
+@Repository
+public class TaxRateRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaxRateRepository.class);
+
+    private static final Table<Record> TAX_RATES = DSL.table("tax_rates");
+    private static final Field<String> STATE = DSL.field("state", String.class);
+    private static final Field<String> ZIP_FROM = DSL.field("zip_from", String.class);
+    private static final Field<String> ZIP_TO = DSL.field("zip_to", String.class);
+    private static final Field<BigDecimal> RATE = DSL.field("rate", BigDecimal.class);
+
+    private final DSLContext dsl;
+
+    public TaxRateRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * One row of tax_rates. zipFrom and zipTo are both null for a state-wide rate.
+     */
+    public record TaxRate(String state, String zipFrom, String zipTo, BigDecimal rate) {}
+
+    public List<TaxRate> findAll() {
+        logger.info("findAll tax rates");
+        return dsl.select(STATE, ZIP_FROM, ZIP_TO, RATE)
+                .from(TAX_RATES)
+                .fetch(r -> new TaxRate(r.value1(), r.value2(), r.value3(), r.value4()));
+    }
+}
@@ -11,20 +11,23 @@ import java.util.List;
 public class ToppingRepository {
 
     private final DSLContext dsl;
+    private final CatalogCache catalogCache;
 
-    public ToppingRepository(DSLContext dsl) {
+    public ToppingRepository(DSLContext dsl, CatalogCache catalogCache) {
         this.dsl = dsl;
+        this.catalogCache = catalogCache;
     }
 
     //    This is just like a SQL statement
     public List<Topping> findAll() {
-        return dsl.select(
-                        DSL.field("topping_id"),
-                        DSL.field("topping_name"),
-                        DSL.field("extra_cost")
-                )
-                .from(DSL.table("toppings"))
-                .fetchInto(Topping.class);
+        return catalogCache.get(Topping.class, () ->
+                dsl.select(
+                                DSL.field("topping_id"),
+                                DSL.field("topping_name"),
+                                DSL.field("extra_cost")
+                        )
+                        .from(DSL.table("toppings"))
+                        .fetchInto(Topping.class));
     }
 
     public void insertNewTopping(Topping topping) {
@@ -33,6 +36,8 @@ public class ToppingRepository {
                 .set(DSL.field("topping_name"), topping.getToppingName())
                 .set(DSL.field("extra_cost"), topping.getExtraCost())
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void deleteTopping(Long toppingId) {
@@ -40,6 +45,8 @@ public class ToppingRepository {
         dsl.deleteFrom(DSL.table("toppings"))
                 .where(DSL.field("topping_id").eq(toppingId))
                 .execute();
+
+        catalogCache.invalidate();
     }
 
     public void updateTopping(Topping topping) {
@@ -49,5 +56,7 @@ public class ToppingRepository {
                 .set(DSL.field("extra_cost"), topping.getExtraCost())
                 .where(DSL.field("topping_id").eq(topping.getToppingId()))
                 .execute();
+
+        catalogCache.invalidate();
     }
 }
@@ -14,10 +14,12 @@ import java.util.List;
 public class UserRepository {
 
     private final DSLContext dsl;
+    private final SchemaDescriptor schema;
     private static final Logger logger = LoggerFactory.getLogger(UserRepository.class);
 
-    public UserRepository(DSLContext dsl) {
+    public UserRepository(DSLContext dsl, SchemaDescriptor schema) {
         this.dsl = dsl;
+        this.schema = schema;
     }
 
     // =========================
@@ -105,8 +107,10 @@ public class UserRepository {
     public Address findAddressByCustomerId(long customerId) {
         logger.info("Finding address for customerId {}", customerId);
 
+        String pk = schema.addressPkColumn();
+
         return dsl.select(
-                        DSL.field("address_id").as("id"),
+                        DSL.field(pk).as("id"),
                         DSL.field("street_addr_1"),
                         DSL.field("street_addr_2"),
                         DSL.field("city"),
@@ -115,11 +119,24 @@ public class UserRepository {
                 )
                 .from(DSL.table("addresses"))
                 .where(DSL.field("customer_id").eq(customerId))
-                .orderBy(DSL.field("address_id").desc())
+                .orderBy(DSL.field(pk).desc())
                 .limit(1)
                 .fetchOneInto(Address.class);
     }
 
+    /**
+     * Replace a customer's stored password hash, e.g. when sign-in rehashes it at the current cost.
+     */
+    @SuppressWarnings("resource")
+    public void updatePasswordHash(long id, String passwordHash) {
+        logger.info("Updating password hash for customer id {}", id);
+
+        dsl.update(DSL.table("customers"))
+                .set(DSL.field("password_hash"), passwordHash)
+                .where(DSL.field("customer_id").eq(id))
+                .execute();
+    }
+
     /**
      * Update customer's basic profile fields.
      */
@@ -0,0 +1,319 @@
+package com.pizzastore.service;
+
+import com.pizzastore.dto.OrderConfirmationDto;
+import com.pizzastore.repository.IdempotencyRepository;
+import com.pizzastore.repository.IdempotencyRepository.StoredKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deduplicates checkouts by the client's Idempotency-Key header.
+ * The first request with a key claims it and runs the checkout; its confirmation
+ * is then kept for {@code checkout.idempotency.ttl-minutes} and handed back to every
+ * repeat of that key instead of placing the order again. A repeat that arrives
+ * while the first request is still running waits for its result (a double-click),
+ * up to {@code checkout.idempotency.wait-ms}.
+ * Keys are scoped to the customer, so two customers can use the same key. A
+ * checkout that fails or is rejected releases its key so the client can retry.
+ * Keys live in memory; with {@code checkout.idempotency.table-backed=true} they
+ * are also claimed in the checkout_idempotency table, which makes them hold across
+ * restarts and between instances. A row still pending after
+ * {@code checkout.idempotency.pending-lease-seconds} is assumed to belong to an
+ * instance that died mid-checkout, and the next repeat takes it over.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    public enum Outcome {
+        /** The caller owns the key and must call complete() or release(). */
+        ACQUIRED,
+        /** The key already has a result; it is in {@link Claim#confirmation()}. */
+        REPLAY,
+        /** Another request with this key is still running. */
+        IN_PROGRESS,
+        /** The key was already used for a different checkout request. */
+        KEY_REUSED
+    }
+
+    public record Claim(Outcome outcome, OrderConfirmationDto confirmation) {
+
+        static Claim of(Outcome outcome) {
+            return new Claim(outcome, null);
+        }
+    }
+
+    private record Key(long customerId, String key) {}
+
+    /**
+     * One claimed key. The result completes with the confirmation on success, or
+     * with null when the owner releases the key.
+     */
+    private static final class Entry {
+        final Key key;
+        final int requestHash;
+        final long createdAtMillis;
+        final CompletableFuture<OrderConfirmationDto> result = new CompletableFuture<>();
+
+        Entry(Key key, int requestHash, long createdAtMillis) {
+            this.key = key;
+            this.requestHash = requestHash;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+
+    private final IdempotencyRepository idempotencyRepository;
+    private final Clock clock;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    /** Claimed entries, oldest first. Entries no longer in the map are skipped and dropped lazily. */
+    private final ConcurrentLinkedQueue<Entry> claimOrder = new ConcurrentLinkedQueue<>();
+
+    @Value("${checkout.idempotency.ttl-minutes:60}")
+    private long ttlMinutes = 60;
+
+    @Value("${checkout.idempotency.pending-lease-seconds:120}")
+    private long pendingLeaseSeconds = 120;
+
+    @Value("${checkout.idempotency.wait-ms:10000}")
+    private long waitMs = 10000;
+
+    @Value("${checkout.idempotency.max-keys:50000}")
+    private int maxKeys = 50000;
+
+    @Value("${checkout.idempotency.table-backed:false}")
+    private boolean tableBacked = false;
+
+    @Autowired
+    public IdempotencyService(IdempotencyRepository idempotencyRepository) {
+        this(idempotencyRepository, Clock.systemDefaultZone());
+    }
+
+    IdempotencyService(IdempotencyRepository idempotencyRepository, Clock clock) {
+        this.idempotencyRepository = idempotencyRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Claims the key for one checkout, or reports what already happened to it.
+     *
+     * @param requestHash identifies the checkout request, so a reused key with a
+     *                    different request is detected
+     */
+    public Claim claim(long customerId, String key, int requestHash) {
+        Key k = new Key(customerId, key);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+
+        while (true) {
+            Entry mine = new Entry(k, requestHash, clock.millis());
+            Entry existing = entries.get(k);
+            if (existing != null && isExpired(existing)) {
+                entries.remove(k, existing);
+                existing = null;
+            }
+            if (existing == null) {
+                if (entries.size() >= maxKeys) {
+                    makeRoom();
+                }
+                existing = entries.putIfAbsent(k, mine);
+                if (existing == null) {
+                    claimOrder.add(mine);
+                    return tableBacked ? claimInTable(k, mine) : Claim.of(Outcome.ACQUIRED);
+                }
+            }
+
+            if (existing.requestHash != requestHash) {
+                return Claim.of(Outcome.KEY_REUSED);
+            }
+            OrderConfirmationDto confirmation;
+            try {
+                long remaining = deadline - System.nanoTime();
+                confirmation = existing.result.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return Claim.of(Outcome.IN_PROGRESS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Claim.of(Outcome.IN_PROGRESS);
+            } catch (ExecutionException e) {
+                confirmation = null;
+            }
+            if (confirmation != null) {
+                return new Claim(Outcome.REPLAY, confirmation);
+            }
+            // The owner released the key; try to claim it ourselves.
+            entries.remove(k, existing);
+        }
+    }
+
+    /**
+     * Stores the confirmation for a key claimed with ACQUIRED.
+     */
+    public void complete(long customerId, String key, OrderConfirmationDto confirmation) {
+        Key k = new Key(customerId, key);
+        if (tableBacked) {
+            try {
+                idempotencyRepository.complete(customerId, key, confirmation);
+            } catch (RuntimeException ex) {
+                // The order is placed; only cross-instance dedup of later repeats is lost.
+                logger.error("Failed to store idempotency result for order {}", confirmation.getOrderId(), ex);
+            }
+        }
+        Entry entry = entries.get(k);
+        if (entry != null) {
+            entry.result.complete(confirmation);
+        }
+    }
+
+    /**
+     * Gives up a key claimed with ACQUIRED without a result, so it can be used again.
+     */
+    public void release(long customerId, String key) {
+        Key k = new Key(customerId, key);
+        Entry entry = entries.remove(k);
+        if (tableBacked) {
+            try {
+                idempotencyRepository.delete(customerId, key);
+            } catch (RuntimeException ex) {
+                logger.error("Failed to release idempotency key", ex);
+            }
+        }
+        if (entry != null) {
+            entry.result.complete(null);
+        }
+    }
+
+    /**
+     * Drops keys older than the TTL. Waiting or running checkouts are never dropped.
+     *
+     * @return the number of keys removed from memory
+     */
+    @Scheduled(fixedDelayString = "${checkout.idempotency.sweep-interval-ms:60000}")
+    public int evictExpired() {
+        int evicted = evictExpiredFromMemory();
+        if (tableBacked) {
+            try {
+                idempotencyRepository.deleteCreatedBefore(LocalDateTime.now(clock).minusMinutes(ttlMinutes));
+            } catch (RuntimeException ex) {
+                logger.error("Failed to sweep checkout_idempotency", ex);
+            }
+        }
+        if (evicted > 0) {
+            logger.info("Evicted {} expired idempotency keys, {} remaining", evicted, entries.size());
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Claim claimInTable(Key k, Entry mine) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        try {
+            if (idempotencyRepository.tryClaim(k.customerId(), k.key(), mine.requestHash, now)) {
+                return Claim.of(Outcome.ACQUIRED);
+            }
+            Optional<StoredKey> stored = idempotencyRepository.find(k.customerId(), k.key());
+            if (stored.isPresent() && isStale(stored.get(), now)) {
+                // Left over from an earlier use, or from an instance that died mid-checkout; take it over.
+                // Only the row we looked at is deleted, so a concurrent takeover isn't undone.
+                idempotencyRepository.deleteClaimedAt(k.customerId(), k.key(), stored.get().createdAt());
+                if (idempotencyRepository.tryClaim(k.customerId(), k.key(), mine.requestHash, now)) {
+                    return Claim.of(Outcome.ACQUIRED);
+                }
+                stored = idempotencyRepository.find(k.customerId(), k.key());
+            }
+
+            entries.remove(k, mine);
+            mine.result.complete(null);
+            if (stored.isEmpty()) {
+                return Claim.of(Outcome.IN_PROGRESS);
+            }
+            if (stored.get().requestHash() != mine.requestHash) {
+                return Claim.of(Outcome.KEY_REUSED);
+            }
+            OrderConfirmationDto confirmation = stored.get().confirmation();
+            return confirmation != null
+                    ? new Claim(Outcome.REPLAY, confirmation)
+                    : Claim.of(Outcome.IN_PROGRESS); // running on another instance
+        } catch (RuntimeException ex) {
+            // Fall back to in-memory dedup rather than failing the checkout.
+            logger.error("Failed to claim idempotency key in checkout_idempotency, using memory only", ex);
+            return Claim.of(Outcome.ACQUIRED);
+        }
+    }
+
+    /**
+     * A finished row is kept for the TTL. A pending one only for the lease: a
+     * checkout takes seconds, so one pending longer than that lost its owner.
+     */
+    private boolean isStale(StoredKey stored, LocalDateTime now) {
+        return stored.confirmation() == null
+                ? stored.createdAt().isBefore(now.minusSeconds(pendingLeaseSeconds))
+                : stored.createdAt().isBefore(now.minusMinutes(ttlMinutes));
+    }
+
+    private int evictExpiredFromMemory() {
+        int evicted = 0;
+        for (Iterator<Entry> it = claimOrder.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entries.get(entry.key) != entry) {
+                it.remove();
+            } else if (isExpired(entry) && entries.remove(entry.key, entry)) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return entry.result.isDone()
+                && clock.millis() - entry.createdAtMillis > TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    /**
+     * Called when the map is full: drops the oldest finished keys from the head of
+     * claimOrder, expired ones first since they are the oldest. Checkouts still
+     * running are moved to the back, at most once per key in the map.
+     */
+    private void makeRoom() {
+        int skippedRunning = 0;
+        while (entries.size() >= maxKeys && skippedRunning < entries.size()) {
+            Entry oldest = claimOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (entries.get(oldest.key) != oldest) {
+                continue; // released, expired or replaced since it was queued
+            }
+            if (!oldest.result.isDone()) {
+                claimOrder.add(oldest);
+                skippedRunning++;
+                continue;
+            }
+            if (!isExpired(oldest)) {
+                logger.warn("Idempotency store full ({} keys), evicting the oldest", entries.size());
+            }
+            entries.remove(oldest.key, oldest);
+        }
+    }
+}
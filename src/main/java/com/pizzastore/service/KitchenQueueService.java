@@ -0,0 +1,405 @@
+package com.pizzastore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzastore.dto.KitchenFeedDto;
+import com.pizzastore.dto.KitchenOrderDto;
+import com.pizzastore.dto.OrderItemDto;
+import com.pizzastore.event.OrderLifecycleEvent;
+import com.pizzastore.event.OrderPlacedEvent;
+import com.pizzastore.event.OrderStatusChangedEvent;
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.CrustType;
+import com.pizzastore.model.Order;
+import com.pizzastore.model.OrderStatus;
+import com.pizzastore.model.PizzaSize;
+import com.pizzastore.repository.CrustTypeRepository;
+import com.pizzastore.repository.OrderOutboxRepository.NewMessage;
+import com.pizzastore.repository.OrderRepository;
+import com.pizzastore.repository.PizzaSizeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * The kitchen's view of the orders that are still being worked on.
+ * Active orders are kept in memory, loaded once at startup and then kept up to
+ * date from ORDER_PLACED events and from the status changes made through
+ * {@link #transition}, so kitchen screens never scan the orders table.
+ * Every change bumps the queue's version and is pushed to the screens:
+ * to server-sent event subscribers straight away, and to long-poll requests
+ * waiting for changes after their version. The last
+ * {@code kitchen.queue.change-log-size} changes are kept so a screen that
+ * reconnects only gets what it missed; one that fell further behind gets the
+ * whole queue again.
+ */
+@Service
+public class KitchenQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KitchenQueueService.class);
+
+    private static final String CUSTOM_PIZZA = "Custom Pizza";
+
+    public enum Outcome {
+        UPDATED,
+        /** No order with that id, or it has already left the queue. */
+        NOT_FOUND,
+        /** The order's status can't move to the requested one. */
+        INVALID_TRANSITION,
+        /** Someone else changed the order first. */
+        CONFLICT
+    }
+
+    public record TransitionResult(Outcome outcome, KitchenOrderDto order) {}
+
+    private record Change(long version, KitchenOrderDto order) {}
+
+    private record Waiter(long since, Consumer<KitchenFeedDto> listener) {}
+
+    private final OrderRepository orderRepository;
+    private final PizzaSizeRepository pizzaSizeRepository;
+    private final CrustTypeRepository crustTypeRepository;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    private final Map<Long, KitchenOrderDto> active = new ConcurrentHashMap<>();
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    /** Guarded by this. */
+    private final Deque<Change> changes = new ArrayDeque<>();
+    /** Guarded by this. */
+    private final List<Waiter> waiters = new ArrayList<>();
+    /**
+     * Guarded by this. Starts from the boot time rather than 0, so a screen that
+     * kept a version from before a restart never matches a new one and gets the
+     * whole queue again.
+     */
+    private long version;
+
+    /**
+     * SSE sends, queued in version order while holding this and run after it is
+     * released by whichever thread holds {@link #sending}, so a slow screen never
+     * holds up the queue's lock and every screen still sees changes in order.
+     */
+    private final Queue<Runnable> outgoing = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock sending = new ReentrantLock();
+
+    @Value("${kitchen.queue.change-log-size:500}")
+    private int changeLogSize = 500;
+
+    @Value("${kitchen.queue.max-age-hours:24}")
+    private long maxAgeHours = 24;
+
+    @Value("${kitchen.queue.sse-timeout-ms:1800000}")
+    private long sseTimeoutMs = 1800000;
+
+    @Autowired
+    public KitchenQueueService(OrderRepository orderRepository, PizzaSizeRepository pizzaSizeRepository,
+                               CrustTypeRepository crustTypeRepository, ObjectMapper objectMapper) {
+        this(orderRepository, pizzaSizeRepository, crustTypeRepository, objectMapper, Clock.systemDefaultZone());
+    }
+
+    KitchenQueueService(OrderRepository orderRepository, PizzaSizeRepository pizzaSizeRepository,
+                        CrustTypeRepository crustTypeRepository, ObjectMapper objectMapper, Clock clock) {
+        this.orderRepository = orderRepository;
+        this.pizzaSizeRepository = pizzaSizeRepository;
+        this.crustTypeRepository = crustTypeRepository;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.version = clock.millis();
+    }
+
+    /**
+     * Loads the active orders placed in the last {@code kitchen.queue.max-age-hours}.
+     * Older orders that never moved past PENDING predate the kitchen queue and are
+     * left out so they don't flood the screens.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveOrders() {
+        List<Order> orders = orderRepository.findActive(LocalDateTime.now(clock).minusHours(maxAgeHours));
+        Map<Long, List<OrderItemDto>> items = orderRepository.findItemsByOrderIds(
+                orders.stream().map(Order::getOrderId).toList());
+        synchronized (this) {
+            for (Order order : orders) {
+                active.putIfAbsent(order.getOrderId(), toDto(order, items.get(order.getOrderId())));
+            }
+            version++;
+            changes.clear();
+        }
+        logger.info("Kitchen queue loaded {} active orders", orders.size());
+    }
+
+    /**
+     * Adds newly placed orders to the queue, built from the event's payload: this
+     * runs while the relay holds its batch locked, so it doesn't go back to the
+     * database. Events can repeat, so an order that is already known is left alone.
+     */
+    @EventListener
+    public void onOrderEvent(OrderLifecycleEvent event) {
+        if (!OrderLifecycleEvent.ORDER_PLACED.equals(event.type()) || active.containsKey(event.orderId())) {
+            return;
+        }
+        OrderPlacedEvent placed;
+        try {
+            placed = objectMapper.readValue(event.payload(), OrderPlacedEvent.class);
+        } catch (JsonProcessingException ex) {
+            logger.error("Unreadable ORDER_PLACED payload for order {}, not added to the kitchen queue", event.orderId(), ex);
+            return;
+        }
+        KitchenOrderDto dto = new KitchenOrderDto(
+                event.orderId(),
+                placed.customerId(),
+                OrderStatus.PENDING.name(),
+                placed.deliveryMethod(),
+                placed.orderTimestamp() == null ? null : placed.orderTimestamp().toInstant(ZoneOffset.UTC),
+                null,
+                placed.items() == null ? List.of() : placed.items().stream().map(this::toItemDto).toList());
+        if (active.putIfAbsent(dto.getOrderId(), dto) == null) {
+            publish(dto);
+        }
+    }
+
+    /**
+     * The whole queue, oldest order first.
+     */
+    public synchronized KitchenFeedDto snapshot() {
+        return new KitchenFeedDto(version, true, sortedActive());
+    }
+
+    /**
+     * What changed after the given version; the whole queue if those changes are
+     * no longer kept. Each order appears once, in its latest state.
+     */
+    public synchronized KitchenFeedDto changesSince(long since) {
+        if (since > version || (since < version && (changes.isEmpty() || changes.peekFirst().version() > since + 1))) {
+            return snapshot();
+        }
+        Map<Long, KitchenOrderDto> latest = new LinkedHashMap<>();
+        for (Change change : changes) {
+            if (change.version() > since) {
+                latest.remove(change.order().getOrderId());
+                latest.put(change.order().getOrderId(), change.order());
+            }
+        }
+        return new KitchenFeedDto(version, false, new ArrayList<>(latest.values()));
+    }
+
+    /**
+     * Calls the listener once, with the changes after {@code since}: right away if
+     * there are any, otherwise on the next change.
+     *
+     * @return stops waiting; call it when the caller gives up (e.g. a long poll times out)
+     */
+    public Runnable awaitChanges(long since, Consumer<KitchenFeedDto> listener) {
+        KitchenFeedDto feed;
+        synchronized (this) {
+            feed = changesSince(since);
+            if (feed.getOrders().isEmpty() && !feed.isReset()) {
+                Waiter waiter = new Waiter(since, listener);
+                waiters.add(waiter);
+                return () -> removeWaiter(waiter);
+            }
+        }
+        listener.accept(feed);
+        return () -> { };
+    }
+
+    /**
+     * Opens a server-sent event stream: a "snapshot" event with the whole queue,
+     * then one "order" event per change.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        synchronized (this) {
+            KitchenFeedDto snapshot = snapshot();
+            // Added once its snapshot is out, so it gets exactly the changes queued after it
+            outgoing.add(() -> {
+                try {
+                    emitter.send(SseEmitter.event().name("snapshot").id(Long.toString(snapshot.getVersion())).data(snapshot));
+                    emitters.add(emitter);
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(e);
+                }
+            });
+        }
+        sendOutgoing();
+        return emitter;
+    }
+
+    /**
+     * Moves an order to the given status, records the change and its
+     * ORDER_STATUS_CHANGED event in the database and pushes it to the screens.
+     */
+    public TransitionResult transition(long orderId, OrderStatus to, Long employeeId) {
+        KitchenOrderDto current = active.get(orderId);
+        if (current == null) {
+            return new TransitionResult(Outcome.NOT_FOUND, null);
+        }
+        OrderStatus from = OrderStatus.parse(current.getStatus());
+        if (from == null || !from.canMoveTo(to, current.getDeliveryMethod())) {
+            return new TransitionResult(Outcome.INVALID_TRANSITION, current);
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        NewMessage event = statusChanged(new OrderStatusChangedEvent(orderId, from.name(), to.name(), employeeId, now));
+        if (!orderRepository.updateStatus(orderId, from, to, employeeId, event, now)) {
+            return new TransitionResult(Outcome.CONFLICT, current);
+        }
+
+        KitchenOrderDto updated = new KitchenOrderDto(current.getOrderId(), current.getCustomerId(), to.name(),
+                current.getDeliveryMethod(), current.getPlacedAt(), now.toInstant(ZoneOffset.UTC), current.getItems());
+        if (to.isActive()) {
+            active.put(orderId, updated);
+        } else {
+            active.remove(orderId);
+        }
+        publish(updated);
+        return new TransitionResult(Outcome.UPDATED, updated);
+    }
+
+    @PreDestroy
+    public void closeStreams() {
+        emitters.forEach(SseEmitter::complete);
+        emitters.clear();
+    }
+
+    private void publish(KitchenOrderDto order) {
+        List<Waiter> ready;
+        long v;
+        synchronized (this) {
+            v = ++version;
+            changes.addLast(new Change(v, order));
+            while (changes.size() > changeLogSize) {
+                changes.removeFirst();
+            }
+            ready = new ArrayList<>(waiters);
+            waiters.clear();
+            outgoing.add(() -> {
+                for (SseEmitter emitter : emitters) {
+                    try {
+                        emitter.send(SseEmitter.event().name("order").id(Long.toString(v)).data(order));
+                    } catch (IOException | IllegalStateException e) {
+                        emitters.remove(emitter);
+                        emitter.completeWithError(e);
+                    }
+                }
+            });
+        }
+        sendOutgoing();
+        for (Waiter waiter : ready) {
+            waiter.listener().accept(changesSince(waiter.since()));
+        }
+    }
+
+    /**
+     * Runs the queued SSE sends unless another thread already is; that thread
+     * then runs ours too. Checking the queue again after unlocking catches a send
+     * queued just as the other thread finished.
+     */
+    private void sendOutgoing() {
+        while (!outgoing.isEmpty() && sending.tryLock()) {
+            try {
+                Runnable send;
+                while ((send = outgoing.poll()) != null) {
+                    send.run();
+                }
+            } finally {
+                sending.unlock();
+            }
+        }
+    }
+
+    private synchronized void removeWaiter(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    private List<KitchenOrderDto> sortedActive() {
+        return active.values().stream()
+                .sorted(Comparator.comparing(KitchenOrderDto::getPlacedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(KitchenOrderDto::getOrderId))
+                .toList();
+    }
+
+    private NewMessage statusChanged(OrderStatusChangedEvent event) {
+        try {
+            return new NewMessage(OrderLifecycleEvent.ORDER_STATUS_CHANGED, objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize order status change", ex);
+        }
+    }
+
+    /**
+     * Same shape as the items read back by OrderRepository.findItemsByOrderIds.
+     * Size and crust names come from the cached catalog.
+     */
+    private OrderItemDto toItemDto(CartItem item) {
+        OrderItemDto dto = new OrderItemDto();
+        dto.setName(item.getProductId() == null ? CUSTOM_PIZZA : item.getName());
+        dto.setQuantity(item.getQuantity());
+        dto.setLineTotal(BigDecimal.valueOf(item.getLineTotal()).setScale(2, RoundingMode.HALF_UP));
+        if (item.getSizeId() != null) {
+            dto.setSizeId(item.getSizeId().intValue());
+            dto.setSizeName(pizzaSizeRepository.findAll().stream()
+                    .filter(s -> item.getSizeId().equals(s.getSizeId()))
+                    .map(PizzaSize::getSizeName)
+                    .findFirst().orElse(null));
+        }
+        if (item.getCrustTypeId() != null) {
+            dto.setCrustTypeId(item.getCrustTypeId().intValue());
+            dto.setCrustName(crustTypeRepository.findAll().stream()
+                    .filter(c -> item.getCrustTypeId().equals(c.getCrustId()))
+                    .map(CrustType::getCrustName)
+                    .findFirst().orElse(null));
+        }
+        dto.setSauceName(item.getSauceName());
+        dto.setToppingIdsFull(toppingIds(item.getToppingIdsFull()));
+        dto.setToppingIdsLeft(toppingIds(item.getToppingIdsLeft()));
+        dto.setToppingIdsRight(toppingIds(item.getToppingIdsRight()));
+        return dto;
+    }
+
+    private static List<Integer> toppingIds(Long[] ids) {
+        return ids == null || ids.length == 0 ? null : Arrays.stream(ids).map(Long::intValue).toList();
+    }
+
+    private static KitchenOrderDto toDto(Order order, List<OrderItemDto> items) {
+        return new KitchenOrderDto(
+                order.getOrderId(),
+                order.getCustomerId(),
+                order.getStatus(),
+                order.getDeliveryMethod(),
+                order.getOrderTimestamp() == null ? null : order.getOrderTimestamp().toInstant(ZoneOffset.UTC),
+                null,
+                items == null ? List.of() : items);
+    }
+}
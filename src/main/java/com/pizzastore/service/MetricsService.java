@@ -0,0 +1,147 @@
+package com.pizzastore.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency timers, error counters and in-flight gauges for HTTP endpoints and
+ * SQL repository methods, kept in a Micrometer registry.
+ * Percentiles are computed in-process over a sliding window (see
+ * {@link #PERCENTILE_WINDOW}), so p99 reflects recent traffic rather than
+ * everything since startup. Counts and error totals are cumulative.
+ */
+@Service
+public class MetricsService {
+
+    static final Duration PERCENTILE_WINDOW = Duration.ofMinutes(2);
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    public enum Kind {
+        HTTP("pizzastore.http.requests"),
+        SQL("pizzastore.sql.calls");
+
+        private final String meterName;
+
+        Kind(String meterName) {
+            this.meterName = meterName;
+        }
+    }
+
+    /**
+     * Latency summary for one endpoint or repository method. Times are in milliseconds;
+     * max and the percentiles cover the sliding window.
+     */
+    public record TimerStats(String name,
+                             long count,
+                             long errors,
+                             int inFlight,
+                             double meanMs,
+                             double maxMs,
+                             double p50Ms,
+                             double p95Ms,
+                             double p99Ms) {}
+
+    private record Key(Kind kind, String name) {}
+
+    private static final class Meters {
+        final Timer timer;
+        final Counter errors;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Meters(MeterRegistry registry, Key key) {
+            this.timer = Timer.builder(key.kind().meterName)
+                    .tag("name", key.name())
+                    .publishPercentiles(PERCENTILES)
+                    .distributionStatisticExpiry(PERCENTILE_WINDOW)
+                    .register(registry);
+            this.errors = Counter.builder(key.kind().meterName + ".errors")
+                    .tag("name", key.name())
+                    .register(registry);
+            Gauge.builder(key.kind().meterName + ".in_flight", inFlight, AtomicInteger::get)
+                    .tag("name", key.name())
+                    .register(registry);
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Key, Meters> meters = new ConcurrentHashMap<>();
+
+    public MetricsService(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Marks a call as started and returns the start time to hand back to {@link #stop}.
+     */
+    public long start(Kind kind, String name) {
+        meters(kind, name).inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void stop(Kind kind, String name, long startNanos, boolean failed) {
+        Meters m = meters(kind, name);
+        m.timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (failed) {
+            m.errors.increment();
+        }
+        m.inFlight.decrementAndGet();
+    }
+
+    /**
+     * Everything recorded for one kind, slowest p99 first.
+     */
+    public List<TimerStats> snapshot(Kind kind) {
+        List<TimerStats> stats = new ArrayList<>();
+        meters.forEach((key, m) -> {
+            if (key.kind() == kind) {
+                stats.add(toStats(key.name(), m));
+            }
+        });
+        stats.sort(Comparator.comparingDouble(TimerStats::p99Ms).reversed()
+                .thenComparing(TimerStats::name));
+        return stats;
+    }
+
+    private Meters meters(Kind kind, String name) {
+        return meters.computeIfAbsent(new Key(kind, name), key -> new Meters(registry, key));
+    }
+
+    private static TimerStats toStats(String name, Meters m) {
+        HistogramSnapshot snapshot = m.timer.takeSnapshot();
+        double p50 = 0, p95 = 0, p99 = 0;
+        for (ValueAtPercentile v : snapshot.percentileValues()) {
+            double ms = v.value(TimeUnit.MILLISECONDS);
+            if (v.percentile() == 0.5) p50 = ms;
+            else if (v.percentile() == 0.95) p95 = ms;
+            else if (v.percentile() == 0.99) p99 = ms;
+        }
+        return new TimerStats(
+                name,
+                m.timer.count(),
+                (long) m.errors.count(),
+                m.inFlight.get(),
+                round(m.timer.mean(TimeUnit.MILLISECONDS)),
+                round(m.timer.max(TimeUnit.MILLISECONDS)),
+                round(p50),
+                round(p95),
+                round(p99));
+    }
+
+    private static double round(double ms) {
+        return Math.round(ms * 100) / 100.0;
+    }
+}
@@ -0,0 +1,126 @@
+package com.pizzastore.service;
+
+import com.pizzastore.event.OrderEventSink;
+import com.pizzastore.event.OrderLifecycleEvent;
+import com.pizzastore.repository.OrderOutboxRepository;
+import com.pizzastore.repository.OrderOutboxRepository.OutboxMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes order lifecycle events to every OrderEventSink.
+ * The events are rows in order_outbox, written in the same transaction as the
+ * order change they describe, so an event exists exactly when its change was
+ * committed. Each poll drains the due events in batches of
+ * {@code order.events.batch-size}: a batch is locked with FOR UPDATE SKIP LOCKED,
+ * handed to every sink and deleted in one transaction, so the work per poll is
+ * proportional to the number of new events.
+ * If any sink fails, the batch is retried later for all sinks with exponential
+ * backoff; sinks therefore see each event at least once and must ignore repeats.
+ * With several instances, SKIP LOCKED makes each event go to exactly one
+ * instance's relay, so in-process listeners (ApplicationEventOrderSink) only see
+ * the events their own instance drained. Listeners that need every event are
+ * only correct with a single instance relaying.
+ */
+@Service
+public class OrderEventRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventRelay.class);
+
+    static final Set<String> EVENT_TYPES =
+            Set.of(OrderLifecycleEvent.ORDER_PLACED, OrderLifecycleEvent.ORDER_STATUS_CHANGED);
+
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final List<OrderEventSink> sinks;
+    private final Clock clock;
+
+    @Value("${order.events.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${order.events.max-batches-per-poll:50}")
+    private int maxBatchesPerPoll = 50;
+
+    @Value("${order.events.retry-base-ms:1000}")
+    private long retryBaseMs = 1000;
+
+    @Value("${order.events.retry-max-ms:300000}")
+    private long retryMaxMs = 300000;
+
+    @Autowired
+    public OrderEventRelay(OrderOutboxRepository orderOutboxRepository, List<OrderEventSink> sinks) {
+        this(orderOutboxRepository, sinks, Clock.systemDefaultZone());
+    }
+
+    OrderEventRelay(OrderOutboxRepository orderOutboxRepository, List<OrderEventSink> sinks, Clock clock) {
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.sinks = List.copyOf(sinks);
+        this.clock = clock;
+    }
+
+    /**
+     * Drains due events until a batch comes back short, or the per-poll cap is reached.
+     *
+     * @return the number of events published
+     */
+    @Scheduled(initialDelayString = "${order.events.poll-interval-ms:500}",
+            fixedDelayString = "${order.events.poll-interval-ms:500}")
+    public int relay() {
+        int published = 0;
+        for (int i = 0; i < maxBatchesPerPoll; i++) {
+            int drained = relayBatch();
+            published += drained;
+            if (drained < batchSize) {
+                break;
+            }
+        }
+        return published;
+    }
+
+    private int relayBatch() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        AtomicReference<List<OutboxMessage>> locked = new AtomicReference<>();
+        try {
+            return orderOutboxRepository.drainBatch(EVENT_TYPES, now, batchSize, batch -> {
+                locked.set(batch);
+                List<OrderLifecycleEvent> events = batch.stream()
+                        .map(m -> new OrderLifecycleEvent(m.outboxId(), m.orderId(), m.eventType(), m.payload(), m.createdAt()))
+                        .toList();
+                for (OrderEventSink sink : sinks) {
+                    sink.publish(events);
+                }
+            }).size();
+        } catch (RuntimeException ex) {
+            List<OutboxMessage> batch = locked.get();
+            if (batch == null) {
+                logger.error("Failed to read order events from the outbox, will retry", ex);
+                return 0;
+            }
+            int attempts = batch.stream().mapToInt(OutboxMessage::attempts).max().orElse(0);
+            long delayMs = retryDelayMs(attempts);
+            logger.warn("Publishing {} order events failed (attempt {}), retrying in {} ms",
+                    batch.size(), attempts + 1, delayMs, ex);
+            try {
+                orderOutboxRepository.rescheduleAll(batch.stream().map(OutboxMessage::outboxId).toList(),
+                        now.plusNanos(delayMs * 1_000_000), ex.toString());
+            } catch (RuntimeException rescheduleEx) {
+                logger.error("Failed to reschedule {} order events", batch.size(), rescheduleEx);
+            }
+            return 0;
+        }
+    }
+
+    long retryDelayMs(int attempts) {
+        int shift = Math.min(attempts, 30);
+        return Math.min(retryBaseMs << shift, retryMaxMs);
+    }
+}
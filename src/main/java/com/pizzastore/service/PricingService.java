@@ -0,0 +1,178 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.CrustType;
+import com.pizzastore.model.PizzaSize;
+import com.pizzastore.model.Product;
+import com.pizzastore.model.Topping;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.CrustTypeRepository;
+import com.pizzastore.repository.PizzaSizeRepository;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.ToppingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Prices cart items from the catalog, so the price a client sends is never trusted.
+ * A unit price is the product's base price (for a build-your-own pizza,
+ * {@code pricing.custom-pizza-base-price}) plus the size and crust prices plus
+ * the toppings. A build-your-own pizza must have a size. A topping on the whole
+ * pizza costs its extra cost; a topping on one half costs half of that, rounded
+ * to the cent. A topping on both halves, or on a half and the whole pizza, is
+ * charged once as a whole-pizza topping.
+ * Prices come from a table built from the cached catalog and rebuilt only when
+ * the catalog version changes, so pricing an item is a few map lookups.
+ */
+@Service
+public class PricingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PricingService.class);
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    /**
+     * Every price in the catalog at one catalog version.
+     */
+    record PriceTable(long version,
+                      Map<Long, BigDecimal> products,
+                      Map<Long, BigDecimal> sizes,
+                      Map<Long, BigDecimal> crusts,
+                      Map<Long, BigDecimal> toppings,
+                      Map<Long, BigDecimal> halfToppings) {}
+
+    private final CatalogCache catalogCache;
+    private final ProductRepository productRepository;
+    private final PizzaSizeRepository pizzaSizeRepository;
+    private final CrustTypeRepository crustTypeRepository;
+    private final ToppingRepository toppingRepository;
+
+    @Value("${pricing.custom-pizza-base-price:11.99}")
+    private BigDecimal customPizzaBasePrice = new BigDecimal("11.99");
+
+    private volatile PriceTable prices;
+
+    public PricingService(CatalogCache catalogCache,
+                          ProductRepository productRepository,
+                          PizzaSizeRepository pizzaSizeRepository,
+                          CrustTypeRepository crustTypeRepository,
+                          ToppingRepository toppingRepository) {
+        this.catalogCache = catalogCache;
+        this.productRepository = productRepository;
+        this.pizzaSizeRepository = pizzaSizeRepository;
+        this.crustTypeRepository = crustTypeRepository;
+        this.toppingRepository = toppingRepository;
+    }
+
+    /**
+     * The price of one of the given item, rounded to the cent.
+     *
+     * @throws IllegalArgumentException if the item names a product, size, crust
+     *                                  or topping that is not in the catalog, or
+     *                                  has neither a product nor a size
+     */
+    public BigDecimal unitPrice(CartItem item) {
+        if (item.getProductId() == null && item.getSizeId() == null) {
+            throw new IllegalArgumentException("A custom pizza needs a size");
+        }
+        PriceTable table = currentPrices();
+        BigDecimal price = item.getProductId() == null
+                ? customPizzaBasePrice
+                : lookup(table.products(), item.getProductId(), "product");
+        price = price.add(lookup(table.sizes(), item.getSizeId(), "size"));
+        price = price.add(lookup(table.crusts(), item.getCrustTypeId(), "crust"));
+
+        Set<Long> whole = ids(item.getToppingIdsFull());
+        Set<Long> left = ids(item.getToppingIdsLeft());
+        Set<Long> right = ids(item.getToppingIdsRight());
+        for (Long id : left) {
+            if (right.remove(id)) {
+                whole.add(id);
+            }
+        }
+        left.removeAll(whole);
+        right.removeAll(whole);
+
+        for (Long id : whole) {
+            price = price.add(lookup(table.toppings(), id, "topping"));
+        }
+        for (Long id : left) {
+            price = price.add(lookup(table.halfToppings(), id, "topping"));
+        }
+        for (Long id : right) {
+            price = price.add(lookup(table.halfToppings(), id, "topping"));
+        }
+        return price.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Prices the item in place, overwriting whatever price it came with.
+     */
+    public CartItem price(CartItem item) {
+        item.setPrice(unitPrice(item).doubleValue());
+        return item;
+    }
+
+    private PriceTable currentPrices() {
+        // Read the version before the data, like MenuController: a catalog edit while
+        // the table is being built leaves it stale, and the next call builds it again.
+        long version = catalogCache.version();
+        PriceTable table = prices;
+        if (table != null && table.version() == version) {
+            return table;
+        }
+
+        Map<Long, BigDecimal> toppings = index(toppingRepository.findAll(), Topping::getToppingId, Topping::getExtraCost);
+        Map<Long, BigDecimal> halfToppings = new HashMap<>();
+        toppings.forEach((id, cost) -> halfToppings.put(id, cost.divide(TWO, 2, RoundingMode.HALF_UP)));
+        table = new PriceTable(version,
+                index(productRepository.findAll(), Product::getProductId, Product::getBasePrice),
+                index(pizzaSizeRepository.findAll(), PizzaSize::getSizeId, PizzaSize::getPrice),
+                index(crustTypeRepository.findAll(), CrustType::getCrustId, CrustType::getPrice),
+                toppings,
+                Map.copyOf(halfToppings));
+        prices = table;
+        logger.info("Built price table for catalog version {}", version);
+        return table;
+    }
+
+    private static <T> Map<Long, BigDecimal> index(Iterable<T> rows, Function<T, Long> id, Function<T, BigDecimal> price) {
+        Map<Long, BigDecimal> byId = new HashMap<>();
+        for (T row : rows) {
+            if (id.apply(row) != null) {
+                byId.put(id.apply(row), Objects.requireNonNullElse(price.apply(row), BigDecimal.ZERO));
+            }
+        }
+        return Map.copyOf(byId);
+    }
+
+    private static BigDecimal lookup(Map<Long, BigDecimal> prices, Long id, String what) {
+        if (id == null) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal price = prices.get(id);
+        if (price == null) {
+            throw new IllegalArgumentException("Unknown " + what + " " + id);
+        }
+        return price;
+    }
+
+    private static Set<Long> ids(Long[] ids) {
+        return ids == null
+                ? new HashSet<>()
+                : Arrays.stream(ids).filter(Objects::nonNull).collect(Collectors.toCollection(HashSet::new));
+    }
+}
@@ -0,0 +1,477 @@
+package com.pizzastore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.Money;
+import com.pizzastore.model.Product;
+import com.pizzastore.model.Promotion;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.PromoCodeIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether a promotion applies to a cart and how much it takes off.
+ * A promotion is a fixed discount_value off unless it has a row in
+ * promotion_rules, whose JSON definition can make it:
+ * <ul>
+ *   <li>{@code PERCENT_OFF}: {@code percent} (default: discount_value) off the
+ *       qualifying items, or off the whole cart if no items are named;</li>
+ *   <li>{@code BOGO}: of every two qualifying units, the cheaper one is free;</li>
+ *   <li>{@code FIXED_OFF}: {@code amount} (default: discount_value) off, only
+ *       when the cart has a qualifying item if any are named.</li>
+ * </ul>
+ * Qualifying items are narrowed by {@code productIds}, {@code categoryIds} and
+ * {@code sizeIds}, and any rule can be limited to {@code days} of the week and
+ * a {@code from}/{@code to} time of day (a window may run past midnight).
+ * min_order_amt applies to every promotion; expired ones are dropped from
+ * PromoCodeIndex by its sweep and are never evaluated.
+ * Each promotion is compiled once into a list of conditions and a reward, with
+ * categories already resolved to product ids, so evaluating a cart is a pass
+ * over its items and never touches the database. The index's active
+ * promotions are compiled at startup and every
+ * {@code promotions.rules.refresh-interval-ms}; a promotion is compiled on the
+ * spot if it is new or changed, and everything is recompiled when the catalog
+ * changes.
+ */
+@Service
+public class PromotionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromotionEngine.class);
+
+    static final String NOT_AVAILABLE = "This promo code is no longer available.";
+    static final String NOT_NOW = "This promo isn't available at this time.";
+    static final String NO_QUALIFYING_ITEMS = "No items in your cart qualify for this promo.";
+    static final String NEEDS_TWO_ITEMS = "This promo needs two qualifying items in your cart.";
+
+    public enum RewardType { FIXED_OFF, PERCENT_OFF, BOGO }
+
+    /**
+     * The outcome for one cart: the discount in cents, or why the promotion
+     * doesn't apply (and no discount).
+     */
+    public record Evaluation(long discountCents, String failure) {
+
+        static Evaluation applied(long discountCents) {
+            return new Evaluation(discountCents, null);
+        }
+
+        static Evaluation rejected(String failure) {
+            return new Evaluation(0, failure);
+        }
+
+        public boolean applies() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * A promotion the cart qualifies for right now.
+     */
+    public record Eligible(long promotionId, String code, String summary, long discountCents) {}
+
+    /**
+     * The cart being evaluated, with its subtotal worked out once.
+     */
+    private record Basket(List<CartItem> items, long subtotalCents, LocalDateTime now) {}
+
+    @FunctionalInterface
+    private interface Condition {
+        /** Why the promotion doesn't apply to the basket, or null if this condition holds. */
+        String check(Basket basket);
+    }
+
+    @FunctionalInterface
+    private interface Reward {
+        long discountCents(Basket basket);
+    }
+
+    /**
+     * Which items a rule is about. A null set doesn't restrict that attribute.
+     */
+    private record ItemFilter(Set<Long> productIds, Set<Long> sizeIds) {
+
+        /**
+         * A custom pizza has no product and a side may have no size; neither
+         * matches a filter on that field.
+         */
+        boolean matches(CartItem item) {
+            return (productIds == null || item.getProductId() != null && productIds.contains(item.getProductId()))
+                    && (sizeIds == null || item.getSizeId() != null && sizeIds.contains(item.getSizeId()));
+        }
+    }
+
+    private record CompiledPromotion(Promotion source, long catalogVersion, List<Condition> conditions, Reward reward) {
+
+        Evaluation evaluate(Basket basket) {
+            for (Condition condition : conditions) {
+                String failure = condition.check(basket);
+                if (failure != null) {
+                    return Evaluation.rejected(failure);
+                }
+            }
+            long discount = Math.min(reward.discountCents(basket), basket.subtotalCents());
+            return Evaluation.applied(Math.max(0, discount));
+        }
+    }
+
+    private final PromoCodeIndex promoCodeIndex;
+    private final ProductRepository productRepository;
+    private final CatalogCache catalogCache;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    /** By promotion id. Replaced as a whole on refresh. */
+    private volatile Map<Long, CompiledPromotion> compiled = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PromotionEngine(PromoCodeIndex promoCodeIndex, ProductRepository productRepository,
+                           CatalogCache catalogCache, ObjectMapper objectMapper) {
+        this(promoCodeIndex, productRepository, catalogCache, objectMapper, Clock.systemDefaultZone());
+    }
+
+    PromotionEngine(PromoCodeIndex promoCodeIndex, ProductRepository productRepository,
+                    CatalogCache catalogCache, ObjectMapper objectMapper, Clock clock) {
+        this.promoCodeIndex = promoCodeIndex;
+        this.productRepository = productRepository;
+        this.catalogCache = catalogCache;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    /**
+     * Compiles every active promotion in the index, dropping the ones that have
+     * expired or been deleted since the last refresh. If the promotions can't be
+     * loaded, the ones already compiled stay in use.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${promotions.rules.refresh-interval-ms:300000}",
+            fixedDelayString = "${promotions.rules.refresh-interval-ms:300000}")
+    public void refresh() {
+        try {
+            Collection<Promotion> promotions = promoCodeIndex.active();
+            long version = catalogCache.version();
+            Map<Long, Set<Long>> productsByCategory = productsByCategory();
+            Map<Long, CompiledPromotion> fresh = new ConcurrentHashMap<>();
+            for (Promotion promotion : promotions) {
+                if (promotion.getPromotionId() != null) {
+                    fresh.put(promotion.getPromotionId(), compile(promotion, version, productsByCategory));
+                }
+            }
+            compiled = fresh;
+            logger.info("Compiled {} promotions", fresh.size());
+        } catch (RuntimeException ex) {
+            logger.error("Could not load promotions, keeping the ones already compiled", ex);
+        }
+    }
+
+    /**
+     * Evaluates a promotion that was just looked up, e.g. by the code a customer
+     * typed in.
+     */
+    public Evaluation evaluate(Promotion promotion, List<CartItem> items) {
+        return current(promotion).evaluate(basket(items));
+    }
+
+    /**
+     * Evaluates a promotion applied to a cart earlier. One that has since been
+     * deleted or has expired no longer applies.
+     */
+    public Evaluation evaluate(Long promotionId, List<CartItem> items) {
+        return promoCodeIndex.findActiveById(promotionId)
+                .map(promotion -> current(promotion).evaluate(basket(items)))
+                .orElse(Evaluation.rejected(NOT_AVAILABLE));
+    }
+
+    /**
+     * Every active promotion the cart qualifies for, biggest discount first.
+     */
+    public List<Eligible> eligible(List<CartItem> items) {
+        Basket basket = basket(items);
+        List<Eligible> eligible = new ArrayList<>();
+        for (Promotion source : promoCodeIndex.active()) {
+            Evaluation evaluation = current(source).evaluate(basket);
+            if (evaluation.applies() && evaluation.discountCents() > 0) {
+                eligible.add(new Eligible(source.getPromotionId(), source.getCode(), source.getPromotionSummary(),
+                        evaluation.discountCents()));
+            }
+        }
+        eligible.sort(Comparator.comparingLong(Eligible::discountCents).reversed()
+                .thenComparing(Eligible::code, Comparator.nullsLast(Comparator.naturalOrder())));
+        return eligible;
+    }
+
+    private Basket basket(List<CartItem> items) {
+        long subtotal = 0;
+        for (CartItem item : items) {
+            subtotal += item.getLineTotalCents();
+        }
+        return new Basket(items, subtotal, LocalDateTime.now(clock));
+    }
+
+    /**
+     * The compiled form of the promotion, recompiled if the row or the catalog
+     * changed since it was compiled.
+     */
+    private CompiledPromotion current(Promotion promotion) {
+        long version = catalogCache.version();
+        Map<Long, CompiledPromotion> byId = compiled;
+        CompiledPromotion existing = promotion.getPromotionId() == null ? null : byId.get(promotion.getPromotionId());
+        if (existing != null && existing.catalogVersion() == version && existing.source().equals(promotion)) {
+            return existing;
+        }
+        CompiledPromotion fresh = compile(promotion, version, productsByCategory());
+        if (promotion.getPromotionId() != null) {
+            byId.put(promotion.getPromotionId(), fresh);
+        }
+        return fresh;
+    }
+
+    private Map<Long, Set<Long>> productsByCategory() {
+        Map<Long, Set<Long>> byCategory = new HashMap<>();
+        for (Product product : productRepository.findAll()) {
+            if (product.getCategoryId() != null && product.getProductId() != null) {
+                byCategory.computeIfAbsent(product.getCategoryId(), c -> new HashSet<>()).add(product.getProductId());
+            }
+        }
+        return byCategory;
+    }
+
+    private CompiledPromotion compile(Promotion promotion, long catalogVersion, Map<Long, Set<Long>> productsByCategory) {
+        List<Condition> conditions = new ArrayList<>();
+
+        Double minOrderAmt = promotion.getMinOrderAmt();
+        if (minOrderAmt != null) {
+            long minCents = Money.cents(minOrderAmt);
+            String failure = String.format("Minimum order of $%.2f required for this promo.", minOrderAmt);
+            conditions.add(basket -> basket.subtotalCents() < minCents ? failure : null);
+        }
+
+        String definition = promotion.getRuleDefinition();
+        if (definition == null || definition.isBlank()) {
+            long amount = Money.cents(promotion.getDiscountValue());
+            return new CompiledPromotion(promotion, catalogVersion, List.copyOf(conditions), basket -> amount);
+        }
+
+        try {
+            JsonNode rule = objectMapper.readTree(definition);
+            Condition window = timeWindow(rule);
+            if (window != null) {
+                conditions.add(window);
+            }
+            ItemFilter filter = itemFilter(rule, productsByCategory);
+            if (filter != null) {
+                conditions.add(basket -> basket.items().stream().anyMatch(filter::matches) ? null : NO_QUALIFYING_ITEMS);
+            }
+
+            RewardType type = RewardType.valueOf(rule.path("type").asText("FIXED_OFF").trim().toUpperCase(Locale.ROOT));
+            Reward reward = switch (type) {
+                case FIXED_OFF -> {
+                    long amount = Money.cents(number(rule, "amount", promotion.getDiscountValue()));
+                    yield basket -> amount;
+                }
+                case PERCENT_OFF -> percentOff(number(rule, "percent", promotion.getDiscountValue()), filter);
+                case BOGO -> {
+                    conditions.add(basket -> qualifyingUnits(basket, filter) < 2 ? NEEDS_TWO_ITEMS : null);
+                    yield basket -> bogoDiscount(basket, filter);
+                }
+            };
+            return new CompiledPromotion(promotion, catalogVersion, List.copyOf(conditions), reward);
+        } catch (JsonProcessingException | IllegalArgumentException | DateTimeParseException ex) {
+            logger.warn("Promotion {} has an invalid rule, it will not apply: {}", promotion.getCode(), ex.getMessage());
+            return new CompiledPromotion(promotion, catalogVersion, List.of(basket -> NOT_AVAILABLE), basket -> 0);
+        }
+    }
+
+    /**
+     * The rule's number field, or the promotion's discount_value if the rule doesn't set it.
+     */
+    private static BigDecimal number(JsonNode rule, String field, Double discountValue) {
+        JsonNode value = rule.get(field);
+        if (value == null) {
+            if (discountValue == null) {
+                throw new IllegalArgumentException(field + " is not set and there is no discount_value");
+            }
+            return BigDecimal.valueOf(discountValue);
+        }
+        if (!value.isNumber()) {
+            throw new IllegalArgumentException(field + " is not a number: " + value);
+        }
+        return value.decimalValue();
+    }
+
+    private static Reward percentOff(BigDecimal percent, ItemFilter filter) {
+        long ratePpm = Money.ratePpm(percent.movePointLeft(2));
+        if (ratePpm <= 0 || ratePpm > Money.RATE_SCALE) {
+            throw new IllegalArgumentException("percent must be more than 0 and at most 100, was " + percent);
+        }
+        if (filter == null) {
+            return basket -> Money.applyRate(basket.subtotalCents(), ratePpm);
+        }
+        return basket -> {
+            long qualifying = 0;
+            for (CartItem item : basket.items()) {
+                if (filter.matches(item)) {
+                    qualifying += item.getLineTotalCents();
+                }
+            }
+            return Money.applyRate(qualifying, ratePpm);
+        };
+    }
+
+    private static long qualifyingUnits(Basket basket, ItemFilter filter) {
+        long units = 0;
+        for (CartItem item : basket.items()) {
+            if (filter == null || filter.matches(item)) {
+                units += Math.max(0, item.getQuantity());
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Lines up the qualifying units from dearest to cheapest and makes every
+     * second one free, so each pair's cheaper unit is the free one. Works on
+     * lines rather than single units, so a large quantity costs nothing extra.
+     */
+    private static long bogoDiscount(Basket basket, ItemFilter filter) {
+        List<CartItem> qualifying = new ArrayList<>();
+        for (CartItem item : basket.items()) {
+            if ((filter == null || filter.matches(item)) && item.getQuantity() > 0) {
+                qualifying.add(item);
+            }
+        }
+        qualifying.sort(Comparator.comparingLong((CartItem item) -> Money.cents(item.getPrice())).reversed());
+
+        long discount = 0;
+        long position = 0;
+        for (CartItem item : qualifying) {
+            long quantity = item.getQuantity();
+            // Free units are the ones at odd positions in the lineup
+            long free = position % 2 == 0 ? quantity / 2 : (quantity + 1) / 2;
+            discount += free * Money.cents(item.getPrice());
+            position += quantity;
+        }
+        return discount;
+    }
+
+    /**
+     * The items named by the rule, or null if it names none. Categories are
+     * resolved to the products in them now, so matching an item is a set lookup.
+     */
+    private static ItemFilter itemFilter(JsonNode rule, Map<Long, Set<Long>> productsByCategory) {
+        Set<Long> productIds = null;
+        if (rule.has("productIds") || rule.has("categoryIds")) {
+            productIds = new HashSet<>(ids(rule.path("productIds")));
+            for (Long categoryId : ids(rule.path("categoryIds"))) {
+                productIds.addAll(productsByCategory.getOrDefault(categoryId, Set.of()));
+            }
+        }
+        Set<Long> sizeIds = rule.has("sizeIds") ? ids(rule.path("sizeIds")) : null;
+        if (productIds == null && sizeIds == null) {
+            return null;
+        }
+        return new ItemFilter(productIds == null ? null : Set.copyOf(productIds), sizeIds);
+    }
+
+    private static Set<Long> ids(JsonNode array) {
+        if (array.isMissingNode()) {
+            return Set.of();
+        }
+        if (!array.isArray()) {
+            throw new IllegalArgumentException("expected a list of ids, got " + array);
+        }
+        Set<Long> ids = new HashSet<>();
+        for (JsonNode id : array) {
+            if (!id.canConvertToLong()) {
+                throw new IllegalArgumentException("not an id: " + id);
+            }
+            ids.add(id.asLong());
+        }
+        return Set.copyOf(ids);
+    }
+
+    /**
+     * The rule's days and hours, or null if it has neither. {@code from} is
+     * inclusive and {@code to} exclusive; a window whose {@code to} is not after
+     * its {@code from} runs past midnight, and the hours after midnight belong
+     * to the day the window started.
+     */
+    private static Condition timeWindow(JsonNode rule) {
+        Set<DayOfWeek> days = rule.has("days") ? days(rule.get("days")) : null;
+        LocalTime from = rule.hasNonNull("from") ? LocalTime.parse(rule.get("from").asText()) : null;
+        LocalTime to = rule.hasNonNull("to") ? LocalTime.parse(rule.get("to").asText()) : null;
+        if (days == null && from == null && to == null) {
+            return null;
+        }
+        LocalTime start = from == null ? LocalTime.MIDNIGHT : from;
+        boolean overnight = to != null && !to.isAfter(start);
+
+        return basket -> {
+            LocalTime time = basket.now().toLocalTime();
+            DayOfWeek day = basket.now().getDayOfWeek();
+            boolean inHours;
+            if (!overnight) {
+                inHours = !time.isBefore(start) && (to == null || time.isBefore(to));
+            } else if (!time.isBefore(start)) {
+                inHours = true;
+            } else if (time.isBefore(to)) {
+                inHours = true;
+                day = day.minus(1);
+            } else {
+                inHours = false;
+            }
+            return inHours && (days == null || days.contains(day)) ? null : NOT_NOW;
+        };
+    }
+
+    private static Set<DayOfWeek> days(JsonNode array) {
+        if (!array.isArray()) {
+            throw new IllegalArgumentException("expected a list of days, got " + array);
+        }
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (JsonNode node : array) {
+            days.add(day(node.asText()));
+        }
+        return days;
+    }
+
+    /**
+     * A day of the week from its full English name or its first three letters.
+     */
+    private static DayOfWeek day(String text) {
+        String name = text.trim().toUpperCase(Locale.ROOT);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (name.length() >= 3 && day.name().startsWith(name)) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("not a day of the week: " + text);
+    }
+}
@@ -0,0 +1,173 @@
+package com.pizzastore.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the SQL statements each HTTP request runs and how long they take.
+ * QueryCountingListener reports every jOOQ statement here; QueryBudgetFilter
+ * opens and closes the per-request scope. A request that runs more than
+ * {@code db.query-budget.max-queries} statements or spends more than
+ * {@code db.query-budget.max-millis} in the database is logged with its
+ * statements grouped by fingerprint, which makes N+1 loops stand out as one
+ * line with a large count.
+ * Statements slower than {@code db.slow-query-ms}, from requests or background
+ * jobs alike, are aggregated by fingerprint for /api/admin/metrics.
+ * Fingerprinting costs a few regex passes, so it is only done for slow
+ * statements and for requests that are about to be logged; the rest only
+ * count their statements by SQL text.
+ */
+@Service
+public class QueryStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryStatsService.class);
+
+    private static final int MAX_LOGGED_STATEMENTS = 10;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern VALUES_ROWS = Pattern.compile("(\\(\\?\\+?\\))(?:\\s*,\\s*\\(\\?\\+?\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Aggregated timings for one statement shape. Times are in milliseconds.
+     */
+    public record SlowQuery(String fingerprint, long count, double totalMs, double meanMs, double maxMs) {}
+
+    /**
+     * Statements run by the current request so far, counted by SQL text.
+     */
+    private static final class RequestQueries {
+        int count;
+        long nanos;
+        final Map<String, Integer> bySql = new LinkedHashMap<>();
+    }
+
+    private static final class SlowStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    private final ThreadLocal<RequestQueries> current = new ThreadLocal<>();
+    private final Map<String, SlowStats> slowQueries = new ConcurrentHashMap<>();
+
+    @Value("${db.query-budget.max-queries:20}")
+    private int maxQueriesPerRequest = 20;
+
+    @Value("${db.query-budget.max-millis:500}")
+    private long maxMillisPerRequest = 500;
+
+    @Value("${db.slow-query-ms:100}")
+    private long slowQueryMillis = 100;
+
+    @Value("${db.slow-query.max-fingerprints:200}")
+    private int maxFingerprints = 200;
+
+    public void beginRequest() {
+        current.set(new RequestQueries());
+    }
+
+    /**
+     * Closes the current request's scope and logs it if it went over budget.
+     *
+     * @param request shown in the log line, e.g. "GET /api/orders/history"
+     * @return true when the request went over budget
+     */
+    public boolean endRequest(String request) {
+        RequestQueries queries = current.get();
+        current.remove();
+        if (queries == null) {
+            return false;
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(queries.nanos);
+        if (queries.count <= maxQueriesPerRequest && millis <= maxMillisPerRequest) {
+            return false;
+        }
+        Map<String, Integer> byFingerprint = new LinkedHashMap<>();
+        queries.bySql.forEach((sql, count) -> byFingerprint.merge(fingerprint(sql), count, Integer::sum));
+        String statements = byFingerprint.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(MAX_LOGGED_STATEMENTS)
+                .map(e -> "\n  " + e.getValue() + "x " + e.getKey())
+                .collect(Collectors.joining());
+        logger.warn("{} ran {} queries in {} ms (budget {} queries, {} ms):{}",
+                request, queries.count, millis, maxQueriesPerRequest, maxMillisPerRequest, statements);
+        return true;
+    }
+
+    /**
+     * Records one executed statement. Called from the jOOQ listener on the thread that ran it.
+     */
+    public void record(String sql, long nanos) {
+        RequestQueries queries = current.get();
+        if (queries != null) {
+            queries.count++;
+            queries.nanos += nanos;
+            queries.bySql.merge(sql, 1, Integer::sum);
+        }
+
+        if (TimeUnit.NANOSECONDS.toMillis(nanos) >= slowQueryMillis) {
+            String fingerprint = fingerprint(sql);
+            SlowStats stats = slowQueries.get(fingerprint);
+            if (stats == null) {
+                if (slowQueries.size() >= maxFingerprints) {
+                    return; // keep the map bounded; the worst offenders are already in it
+                }
+                stats = slowQueries.computeIfAbsent(fingerprint, f -> new SlowStats());
+            }
+            stats.count.increment();
+            stats.nanos.add(nanos);
+            stats.maxNanos.accumulate(nanos);
+        }
+    }
+
+    /**
+     * Slow statements grouped by fingerprint, most total time first.
+     */
+    public List<SlowQuery> slowQueries() {
+        List<SlowQuery> result = new ArrayList<>();
+        slowQueries.forEach((fingerprint, stats) -> {
+            long count = stats.count.sum();
+            double totalMs = stats.nanos.sum() / 1_000_000.0;
+            result.add(new SlowQuery(fingerprint, count, round(totalMs),
+                    round(count == 0 ? 0 : totalMs / count), round(stats.maxNanos.get() / 1_000_000.0)));
+        });
+        result.sort(Comparator.comparingDouble(SlowQuery::totalMs).reversed());
+        return result;
+    }
+
+    /**
+     * Reduces a statement to its shape: literals become ?, IN lists and multi-row
+     * VALUES collapse to one entry, whitespace is normalised and the text is lower-cased.
+     * Statements that only differ in their values or list lengths share a fingerprint.
+     */
+    static String fingerprint(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim().toLowerCase();
+        s = PLACEHOLDER_LIST.matcher(s).replaceAll("?+");
+        s = VALUES_ROWS.matcher(s).replaceAll("$1+");
+        return s;
+    }
+
+    private static double round(double ms) {
+        return Math.round(ms * 100) / 100.0;
+    }
+}
@@ -0,0 +1,164 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.Product;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.ReportingRepository;
+import com.pizzastore.repository.ReportingRepository.OrderTotals;
+import com.pizzastore.repository.ReportingRepository.ProductUnits;
+import com.pizzastore.repository.SalesRollupRepository.Dimension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the manager dashboard figures.
+ * Sales figures are read from the sales_rollup table, which SalesRollupService
+ * keeps up to date as orders are placed, so a refresh sums a row per day (or
+ * per product per day) instead of aggregating every order ever placed.
+ * Refreshes happen at most once per refresh interval; in between, callers get
+ * the last computed summary.
+ */
+@Service
+public class ReportingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportingService.class);
+
+    static final String CUSTOM_PIZZA = "Custom Pizza";
+    static final int ACTIVE_CUSTOMER_DAYS = 30;
+
+    @Value("${reports.refresh-interval-ms:30000}")
+    private long refreshIntervalMs = 30000;
+
+    private final ReportingRepository reportingRepository;
+    private final ProductRepository productRepository;
+    private final Clock clock;
+
+    /**
+     * One product line in the top-sellers list.
+     */
+    public record ProductSales(String name, long units) {}
+
+    /**
+     * Figures shown on the dashboard, computed at one refresh.
+     */
+    private record Summary(long totalOrders,
+                           BigDecimal revenueThisMonth,
+                           BigDecimal averageOrderValue,
+                           List<ProductSales> topProducts,
+                           long activeCustomers,
+                           Instant computedAt) {}
+
+    private volatile Summary summary;
+
+    @Autowired
+    public ReportingService(ReportingRepository reportingRepository, ProductRepository productRepository) {
+        this(reportingRepository, productRepository, Clock.systemDefaultZone());
+    }
+
+    ReportingService(ReportingRepository reportingRepository, ProductRepository productRepository, Clock clock) {
+        this.reportingRepository = reportingRepository;
+        this.productRepository = productRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * The dashboard report as a list of name/value pairs.
+     */
+    public List<Map<String, Object>> getReports() {
+        Summary s = currentSummary();
+
+        List<Map<String, Object>> reports = new ArrayList<>();
+        reports.add(report("Total Orders", s.totalOrders()));
+        reports.add(report("Revenue This Month", s.revenueThisMonth()));
+        reports.add(report("Average Order Value", s.averageOrderValue()));
+        reports.add(report("Top Selling Pizza", s.topProducts().isEmpty() ? "N/A" : s.topProducts().get(0).name()));
+        reports.add(report("Active Customers", s.activeCustomers()));
+        return reports;
+    }
+
+    /**
+     * Best-selling products by units sold, most popular first. Custom pizzas are
+     * counted together as a single "Custom Pizza" line.
+     */
+    public List<ProductSales> getTopProducts(int limit) {
+        List<ProductSales> top = currentSummary().topProducts();
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    private Summary currentSummary() {
+        Summary s = summary;
+        if (s == null || !s.computedAt().plusMillis(refreshIntervalMs).isAfter(clock.instant())) {
+            s = refresh();
+        }
+        return s;
+    }
+
+    synchronized Summary refresh() {
+        // Another thread may have refreshed while we waited for the lock.
+        Instant now = clock.instant();
+        if (summary != null && summary.computedAt().plusMillis(refreshIntervalMs).isAfter(now)) {
+            return summary;
+        }
+        logger.info("Refreshing dashboard figures");
+
+        OrderTotals allTime = reportingRepository.findOrderTotals(null);
+        LocalDateTime monthStart = YearMonth.now(clock).atDay(1).atStartOfDay();
+        BigDecimal revenueThisMonth = reportingRepository.findOrderTotals(monthStart).revenue()
+                .setScale(2, RoundingMode.HALF_UP);
+        BigDecimal averageOrderValue = allTime.orderCount() == 0
+                ? BigDecimal.ZERO.setScale(2)
+                : allTime.revenue().divide(BigDecimal.valueOf(allTime.orderCount()), 2, RoundingMode.HALF_UP);
+
+        LocalDateTime activeSince = LocalDateTime.now(clock).minusDays(ACTIVE_CUSTOMER_DAYS);
+        long activeCustomers = reportingRepository.countActiveCustomers(activeSince);
+
+        summary = new Summary(allTime.orderCount(), revenueThisMonth, averageOrderValue,
+                topProducts(), activeCustomers, now);
+        return summary;
+    }
+
+    private List<ProductSales> topProducts() {
+        Map<Long, String> names = productRepository.findAll().stream()
+                .collect(Collectors.toMap(Product::getProductId, Product::getProductName, (a, b) -> a));
+
+        Map<String, Long> unitsByName = new LinkedHashMap<>();
+        for (ProductUnits p : reportingRepository.findProductUnits()) {
+            if (p.units() <= 0) {
+                continue;
+            }
+            String name = p.dimension() == Dimension.CUSTOM
+                    ? CUSTOM_PIZZA
+                    : names.getOrDefault(p.productId(), "Product #" + p.productId());
+            unitsByName.merge(name, p.units(), Long::sum);
+        }
+
+        return unitsByName.entrySet().stream()
+                .map(e -> new ProductSales(e.getKey(), e.getValue()))
+                .sorted(Comparator.comparingLong(ProductSales::units).reversed()
+                        .thenComparing(ProductSales::name))
+                .toList();
+    }
+
+    private Map<String, Object> report(String name, Object value) {
+        Map<String, Object> r = new HashMap<>();
+        r.put("name", name);
+        r.put("value", value);
+        return r;
+    }
+}
@@ -0,0 +1,228 @@
+package com.pizzastore.service;
+
+import com.pizzastore.event.OrderPlacedEvent;
+import com.pizzastore.model.CartItem;
+import com.pizzastore.repository.SalesRollupRepository;
+import com.pizzastore.repository.SalesRollupRepository.Dimension;
+import com.pizzastore.repository.SalesRollupRepository.RollupDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the sales_rollup table up to date as orders are placed.
+ * Every committed checkout leads to an OrderPlacedEvent; this service adds it
+ * to in-memory counters (orders and revenue per day, units and revenue per
+ * product per day) and a scheduled flush writes the accumulated deltas to the
+ * table in one statement. The counters are LongAdders so concurrent checkouts
+ * never contend on a lock.
+ * Events are delivered at least once (a batch that fails on any sink is sent
+ * to every sink again), so each order id counted is remembered for
+ * {@code sales.rollup.dedupe-window-hours} after the order was placed and a
+ * repeat within that window is dropped.
+ * On startup the days before the current one that no earlier startup rebuilt are
+ * rebuilt from the orders table, which also repairs deltas for those days lost by
+ * a crash before their flush. The current day is left to the live counters of
+ * the instances running it, so a startup never wipes out what they flushed.
+ * Orders placed today before this instance started are counted by the instance
+ * that took them; if it crashed before flushing them, or on the very first
+ * deployment, they are missing from the rollup until a startup on a later day
+ * rebuilds today.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupService.class);
+
+    private static final Duration CLOSED_BUCKET_GRACE = Duration.ofMinutes(5);
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final Clock clock;
+
+    /**
+     * Orders placed from this midnight on are counted live; the days before it come from the startup rebuild.
+     */
+    private final LocalDateTime countingSince;
+
+    private volatile boolean rebuilt = false;
+
+    private record BucketKey(LocalDateTime bucketStart, Dimension dimension, long productId) {}
+
+    private static final class Counters {
+        final LongAdder orders = new LongAdder();
+        final LongAdder units = new LongAdder();
+        final LongAdder revenueCents = new LongAdder();
+    }
+
+    private final Map<BucketKey, Counters> pending = new ConcurrentHashMap<>();
+
+    /** Order ids already counted, with when each order was placed. */
+    private final Map<Long, LocalDateTime> counted = new ConcurrentHashMap<>();
+
+    @Value("${sales.rollup.dedupe-window-hours:24}")
+    private long dedupeWindowHours = 24;
+
+    @Autowired
+    public SalesRollupService(SalesRollupRepository salesRollupRepository) {
+        this(salesRollupRepository, Clock.systemDefaultZone());
+    }
+
+    SalesRollupService(SalesRollupRepository salesRollupRepository, Clock clock) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.clock = clock;
+        // Just after midnight other instances may still be flushing yesterday, so it stays live a little longer
+        this.countingSince = LocalDateTime.now(clock).minus(CLOSED_BUCKET_GRACE).truncatedTo(ChronoUnit.DAYS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuildIfNeeded();
+    }
+
+    @EventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        LocalDateTime placedAt = event.orderTimestamp() != null ? event.orderTimestamp() : LocalDateTime.now(clock);
+        if (placedAt.isBefore(countingSince)) {
+            return; // already covered by the startup rebuild
+        }
+        if (event.orderId() != null && counted.putIfAbsent(event.orderId(), placedAt) != null) {
+            logger.debug("Order {} already counted, ignoring repeated event", event.orderId());
+            return;
+        }
+
+        Counters order = counters(placedAt, Dimension.ORDER, 0);
+        order.orders.increment();
+        order.revenueCents.add(toCents(event.totalAmount()));
+
+        if (event.items() == null) {
+            return;
+        }
+        for (CartItem item : event.items()) {
+            int quantity = item.getQuantity();
+            long lineCents = toCents(item.getPrice() != null ? BigDecimal.valueOf(item.getPrice()) : null) * quantity;
+            Counters c = item.getProductId() != null
+                    ? counters(placedAt, Dimension.PRODUCT, item.getProductId())
+                    : counters(placedAt, Dimension.CUSTOM, 0);
+            c.units.add(quantity);
+            c.revenueCents.add(lineCents);
+        }
+    }
+
+    /**
+     * Writes everything counted since the last flush to the sales_rollup table.
+     * If the write fails the drained amounts are put back and go out with the next flush.
+     *
+     * @return the number of rows written
+     */
+    @Scheduled(fixedDelayString = "${sales.rollup.flush-interval-ms:15000}")
+    public synchronized int flush() {
+        if (!rebuildIfNeeded()) {
+            return 0;
+        }
+
+        Map<BucketKey, RollupDelta> drained = new HashMap<>();
+        for (Map.Entry<BucketKey, Counters> e : pending.entrySet()) {
+            BucketKey key = e.getKey();
+            Counters c = e.getValue();
+            long orders = c.orders.sumThenReset();
+            long units = c.units.sumThenReset();
+            long cents = c.revenueCents.sumThenReset();
+            if (orders != 0 || units != 0 || cents != 0) {
+                drained.put(key, new RollupDelta(key.bucketStart(), key.dimension(),
+                        key.productId(), orders, units, BigDecimal.valueOf(cents, 2)));
+            }
+        }
+
+        try {
+            salesRollupRepository.addAll(new ArrayList<>(drained.values()));
+        } catch (RuntimeException ex) {
+            logger.error("Failed to flush {} sales rollup rows, will retry", drained.size(), ex);
+            drained.forEach((key, d) -> {
+                Counters c = pending.computeIfAbsent(key, k -> new Counters());
+                c.orders.add(d.orderCount());
+                c.units.add(d.units());
+                c.revenueCents.add(d.revenue().movePointRight(2).longValueExact());
+            });
+            return 0;
+        }
+
+        dropClosedBuckets();
+        forgetOldOrders();
+        return drained.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private boolean rebuildIfNeeded() {
+        if (rebuilt) {
+            return true;
+        }
+        synchronized (this) {
+            if (!rebuilt) {
+                try {
+                    salesRollupRepository.rebuildBefore(countingSince);
+                    rebuilt = true;
+                } catch (RuntimeException ex) {
+                    logger.error("Failed to rebuild sales rollup, will retry on next flush", ex);
+                }
+            }
+            return rebuilt;
+        }
+    }
+
+    /**
+     * Counters for buckets that ended a while ago will not be written to again
+     * once flushed, so they are removed to keep the map at a handful of entries.
+     * The grace period covers checkouts that stamped their order just before a
+     * bucket boundary but publish their event just after it.
+     */
+    private void dropClosedBuckets() {
+        LocalDateTime closedBefore = LocalDateTime.now(clock).minus(CLOSED_BUCKET_GRACE);
+        pending.forEach((key, c) -> {
+            if (bucketStart(closedBefore).isAfter(key.bucketStart())
+                    && c.orders.sum() == 0 && c.units.sum() == 0 && c.revenueCents.sum() == 0) {
+                pending.remove(key, c);
+            }
+        });
+    }
+
+    private void forgetOldOrders() {
+        LocalDateTime cutoff = LocalDateTime.now(clock).minusHours(dedupeWindowHours);
+        counted.values().removeIf(placedAt -> placedAt.isBefore(cutoff));
+    }
+
+    private Counters counters(LocalDateTime placedAt, Dimension dimension, long productId) {
+        BucketKey key = new BucketKey(bucketStart(placedAt), dimension, productId);
+        return pending.computeIfAbsent(key, k -> new Counters());
+    }
+
+    private static LocalDateTime bucketStart(LocalDateTime at) {
+        return at.truncatedTo(ChronoUnit.DAYS);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,209 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.Money;
+import com.pizzastore.model.RestaurantInfo;
+import com.pizzastore.repository.RestaurantInfoRepository;
+import com.pizzastore.repository.TaxRateRepository;
+import com.pizzastore.repository.TaxRateRepository.TaxRate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sales tax rates by place, from the tax_rates table.
+ * The table is read at startup and every {@code tax.rates.refresh-interval-ms}
+ * into an in-memory lookup: per state, the ZIP ranges sorted by their first ZIP
+ * in parallel arrays, searched with a binary search, plus the state-wide rate.
+ * A lookup never touches the database. A ZIP with no range of its own gets its
+ * state's rate, and a state with no rows gets {@code tax.default-rate}.
+ * Carts and pickup orders are taxed at the restaurant's location, delivery
+ * orders at the delivery address.
+ * Rates are in parts per million, ready for {@link Money#applyRate}.
+ */
+@Service
+public class TaxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaxService.class);
+
+    /**
+     * One state's rates. Range i covers ZIPs zipFrom[i]..zipTo[i] at ratePpm[i];
+     * ranges are sorted by zipFrom and don't overlap. statePpm is -1 if the state
+     * has no state-wide rate.
+     */
+    private record StateRates(long statePpm, int[] zipFrom, int[] zipTo, long[] ratePpm) {}
+
+    private record RateTable(Map<String, StateRates> states, String restaurantState, String restaurantZip,
+                             long defaultPpm) {}
+
+    private final TaxRateRepository taxRateRepository;
+    private final RestaurantInfoRepository restaurantInfoRepository;
+
+    /** Null until the first refresh. */
+    private volatile RateTable rates;
+
+    @Value("${tax.default-rate:0.08}")
+    private BigDecimal defaultRate = new BigDecimal("0.08");
+
+    public TaxService(TaxRateRepository taxRateRepository, RestaurantInfoRepository restaurantInfoRepository) {
+        this.taxRateRepository = taxRateRepository;
+        this.restaurantInfoRepository = restaurantInfoRepository;
+    }
+
+    /**
+     * Reloads the rates and the restaurant's location. If the database can't be
+     * read, the rates already loaded stay in use.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${tax.rates.refresh-interval-ms:3600000}",
+            fixedDelayString = "${tax.rates.refresh-interval-ms:3600000}")
+    public void refresh() {
+        try {
+            List<TaxRate> rows = taxRateRepository.findAll();
+            List<RestaurantInfo> restaurant = restaurantInfoRepository.findRestaurantInfo();
+            RestaurantInfo location = restaurant.isEmpty() ? null : restaurant.get(0);
+            rates = new RateTable(index(rows),
+                    location == null ? null : normalizeState(location.getState()),
+                    location == null ? null : location.getZipCode(),
+                    Money.ratePpm(defaultRate));
+            logger.info("Loaded {} tax rates", rows.size());
+        } catch (RuntimeException ex) {
+            logger.error("Could not load tax rates, keeping the ones already loaded", ex);
+        }
+    }
+
+    /**
+     * The rate at the restaurant's location, for carts and pickup orders.
+     */
+    public long restaurantRatePpm() {
+        RateTable table = current();
+        return lookup(table, table.restaurantState(), table.restaurantZip());
+    }
+
+    /**
+     * The rate for a delivery to the given state and ZIP. Only the first five
+     * digits of the ZIP are used; an unreadable ZIP gets the state-wide rate.
+     */
+    public long ratePpm(String state, String zip) {
+        return lookup(current(), normalizeState(state), zip);
+    }
+
+    private RateTable current() {
+        RateTable table = rates;
+        // Nothing loaded yet: everything is taxed at the default rate
+        return table != null ? table : new RateTable(Map.of(), null, null, Money.ratePpm(defaultRate));
+    }
+
+    private long lookup(RateTable table, String state, String zip) {
+        StateRates stateRates = state == null ? null : table.states().get(state);
+        if (stateRates == null) {
+            return table.defaultPpm();
+        }
+        int zip5 = zip5(zip);
+        if (zip5 >= 0) {
+            int i = lastStartingAtOrBefore(stateRates.zipFrom(), zip5);
+            if (i >= 0 && zip5 <= stateRates.zipTo()[i]) {
+                return stateRates.ratePpm()[i];
+            }
+        }
+        return stateRates.statePpm() >= 0 ? stateRates.statePpm() : table.defaultPpm();
+    }
+
+    private static int lastStartingAtOrBefore(int[] starts, int zip) {
+        int low = 0;
+        int high = starts.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= zip) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static Map<String, StateRates> index(List<TaxRate> rows) {
+        Map<String, List<TaxRate>> byState = new HashMap<>();
+        for (TaxRate row : rows) {
+            String state = normalizeState(row.state());
+            if (state != null && row.rate() != null) {
+                byState.computeIfAbsent(state, s -> new ArrayList<>()).add(row);
+            }
+        }
+
+        Map<String, StateRates> states = new HashMap<>();
+        byState.forEach((state, stateRows) -> {
+            long statePpm = -1;
+            List<TaxRate> ranges = new ArrayList<>();
+            for (TaxRate row : stateRows) {
+                if (row.zipFrom() == null && row.zipTo() == null) {
+                    statePpm = Money.ratePpm(row.rate());
+                } else if (zip5(row.zipFrom()) >= 0 && zip5(row.zipTo()) >= zip5(row.zipFrom())) {
+                    ranges.add(row);
+                } else {
+                    logger.warn("Ignoring tax rate for {} with bad ZIP range {}-{}", state, row.zipFrom(), row.zipTo());
+                }
+            }
+            ranges.sort(Comparator.comparingInt(r -> zip5(r.zipFrom())));
+
+            int[] from = new int[ranges.size()];
+            int[] to = new int[ranges.size()];
+            long[] ppm = new long[ranges.size()];
+            int n = 0;
+            for (TaxRate range : ranges) {
+                if (n > 0 && zip5(range.zipFrom()) <= to[n - 1]) {
+                    logger.warn("Ignoring tax rate for {} {}-{}: overlaps another range", state, range.zipFrom(), range.zipTo());
+                    continue;
+                }
+                from[n] = zip5(range.zipFrom());
+                to[n] = zip5(range.zipTo());
+                ppm[n] = Money.ratePpm(range.rate());
+                n++;
+            }
+            states.put(state, new StateRates(statePpm,
+                    Arrays.copyOf(from, n), Arrays.copyOf(to, n), Arrays.copyOf(ppm, n)));
+        });
+        return Map.copyOf(states);
+    }
+
+    private static String normalizeState(String state) {
+        return state == null || state.isBlank() ? null : state.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * The first five characters of the ZIP as a number, or -1 if they aren't all digits.
+     */
+    private static int zip5(String zip) {
+        if (zip == null) {
+            return -1;
+        }
+        String trimmed = zip.trim();
+        if (trimmed.length() < 5) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            char c = trimmed.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,39 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.Money;
+
+/**
+ * Works out subtotal, discount, tax and total, all in cents (see {@link Money}).
+ * The cart summary, the checkout summary, the order written at checkout and the
+ * order history all go through here, so they can't disagree by a cent.
+ * Tax is charged on the subtotal after the discount, and a discount never takes
+ * the subtotal below zero.
+ */
+public final class TotalsCalculator {
+
+    public record Totals(long subtotal, long discount, long tax, long total) {}
+
+    private TotalsCalculator() {
+    }
+
+    /**
+     * Totals for a cart, taxed at the given rate (see {@link TaxService}).
+     */
+    public static Totals totals(long subtotal, long discount, long taxRatePpm) {
+        long applied = Math.max(0, Math.min(discount, subtotal));
+        long taxable = subtotal - applied;
+        long tax = Money.applyRate(taxable, taxRatePpm);
+        return new Totals(subtotal, applied, tax, taxable + tax);
+    }
+
+    /**
+     * Totals for an order that was already placed. The tax is whatever the stored
+     * total charged on top of the discounted subtotal, so the rate in force when
+     * the order was placed doesn't need to be known.
+     */
+    public static Totals placed(long subtotal, long discount, long total) {
+        long applied = Math.max(0, Math.min(discount, subtotal));
+        long tax = Math.max(0, total - (subtotal - applied));
+        return new Totals(subtotal, applied, tax, total);
+    }
+}
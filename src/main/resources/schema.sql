@@ -0,0 +1,85 @@
+-- Schema objects owned by the application itself. Everything here must be idempotent:
+-- this script runs on startup when SQL_INIT_MODE=always (see application.properties).
+
+-- Keyset pagination of order history (OrderRepository.findPageByCustomerId) walks
+-- one customer's orders newest first; this index serves each page as a range scan.
+CREATE INDEX IF NOT EXISTS orders_customer_timestamp_idx
+    ON orders (customer_id, order_timestamp DESC, order_id DESC);
+
+-- Pre-aggregated daily sales counters, written by SalesRollupService.
+--   bucket_start: midnight of the day the orders were placed
+--   dimension:    ORDER (whole orders), PRODUCT (one menu product) or CUSTOM (custom pizzas)
+--   product_id:   the product for PRODUCT rows, 0 otherwise
+CREATE TABLE IF NOT EXISTS sales_rollup (
+    bucket_start TIMESTAMP      NOT NULL,
+    dimension    VARCHAR(16)    NOT NULL,
+    product_id   BIGINT         NOT NULL DEFAULT 0,
+    order_count  BIGINT         NOT NULL DEFAULT 0,
+    units        BIGINT         NOT NULL DEFAULT 0,
+    revenue      NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, dimension, product_id)
+);
+
+-- Single row (watermark_id = 1): sales_rollup holds rebuilt totals for every day
+-- before rebuilt_before, or for no day yet while it is NULL. Startups lock this row,
+-- so concurrent rebuilds run one after the other.
+CREATE TABLE IF NOT EXISTS sales_rollup_watermark (
+    watermark_id   INT       PRIMARY KEY,
+    rebuilt_before TIMESTAMP
+);
+INSERT INTO sales_rollup_watermark (watermark_id, rebuilt_before)
+SELECT 1, NULL WHERE NOT EXISTS (SELECT 1 FROM sales_rollup_watermark WHERE watermark_id = 1);
+
+-- Checkout results by Idempotency-Key, written by IdempotencyService when
+-- checkout.idempotency.table-backed=true. A row with a NULL order_id is a checkout
+-- that is still running; another request may take it over once the pending lease
+-- has passed. Rows older than the TTL are swept.
+CREATE TABLE IF NOT EXISTS checkout_idempotency (
+    customer_id     BIGINT         NOT NULL,
+    idempotency_key VARCHAR(255)   NOT NULL,
+    request_hash    INTEGER        NOT NULL,
+    order_id        BIGINT,
+    status          VARCHAR(32),
+    delivery_method VARCHAR(16),
+    total           NUMERIC(10, 2),
+    message         VARCHAR(255),
+    created_at      TIMESTAMP      NOT NULL,
+    PRIMARY KEY (customer_id, idempotency_key)
+);
+
+-- Order lifecycle events, written in the same transaction as the order change and
+-- published by OrderEventRelay. A row is deleted once published; a failed row is pushed
+-- back by moving available_at and counting the attempt. Card details are never stored here.
+CREATE TABLE IF NOT EXISTS order_outbox (
+    outbox_id    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id     BIGINT       NOT NULL,
+    event_type   VARCHAR(32)  NOT NULL,
+    payload      TEXT         NOT NULL,
+    created_at   TIMESTAMP    NOT NULL,
+    available_at TIMESTAMP    NOT NULL,
+    attempts     INTEGER      NOT NULL DEFAULT 0,
+    last_error   VARCHAR(500)
+);
+
+CREATE INDEX IF NOT EXISTS order_outbox_available_idx ON order_outbox (available_at, outbox_id);
+
+-- Sales tax rates, read by TaxService. A row with zip_from/zip_to applies to that inclusive
+-- range of 5-digit ZIP codes in the state; a row without them is the state-wide rate.
+-- rate is a fraction (0.08875 for 8.875%). Places with no matching row use tax.default-rate.
+CREATE TABLE IF NOT EXISTS tax_rates (
+    tax_rate_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    state       VARCHAR(2)    NOT NULL,
+    zip_from    VARCHAR(5),
+    zip_to      VARCHAR(5),
+    rate        NUMERIC(7, 6) NOT NULL
+);
+
+-- Extra rules for a promotion, read by PromotionEngine. definition is a JSON object, e.g.
+--   {"type": "PERCENT_OFF", "percent": 20, "categoryIds": [1], "sizeIds": [3]}
+--   {"type": "BOGO", "productIds": [2, 5]}
+--   {"type": "FIXED_OFF", "days": ["MON", "TUE"], "from": "14:00", "to": "17:00"}
+-- A promotion without a row here is a fixed discount_value off, as before.
+CREATE TABLE IF NOT EXISTS promotion_rules (
+    promotion_id BIGINT PRIMARY KEY,
+    definition   TEXT   NOT NULL
+);
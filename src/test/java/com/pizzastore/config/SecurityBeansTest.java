@@ -0,0 +1,49 @@
+package com.pizzastore.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityBeansTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void chooseStrength_picksHighestStrengthWithinTarget() {
+        // 60 ms at strength 10 -> 120 ms at 11, 240 ms at 12, 480 ms at 13
+        assertEquals(12, SecurityBeans.chooseStrength(250, strength -> 60 * MS));
+    }
+
+    @Test
+    void chooseStrength_neverGoesBelowMinimum() {
+        assertEquals(SecurityBeans.MIN_STRENGTH, SecurityBeans.chooseStrength(100, strength -> 500 * MS));
+    }
+
+    @Test
+    void chooseStrength_neverGoesAboveMaximum() {
+        assertEquals(SecurityBeans.MAX_STRENGTH, SecurityBeans.chooseStrength(10_000, strength -> MS));
+    }
+
+    @Test
+    void passwordEncoder_acceptsLegacyHashesAndFlagsThemForUpgrade() {
+        PasswordEncoder encoder = new SecurityBeans().passwordEncoder(SecurityBeans.CostProfile.LOW, 4);
+        String legacy = new BCryptPasswordEncoder(4).encode("Pizza123!");
+
+        assertTrue(encoder.matches("Pizza123!", legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+    }
+
+    @Test
+    void passwordEncoder_flagsLowerStrengthForUpgrade() {
+        PasswordEncoder weak = new SecurityBeans().passwordEncoder(SecurityBeans.CostProfile.LOW, 4);
+        PasswordEncoder strong = new SecurityBeans().passwordEncoder(SecurityBeans.CostProfile.LOW, 5);
+        String hash = weak.encode("Pizza123!");
+
+        assertTrue(hash.startsWith("{bcrypt}"));
+        assertFalse(weak.upgradeEncoding(hash));
+        assertTrue(strong.upgradeEncoding(hash));
+        assertTrue(strong.matches("Pizza123!", hash));
+    }
+}
@@ -0,0 +1,244 @@
+package com.pizzastore.config;
+
+import com.pizzastore.service.MetricsService;
+import com.pizzastore.service.MetricsService.Kind;
+import com.pizzastore.service.MetricsService.TimerStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingAspectTest {
+
+    @RestController
+    public static class SampleController {
+        public ResponseEntity<String> ok() {
+            return ResponseEntity.ok("ok");
+        }
+
+        public ResponseEntity<String> serverError() {
+            return ResponseEntity.internalServerError().build();
+        }
+
+        public ResponseEntity<String> badRequest() {
+            return ResponseEntity.badRequest().build();
+        }
+
+        public ResponseEntity<String> busy() {
+            throw new IllegalStateException("busy");
+        }
+
+        @ExceptionHandler(IllegalStateException.class)
+        public ResponseEntity<String> handleBusy(IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+    }
+
+    @Repository
+    public static class SampleRepository {
+        private final DSLContext dsl;
+
+        public SampleRepository(DSLContext dsl) {
+            this.dsl = dsl;
+        }
+
+        public int save() {
+            return dsl.execute("insert into sample values (1)") + dsl.execute("insert into sample values (2)");
+        }
+
+        public int cached() {
+            return 1;
+        }
+
+        public int fail() {
+            return dsl.execute("insert into broken values (1)");
+        }
+    }
+
+    private MetricsService metrics;
+    private TimingAspect aspect;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsService(new SimpleMeterRegistry());
+        aspect = new TimingAspect(metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return factory.getProxy();
+    }
+
+    private static MockHttpServletRequest currentRequest(String method, String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/ignored");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        return request;
+    }
+
+    private static MockHttpServletResponse status(int status) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(status);
+        return response;
+    }
+
+    @Test
+    void endpoint_namedByMethodAndMappingPattern() {
+        currentRequest("POST", "/api/checkout/process");
+
+        proxy(new SampleController()).ok();
+
+        TimerStats stats = metrics.snapshot(Kind.HTTP).get(0);
+        assertEquals("POST /api/checkout/process", stats.name());
+        assertEquals(1, stats.count());
+        assertEquals(0, stats.errors());
+    }
+
+    @Test
+    void endpoint_5xxCountsAsError_4xxDoesNot() {
+        currentRequest("GET", "/api/orders/history");
+        SampleController controller = proxy(new SampleController());
+
+        controller.serverError();
+        controller.badRequest();
+
+        TimerStats stats = metrics.snapshot(Kind.HTTP).get(0);
+        assertEquals(2, stats.count());
+        assertEquals(1, stats.errors());
+    }
+
+    @Test
+    void endpoint_exceptionHandledAs4xx_isNotAnError() throws Exception {
+        MockHttpServletRequest request = currentRequest("POST", "/api/signIn/customer");
+        SampleController controller = proxy(new SampleController());
+
+        assertThrows(IllegalStateException.class, controller::busy);
+        assertTrue(metrics.snapshot(Kind.HTTP).stream().allMatch(stats -> stats.count() == 0));
+
+        aspect.interceptor().afterCompletion(request, status(429), controller, null);
+
+        TimerStats stats = metrics.snapshot(Kind.HTTP).get(0);
+        assertEquals("POST /api/signIn/customer", stats.name());
+        assertEquals(1, stats.count());
+        assertEquals(0, stats.errors());
+        assertEquals(0, stats.inFlight());
+    }
+
+    @Test
+    void endpoint_exceptionHandledAs5xx_isAnError() throws Exception {
+        MockHttpServletRequest request = currentRequest("POST", "/api/signIn/customer");
+        SampleController controller = proxy(new SampleController());
+
+        assertThrows(IllegalStateException.class, controller::busy);
+        aspect.interceptor().afterCompletion(request, status(500), controller, null);
+
+        assertEquals(1, metrics.snapshot(Kind.HTTP).get(0).errors());
+    }
+
+    @Test
+    void endpoint_exceptionHandlerMethods_areNotTimed() {
+        currentRequest("POST", "/api/signIn/customer");
+
+        proxy(new SampleController()).handleBusy(new IllegalStateException("busy"));
+
+        assertTrue(metrics.snapshot(Kind.HTTP).isEmpty());
+    }
+
+    @Test
+    void endpoint_outsideRequest_fallsBackToClassAndMethod() {
+        proxy(new SampleController()).ok();
+
+        assertEquals("SampleController.ok", metrics.snapshot(Kind.HTTP).get(0).name());
+    }
+
+    private DSLContext mockDatabase() {
+        MockDataProvider database = ctx -> {
+            if (ctx.sql().contains("broken")) {
+                throw new SQLException("db down");
+            }
+            return new MockResult[]{new MockResult(1, null)};
+        };
+        Configuration configuration = new DefaultConfiguration()
+                .set(new MockConnection(database))
+                .set(SQLDialect.DEFAULT)
+                .set(new DefaultExecuteListenerProvider(new SqlTimingListener(metrics)));
+        return DSL.using(configuration);
+    }
+
+    private TimerStats sql(String name) {
+        return metrics.snapshot(Kind.SQL).stream()
+                .filter(s -> s.name().equals(name))
+                .findFirst().orElse(null);
+    }
+
+    @Test
+    void repository_eachStatementTimedUnderItsMethod() {
+        SampleRepository repository = proxy(new SampleRepository(mockDatabase()));
+
+        assertEquals(2, repository.save());
+
+        TimerStats save = sql("SampleRepository.save");
+        assertNotNull(save);
+        assertEquals(2, save.count());
+        assertEquals(0, save.errors());
+        assertNull(TimingAspect.currentRepositoryMethod());
+    }
+
+    @Test
+    void repository_callWithoutSql_isNotTimed() {
+        proxy(new SampleRepository(mockDatabase())).cached();
+
+        assertTrue(metrics.snapshot(Kind.SQL).isEmpty());
+    }
+
+    @Test
+    void repository_failedStatementCountsAsError() {
+        SampleRepository repository = proxy(new SampleRepository(mockDatabase()));
+
+        assertThrows(DataAccessException.class, repository::fail);
+
+        TimerStats fail = sql("SampleRepository.fail");
+        assertNotNull(fail);
+        assertEquals(1, fail.errors());
+        assertEquals(0, fail.inFlight());
+    }
+
+    @Test
+    void statementOutsideRepositories_isTimedUnderOther() {
+        mockDatabase().execute("insert into sample values (1)");
+
+        assertEquals(1, sql(SqlTimingListener.OUTSIDE_REPOSITORIES).count());
+    }
+}
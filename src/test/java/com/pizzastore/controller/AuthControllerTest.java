@@ -5,7 +5,9 @@ import com.pizzastore.model.LoginType;
 import com.pizzastore.model.User;
 import com.pizzastore.repository.EmployeeRepository;
 import com.pizzastore.repository.UserRepository;
+import com.pizzastore.service.PasswordHashingService;
 import com.pizzastore.service.UserTypeResolver;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
@@ -25,6 +27,7 @@ class AuthControllerTest {
     private EmployeeRepository employeeRepository;
     private UserTypeResolver userTypeResolver;
     private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashing;
     private HttpSession session;
     private AuthController controller;
 
@@ -39,7 +42,13 @@ class AuthControllerTest {
         userTypeResolver = mock(UserTypeResolver.class);
         passwordEncoder = mock(PasswordEncoder.class);
         session = mock(HttpSession.class);
-        controller = new AuthController(userRepository, userTypeResolver, employeeRepository, passwordEncoder);
+        passwordHashing = new PasswordHashingService(passwordEncoder, 2, 4, 5000);
+        controller = new AuthController(userRepository, userTypeResolver, employeeRepository, passwordHashing);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashing.shutdown();
     }
 
     // --- status endpoint ---
@@ -313,4 +322,112 @@ class AuthControllerTest {
 
         assertEquals(409, response.getStatusCodeValue());
     }
-}
\ No newline at end of file
+
+    // --- rehash on login ---
+
+    @Test
+    void customerSigninRehashesOutdatedHash() {
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("jane@gmail.com");
+        user.setPassword("oldHash");
+        when(userTypeResolver.resolve("jane@gmail.com")).thenReturn(LoginType.CUSTOMER);
+        when(userRepository.findByUsername("jane@gmail.com")).thenReturn(List.of(user));
+        when(passwordEncoder.matches("Pizza123!", "oldHash")).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("oldHash")).thenReturn(true);
+        when(passwordEncoder.encode("Pizza123!")).thenReturn("newHash");
+
+        ResponseEntity<?> response = controller.handleCustomerSignIn(
+                new AuthController.SignInRequest("jane@gmail.com", "Pizza123!"), session);
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(userRepository).updatePasswordHash(1L, "newHash");
+    }
+
+    @Test
+    void customerSigninKeepsCurrentHash() {
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("jane@gmail.com");
+        user.setPassword("currentHash");
+        when(userTypeResolver.resolve("jane@gmail.com")).thenReturn(LoginType.CUSTOMER);
+        when(userRepository.findByUsername("jane@gmail.com")).thenReturn(List.of(user));
+        when(passwordEncoder.matches("Pizza123!", "currentHash")).thenReturn(true);
+
+        controller.handleCustomerSignIn(new AuthController.SignInRequest("jane@gmail.com", "Pizza123!"), session);
+
+        verify(passwordEncoder, never()).encode(any());
+        verify(userRepository, never()).updatePasswordHash(anyLong(), any());
+    }
+
+    @Test
+    void customerSigninSucceedsWhenRehashFails() {
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("jane@gmail.com");
+        user.setPassword("oldHash");
+        when(userTypeResolver.resolve("jane@gmail.com")).thenReturn(LoginType.CUSTOMER);
+        when(userRepository.findByUsername("jane@gmail.com")).thenReturn(List.of(user));
+        when(passwordEncoder.matches("Pizza123!", "oldHash")).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("oldHash")).thenReturn(true);
+        when(passwordEncoder.encode("Pizza123!")).thenReturn("newHash");
+        doThrow(new RuntimeException("Database unavailable")).when(userRepository).updatePasswordHash(1L, "newHash");
+
+        ResponseEntity<?> response = controller.handleCustomerSignIn(
+                new AuthController.SignInRequest("jane@gmail.com", "Pizza123!"), session);
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(session).setAttribute("userId", 1L);
+    }
+
+    @Test
+    void employeeSigninRehashesOutdatedHash() {
+        Employee employee = new Employee();
+        employee.setEmployeeId(10L);
+        employee.setEmail("bob@work.com");
+        employee.setRole("Manager");
+        employee.setPassword("oldHash");
+        when(userTypeResolver.resolve("bob@work.com")).thenReturn(LoginType.WORKER);
+        when(employeeRepository.findByUsername("bob@work.com")).thenReturn(List.of(employee));
+        when(passwordEncoder.matches("Pizza123!", "oldHash")).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("oldHash")).thenReturn(true);
+        when(passwordEncoder.encode("Pizza123!")).thenReturn("newHash");
+
+        ResponseEntity<?> response = controller.handleEmployeeSignIn(
+                new AuthController.SignInRequest("bob@work.com", "Pizza123!"), session);
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(employeeRepository).updatePasswordHash(10L, "newHash");
+    }
+
+    // --- hashing pool saturated ---
+
+    @Test
+    void signinPropagatesBusyWhenHashingPoolIsSaturated() {
+        PasswordHashingService busyHashing = mock(PasswordHashingService.class);
+        AuthController busyController = new AuthController(userRepository, userTypeResolver, employeeRepository, busyHashing);
+
+        User user = new User();
+        user.setEmail("jane@gmail.com");
+        user.setPassword(HASHED_PASSWORD);
+        when(userTypeResolver.resolve("jane@gmail.com")).thenReturn(LoginType.CUSTOMER);
+        when(userRepository.findByUsername("jane@gmail.com")).thenReturn(List.of(user));
+        when(busyHashing.matches("Pizza123!", HASHED_PASSWORD))
+                .thenThrow(new PasswordHashingService.BusyException("busy"));
+
+        assertThrows(PasswordHashingService.BusyException.class, () -> busyController.handleCustomerSignIn(
+                new AuthController.SignInRequest("jane@gmail.com", "Pizza123!"), session));
+        verify(session, never()).setAttribute(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("ConstantConditions")
+    void busyHandlerReturnsTooManyRequestsWithRetryAfter() {
+        ResponseEntity<Map<String, String>> response =
+                controller.handleHashingBusy(new PasswordHashingService.BusyException("Try again shortly."));
+
+        assertEquals(429, response.getStatusCodeValue());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        assertEquals("Try again shortly.", response.getBody().get("message"));
+    }
+}
@@ -1,17 +1,35 @@
 package com.pizzastore.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pizzastore.model.CartItem;
+import com.pizzastore.model.CrustType;
+import com.pizzastore.model.PizzaSize;
+import com.pizzastore.model.Product;
 import com.pizzastore.model.Promotion;
+import com.pizzastore.model.Topping;
 import com.pizzastore.repository.CartRepository;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.CrustTypeRepository;
+import com.pizzastore.repository.PizzaSizeRepository;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.PromoCodeIndex;
 import com.pizzastore.repository.PromotionRepository;
+import com.pizzastore.repository.RestaurantInfoRepository;
+import com.pizzastore.repository.TaxRateRepository;
+import com.pizzastore.repository.ToppingRepository;
+import com.pizzastore.service.PricingService;
+import com.pizzastore.service.PromotionEngine;
+import com.pizzastore.service.TaxService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpSession;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
@@ -21,19 +39,52 @@ class CartControllerTest {
 
     private CartRepository cartRepository;
     private PromotionRepository promotionRepository;
+    private PromoCodeIndex promoCodeIndex;
     private CartController cartController;
+    private MockHttpSession session;
 
     @BeforeEach
     void setUp() {
         cartRepository    = new CartRepository();
         promotionRepository = mock(PromotionRepository.class);
-        cartController    = new CartController(cartRepository, promotionRepository);
+        promoCodeIndex    = new PromoCodeIndex(promotionRepository);
+        cartController    = new CartController(cartRepository, promoCodeIndex, pricingService(),
+                new TaxService(mock(TaxRateRepository.class), mock(RestaurantInfoRepository.class)),
+                new PromotionEngine(promoCodeIndex, mock(ProductRepository.class), new CatalogCache(),
+                        new ObjectMapper()));
+        session           = new MockHttpSession();
     }
 
     // ── Helpers ──────────────────────────────────────────────────────────────
 
+    /**
+     * Product 1 is $10, product 2 is $20; size 1 adds $2, crust 1 adds $2.50;
+     * topping 1 costs $1.50 and topping 2 costs $0.79.
+     */
+    private static PricingService pricingService() {
+        ProductRepository products = mock(ProductRepository.class);
+        PizzaSizeRepository sizes = mock(PizzaSizeRepository.class);
+        CrustTypeRepository crusts = mock(CrustTypeRepository.class);
+        ToppingRepository toppings = mock(ToppingRepository.class);
+        when(products.findAll()).thenReturn(List.of(
+                new Product(1L, 1L, "Cheese", new BigDecimal("10.00"), true),
+                new Product(2L, 1L, "Supreme", new BigDecimal("20.00"), true)));
+        when(sizes.findAll()).thenReturn(List.of(new PizzaSize(1L, "Medium", new BigDecimal("2.00"))));
+        when(crusts.findAll()).thenReturn(List.of(new CrustType(1L, "Deep Dish", new BigDecimal("2.50"))));
+        when(toppings.findAll()).thenReturn(List.of(
+                new Topping(1L, "Pepperoni", new BigDecimal("1.50")),
+                new Topping(2L, "Onions", new BigDecimal("0.79"))));
+        return new PricingService(new CatalogCache(), products, sizes, crusts, toppings);
+    }
+
+    private void givenPromotions(Promotion... promotions) {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(promotions));
+        promoCodeIndex.invalidate();
+    }
+
     private Promotion promo(String code, double discount, double minOrderAmt, LocalDate expDt) {
         Promotion p = new Promotion();
+        p.setPromotionId(1L);
         p.setCode(code);
         p.setDiscountValue(discount);
         p.setMinOrderAmt(minOrderAmt);
@@ -53,6 +104,7 @@ class CartControllerTest {
     private CartItem customItem(int quantity) {
         CartItem item = new CartItem();
         item.setProductId(null);  // custom pizza has no productId
+        item.setSizeId(1L);
         item.setQuantity(quantity);
         item.setSauceName("REGULAR");
         item.setToppingIdsFull(new Long[]{1L});
@@ -63,7 +115,7 @@ class CartControllerTest {
 
     @Test
     void addToCart_returnsOkWithCartItemId() {
-        ResponseEntity<CartItem> response = cartController.addToCart(menuItem(1L, 1));
+        ResponseEntity<CartItem> response = cartController.addToCart(menuItem(1L, 1), session);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
@@ -72,8 +124,8 @@ class CartControllerTest {
 
     @Test
     void addToCart_assignsUniqueCartItemIds() {
-        CartItem first  = cartController.addToCart(menuItem(1L, 1)).getBody();
-        CartItem second = cartController.addToCart(menuItem(2L, 1)).getBody();
+        CartItem first  = cartController.addToCart(menuItem(1L, 1), session).getBody();
+        CartItem second = cartController.addToCart(menuItem(2L, 1), session).getBody();
 
         assertNotNull(first);
         assertNotNull(second);
@@ -82,38 +134,103 @@ class CartControllerTest {
 
     @Test
     void addToCart_duplicateProductId_mergesQuantity() {
-        cartController.addToCart(menuItem(1L, 2));
-        CartItem merged = cartController.addToCart(menuItem(1L, 3)).getBody();
+        cartController.addToCart(menuItem(1L, 2), session);
+        CartItem merged = cartController.addToCart(menuItem(1L, 3), session).getBody();
 
         assertNotNull(merged);
         assertEquals(5, merged.getQuantity());
-        assertEquals(1, cartRepository.findAll().size(), "Should be one entry, not two");
+        assertEquals(1, cartRepository.findAll(session.getId()).size(), "Should be one entry, not two");
     }
 
     @Test
     void addToCart_customPizza_alwaysCreatesNewEntry() {
-        cartController.addToCart(customItem(1));
-        cartController.addToCart(customItem(1));
+        cartController.addToCart(customItem(1), session);
+        cartController.addToCart(customItem(1), session);
 
-        assertEquals(2, cartRepository.findAll().size(),
+        assertEquals(2, cartRepository.findAll(session.getId()).size(),
                 "Each custom pizza should be a separate cart entry");
     }
 
     @Test
     void addToCart_customPizzasGetDistinctCartItemIds() {
-        CartItem first  = cartController.addToCart(customItem(1)).getBody();
-        CartItem second = cartController.addToCart(customItem(1)).getBody();
+        CartItem first  = cartController.addToCart(customItem(1), session).getBody();
+        CartItem second = cartController.addToCart(customItem(1), session).getBody();
 
         assertNotNull(first);
         assertNotNull(second);
         assertNotEquals(first.getCartItemId(), second.getCartItemId());
     }
 
+    @Test
+    void addToCart_customPizzaWithoutSize_returnsBadRequest() {
+        CartItem item = customItem(1);
+        item.setSizeId(null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, cartController.addToCart(item, session).getStatusCode());
+        assertTrue(cartRepository.findAll(session.getId()).isEmpty());
+    }
+
+    @Test
+    void addToCart_ignoresClientPrice() {
+        CartItem item = menuItem(1L, 1);
+        item.setPrice(0.01);
+
+        CartItem saved = cartController.addToCart(item, session).getBody();
+
+        assertNotNull(saved);
+        assertEquals(10.0, saved.getPrice());
+    }
+
+    @Test
+    void addToCart_pricesSizeCrustAndHalfToppings() {
+        CartItem item = menuItem(1L, 1);
+        item.setSizeId(1L);
+        item.setCrustTypeId(1L);
+        item.setToppingIdsFull(new Long[]{1L});
+        item.setToppingIdsLeft(new Long[]{2L});
+
+        CartItem saved = cartController.addToCart(item, session).getBody();
+
+        assertNotNull(saved);
+        // 10.00 + 2.00 + 2.50 + 1.50 + half of 0.79 (0.40)
+        assertEquals(16.4, saved.getPrice());
+    }
+
+    @Test
+    void addToCart_sameToppingOnBothHalves_chargedOnce() {
+        CartItem item = menuItem(1L, 1);
+        item.setToppingIdsLeft(new Long[]{1L});
+        item.setToppingIdsRight(new Long[]{1L});
+
+        CartItem saved = cartController.addToCart(item, session).getBody();
+
+        assertNotNull(saved);
+        assertEquals(11.5, saved.getPrice());
+    }
+
+    @Test
+    void addToCart_unknownProduct_returnsBadRequest() {
+        ResponseEntity<CartItem> response = cartController.addToCart(menuItem(99L, 1), session);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertTrue(cartRepository.findAll(session.getId()).isEmpty());
+    }
+
+    @Test
+    void addToCart_sameProductDifferentSize_isSeparateEntry() {
+        CartItem medium = menuItem(1L, 1);
+        medium.setSizeId(1L);
+        cartController.addToCart(menuItem(1L, 1), session);
+        cartController.addToCart(medium, session);
+
+        assertEquals(2, cartRepository.findAll(session.getId()).size());
+    }
+
     // ── getCart ───────────────────────────────────────────────────────────────
 
     @Test
     void getCart_returnsItemsAndTotal() {
-        Map<String, Object> cart = cartController.getCart();
+        Map<String, Object> cart = cartController.getCart(session);
 
         assertTrue(cart.containsKey("items"));
         assertTrue(cart.containsKey("total"));
@@ -121,11 +238,9 @@ class CartControllerTest {
 
     @Test
     void getCart_calculatesSubtotalTaxAndTotal() {
-        CartItem item = menuItem(1L, 2);
-        item.setPrice(10.0); // 2 × $10 = $20 subtotal
-        cartController.addToCart(item);
+        cartController.addToCart(menuItem(1L, 2), session); // 2 × $10 = $20 subtotal
 
-        Map<String, Object> cart = cartController.getCart();
+        Map<String, Object> cart = cartController.getCart(session);
 
         assertEquals(20.0,  cart.get("subtotal"));
         assertEquals(1.6,   cart.get("tax"));     // 20 × 0.08 = 1.60
@@ -136,15 +251,12 @@ class CartControllerTest {
 
     @Test
     void getCart_reflectsAppliedPromo() {
-        CartItem item = menuItem(1L, 1);
-        item.setPrice(20.0);
-        cartController.addToCart(item);
+        cartController.addToCart(menuItem(2L, 1), session);
 
-        when(promotionRepository.findByCode("SAVE5"))
-            .thenReturn(Optional.of(promo("SAVE5", 5.0, 0.0, LocalDate.now().plusDays(30))));
-        cartController.applyPromo("SAVE5");
+        givenPromotions(promo("SAVE5", 5.0, 0.0, LocalDate.now().plusDays(30)));
+        cartController.applyPromo("SAVE5", session);
 
-        Map<String, Object> cart = cartController.getCart();
+        Map<String, Object> cart = cartController.getCart(session);
 
         assertEquals(20.0,   cart.get("subtotal"));
         assertEquals(5.0,    cart.get("discount"));
@@ -153,95 +265,103 @@ class CartControllerTest {
         assertEquals("SAVE5", cart.get("promoCode"));
     }
 
+    @Test
+    void getCart_promoNoLongerQualifying_dropsDiscount() {
+        CartItem saved = cartController.addToCart(menuItem(2L, 1), session).getBody();
+        assertNotNull(saved);
+        givenPromotions(promo("SAVE5", 5.0, 15.0, LocalDate.now().plusDays(30)));
+        cartController.applyPromo("SAVE5", session);
+
+        cartController.updateQuantity(new UpdateQuantityRequest(saved.getCartItemId(), 0), session);
+        cartController.addToCart(menuItem(1L, 1), session); // $10, below the $15 minimum
+
+        Map<String, Object> cart = cartController.getCart(session);
+
+        assertEquals(0.0,     cart.get("discount"));
+        assertEquals("SAVE5", cart.get("promoCode"));
+        assertEquals("Minimum order of $15.00 required for this promo.", cart.get("promoMessage"));
+    }
+
     // ── updateQuantity ────────────────────────────────────────────────────────
 
     @Test
     void updateQuantity_byCartItemId_updatesCorrectItem() {
-        CartItem saved = cartController.addToCart(menuItem(1L, 1)).getBody();
+        CartItem saved = cartController.addToCart(menuItem(1L, 1), session).getBody();
         assertNotNull(saved);
 
-        ResponseEntity<Map<String, Object>> response = cartController.updateQuantity(new UpdateQuantityRequest(saved.getCartItemId(), 5));
+        ResponseEntity<Map<String, Object>> response = cartController.updateQuantity(new UpdateQuantityRequest(saved.getCartItemId(), 5), session);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(5, cartRepository.findAll().get(0).getQuantity());
+        assertEquals(5, cartRepository.findAll(session.getId()).get(0).getQuantity());
     }
 
     @Test
     void updateQuantity_onlyUpdatesTargetItem() {
-        CartItem first  = menuItem(1L, 1); first.setPrice(10.0);
-        CartItem second = menuItem(2L, 1); second.setPrice(10.0);
-        CartItem savedFirst  = cartController.addToCart(first).getBody();
-        CartItem savedSecond = cartController.addToCart(second).getBody();
+        CartItem savedFirst  = cartController.addToCart(menuItem(1L, 1), session).getBody();
+        CartItem savedSecond = cartController.addToCart(menuItem(2L, 1), session).getBody();
         assertNotNull(savedFirst);
         assertNotNull(savedSecond);
 
-        cartController.updateQuantity(new UpdateQuantityRequest(savedFirst.getCartItemId(), 3));
+        cartController.updateQuantity(new UpdateQuantityRequest(savedFirst.getCartItemId(), 3), session);
 
-        assertEquals(3, cartRepository.findAll().get(0).getQuantity(), "First item should be updated");
-        assertEquals(1, cartRepository.findAll().get(1).getQuantity(), "Second item should be unchanged");
+        assertEquals(3, cartRepository.findAll(session.getId()).get(0).getQuantity(), "First item should be updated");
+        assertEquals(1, cartRepository.findAll(session.getId()).get(1).getQuantity(), "Second item should be unchanged");
     }
 
     @Test
     void updateQuantity_unknownCartItemId_returnsNotFound() {
-        ResponseEntity<Map<String, Object>> response = cartController.updateQuantity(new UpdateQuantityRequest(999L, 2));
+        ResponseEntity<Map<String, Object>> response = cartController.updateQuantity(new UpdateQuantityRequest(999L, 2), session);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
 
     @Test
     void updateQuantity_zeroQuantity_removesItem() {
-        CartItem saved = cartController.addToCart(menuItem(1L, 3)).getBody();
+        CartItem saved = cartController.addToCart(menuItem(1L, 3), session).getBody();
         assertNotNull(saved);
 
-        cartController.updateQuantity(new UpdateQuantityRequest(saved.getCartItemId(), 0));
+        cartController.updateQuantity(new UpdateQuantityRequest(saved.getCartItemId(), 0), session);
 
-        assertTrue(cartRepository.findAll().isEmpty(), "Item should be removed when quantity is 0");
+        assertTrue(cartRepository.findAll(session.getId()).isEmpty(), "Item should be removed when quantity is 0");
     }
 
     // ── applyPromo ────────────────────────────────────────────────────────────
 
     @Test
     void applyPromo_unknownCode_returnsNotFound() {
-        when(promotionRepository.findByCode("BOGUS")).thenReturn(Optional.empty());
+        givenPromotions(promo("SAVE5", 5.0, 0.0, null));
 
-        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("BOGUS");
+        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("BOGUS", session);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
 
     @Test
     void applyPromo_expiredCode_returnsBadRequest() {
-        when(promotionRepository.findByCode("OLD10"))
-            .thenReturn(Optional.of(promo("OLD10", 5.0, 0.0, LocalDate.now().minusDays(1))));
+        givenPromotions(promo("OLD10", 5.0, 0.0, LocalDate.now().minusDays(1)));
 
-        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("OLD10");
+        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("OLD10", session);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
     @Test
     void applyPromo_belowMinOrder_returnsBadRequest() {
-        CartItem item = menuItem(1L, 1);
-        item.setPrice(10.0); // $10 subtotal, below the $20 minimum
-        cartController.addToCart(item);
-        when(promotionRepository.findByCode("SAVE5"))
-            .thenReturn(Optional.of(promo("SAVE5", 5.0, 20.0, LocalDate.now().plusDays(30))));
+        cartController.addToCart(menuItem(1L, 1), session); // $10 subtotal, below the $20 minimum
+        givenPromotions(promo("SAVE5", 5.0, 20.0, LocalDate.now().plusDays(30)));
 
-        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("SAVE5");
+        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("SAVE5", session);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
     @Test
     void applyPromo_validCode_appliesDiscountToSummary() {
-        CartItem item = menuItem(1L, 1);
-        item.setPrice(15.0);
-        cartController.addToCart(item);
+        cartController.addToCart(menuItem(1L, 1), session);
 
-        when(promotionRepository.findByCode("SAVE5"))
-            .thenReturn(Optional.of(promo("SAVE5", 5.0, 0.0, LocalDate.now().plusDays(30))));
+        givenPromotions(promo("SAVE5", 5.0, 0.0, LocalDate.now().plusDays(30)));
 
-        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("SAVE5");
+        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("SAVE5", session);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         Map<String, Object> body = response.getBody();
@@ -250,11 +370,53 @@ class CartControllerTest {
         assertEquals("SAVE5", body.get("promoCode"));
     }
 
+    @Test
+    void applyPromo_codeIsMatchedIgnoringCaseAndSpaces() {
+        cartController.addToCart(menuItem(1L, 1), session);
+        givenPromotions(promo("SAVE5", 5.0, 0.0, null));
+
+        ResponseEntity<Map<String, Object>> response = cartController.applyPromo(" save5 ", session);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("SAVE5", response.getBody().get("promoCode"));
+    }
+
+    @Test
+    void applyPromo_percentOffRule_discountsQualifyingItemsOnly() {
+        cartController.addToCart(menuItem(1L, 1), session);
+        cartController.addToCart(menuItem(2L, 1), session);
+        Promotion half = promo("HALFSUPREME", 0.0, 0.0, null);
+        half.setRuleDefinition("{\"type\": \"PERCENT_OFF\", \"percent\": 50, \"productIds\": [2]}");
+        givenPromotions(half);
+
+        ResponseEntity<Map<String, Object>> response = cartController.applyPromo("HALFSUPREME", session);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(10.0, response.getBody().get("discount")); // half of the $20 Supreme
+    }
+
+    @Test
+    void getEligiblePromos_listsActivePromosTheCartQualifiesFor() {
+        cartController.addToCart(menuItem(2L, 1), session);
+        Promotion big = promo("SAVE5", 5.0, 15.0, null);
+        Promotion tooBig = promo("SAVE10", 10.0, 50.0, null);
+        tooBig.setPromotionId(2L);
+        givenPromotions(big, tooBig);
+
+        List<Map<String, Object>> eligible = cartController.getEligiblePromos(session);
+
+        assertEquals(1, eligible.size());
+        assertEquals("SAVE5", eligible.get(0).get("code"));
+        assertEquals(5.0, eligible.get(0).get("discount"));
+    }
+
     // ── removePromo ───────────────────────────────────────────────────────────
 
     @Test
     void removePromo_withNoPromoApplied_returnsOkWithZeroDiscount() {
-        ResponseEntity<Map<String, Object>> response = cartController.removePromo();
+        ResponseEntity<Map<String, Object>> response = cartController.removePromo(session);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         Map<String, Object> body = response.getBody();
@@ -265,9 +427,9 @@ class CartControllerTest {
 
     @Test
     void removePromo_clearsDiscountFromSummary() {
-        cartRepository.applyPromo("SAVE5", 5.0);
+        cartRepository.applyPromo(session.getId(), 1L, "SAVE5");
 
-        ResponseEntity<Map<String, Object>> response = cartController.removePromo();
+        ResponseEntity<Map<String, Object>> response = cartController.removePromo(session);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         Map<String, Object> body = response.getBody();
@@ -275,4 +437,37 @@ class CartControllerTest {
         assertEquals(0.0,  body.get("discount"));
         assertNull(body.get("promoCode"));
     }
-}
\ No newline at end of file
+
+    // ── per-session carts ────────────────────────────────────────────────────
+
+    @Test
+    void carts_areIsolatedBetweenSessions() {
+        MockHttpSession otherSession = new MockHttpSession();
+        cartController.addToCart(menuItem(1L, 2), session);
+
+        Map<String, Object> otherCart = cartController.getCart(otherSession);
+
+        assertEquals(0.0, otherCart.get("subtotal"));
+        assertTrue(cartRepository.findAll(otherSession.getId()).isEmpty());
+        assertEquals(1, cartRepository.findAll(session.getId()).size());
+    }
+
+    @Test
+    void updateQuantity_itemFromAnotherSession_returnsNotFound() {
+        CartItem saved = cartController.addToCart(menuItem(1L, 1), session).getBody();
+        assertNotNull(saved);
+
+        ResponseEntity<Map<String, Object>> response = cartController.updateQuantity(
+                new UpdateQuantityRequest(saved.getCartItemId(), 4), new MockHttpSession());
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals(1, cartRepository.findAll(session.getId()).get(0).getQuantity());
+    }
+
+    @Test
+    void getCart_withoutItems_doesNotAllocateCart() {
+        cartController.getCart(session);
+
+        assertEquals(0, cartRepository.size());
+    }
+}
@@ -1,23 +1,47 @@
 package com.pizzastore.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pizzastore.dto.CheckoutRequestDto;
 import com.pizzastore.dto.OrderConfirmationDto;
+import com.pizzastore.event.OrderLifecycleEvent;
+import com.pizzastore.event.OrderPlacedEvent;
+import com.pizzastore.model.Address;
 import com.pizzastore.model.CartItem;
 import com.pizzastore.model.Order;
+import com.pizzastore.model.Payment;
+import com.pizzastore.model.Promotion;
 import com.pizzastore.repository.CartRepository;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.IdempotencyRepository;
+import com.pizzastore.repository.OrderOutboxRepository.NewMessage;
 import com.pizzastore.repository.OrderRepository;
+import com.pizzastore.repository.PaymentRepository;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.PromoCodeIndex;
 import com.pizzastore.repository.PromotionRepository;
-import com.pizzastore.controller.PaymentController;
+import com.pizzastore.repository.RestaurantInfoRepository;
+import com.pizzastore.repository.TaxRateRepository;
+import com.pizzastore.repository.TaxRateRepository.TaxRate;
+import com.pizzastore.service.IdempotencyService;
+import com.pizzastore.service.PromotionEngine;
+import com.pizzastore.service.TaxService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.mock.web.MockHttpSession;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class CheckoutControllerTest {
@@ -25,24 +49,41 @@ class CheckoutControllerTest {
     private CartRepository cartRepository;
     private OrderRepository orderRepository;
     private PromotionRepository promotionRepository;
+    private PromotionEngine promotionEngine;
     private PaymentController paymentController;
+    private TaxRateRepository taxRateRepository;
+    private TaxService taxService;
+    private ObjectMapper objectMapper;
     private CheckoutController controller;
     private MockHttpSession session;
 
+    private static final String CARD = "4111111111111111";
+
+    private static CheckoutRequestDto pickup() {
+        return new CheckoutRequestDto("PICKUP", "", null, CARD, "12/30", "123");
+    }
+
     @BeforeEach
     void setUp() {
         cartRepository = new CartRepository();
         orderRepository = mock(OrderRepository.class);
         promotionRepository = mock(PromotionRepository.class);
-        paymentController = mock(PaymentController.class);
-        controller = new CheckoutController(cartRepository, orderRepository, promotionRepository, paymentController);
+        paymentController = new PaymentController(mock(PaymentRepository.class));
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        taxRateRepository = mock(TaxRateRepository.class);
+        taxService = new TaxService(taxRateRepository, mock(RestaurantInfoRepository.class));
+        promotionEngine = new PromotionEngine(new PromoCodeIndex(promotionRepository), mock(ProductRepository.class),
+                new CatalogCache(), objectMapper);
+        controller = new CheckoutController(cartRepository, orderRepository, promotionEngine,
+                paymentController, objectMapper, new IdempotencyService(mock(IdempotencyRepository.class)),
+                taxService);
         session = new MockHttpSession();
         session.setAttribute("userId", 1L);
     }
 
     @Test
     void summaryContainsExpectedKeys() {
-        Map<String, Object> summary = controller.getSummary();
+        Map<String, Object> summary = controller.getSummary(session);
         assertTrue(summary.containsKey("items"));
         assertTrue(summary.containsKey("subtotal"));
         assertTrue(summary.containsKey("tax"));
@@ -52,12 +93,12 @@ class CheckoutControllerTest {
     @Test
     void processCheckout_emptyCart_returnsBadRequest() {
         ResponseEntity<OrderConfirmationDto> response = controller.processCheckout(
-                new CheckoutRequestDto("PICKUP", "", null, null, null, null), session);
+                pickup(), null, session);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("Cannot checkout with an empty cart", response.getBody().getMessage());
-        verify(orderRepository, never()).save(any(Order.class));
+        verify(orderRepository, never()).save(any(Order.class), anyList(), any(), anyList());
     }
 
     @Test
@@ -67,15 +108,15 @@ class CheckoutControllerTest {
         item.setName("Pepperoni");
         item.setQuantity(1);
         item.setPrice(10.0);
-        cartRepository.addItem(item);
+        cartRepository.addItem(session.getId(), item);
 
         ResponseEntity<OrderConfirmationDto> response = controller.processCheckout(
-                new CheckoutRequestDto("DELIVERY", "", null, null, null, null), session);
+                new CheckoutRequestDto("DELIVERY", "", null, CARD, "12/30", "123"), null, session);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("Delivery address is required for DELIVERY", response.getBody().getMessage());
-        verify(orderRepository, never()).save(any(Order.class));
+        verify(orderRepository, never()).save(any(Order.class), anyList(), any(), anyList());
     }
 
     @Test
@@ -85,21 +126,208 @@ class CheckoutControllerTest {
         item.setName("Pepperoni");
         item.setQuantity(2);
         item.setPrice(12.5);
-        cartRepository.addItem(item);
+        cartRepository.addItem(session.getId(), item);
 
-        when(orderRepository.save(any(Order.class))).thenReturn(123L);
-        when(orderRepository.saveRegularItem(any(Long.class), any(CartItem.class))).thenReturn(1L);
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L);
 
         ResponseEntity<OrderConfirmationDto> response = controller.processCheckout(
-                new CheckoutRequestDto("PICKUP", "", null, null, null, null), session);
+                pickup(), null, session);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(123L, response.getBody().getOrderId());
         assertEquals("PICKUP", response.getBody().getDeliveryMethod());
         assertEquals("PENDING", response.getBody().getStatus());
-        assertTrue(cartRepository.findAll().isEmpty(), "Cart should be cleared after successful checkout");
-        verify(orderRepository, times(1)).save(any(Order.class));
-        verify(orderRepository, times(1)).saveRegularItem(any(Long.class), any(CartItem.class));
+        assertTrue(cartRepository.findAll(session.getId()).isEmpty(), "Cart should be cleared after successful checkout");
+        verify(orderRepository, times(1)).save(any(Order.class), eq(List.of(item)), any(), anyList());
+    }
+
+    private CartItem addPepperoni() {
+        CartItem item = new CartItem();
+        item.setProductId(1L);
+        item.setName("Pepperoni");
+        item.setQuantity(2);
+        item.setPrice(12.5);
+        cartRepository.addItem(session.getId(), item);
+        return item;
+    }
+
+    @Test
+    void processCheckout_delivery_isTaxedAtTheDeliveryAddress() {
+        when(taxRateRepository.findAll()).thenReturn(List.of(
+                new TaxRate("NY", null, null, new BigDecimal("0.04")),
+                new TaxRate("NY", "10001", "10292", new BigDecimal("0.08875"))));
+        taxService.refresh();
+        addPepperoni();
+        Address address = new Address();
+        address.setState("NY");
+        address.setZip("10001");
+        when(orderRepository.findOrCreateAddressId(any(), eq(1L), any())).thenReturn(55L);
+        when(orderRepository.findAddressLocation(55L)).thenReturn(Optional.of(address));
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L);
+
+        ResponseEntity<OrderConfirmationDto> response = controller.processCheckout(
+                new CheckoutRequestDto("DELIVERY", "1 Main St\nNew York, NY, 10001", null, CARD, "12/30", "123"),
+                null, session);
+
+        // 25.00 + 25.00 × 0.08875 (2.22)
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new BigDecimal("27.22"), response.getBody().getTotal());
+    }
+
+    @Test
+    void processCheckout_appliedPromo_isReevaluatedAndRecordedOnTheOrder() {
+        Promotion save5 = new Promotion();
+        save5.setPromotionId(7L);
+        save5.setCode("SAVE5");
+        save5.setDiscountValue(5.0);
+        Promotion save10 = new Promotion();
+        save10.setPromotionId(8L);
+        save10.setCode("SAVE10");
+        save10.setDiscountValue(10.0);
+        save10.setMinOrderAmt(50.0);
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(save5, save10));
+        addPepperoni();
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L);
+
+        cartRepository.applyPromo(session.getId(), 7L, "SAVE5");
+        controller.processCheckout(pickup(), null, session);
+        addPepperoni();
+        cartRepository.applyPromo(session.getId(), 8L, "SAVE10"); // the cart is below its $50 minimum
+        controller.processCheckout(pickup(), null, session);
+
+        ArgumentCaptor<Order> orders = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository, times(2)).save(orders.capture(), anyList(), any(), anyList());
+        assertEquals(7L, orders.getAllValues().get(0).getPromotionsId());
+        assertEquals(new BigDecimal("5.00"), orders.getAllValues().get(0).getDiscountAmount());
+        assertEquals(new BigDecimal("21.60"), orders.getAllValues().get(0).getTotalAmount()); // (25 - 5) × 1.08
+        assertNull(orders.getAllValues().get(1).getPromotionsId());
+        assertEquals(new BigDecimal("0.00"), orders.getAllValues().get(1).getDiscountAmount());
+    }
+
+    @Test
+    void processCheckout_repeatedIdempotencyKey_replaysConfirmationWithoutSecondOrder() {
+        addPepperoni();
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L);
+        CheckoutRequestDto request = pickup();
+
+        ResponseEntity<OrderConfirmationDto> first = controller.processCheckout(request, "key-1", session);
+        addPepperoni(); // a replay must not pick up a new cart
+        ResponseEntity<OrderConfirmationDto> second = controller.processCheckout(request, "key-1", session);
+
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(CheckoutController.IDEMPOTENT_REPLAYED_HEADER));
+        assertNull(first.getHeaders().getFirst(CheckoutController.IDEMPOTENT_REPLAYED_HEADER));
+        verify(orderRepository, times(1)).save(any(Order.class), anyList(), any(), anyList());
+        assertFalse(cartRepository.findAll(session.getId()).isEmpty());
+    }
+
+    @Test
+    void processCheckout_differentIdempotencyKeys_placeTwoOrders() {
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L, 124L);
+        CheckoutRequestDto request = pickup();
+
+        addPepperoni();
+        controller.processCheckout(request, "key-1", session);
+        addPepperoni();
+        ResponseEntity<OrderConfirmationDto> second = controller.processCheckout(request, "key-2", session);
+
+        assertEquals(124L, second.getBody().getOrderId());
+        verify(orderRepository, times(2)).save(any(Order.class), anyList(), any(), anyList());
+    }
+
+    @Test
+    void processCheckout_keyReusedForDifferentRequest_returns422() {
+        addPepperoni();
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L);
+        controller.processCheckout(pickup(), "key-1", session);
+
+        ResponseEntity<OrderConfirmationDto> response = controller.processCheckout(
+                new CheckoutRequestDto("DELIVERY", "1 Main St", null, CARD, "12/30", "123"), "key-1", session);
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        verify(orderRepository, times(1)).save(any(Order.class), anyList(), any(), anyList());
+    }
+
+    @Test
+    void processCheckout_rejectedAttempt_releasesKeyForRetry() {
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L);
+        CheckoutRequestDto request = pickup();
+
+        ResponseEntity<OrderConfirmationDto> rejected = controller.processCheckout(request, "key-1", session);
+        addPepperoni();
+        ResponseEntity<OrderConfirmationDto> retried = controller.processCheckout(request, "key-1", session);
+
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode());
+        assertEquals(HttpStatus.OK, retried.getStatusCode());
+        assertEquals(123L, retried.getBody().getOrderId());
+    }
+
+    @Test
+    void processCheckout_failedAttempt_releasesKeyForRetry() {
+        addPepperoni();
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(123L);
+        CheckoutRequestDto request = pickup();
+
+        assertThrows(RuntimeException.class, () -> controller.processCheckout(request, "key-1", session));
+        ResponseEntity<OrderConfirmationDto> retried = controller.processCheckout(request, "key-1", session);
+
+        assertEquals(HttpStatus.OK, retried.getStatusCode());
+        assertNull(retried.getHeaders().getFirst(CheckoutController.IDEMPOTENT_REPLAYED_HEADER));
+    }
+
+    @Test
+    void processCheckout_overlongIdempotencyKey_returnsBadRequest() {
+        addPepperoni();
+
+        ResponseEntity<OrderConfirmationDto> response = controller.processCheckout(
+                pickup(), "k".repeat(256), session);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(orderRepository, never()).save(any(Order.class), anyList(), any(), anyList());
+    }
+
+    @Test
+    void processCheckout_badExpirationDate_returnsBadRequestWithoutSaving() {
+        addPepperoni();
+
+        ResponseEntity<OrderConfirmationDto> response = controller.processCheckout(
+                new CheckoutRequestDto("PICKUP", "", null, CARD, "1230", "123"), null, session);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Expiration date must be in MM/YY format.", response.getBody().getMessage());
+        verify(orderRepository, never()).save(any(Order.class), anyList(), any(), anyList());
+        assertFalse(cartRepository.findAll(session.getId()).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processCheckout_success_savesPaymentAndQueuesOrderPlacedWithTheOrder() throws Exception {
+        CartItem item = addPepperoni();
+
+        when(orderRepository.save(any(Order.class), anyList(), any(), anyList())).thenReturn(123L);
+
+        controller.processCheckout(pickup(), null, session);
+
+        ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
+        ArgumentCaptor<List<NewMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(orderRepository).save(any(Order.class), anyList(), paymentCaptor.capture(), captor.capture());
+        Payment payment = paymentCaptor.getValue();
+        assertEquals(CARD, payment.getCcNumber());
+        assertEquals(12L, payment.getExpMonth());
+        assertEquals(30L, payment.getExpYear());
+
+        List<NewMessage> outbox = captor.getValue();
+        assertEquals(List.of(OrderLifecycleEvent.ORDER_PLACED), outbox.stream().map(NewMessage::eventType).toList());
+        assertFalse(outbox.get(0).payload().contains(CARD));
+
+        OrderPlacedEvent event = objectMapper.readValue(outbox.get(0).payload(), OrderPlacedEvent.class);
+        assertEquals(1L, event.customerId());
+        assertNotNull(event.orderTimestamp());
+        assertEquals(new BigDecimal("27.00"), event.totalAmount());
+        assertEquals(List.of(item), event.items());
     }
 }
@@ -0,0 +1,83 @@
+package com.pizzastore.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.Promotion;
+import com.pizzastore.repository.CartRepository;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.PromoCodeIndex;
+import com.pizzastore.repository.PromotionRepository;
+import com.pizzastore.service.PromotionEngine;
+import com.pizzastore.service.TaxService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Subtotal, discount, tax and total for the checkout summary page.
+ * Only the cart and the tax rate are needed for the summary, so the other
+ * collaborators are left null and the TaxService never loads any rates (the default rate applies).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Thread)
+public class CheckoutSummaryBenchmark {
+
+    @Param({"1", "10"})
+    int itemCount;
+
+    private CheckoutController controller;
+    private MockHttpSession session;
+
+    @Setup
+    public void setUp() {
+        CartRepository cartRepository = new CartRepository();
+        PromotionRepository promotionRepository = mock(PromotionRepository.class);
+        Promotion save5 = new Promotion();
+        save5.setPromotionId(1L);
+        save5.setCode("SAVE5");
+        save5.setDiscountValue(5.0);
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(save5));
+        PromotionEngine promotionEngine = new PromotionEngine(new PromoCodeIndex(promotionRepository),
+                mock(ProductRepository.class), new CatalogCache(), new ObjectMapper());
+        promotionEngine.refresh();
+        controller = new CheckoutController(cartRepository, null, promotionEngine, null, null, null,
+                new TaxService(null, null));
+        session = new MockHttpSession();
+
+        for (long productId = 1; productId <= itemCount; productId++) {
+            CartItem item = new CartItem();
+            item.setProductId(productId);
+            item.setName("Product " + productId);
+            item.setQuantity((int) (productId % 3) + 1);
+            item.setPrice(10.49 + productId);
+            cartRepository.addItem(session.getId(), item);
+        }
+        cartRepository.applyPromo(session.getId(), 1L, "SAVE5");
+    }
+
+    @Benchmark
+    public Map<String, Object> getSummary() {
+        return controller.getSummary(session);
+    }
+}
@@ -0,0 +1,136 @@
+package com.pizzastore.controller;
+
+import com.pizzastore.dto.KitchenFeedDto;
+import com.pizzastore.dto.KitchenOrderDto;
+import com.pizzastore.model.OrderStatus;
+import com.pizzastore.service.KitchenQueueService;
+import com.pizzastore.service.KitchenQueueService.Outcome;
+import com.pizzastore.service.KitchenQueueService.TransitionResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest({KitchenController.class, GlobalExceptionHandler.class})
+public class KitchenControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private KitchenQueueService kitchenQueueService;
+
+    private static MockHttpSession session(String role) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userId", 42L);
+        session.setAttribute("role", role);
+        return session;
+    }
+
+    private static KitchenOrderDto order(String status) {
+        return new KitchenOrderDto(1L, 7L, status, "DELIVERY", Instant.parse("2025-03-15T11:50:00Z"), null, List.of());
+    }
+
+    @Test
+    public void getQueue_noSession_returns401() throws Exception {
+        mockMvc.perform(get("/api/kitchen/orders"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void getQueue_customer_returns403() throws Exception {
+        mockMvc.perform(get("/api/kitchen/orders").session(session("Customer")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void getQueue_staff_returnsSnapshot() throws Exception {
+        when(kitchenQueueService.snapshot()).thenReturn(new KitchenFeedDto(5, true, List.of(order("PENDING"))));
+
+        mockMvc.perform(get("/api/kitchen/orders").session(session("Manager")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(5))
+                .andExpect(jsonPath("$.reset").value(true))
+                .andExpect(jsonPath("$.orders[0].orderId").value(1))
+                .andExpect(jsonPath("$.orders[0].status").value("PENDING"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void changes_answersWithTheChangesOnceThereAreAny() throws Exception {
+        when(kitchenQueueService.awaitChanges(eq(5L), any())).thenAnswer(inv -> {
+            ((Consumer<KitchenFeedDto>) inv.getArgument(1)).accept(new KitchenFeedDto(6, false, List.of(order("PREPARING"))));
+            return (Runnable) () -> { };
+        });
+
+        MvcResult pending = mockMvc.perform(get("/api/kitchen/orders/changes?since=5").session(session("Manager")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(6))
+                .andExpect(jsonPath("$.orders[0].status").value("PREPARING"));
+    }
+
+    @Test
+    public void updateStatus_validTransition_returnsUpdatedOrder() throws Exception {
+        when(kitchenQueueService.transition(1L, OrderStatus.PREPARING, 42L))
+                .thenReturn(new TransitionResult(Outcome.UPDATED, order("PREPARING")));
+
+        mockMvc.perform(put("/api/kitchen/orders/1/status").session(session("Manager"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"preparing\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PREPARING"));
+    }
+
+    @Test
+    public void updateStatus_unknownStatus_returns400() throws Exception {
+        mockMvc.perform(put("/api/kitchen/orders/1/status").session(session("Manager"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"BURNT\"}"))
+                .andExpect(status().isBadRequest());
+        verify(kitchenQueueService, never()).transition(anyLong(), any(), any());
+    }
+
+    @Test
+    public void updateStatus_invalidTransition_returns409() throws Exception {
+        when(kitchenQueueService.transition(1L, OrderStatus.COMPLETED, 42L))
+                .thenReturn(new TransitionResult(Outcome.INVALID_TRANSITION, order("PENDING")));
+
+        mockMvc.perform(put("/api/kitchen/orders/1/status").session(session("Manager"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Order is PENDING and cannot move to COMPLETED"));
+    }
+
+    @Test
+    public void updateStatus_unknownOrder_returns404() throws Exception {
+        when(kitchenQueueService.transition(9L, OrderStatus.PREPARING, 42L))
+                .thenReturn(new TransitionResult(Outcome.NOT_FOUND, null));
+
+        mockMvc.perform(put("/api/kitchen/orders/9/status").session(session("Manager"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"PREPARING\"}"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,118 @@
+package com.pizzastore.controller;
+
+import com.pizzastore.model.CrustType;
+import com.pizzastore.model.PizzaSize;
+import com.pizzastore.model.Product;
+import com.pizzastore.model.ProductCategory;
+import com.pizzastore.model.Topping;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.CrustTypeRepository;
+import com.pizzastore.repository.PizzaSizeRepository;
+import com.pizzastore.repository.ProductCategoryRepository;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.ToppingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest({MenuController.class, GlobalExceptionHandler.class})
+public class MenuControllerTest {
+
+    // The controller keeps its rendered menu between tests, so each test uses its own catalog version.
+    private static final AtomicLong versions = new AtomicLong(1000);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CatalogCache catalogCache;
+    @MockBean
+    private ProductCategoryRepository productCategoryRepository;
+    @MockBean
+    private ProductRepository productRepository;
+    @MockBean
+    private PizzaSizeRepository pizzaSizeRepository;
+    @MockBean
+    private CrustTypeRepository crustTypeRepository;
+    @MockBean
+    private ToppingRepository toppingRepository;
+
+    private long version;
+
+    @BeforeEach
+    public void setUp() {
+        version = versions.incrementAndGet();
+        when(catalogCache.version()).thenReturn(version);
+        when(productCategoryRepository.findAll()).thenReturn(List.of(new ProductCategory(1L, "Pizzas")));
+        when(productRepository.findAll()).thenReturn(List.of(new Product(1L, 1L, "Margherita", new BigDecimal("12.99"), true)));
+        when(pizzaSizeRepository.findAll()).thenReturn(List.of(new PizzaSize(1L, "Large", new BigDecimal("4.00"))));
+        when(crustTypeRepository.findAll()).thenReturn(List.of(new CrustType(1L, "Thin", new BigDecimal("0.00"))));
+        when(toppingRepository.findAll()).thenReturn(List.of(new Topping(1L, "Pepperoni", new BigDecimal("1.49"))));
+    }
+
+    // --- GET /api/menu ---
+
+    @Test
+    public void getMenu_returnsWholeCatalog() throws Exception {
+        mockMvc.perform(get("/api/menu"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.categories[0].categoryName").value("Pizzas"))
+                .andExpect(jsonPath("$.products[0].productName").value("Margherita"))
+                .andExpect(jsonPath("$.sizes[0].sizeName").value("Large"))
+                .andExpect(jsonPath("$.crusts[0].crustName").value("Thin"))
+                .andExpect(jsonPath("$.toppings[0].toppingName").value("Pepperoni"));
+    }
+
+    @Test
+    public void getMenu_matchingIfNoneMatch_returnsNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/menu"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/menu").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void getMenu_staleIfNoneMatch_returnsFullMenu() throws Exception {
+        mockMvc.perform(get("/api/menu").header("If-None-Match", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].productName").value("Margherita"));
+    }
+
+    @Test
+    public void getMenu_sameVersion_serializesOnce() throws Exception {
+        mockMvc.perform(get("/api/menu")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/menu")).andExpect(status().isOk());
+
+        verify(productRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void getMenu_newCatalogVersion_rendersAgainWithNewEtag() throws Exception {
+        String before = mockMvc.perform(get("/api/menu"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        when(catalogCache.version()).thenReturn(versions.incrementAndGet());
+        when(productRepository.findAll()).thenReturn(List.of(new Product(1L, 1L, "Pepperoni", new BigDecimal("13.99"), true)));
+
+        mockMvc.perform(get("/api/menu").header("If-None-Match", before))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].productName").value("Pepperoni"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.pizzastore.controller;
+
+import com.pizzastore.service.MetricsService;
+import com.pizzastore.service.MetricsService.Kind;
+import com.pizzastore.service.MetricsService.TimerStats;
+import com.pizzastore.service.PasswordHashingService;
+import com.pizzastore.service.QueryStatsService;
+import com.pizzastore.service.QueryStatsService.SlowQuery;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest({MetricsController.class, GlobalExceptionHandler.class})
+public class MetricsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private MetricsService metricsService;
+
+    @MockBean
+    private QueryStatsService queryStatsService;
+
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+
+    private static MockHttpSession session(String role) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userId", 1L);
+        session.setAttribute("role", role);
+        return session;
+    }
+
+    @Test
+    public void getMetrics_noSession_returns401() throws Exception {
+        mockMvc.perform(get("/api/admin/metrics"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void getMetrics_customer_returns403() throws Exception {
+        mockMvc.perform(get("/api/admin/metrics").session(session("Customer")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void getMetrics_staff_returnsEndpointsQueriesSlowQueriesAndHashingPool() throws Exception {
+        when(metricsService.snapshot(Kind.HTTP)).thenReturn(List.of(
+                new TimerStats("POST /api/checkout/process", 10, 1, 2, 40.0, 120.0, 35.0, 90.0, 118.0)));
+        when(metricsService.snapshot(Kind.SQL)).thenReturn(List.of(
+                new TimerStats("OrderRepository.save", 10, 0, 0, 12.0, 30.0, 11.0, 25.0, 29.0)));
+        when(queryStatsService.slowQueries()).thenReturn(List.of(
+                new SlowQuery("select * from order_items where order_id in (?+)", 3, 450.0, 150.0, 200.0)));
+        when(passwordHashingService.stats()).thenReturn(
+                new PasswordHashingService.Stats(4, 1, 0, 64, 100, 2, 0, 0.5, 250.0));
+
+        mockMvc.perform(get("/api/admin/metrics").session(session("Manager")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.endpoints[0].name").value("POST /api/checkout/process"))
+                .andExpect(jsonPath("$.endpoints[0].p99Ms").value(118.0))
+                .andExpect(jsonPath("$.endpoints[0].errors").value(1))
+                .andExpect(jsonPath("$.endpoints[0].inFlight").value(2))
+                .andExpect(jsonPath("$.queries[0].name").value("OrderRepository.save"))
+                .andExpect(jsonPath("$.slowQueries[0].fingerprint").value("select * from order_items where order_id in (?+)"))
+                .andExpect(jsonPath("$.slowQueries[0].count").value(3))
+                .andExpect(jsonPath("$.passwordHashing.rejected").value(2));
+    }
+}
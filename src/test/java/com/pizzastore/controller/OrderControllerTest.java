@@ -1,6 +1,8 @@
 package com.pizzastore.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pizzastore.dto.OrderDto;
+import com.pizzastore.dto.OrderHistoryPageDto;
 import com.pizzastore.dto.OrderItemDto;
 import com.pizzastore.model.Order;
 import com.pizzastore.repository.OrderRepository;
@@ -9,13 +11,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpSession;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 class OrderControllerTest {
@@ -27,7 +39,7 @@ class OrderControllerTest {
     @BeforeEach
     void setUp() {
         orderRepository = mock(OrderRepository.class);
-        controller      = new OrderController(orderRepository);
+        controller      = new OrderController(orderRepository, new ObjectMapper().findAndRegisterModules());
         session         = new MockHttpSession();
         session.setAttribute("userId", 1L);
     }
@@ -100,8 +112,7 @@ class OrderControllerTest {
                 order(1L, "DELIVERED", "PICKUP",   10.80, null),
                 order(2L, "CANCELLED", "DELIVERY", 21.60, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(anyLong())).thenReturn(List.of());
-        when(orderRepository.findCustomItemsByOrderId(anyLong())).thenReturn(List.of());
+        when(orderRepository.findItemsByOrderIds(anyList())).thenReturn(Map.of());
 
         List<OrderDto> body = bodyOf(controller.getOrderHistory(session));
 
@@ -114,8 +125,7 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(42L, "DELIVERED", "PICKUP", 21.60, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(42L)).thenReturn(List.of());
-        when(orderRepository.findCustomItemsByOrderId(42L)).thenReturn(List.of());
+        when(orderRepository.findItemsByOrderIds(List.of(42L))).thenReturn(Map.of());
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -133,10 +143,9 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(1L, "PLACED", "PICKUP", 10.80, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(1L)).thenReturn(List.of(
+        when(orderRepository.findItemsByOrderIds(List.of(1L))).thenReturn(Map.of(1L, List.of(
                 item(10L, "Pepperoni Pizza", 1, 10.00)
-        ));
-        when(orderRepository.findCustomItemsByOrderId(1L)).thenReturn(List.of());
+        )));
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -149,10 +158,9 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(2L, "PREPARING", "DELIVERY", 12.96, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(2L)).thenReturn(List.of());
-        when(orderRepository.findCustomItemsByOrderId(2L)).thenReturn(List.of(
+        when(orderRepository.findItemsByOrderIds(List.of(2L))).thenReturn(Map.of(2L, List.of(
                 item(20L, "Custom Pizza", 1, 12.00)
-        ));
+        )));
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -165,12 +173,10 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(3L, "PLACED", "PICKUP", 23.76, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(3L)).thenReturn(List.of(
-                item(10L, "Margherita", 1, 11.00)
-        ));
-        when(orderRepository.findCustomItemsByOrderId(3L)).thenReturn(List.of(
+        when(orderRepository.findItemsByOrderIds(List.of(3L))).thenReturn(Map.of(3L, List.of(
+                item(10L, "Margherita", 1, 11.00),
                 item(20L, "Custom Pizza", 1, 11.00)
-        ));
+        )));
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -184,11 +190,10 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(4L, "DELIVERED", "PICKUP", 32.40, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(4L)).thenReturn(List.of(
+        when(orderRepository.findItemsByOrderIds(List.of(4L))).thenReturn(Map.of(4L, List.of(
                 item(1L, "Pizza A", 1, 10.00),
                 item(2L, "Pizza B", 1, 20.00)
-        ));
-        when(orderRepository.findCustomItemsByOrderId(4L)).thenReturn(List.of());
+        )));
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -200,10 +205,9 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(5L, "DELIVERED", "PICKUP", 32.40, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(5L)).thenReturn(List.of(
+        when(orderRepository.findItemsByOrderIds(List.of(5L))).thenReturn(Map.of(5L, List.of(
                 item(1L, "Pizza", 1, 30.00)
-        ));
-        when(orderRepository.findCustomItemsByOrderId(5L)).thenReturn(List.of());
+        )));
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -215,8 +219,7 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(6L, "PLACED", "PICKUP", 0.0, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(6L)).thenReturn(List.of());
-        when(orderRepository.findCustomItemsByOrderId(6L)).thenReturn(List.of());
+        when(orderRepository.findItemsByOrderIds(List.of(6L))).thenReturn(Map.of());
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -231,8 +234,7 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(7L, "DELIVERED", "PICKUP", 10.80, null)
         ));
-        when(orderRepository.findRegularItemsByOrderId(7L)).thenReturn(List.of());
-        when(orderRepository.findCustomItemsByOrderId(7L)).thenReturn(List.of());
+        when(orderRepository.findItemsByOrderIds(List.of(7L))).thenReturn(Map.of());
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
@@ -244,11 +246,168 @@ class OrderControllerTest {
         when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
                 order(8L, "DELIVERED", "PICKUP", 26.28, 5.00)
         ));
-        when(orderRepository.findRegularItemsByOrderId(8L)).thenReturn(List.of());
-        when(orderRepository.findCustomItemsByOrderId(8L)).thenReturn(List.of());
+        when(orderRepository.findItemsByOrderIds(List.of(8L))).thenReturn(Map.of());
 
         OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
 
         assertEquals(0, new BigDecimal("5.00").compareTo(dto.getDiscount()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getOrderHistory_taxesSubtotalAfterDiscountLikeCheckout() {
+        when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
+                order(9L, "DELIVERED", "PICKUP", 27.00, 5.00)
+        ));
+        when(orderRepository.findItemsByOrderIds(List.of(9L))).thenReturn(Map.of(9L, List.of(
+                item(1L, "Pizza", 1, 30.00)
+        )));
+
+        OrderDto dto = bodyOf(controller.getOrderHistory(session)).get(0);
+
+        // (30.00 - 5.00) × 0.08 = 2.00, and 25.00 + 2.00 is the stored total
+        assertEquals(0, new BigDecimal("2.00").compareTo(dto.getTax()));
+        assertEquals(0, dto.getSubtotal().subtract(dto.getDiscount()).add(dto.getTax()).compareTo(dto.getTotal()));
+    }
+
+    // ── Query count ───────────────────────────────────────────────────────────
+
+    @Test
+    void getOrderHistory_loadsItemsForAllOrdersInOneCall() {
+        when(orderRepository.findByCustomerId(1L)).thenReturn(List.of(
+                order(1L, "DELIVERED", "PICKUP",   10.80, null),
+                order(2L, "DELIVERED", "DELIVERY", 21.60, null)
+        ));
+        when(orderRepository.findItemsByOrderIds(List.of(1L, 2L))).thenReturn(Map.of(
+                2L, List.of(item(20L, "Custom Pizza", 1, 20.00))
+        ));
+
+        List<OrderDto> body = bodyOf(controller.getOrderHistory(session));
+
+        verify(orderRepository, times(1)).findItemsByOrderIds(anyList());
+        assertTrue(body.get(0).getItems().isEmpty());
+        assertEquals(1, body.get(1).getItems().size());
+    }
+
+    // ── Paginated history ─────────────────────────────────────────────────────
+
+    @Test
+    void getOrderHistoryPage_unauthenticated_returns401() {
+        ResponseEntity<?> response = controller.getOrderHistoryPage(null, 20, new MockHttpSession());
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verify(orderRepository, never()).findPageByCustomerId(anyLong(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getOrderHistoryPage_limitOutOfRange_returnsBadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, controller.getOrderHistoryPage(null, 0, session).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, controller.getOrderHistoryPage(null, 101, session).getStatusCode());
+    }
+
+    @Test
+    void getOrderHistoryPage_invalidCursor_returnsBadRequest() {
+        ResponseEntity<?> response = controller.getOrderHistoryPage("not-a-cursor", 20, session);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void getOrderHistoryPage_lastPage_hasNoNextCursor() {
+        when(orderRepository.findPageByCustomerId(eq(1L), isNull(), isNull(), eq(3))).thenReturn(List.of(
+                order(2L, "DELIVERED", "PICKUP", 10.80, null),
+                order(1L, "DELIVERED", "PICKUP", 10.80, null)
+        ));
+
+        OrderHistoryPageDto page = (OrderHistoryPageDto) controller.getOrderHistoryPage(null, 2, session).getBody();
+
+        assertNotNull(page);
+        assertEquals(2, page.getOrders().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getOrderHistoryPage_nextCursorResumesAfterLastOrder() {
+        Order newest = order(3L, "DELIVERED", "PICKUP", 10.80, null);
+        Order middle = order(2L, "DELIVERED", "PICKUP", 10.80, null);
+        Order oldest = order(1L, "DELIVERED", "PICKUP", 10.80, null);
+        when(orderRepository.findPageByCustomerId(eq(1L), isNull(), isNull(), eq(3)))
+                .thenReturn(List.of(newest, middle, oldest));
+        when(orderRepository.findPageByCustomerId(1L, middle.getOrderTimestamp(), 2L, 3))
+                .thenReturn(List.of(oldest));
+
+        OrderHistoryPageDto first = (OrderHistoryPageDto) controller.getOrderHistoryPage(null, 2, session).getBody();
+        assertNotNull(first);
+        assertEquals(List.of(3L, 2L), first.getOrders().stream().map(OrderDto::getOrderId).toList());
+        assertNotNull(first.getNextCursor());
+
+        OrderHistoryPageDto second = (OrderHistoryPageDto) controller.getOrderHistoryPage(first.getNextCursor(), 2, session).getBody();
+        assertNotNull(second);
+        assertEquals(List.of(1L), second.getOrders().stream().map(OrderDto::getOrderId).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void getOrderHistoryPage_lastOrderWithoutTimestamp_resumesAfterItsId() {
+        Order newest = order(3L, "DELIVERED", "PICKUP", 10.80, null);
+        Order untimed = order(2L, "DELIVERED", "PICKUP", 10.80, null);
+        untimed.setOrderTimestamp(null);
+        when(orderRepository.findPageByCustomerId(eq(1L), isNull(), isNull(), eq(3)))
+                .thenReturn(List.of(newest, untimed, order(1L, "DELIVERED", "PICKUP", 10.80, null)));
+        when(orderRepository.findPageByCustomerId(eq(1L), isNull(), eq(2L), eq(3)))
+                .thenReturn(List.of(order(1L, "DELIVERED", "PICKUP", 10.80, null)));
+
+        OrderHistoryPageDto first = (OrderHistoryPageDto) controller.getOrderHistoryPage(null, 2, session).getBody();
+        assertNotNull(first);
+        OrderHistoryPageDto second = (OrderHistoryPageDto) controller.getOrderHistoryPage(first.getNextCursor(), 2, session).getBody();
+
+        assertNotNull(second);
+        assertEquals(List.of(1L), second.getOrders().stream().map(OrderDto::getOrderId).toList());
+    }
+
+    // ── Streaming history ─────────────────────────────────────────────────────
+
+    @Test
+    void streamOrderHistory_unauthenticated_returns401() {
+        ResponseEntity<?> response = controller.streamOrderHistory(new MockHttpSession());
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+    }
+
+    @Test
+    void streamOrderHistory_writesOneJsonLinePerOrder() throws Exception {
+        when(orderRepository.findPageByCustomerId(eq(1L), isNull(), isNull(), anyInt())).thenReturn(List.of(
+                order(2L, "DELIVERED", "PICKUP", 10.80, null),
+                order(1L, "DELIVERED", "PICKUP", 21.60, null)
+        ));
+
+        ResponseEntity<?> response = controller.streamOrderHistory(session);
+        assertEquals(OrderController.APPLICATION_NDJSON, response.getHeaders().getContentType());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"orderId\":2"));
+        assertTrue(lines[1].contains("\"orderId\":1"));
+    }
+
+    @Test
+    void streamOrderHistory_batchEndingWithoutTimestamp_movesOn() throws Exception {
+        List<Order> firstBatch = new ArrayList<>();
+        for (long id = 100; id > 50; id--) {
+            Order o = order(id, "DELIVERED", "PICKUP", 10.80, null);
+            o.setOrderTimestamp(null);
+            firstBatch.add(o);
+        }
+        when(orderRepository.findPageByCustomerId(eq(1L), isNull(), isNull(), anyInt())).thenReturn(firstBatch);
+        when(orderRepository.findPageByCustomerId(eq(1L), isNull(), eq(51L), anyInt()))
+                .thenReturn(List.of(order(7L, "DELIVERED", "PICKUP", 10.80, null)));
+
+        ResponseEntity<?> response = controller.streamOrderHistory(session);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+
+        assertEquals(51, out.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+}
@@ -1,10 +1,20 @@
 package com.pizzastore.controller;
 
+import com.pizzastore.service.ReportingService;
+import com.pizzastore.service.ReportingService.ProductSales;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -14,6 +24,20 @@ public class ReportingControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @MockBean
+    private ReportingService reportingService;
+
+    @BeforeEach
+    public void setUp() {
+        when(reportingService.getReports()).thenReturn(List.of(
+                Map.of("name", "Total Orders", "value", 1248L),
+                Map.of("name", "Revenue This Month", "value", new BigDecimal("38420.00")),
+                Map.of("name", "Average Order Value", "value", new BigDecimal("30.79")),
+                Map.of("name", "Top Selling Pizza", "value", "Margherita"),
+                Map.of("name", "Active Customers", "value", 342L)
+        ));
+    }
+
     // --- GET /api/reports ---
 
     @Test
@@ -58,4 +82,30 @@ public class ReportingControllerTest {
                 .andExpect(jsonPath("$[?(@.name == 'Top Selling Pizza')].value").value("Margherita"))
                 .andExpect(jsonPath("$[?(@.name == 'Active Customers')].value").value(342));
     }
-}
\ No newline at end of file
+
+    // --- GET /api/reports/top-products ---
+
+    @Test
+    public void getTopProducts_returnsServiceRanking() throws Exception {
+        when(reportingService.getTopProducts(2)).thenReturn(List.of(
+                new ProductSales("Margherita", 40),
+                new ProductSales("Custom Pizza", 12)
+        ));
+
+        mockMvc.perform(get("/api/reports/top-products").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("Margherita"))
+                .andExpect(jsonPath("$[0].units").value(40));
+    }
+
+    @Test
+    public void getTopProducts_defaultsToFive() throws Exception {
+        when(reportingService.getTopProducts(5)).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/reports/top-products"))
+                .andExpect(status().isOk());
+
+        verify(reportingService).getTopProducts(5);
+    }
+}
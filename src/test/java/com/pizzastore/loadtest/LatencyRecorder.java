@@ -0,0 +1,97 @@
+package com.pizzastore.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-endpoint request latencies from the load test's virtual users and
+ * turns them into a p50/p99/throughput report.
+ * Latencies are stored raw (one long per request) so percentiles are exact.
+ */
+class LatencyRecorder {
+
+    private static final class Endpoint {
+        private long[] nanos = new long[1024];
+        private int count;
+        private final LongAdder errors = new LongAdder();
+
+        synchronized void add(long latencyNanos) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latencyNanos;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(nanos, count);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    /**
+     * Summary of one endpoint over the measured period.
+     */
+    record Stats(String endpoint, int requests, long errors, double throughputPerSecond,
+                 double p50Ms, double p99Ms, double maxMs) {}
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long latencyNanos, boolean success) {
+        Endpoint e = endpoints.computeIfAbsent(endpoint, k -> new Endpoint());
+        e.add(latencyNanos);
+        if (!success) {
+            e.errors.increment();
+        }
+    }
+
+    long totalErrors() {
+        return endpoints.values().stream().mapToLong(e -> e.errors.sum()).sum();
+    }
+
+    List<Stats> stats(double measuredSeconds) {
+        List<Stats> result = new ArrayList<>();
+        endpoints.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    long[] sorted = entry.getValue().sorted();
+                    result.add(new Stats(
+                            entry.getKey(),
+                            sorted.length,
+                            entry.getValue().errors.sum(),
+                            sorted.length / measuredSeconds,
+                            percentileMs(sorted, 50),
+                            percentileMs(sorted, 99),
+                            sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000.0));
+                });
+        return result;
+    }
+
+    String report(double measuredSeconds) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-34s %9s %7s %10s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"));
+        for (Stats s : stats(measuredSeconds)) {
+            out.append(String.format(Locale.ROOT, "%-34s %9d %7d %10.1f %9.2f %9.2f %9.2f%n",
+                    s.endpoint(), s.requests(), s.errors(), s.throughputPerSecond(),
+                    s.p50Ms(), s.p99Ms(), s.maxMs()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Nearest-rank percentile.
+     */
+    private static double percentileMs(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,211 @@
+package com.pizzastore.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * End-to-end load test: boots the whole application on a random port against an
+ * in-memory H2 database in PostgreSQL mode, seeded with 500 customers and 50,000
+ * historical orders (see src/test/resources/loadtest), then has concurrent virtual
+ * users browse the menu, page through their order history and check out.
+ * Prints p50/p99 latency and throughput per endpoint and writes the same table to
+ * target/loadtest-report.txt.
+ * Excluded from the normal build; run it with
+ *   mvn -Ploadtest test
+ * and size it with -Dloadtest.users, -Dloadtest.warmupSeconds and -Dloadtest.durationSeconds.
+ * H2 is a stand-in: absolute numbers won't match PostgreSQL, but runs on the same
+ * machine are comparable, which is what catches regressions.
+ * Not covered: the work that follows a checkout in the background. The sales
+ * rollup flush writes with INSERT ... ON CONFLICT ... DO UPDATE using excluded.*,
+ * and the order event relay locks batches with FOR UPDATE SKIP LOCKED; H2 rejects
+ * both, so their intervals are pushed past the end of the run. Checkout numbers
+ * include queueing the ORDER_PLACED row but not draining order_outbox or
+ * flushing rollups.
+ */
+@Tag("load")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "spring.jpa.hibernate.ddl-auto=none",
+                // jOOQ 3.14's H2 dialect predates H2 2.x and gets no key back from INSERT ... RETURNING
+                "spring.jooq.sql-dialect=DEFAULT",
+                "spring.sql.init.mode=always",
+                "spring.sql.init.schema-locations=classpath:loadtest/schema.sql,classpath:schema.sql",
+                "spring.sql.init.data-locations=classpath:loadtest/seed.sql",
+                // Seeded hashes are strength 4; keep new ones cheap too so sign-in doesn't dominate
+                "auth.password.strength=4",
+                // ON CONFLICT ... excluded is PostgreSQL-only, so the rollup flush is left out of the run
+                // (including the one at shutdown, which would only log a failure)
+                "sales.rollup.flush-interval-ms=3600000",
+                // H2 rejects FOR UPDATE ... SKIP LOCKED, so the order event relay is left out too
+                "order.events.poll-interval-ms=3600000",
+                "logging.level.com.pizzastore=WARN",
+                "logging.level.com.pizzastore.service.SalesRollupService=OFF"
+        })
+class StoreLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreLoadTest.class);
+
+    private static final int SEEDED_CUSTOMERS = 500;
+    private static final String PASSWORD = "Pizza123!";
+
+    @LocalServerPort
+    private int port;
+
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    @Test
+    void mixedMenuHistoryAndCheckoutTraffic() throws Exception {
+        int users = Integer.getInteger("loadtest.users", 16);
+        int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 5);
+        int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 30);
+        if (users > SEEDED_CUSTOMERS) {
+            throw new IllegalArgumentException("At most " + SEEDED_CUSTOMERS + " users are seeded");
+        }
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long stopAt = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        List<Future<?>> running = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            VirtualUser user = new VirtualUser(u + 1, measureFrom, stopAt);
+            running.add(pool.submit(() -> {
+                user.run();
+                return null;
+            }));
+        }
+        for (Future<?> f : running) {
+            f.get();
+        }
+        pool.shutdown();
+
+        String report = String.format("Load test: %d users, %d s warmup, %d s measured%n%s",
+                users, warmupSeconds, durationSeconds, recorder.report(durationSeconds));
+        logger.warn("\n{}", report);
+        Path out = Path.of("target", "loadtest-report.txt");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, report);
+
+        assertEquals(0, recorder.totalErrors(), "requests failed during the load test, see report above");
+    }
+
+    /**
+     * One signed-in customer with its own session cookie, repeatedly picking an action:
+     * 50% load the menu, 30% read a page of order history, 20% add items and check out.
+     */
+    private final class VirtualUser {
+
+        private final long customerId;
+        private final long measureFrom;
+        private final long stopAt;
+        private final Random random;
+        private final HttpClient http;
+
+        VirtualUser(long customerId, long measureFrom, long stopAt) {
+            this.customerId = customerId;
+            this.measureFrom = measureFrom;
+            this.stopAt = stopAt;
+            this.random = new Random(customerId);
+            this.http = HttpClient.newBuilder()
+                    .cookieHandler(new CookieManager())
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+        }
+
+        void run() throws Exception {
+            call("POST /api/auth/signIn/customer", post("/api/auth/signIn/customer",
+                    "{\"username\":\"customer" + customerId + "@example.com\",\"password\":\"" + PASSWORD + "\"}"));
+
+            while (System.nanoTime() < stopAt) {
+                int roll = random.nextInt(100);
+                if (roll < 50) {
+                    call("GET /api/menu", get("/api/menu"));
+                } else if (roll < 80) {
+                    call("GET /api/orders/history/page", get("/api/orders/history/page?limit=20"));
+                } else {
+                    checkout();
+                }
+            }
+        }
+
+        private void checkout() throws Exception {
+            long productId = 1 + random.nextInt(12);
+            call("POST /api/cart/add", post("/api/cart/add",
+                    "{\"productId\":" + productId + ",\"name\":\"Product " + productId + "\",\"sizeId\":3,"
+                            + "\"crustTypeId\":1,\"sauceName\":\"Regular\",\"quantity\":" + (1 + random.nextInt(2))
+                            + ",\"price\":12.99}"));
+            if (random.nextBoolean()) {
+                call("POST /api/cart/add", post("/api/cart/add",
+                        "{\"productId\":null,\"name\":\"Custom Pizza\",\"sizeId\":2,\"crustTypeId\":3,"
+                                + "\"sauceName\":\"Light\",\"toppingIdsFull\":[1],\"toppingIdsLeft\":[6],"
+                                + "\"toppingIdsRight\":[9],\"quantity\":1,\"price\":17.99}"));
+            }
+
+            String deliveryMethod = random.nextInt(3) == 0 ? "DELIVERY" : "PICKUP";
+            call("POST /api/checkout/process", post("/api/checkout/process",
+                    "{\"deliveryMethod\":\"" + deliveryMethod + "\",\"addressId\":" + customerId + ","
+                            + "\"deliveryAddress\":\"" + customerId + " Main St\\nSpringfield, IL, 62701\","
+                            + "\"cardNumber\":\"4111111111111111\",\"expirationDate\":\"12/30\",\"cvv\":\"123\"}"));
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(uri(path)).GET().build();
+        }
+
+        private HttpRequest post(String path, String json) {
+            return HttpRequest.newBuilder(uri(path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                    .build();
+        }
+
+        private URI uri(String path) {
+            return URI.create("http://localhost:" + port + path);
+        }
+
+        private void call(String endpoint, HttpRequest request) throws Exception {
+            long begin = System.nanoTime();
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            long end = System.nanoTime();
+
+            boolean success = response.statusCode() / 100 == 2;
+            if (!success) {
+                logger.warn("{} returned {}: {}", endpoint, response.statusCode(),
+                        new String(response.body(), StandardCharsets.UTF_8));
+            }
+            if (begin >= measureFrom || !success) {
+                recorder.record(endpoint, end - begin, success);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.model.CartItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart operations every menu click and checkout goes through.
+ * Each thread works on its own cart of {@code itemCount} items, like a real session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Thread)
+public class CartRepositoryBenchmark {
+
+    @Param({"1", "10", "50"})
+    int itemCount;
+
+    private CartRepository cartRepository;
+    private String cartId;
+    private CartItem existingProduct;
+    private Long lastCartItemId;
+    private int quantity;
+
+    @Setup
+    public void setUp() {
+        cartRepository = new CartRepository();
+        cartId = "benchmark-session";
+        for (long productId = 1; productId <= itemCount; productId++) {
+            lastCartItemId = cartRepository.addItem(cartId, item(productId)).getCartItemId();
+        }
+        existingProduct = item(itemCount);
+    }
+
+    private static CartItem item(long productId) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setName("Product " + productId);
+        item.setQuantity(1);
+        item.setPrice(9.99 + productId);
+        return item;
+    }
+
+    /**
+     * Adding a product that is already in the cart bumps its quantity, so the cart doesn't grow.
+     */
+    @Benchmark
+    public CartItem addItem() {
+        return cartRepository.addItem(cartId, existingProduct);
+    }
+
+    @Benchmark
+    public long getSubtotalCents() {
+        return cartRepository.getSubtotalCents(cartId);
+    }
+
+    @Benchmark
+    public boolean updateQuantity() {
+        quantity = quantity == 1 ? 2 : 1;
+        return cartRepository.updateQuantity(cartId, lastCartItemId, quantity);
+    }
+}
@@ -0,0 +1,90 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.model.CartItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartRepositoryTest {
+
+    private CartRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = new CartRepository();
+        set("maxCarts", 2);
+    }
+
+    private void set(String field, Object value) throws Exception {
+        Field f = CartRepository.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(repository, value);
+    }
+
+    private static CartItem item(long productId) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setName("Product " + productId);
+        item.setQuantity(1);
+        item.setPrice(10.0);
+        return item;
+    }
+
+    @Test
+    void fullStore_evictsOldestCart() {
+        repository.addItem("a", item(1));
+        repository.addItem("b", item(1));
+        repository.addItem("c", item(1));
+
+        assertEquals(2, repository.size());
+        assertTrue(repository.findAll("a").isEmpty());
+        assertEquals(1, repository.findAll("b").size());
+        assertEquals(1, repository.findAll("c").size());
+    }
+
+    @Test
+    void fullStore_keepsCartUsedSinceItsSecondChance() throws Exception {
+        set("maxCarts", 3);
+        repository.addItem("a", item(1));
+        repository.addItem("b", item(1));
+        repository.addItem("c", item(1));
+        repository.addItem("d", item(1)); // evicts a; b and c have had their second chance
+
+        repository.findAll("b");
+        repository.addItem("e", item(1));
+
+        assertEquals(3, repository.size());
+        assertEquals(1, repository.findAll("b").size());
+        assertTrue(repository.findAll("c").isEmpty());
+        assertEquals(1, repository.findAll("e").size());
+    }
+
+    @Test
+    void concurrentNewCarts_neverLeaveStorePastItsBound() throws Exception {
+        set("maxCarts", 50);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> running = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            running.add(pool.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    repository.addItem("cart-" + thread + "-" + i, item(1));
+                }
+            }));
+        }
+        for (Future<?> f : running) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertTrue(repository.size() <= 50, "store holds " + repository.size() + " carts");
+    }
+}
@@ -0,0 +1,81 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.model.PizzaSize;
+import com.pizzastore.model.Topping;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogCacheTest {
+
+    private CatalogCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CatalogCache();
+        loads = new AtomicInteger();
+    }
+
+    private List<Topping> loadToppings() {
+        loads.incrementAndGet();
+        return List.of(new Topping(1L, "Pepperoni", new BigDecimal("1.49")));
+    }
+
+    @Test
+    void get_loadsOnceThenServesFromMemory() {
+        List<Topping> first  = cache.get(Topping.class, this::loadToppings);
+        List<Topping> second = cache.get(Topping.class, this::loadToppings);
+
+        assertEquals(1, loads.get());
+        assertSame(first, second);
+    }
+
+    @Test
+    void get_returnsImmutableList() {
+        List<Topping> toppings = cache.get(Topping.class, this::loadToppings);
+
+        assertThrows(UnsupportedOperationException.class, () -> toppings.add(new Topping()));
+    }
+
+    @Test
+    void get_cachesEachTypeSeparately() {
+        cache.get(Topping.class, this::loadToppings);
+        List<PizzaSize> sizes = cache.get(PizzaSize.class,
+                () -> List.of(new PizzaSize(1L, "Large", new BigDecimal("14.99"))));
+
+        assertEquals("Large", sizes.get(0).getSizeName());
+        cache.get(Topping.class, this::loadToppings);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidate_forcesReloadAndBumpsVersion() {
+        cache.get(Topping.class, this::loadToppings);
+        long before = cache.version();
+
+        cache.invalidate();
+        cache.get(Topping.class, this::loadToppings);
+
+        assertEquals(2, loads.get());
+        assertEquals(before + 1, cache.version());
+    }
+
+    @Test
+    void get_invalidatedWhileLoading_doesNotCacheStaleRows() {
+        List<Topping> stale = cache.get(Topping.class, () -> {
+            // A manager edits the catalog while this read is still running.
+            cache.invalidate();
+            return loadToppings();
+        });
+
+        assertEquals(1, stale.size());
+        cache.get(Topping.class, this::loadToppings);
+        assertEquals(2, loads.get(), "Rows loaded before the invalidation must not be cached");
+    }
+}
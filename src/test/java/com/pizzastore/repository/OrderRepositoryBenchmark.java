@@ -0,0 +1,38 @@
+package com.pizzastore.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the free-text delivery address on every DELIVERY checkout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Thread)
+public class OrderRepositoryBenchmark {
+
+    private String address = "123 Main St\nSpringfield, IL, 62701";
+    private String windowsAddress = "  4500 North Lincoln Avenue Apt 12  \r\n  Chicago , IL , 60625  ";
+
+    @Benchmark
+    public OrderRepository.ParsedAddress parseAddress() {
+        return OrderRepository.parseAddress(address);
+    }
+
+    @Benchmark
+    public OrderRepository.ParsedAddress parseAddressWithPadding() {
+        return OrderRepository.parseAddress(windowsAddress);
+    }
+}
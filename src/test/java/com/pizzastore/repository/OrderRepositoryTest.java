@@ -0,0 +1,186 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.Order;
+import com.pizzastore.model.Payment;
+import com.pizzastore.repository.OrderOutboxRepository.NewMessage;
+import org.h2.jdbcx.JdbcDataSource;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs OrderRepository.save against an in-memory H2 database in PostgreSQL mode.
+ */
+class OrderRepositoryTest {
+
+    private DSLContext dsl;
+    private OrderRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dsl = DSL.using(dataSource, SQLDialect.DEFAULT);
+
+        dsl.execute("CREATE TABLE toppings (topping_id INTEGER PRIMARY KEY)");
+        dsl.execute("INSERT INTO toppings (topping_id) VALUES (1), (2), (3)");
+        dsl.execute("CREATE TABLE orders (order_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "customer_id INTEGER, address_id INTEGER, promotion_id INTEGER, employee_id INTEGER, "
+                + "order_timestamp TIMESTAMP, total_amount NUMERIC(10, 2), discount_amount NUMERIC(10, 2), "
+                + "status VARCHAR(20), delivery_method VARCHAR(20))");
+        dsl.execute("CREATE TABLE order_items (order_item_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "order_id INTEGER NOT NULL REFERENCES orders (order_id), product_id INTEGER NOT NULL, "
+                + "size_id INTEGER, crust_id INTEGER, sauce_name VARCHAR(50), quantity INTEGER NOT NULL, "
+                + "price_per NUMERIC(10, 2) NOT NULL, item_notes VARCHAR(255))");
+        dsl.execute("CREATE SEQUENCE order_custom_item_order_item_id_seq");
+        dsl.execute("CREATE TABLE order_custom_item ("
+                + "order_item_id INTEGER DEFAULT nextval('order_custom_item_order_item_id_seq') PRIMARY KEY, "
+                + "order_id INTEGER NOT NULL REFERENCES orders (order_id), size_id INTEGER, crust_id INTEGER, "
+                + "sauce_name VARCHAR(50), quantity INTEGER NOT NULL, price_per NUMERIC(10, 2) NOT NULL)");
+        dsl.execute("CREATE TABLE order_custom_item_topping ("
+                + "custom_topping_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "order_item_id INTEGER NOT NULL REFERENCES order_custom_item (order_item_id), "
+                + "pizza_half VARCHAR(10) NOT NULL, topping_id INTEGER NOT NULL REFERENCES toppings (topping_id))");
+
+        dsl.execute("CREATE TABLE payment_methods (payment_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "order_id INTEGER NOT NULL REFERENCES orders (order_id), address_id INTEGER, "
+                + "cc_number VARCHAR(19), exp_month INTEGER, exp_year INTEGER, ccv_number VARCHAR(4))");
+        dsl.execute("CREATE TABLE order_outbox (outbox_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "order_id BIGINT NOT NULL, event_type VARCHAR(32) NOT NULL, payload TEXT NOT NULL, "
+                + "created_at TIMESTAMP NOT NULL, available_at TIMESTAMP NOT NULL, "
+                + "attempts INTEGER NOT NULL DEFAULT 0, last_error VARCHAR(500))");
+
+        repository = new OrderRepository(dsl, new SchemaDescriptor(dsl), new OrderOutboxRepository(dsl),
+                new PaymentRepository(dsl));
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.setCustomerId(7L);
+        order.setOrderTimestamp(LocalDateTime.of(2025, 3, 15, 12, 0));
+        order.setTotalAmount(new BigDecimal("40.00"));
+        order.setDiscountAmount(BigDecimal.ZERO);
+        order.setStatus("PENDING");
+        order.setDeliveryMethod("PICKUP");
+        return order;
+    }
+
+    private static CartItem product(long productId) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setQuantity(1);
+        item.setPrice(12.99);
+        return item;
+    }
+
+    private static CartItem customPizza(String sauce, Long[] full, Long[] left) {
+        CartItem item = new CartItem();
+        item.setSizeId(2L);
+        item.setSauceName(sauce);
+        item.setToppingIdsFull(full);
+        item.setToppingIdsLeft(left);
+        item.setQuantity(1);
+        item.setPrice(14.99);
+        return item;
+    }
+
+    private int count(String table) {
+        return dsl.fetchCount(DSL.table(table));
+    }
+
+    @Test
+    void save_attachesEachPizzasToppingsToThatPizza() {
+        Long orderId = repository.save(order(), List.of(
+                product(1L),
+                customPizza("Light", new Long[]{1L, 2L}, null),
+                customPizza("Heavy", null, new Long[]{3L})));
+
+        assertNotNull(orderId);
+        assertEquals(1, count("order_items"));
+        List<String> toppings = dsl.fetch("SELECT ci.sauce_name, t.pizza_half, t.topping_id "
+                        + "FROM order_custom_item ci JOIN order_custom_item_topping t ON t.order_item_id = ci.order_item_id "
+                        + "WHERE ci.order_id = ? ORDER BY t.topping_id", orderId)
+                .map(r -> r.get(0) + " " + r.get(1) + " " + r.get(2));
+        assertEquals(List.of("Light FULL 1", "Light FULL 2", "Heavy LEFT 3"), toppings);
+    }
+
+    @Test
+    void save_failingStatement_rollsBackTheWholeOrder() {
+        List<CartItem> items = List.of(
+                product(1L),
+                customPizza("Light", new Long[]{1L}, null),
+                customPizza("Heavy", new Long[]{99L}, null)); // no such topping
+
+        assertThrows(DataAccessException.class, () -> repository.save(order(), items));
+
+        assertEquals(0, count("orders"));
+        assertEquals(0, count("order_items"));
+        assertEquals(0, count("order_custom_item"));
+        assertEquals(0, count("order_custom_item_topping"));
+    }
+
+    @Test
+    void save_withPaymentAndOutbox_writesThemWithTheOrder() {
+        Payment payment = new Payment();
+        payment.setCcNumber("4111111111111111");
+        payment.setCcvNumber("123");
+        payment.setExpMonth(12L);
+        payment.setExpYear(30L);
+
+        Long orderId = repository.save(order(), List.of(product(1L)), payment,
+                List.of(new NewMessage("ORDER_PLACED", "{}")));
+
+        assertEquals(orderId, payment.getOrderId());
+        assertEquals(orderId, dsl.fetchOne("SELECT order_id FROM payment_methods").get(0, Long.class));
+        assertEquals(orderId, dsl.fetchOne("SELECT order_id FROM order_outbox").get(0, Long.class));
+    }
+
+    @Test
+    void save_failingStatement_leavesNoPaymentOrOutboxRow() {
+        List<CartItem> items = List.of(customPizza("Heavy", new Long[]{99L}, null)); // no such topping
+
+        assertThrows(DataAccessException.class, () -> repository.save(order(), items, new Payment(),
+                List.of(new NewMessage("ORDER_PLACED", "{}"))));
+
+        assertEquals(0, count("orders"));
+        assertEquals(0, count("payment_methods"));
+        assertEquals(0, count("order_outbox"));
+    }
+
+    @Test
+    void findPageByCustomerId_pagesThroughOrdersWithAndWithoutTimestamps() {
+        Order untimed = order();
+        untimed.setOrderTimestamp(null);
+        Long a = repository.save(order(), List.of(product(1L)));
+        Long b = repository.save(untimed, List.of(product(1L)));
+        Long c = repository.save(untimed, List.of(product(1L)));
+        Long d = repository.save(order(), List.of(product(1L)));
+
+        List<Long> seen = new ArrayList<>();
+        LocalDateTime afterTimestamp = null;
+        Long afterOrderId = null;
+        List<Order> page;
+        do {
+            page = repository.findPageByCustomerId(7L, afterTimestamp, afterOrderId, 1);
+            for (Order o : page) {
+                seen.add(o.getOrderId());
+                afterTimestamp = o.getOrderTimestamp();
+                afterOrderId = o.getOrderId();
+            }
+        } while (!page.isEmpty() && seen.size() <= 4);
+
+        assertEquals(List.of(c, b, d, a), seen);
+    }
+}
@@ -0,0 +1,139 @@
+package com.pizzastore.repository;
+
+import com.pizzastore.model.Promotion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PromoCodeIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 14);
+
+    /** A clock the test can move forward. */
+    private static class TestClock extends Clock {
+        Instant now = TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC);
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private PromotionRepository promotionRepository;
+    private TestClock clock;
+    private PromoCodeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        promotionRepository = mock(PromotionRepository.class);
+        clock = new TestClock();
+        index = new PromoCodeIndex(promotionRepository, clock);
+    }
+
+    private static Promotion promo(long id, String code, LocalDate expDt) {
+        Promotion promotion = new Promotion();
+        promotion.setPromotionId(id);
+        promotion.setCode(code);
+        promotion.setDiscountValue(5.0);
+        promotion.setExpDt(expDt);
+        return promotion;
+    }
+
+    @Test
+    void findActive_ignoresCaseAndSurroundingSpaces() {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(promo(1, "Save5", null)));
+
+        assertEquals(1L, index.findActive("SAVE5").orElseThrow().getPromotionId());
+        assertEquals(1L, index.findActive("  save5 ").orElseThrow().getPromotionId());
+        assertTrue(index.findActive("SAVE10").isEmpty());
+        assertTrue(index.findActive(null).isEmpty());
+    }
+
+    @Test
+    void lookups_loadOnceUntilInvalidated() {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(promo(1, "SAVE5", null)));
+        index.findActive("SAVE5");
+        index.findActive("SAVE10");
+        index.findActiveById(1L);
+        verify(promotionRepository, times(1)).findAllIncludingExpired();
+
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(promo(2, "SAVE10", null)));
+        index.invalidate();
+
+        assertTrue(index.findActive("SAVE5").isEmpty());
+        assertEquals(2L, index.findActive("SAVE10").orElseThrow().getPromotionId());
+        verify(promotionRepository, times(2)).findAllIncludingExpired();
+    }
+
+    @Test
+    void expiredPromotion_isKnownButNotActive() {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(promo(1, "OLD10", TODAY)));
+
+        assertTrue(index.findActive("OLD10").isEmpty());
+        assertTrue(index.isExpired("old10"));
+        assertFalse(index.isExpired("BOGUS"));
+    }
+
+    @Test
+    void sweepExpired_removesPromotionsOnceTheirDateArrives() {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(
+                promo(1, "TODAYONLY", TODAY.plusDays(1)),
+                promo(2, "FOREVER", null)));
+        assertTrue(index.findActive("TODAYONLY").isPresent());
+
+        index.sweepExpired();
+        assertTrue(index.findActive("TODAYONLY").isPresent());
+
+        clock.now = clock.now.plus(1, ChronoUnit.DAYS);
+        index.sweepExpired();
+
+        assertTrue(index.findActive("TODAYONLY").isEmpty());
+        assertTrue(index.findActiveById(1L).isEmpty());
+        assertTrue(index.isExpired("TODAYONLY"));
+        assertTrue(index.findActive("FOREVER").isPresent());
+        verify(promotionRepository, times(1)).findAllIncludingExpired();
+    }
+
+    @Test
+    void duplicateCode_lowerIdWins() {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(
+                promo(7, "save5", null),
+                promo(3, "SAVE5", null),
+                promo(1, "Save5", TODAY.minusDays(10))));
+
+        assertEquals(3L, index.findActive("SAVE5").orElseThrow().getPromotionId());
+        assertFalse(index.isExpired("SAVE5"));
+        assertEquals(1, index.active().size());
+    }
+
+    @Test
+    void failedReload_keepsTheCodesAlreadyLoaded() {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(promo(1, "SAVE5", null)));
+        index.findActive("SAVE5");
+        when(promotionRepository.findAllIncludingExpired()).thenThrow(new IllegalStateException("database down"));
+
+        index.reload();
+
+        assertTrue(index.findActive("SAVE5").isPresent());
+    }
+}
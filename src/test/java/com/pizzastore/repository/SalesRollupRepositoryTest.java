@@ -0,0 +1,94 @@
+package com.pizzastore.repository;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs SalesRollupRepository.rebuildBefore against an in-memory H2 database in PostgreSQL mode.
+ */
+class SalesRollupRepositoryTest {
+
+    private static final LocalDateTime YESTERDAY = LocalDateTime.of(2025, 3, 14, 0, 0);
+    private static final LocalDateTime TODAY = LocalDateTime.of(2025, 3, 15, 0, 0);
+
+    private DSLContext dsl;
+    private SalesRollupRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dsl = DSL.using(dataSource, SQLDialect.DEFAULT);
+
+        dsl.execute("CREATE TABLE orders (order_id INTEGER PRIMARY KEY, order_timestamp TIMESTAMP, total_amount NUMERIC(10, 2))");
+        dsl.execute("CREATE TABLE order_items (order_id INTEGER, product_id INTEGER, quantity INTEGER, price_per NUMERIC(10, 2))");
+        dsl.execute("CREATE TABLE order_custom_item (order_id INTEGER, quantity INTEGER, price_per NUMERIC(10, 2))");
+        dsl.execute("CREATE TABLE sales_rollup (bucket_start TIMESTAMP NOT NULL, dimension VARCHAR(16) NOT NULL, "
+                + "product_id BIGINT NOT NULL DEFAULT 0, order_count BIGINT NOT NULL DEFAULT 0, "
+                + "units BIGINT NOT NULL DEFAULT 0, revenue NUMERIC(14, 2) NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (bucket_start, dimension, product_id))");
+        dsl.execute("CREATE TABLE sales_rollup_watermark (watermark_id INT PRIMARY KEY, rebuilt_before TIMESTAMP)");
+        dsl.execute("INSERT INTO sales_rollup_watermark VALUES (1, NULL)");
+
+        repository = new SalesRollupRepository(dsl);
+    }
+
+    private void order(int orderId, LocalDateTime placedAt, String total) {
+        dsl.execute("INSERT INTO orders VALUES (?, ?, ?)", orderId, placedAt, new BigDecimal(total));
+    }
+
+    private Long orderCount(LocalDateTime day) {
+        Record r = dsl.fetchOne("SELECT order_count FROM sales_rollup WHERE bucket_start = ? AND dimension = 'ORDER'", day);
+        return r == null ? null : r.get(0, Long.class);
+    }
+
+    @Test
+    void rebuildBefore_rebuildsEarlierDaysAndLeavesTodaysBucketsAlone() {
+        order(1, YESTERDAY.plusHours(12), "10.00");
+        order(2, YESTERDAY.plusHours(13), "20.00");
+        order(3, TODAY.plusHours(9), "5.00");
+        // Flushed live by another instance that is still running
+        dsl.execute("INSERT INTO sales_rollup (bucket_start, dimension, order_count, revenue) VALUES (?, 'ORDER', 1, 5.00)", TODAY);
+
+        repository.rebuildBefore(TODAY);
+
+        assertEquals(2L, orderCount(YESTERDAY));
+        assertEquals(1L, orderCount(TODAY));
+        assertEquals(TODAY, dsl.fetchOne("SELECT rebuilt_before FROM sales_rollup_watermark").get(0, LocalDateTime.class));
+    }
+
+    @Test
+    void rebuildBefore_startsFromTheLastWatermark() {
+        order(1, YESTERDAY.minusDays(1).plusHours(12), "10.00");
+        repository.rebuildBefore(YESTERDAY);
+        dsl.execute("DELETE FROM orders"); // older days must come from the rollup now
+        order(2, YESTERDAY.plusHours(12), "20.00");
+
+        repository.rebuildBefore(TODAY);
+
+        assertEquals(1L, orderCount(YESTERDAY.minusDays(1)));
+        assertEquals(1L, orderCount(YESTERDAY));
+    }
+
+    @Test
+    void rebuildBefore_cutoffAlreadyReached_changesNothing() {
+        order(1, YESTERDAY.plusHours(12), "10.00");
+        repository.rebuildBefore(TODAY);
+        dsl.execute("UPDATE sales_rollup SET order_count = 7");
+
+        repository.rebuildBefore(TODAY);
+
+        assertEquals(7L, orderCount(YESTERDAY));
+    }
+}
@@ -0,0 +1,85 @@
+package com.pizzastore.repository;
+
+import org.jooq.ConnectionCallable;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class SchemaDescriptorTest {
+
+    private DSLContext dsl;
+    private Connection connection;
+    private DatabaseMetaData meta;
+    private SchemaDescriptor schema;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dsl = mock(DSLContext.class);
+        connection = mock(Connection.class);
+        meta = mock(DatabaseMetaData.class);
+        when(connection.getMetaData()).thenReturn(meta);
+        schema = new SchemaDescriptor(dsl);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void databaseAnswers() {
+        when(dsl.connectionResult(any())).thenAnswer(inv ->
+                ((ConnectionCallable<Object>) inv.getArgument(0)).run(connection));
+    }
+
+    private void addressColumns(String... names) throws Exception {
+        Iterator<String> remaining = List.of(names).iterator();
+        String[] current = new String[1];
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenAnswer(inv -> {
+            if (!remaining.hasNext()) return false;
+            current[0] = remaining.next();
+            return true;
+        });
+        when(rs.getString("COLUMN_NAME")).thenAnswer(inv -> current[0]);
+        when(meta.getColumns(any(), any(), eq("addresses"), isNull())).thenReturn(rs);
+    }
+
+    @Test
+    void addressPkColumn_idWithoutAddressId_isId() throws Exception {
+        addressColumns("id", "street_addr_1");
+        databaseAnswers();
+
+        assertEquals("id", schema.addressPkColumn());
+    }
+
+    @Test
+    void addressPkColumn_noColumnsInMetadata_defaultsToAddressId() throws Exception {
+        addressColumns();
+        databaseAnswers();
+
+        assertEquals("address_id", schema.addressPkColumn());
+    }
+
+    @Test
+    void failedStartupIntrospection_isRetriedOnFirstUse_thenCached() throws Exception {
+        addressColumns("ID", "STREET_ADDR_1");
+        when(dsl.connectionResult(any()))
+                .thenThrow(new DataAccessException("database unreachable"))
+                .thenAnswer(inv -> ((ConnectionCallable<?>) inv.getArgument(0)).run(connection));
+
+        schema.introspectOnStartup();
+        assertEquals("id", schema.addressPkColumn());
+        assertEquals("id", schema.addressPkColumn());
+
+        verify(dsl, times(2)).connectionResult(any());
+    }
+}
@@ -0,0 +1,253 @@
+package com.pizzastore.service;
+
+import com.pizzastore.dto.OrderConfirmationDto;
+import com.pizzastore.repository.IdempotencyRepository;
+import com.pizzastore.repository.IdempotencyRepository.StoredKey;
+import com.pizzastore.service.IdempotencyService.Claim;
+import com.pizzastore.service.IdempotencyService.Outcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    private static final OrderConfirmationDto CONFIRMATION =
+            new OrderConfirmationDto(123L, "PENDING", "PICKUP", new BigDecimal("27.00"), "Order processed successfully");
+
+    private IdempotencyRepository repository;
+    private MutableClock clock;
+    private IdempotencyService service;
+
+    /**
+     * A clock the test can move forward.
+     */
+    private static final class MutableClock extends Clock {
+        Instant now = Instant.parse("2025-03-15T12:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = mock(IdempotencyRepository.class);
+        clock = new MutableClock();
+        service = new IdempotencyService(repository, clock);
+        set("waitMs", 200L);
+    }
+
+    private void set(String field, Object value) throws Exception {
+        Field f = IdempotencyService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(service, value);
+    }
+
+    @Test
+    void claim_newKey_isAcquired() {
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "k", 7).outcome());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void claim_completedKey_replaysConfirmation() {
+        service.claim(1L, "k", 7);
+        service.complete(1L, "k", CONFIRMATION);
+
+        Claim claim = service.claim(1L, "k", 7);
+        assertEquals(Outcome.REPLAY, claim.outcome());
+        assertEquals(CONFIRMATION, claim.confirmation());
+    }
+
+    @Test
+    void claim_keysAreScopedPerCustomer() {
+        service.claim(1L, "k", 7);
+        service.complete(1L, "k", CONFIRMATION);
+
+        assertEquals(Outcome.ACQUIRED, service.claim(2L, "k", 7).outcome());
+    }
+
+    @Test
+    void claim_differentRequestHash_isKeyReused() {
+        service.claim(1L, "k", 7);
+
+        assertEquals(Outcome.KEY_REUSED, service.claim(1L, "k", 8).outcome());
+    }
+
+    @Test
+    void claim_whileFirstStillRunning_waitsForItsResult() throws Exception {
+        service.claim(1L, "k", 7);
+
+        CompletableFuture<Claim> repeat = CompletableFuture.supplyAsync(() -> service.claim(1L, "k", 7));
+        Thread.sleep(50);
+        service.complete(1L, "k", CONFIRMATION);
+
+        Claim claim = repeat.get(1, TimeUnit.SECONDS);
+        assertEquals(Outcome.REPLAY, claim.outcome());
+        assertEquals(CONFIRMATION, claim.confirmation());
+    }
+
+    @Test
+    void claim_firstStillRunningAfterWait_isInProgress() {
+        service.claim(1L, "k", 7);
+
+        assertEquals(Outcome.IN_PROGRESS, service.claim(1L, "k", 7).outcome());
+    }
+
+    @Test
+    void claim_afterRelease_isAcquiredAgain() {
+        service.claim(1L, "k", 7);
+        service.release(1L, "k");
+
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "k", 7).outcome());
+    }
+
+    @Test
+    void claim_waiterTakesOverWhenFirstReleases() throws Exception {
+        service.claim(1L, "k", 7);
+
+        CompletableFuture<Claim> repeat = CompletableFuture.supplyAsync(() -> service.claim(1L, "k", 7));
+        Thread.sleep(50);
+        service.release(1L, "k");
+
+        assertEquals(Outcome.ACQUIRED, repeat.get(1, TimeUnit.SECONDS).outcome());
+    }
+
+    @Test
+    void evictExpired_dropsCompletedKeysPastTtl() {
+        service.claim(1L, "done", 7);
+        service.complete(1L, "done", CONFIRMATION);
+        service.claim(1L, "running", 7);
+
+        clock.now = clock.now.plus(Duration.ofMinutes(61));
+
+        assertEquals(1, service.evictExpired());
+        assertEquals(1, service.size());
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "done", 7).outcome());
+    }
+
+    @Test
+    void claim_fullStore_evictsOldestCompletedKey() throws Exception {
+        set("maxKeys", 2);
+        service.claim(1L, "a", 7);
+        service.complete(1L, "a", CONFIRMATION);
+        service.claim(1L, "b", 7);
+        service.complete(1L, "b", CONFIRMATION);
+
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "c", 7).outcome());
+        assertEquals(2, service.size());
+        assertEquals(Outcome.REPLAY, service.claim(1L, "b", 7).outcome());
+    }
+
+    @Test
+    void claim_fullStore_keepsRunningCheckouts() throws Exception {
+        set("maxKeys", 2);
+        service.claim(1L, "running", 7);
+        service.claim(1L, "done", 7);
+        service.complete(1L, "done", CONFIRMATION);
+
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "c", 7).outcome());
+        assertEquals(2, service.size());
+        assertEquals(Outcome.IN_PROGRESS, service.claim(1L, "running", 7).outcome());
+    }
+
+    // --- table-backed ---
+
+    @Test
+    void tableBacked_keyCompletedOnAnotherInstance_isReplayed() throws Exception {
+        set("tableBacked", true);
+        when(repository.tryClaim(anyLong(), anyString(), anyInt(), any())).thenReturn(false);
+        when(repository.find(1L, "k")).thenReturn(Optional.of(
+                new StoredKey(7, LocalDateTime.now(clock), CONFIRMATION)));
+
+        Claim claim = service.claim(1L, "k", 7);
+
+        assertEquals(Outcome.REPLAY, claim.outcome());
+        assertEquals(CONFIRMATION, claim.confirmation());
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    void tableBacked_keyRunningOnAnotherInstance_isInProgress() throws Exception {
+        set("tableBacked", true);
+        when(repository.tryClaim(anyLong(), anyString(), anyInt(), any())).thenReturn(false);
+        when(repository.find(1L, "k")).thenReturn(Optional.of(
+                new StoredKey(7, LocalDateTime.now(clock), null)));
+
+        assertEquals(Outcome.IN_PROGRESS, service.claim(1L, "k", 7).outcome());
+    }
+
+    @Test
+    void tableBacked_keyPendingPastLease_isTakenOver() throws Exception {
+        set("tableBacked", true);
+        LocalDateTime abandoned = LocalDateTime.now(clock).minusMinutes(3);
+        when(repository.tryClaim(anyLong(), anyString(), anyInt(), any())).thenReturn(false, true);
+        when(repository.find(1L, "k")).thenReturn(Optional.of(new StoredKey(7, abandoned, null)));
+
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "k", 7).outcome());
+        verify(repository).deleteClaimedAt(1L, "k", abandoned);
+    }
+
+    @Test
+    void tableBacked_completedKeyPastLease_isStillReplayed() throws Exception {
+        set("tableBacked", true);
+        when(repository.tryClaim(anyLong(), anyString(), anyInt(), any())).thenReturn(false);
+        when(repository.find(1L, "k")).thenReturn(Optional.of(
+                new StoredKey(7, LocalDateTime.now(clock).minusMinutes(30), CONFIRMATION)));
+
+        assertEquals(Outcome.REPLAY, service.claim(1L, "k", 7).outcome());
+        verify(repository, never()).deleteClaimedAt(anyLong(), anyString(), any());
+    }
+
+    @Test
+    void tableBacked_completeAndReleaseWriteThrough() throws Exception {
+        set("tableBacked", true);
+        when(repository.tryClaim(anyLong(), anyString(), anyInt(), any())).thenReturn(true);
+
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "a", 7).outcome());
+        service.complete(1L, "a", CONFIRMATION);
+        service.claim(1L, "b", 7);
+        service.release(1L, "b");
+
+        verify(repository).complete(1L, "a", CONFIRMATION);
+        verify(repository).delete(1L, "b");
+    }
+
+    @Test
+    void tableBacked_databaseDown_fallsBackToMemory() throws Exception {
+        set("tableBacked", true);
+        when(repository.tryClaim(anyLong(), anyString(), anyInt(), any())).thenThrow(new RuntimeException("db down"));
+
+        assertEquals(Outcome.ACQUIRED, service.claim(1L, "k", 7).outcome());
+        assertEquals(Outcome.IN_PROGRESS, service.claim(1L, "k", 7).outcome());
+    }
+}
@@ -0,0 +1,254 @@
+package com.pizzastore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzastore.dto.KitchenFeedDto;
+import com.pizzastore.dto.KitchenOrderDto;
+import com.pizzastore.dto.OrderItemDto;
+import com.pizzastore.event.OrderLifecycleEvent;
+import com.pizzastore.event.OrderPlacedEvent;
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.CrustType;
+import com.pizzastore.model.Order;
+import com.pizzastore.model.OrderStatus;
+import com.pizzastore.model.PizzaSize;
+import com.pizzastore.repository.CrustTypeRepository;
+import com.pizzastore.repository.OrderOutboxRepository.NewMessage;
+import com.pizzastore.repository.OrderRepository;
+import com.pizzastore.repository.PizzaSizeRepository;
+import com.pizzastore.service.KitchenQueueService.Outcome;
+import com.pizzastore.service.KitchenQueueService.TransitionResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class KitchenQueueServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-15T12:00:00Z");
+    private static final LocalDateTime PLACED_AT = LocalDateTime.of(2025, 3, 15, 11, 50);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private OrderRepository orderRepository;
+    private PizzaSizeRepository pizzaSizeRepository;
+    private CrustTypeRepository crustTypeRepository;
+    private KitchenQueueService service;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        pizzaSizeRepository = mock(PizzaSizeRepository.class);
+        crustTypeRepository = mock(CrustTypeRepository.class);
+        when(pizzaSizeRepository.findAll()).thenReturn(List.of(new PizzaSize(2L, "Large", new BigDecimal("4.00"))));
+        when(crustTypeRepository.findAll()).thenReturn(List.of(new CrustType(3L, "Thin", new BigDecimal("1.00"))));
+        service = newService(Clock.fixed(NOW, ZoneOffset.UTC));
+        when(orderRepository.updateStatus(anyLong(), any(), any(), any(), any(), any())).thenReturn(true);
+    }
+
+    private KitchenQueueService newService(Clock clock) {
+        return new KitchenQueueService(orderRepository, pizzaSizeRepository, crustTypeRepository, objectMapper, clock);
+    }
+
+    private static Order order(long orderId, String status, String deliveryMethod, int minutesAfter) {
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setCustomerId(7L);
+        order.setStatus(status);
+        order.setDeliveryMethod(deliveryMethod);
+        order.setOrderTimestamp(PLACED_AT.plusMinutes(minutesAfter));
+        order.setTotalAmount(new BigDecimal("27.00"));
+        return order;
+    }
+
+    private static OrderItemDto item(String name) {
+        OrderItemDto item = new OrderItemDto();
+        item.setName(name);
+        item.setQuantity(1);
+        return item;
+    }
+
+    private void load(Order... orders) {
+        when(orderRepository.findActive(any())).thenReturn(List.of(orders));
+        when(orderRepository.findItemsByOrderIds(any())).thenReturn(Map.of(orders[0].getOrderId(), List.of(item("Pepperoni"))));
+        service.loadActiveOrders();
+    }
+
+    private static CartItem cartItem(Long productId, String name) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setName(name);
+        item.setQuantity(2);
+        item.setPrice(12.5);
+        return item;
+    }
+
+    private void placed(Order order, CartItem... items) throws Exception {
+        String payload = objectMapper.writeValueAsString(new OrderPlacedEvent(null, order.getCustomerId(),
+                order.getOrderTimestamp(), order.getTotalAmount(), order.getDeliveryMethod(), List.of(items)));
+        service.onOrderEvent(new OrderLifecycleEvent(1, order.getOrderId(), OrderLifecycleEvent.ORDER_PLACED, payload,
+                order.getOrderTimestamp()));
+    }
+
+    @Test
+    void snapshot_listsActiveOrdersOldestFirst() {
+        load(order(2, "PREPARING", "PICKUP", 5), order(1, "PENDING", "DELIVERY", 0));
+
+        KitchenFeedDto feed = service.snapshot();
+
+        assertTrue(feed.isReset());
+        assertEquals(List.of(1L, 2L), feed.getOrders().stream().map(KitchenOrderDto::getOrderId).toList());
+        assertEquals(List.of(item("Pepperoni")), feed.getOrders().get(1).getItems());
+    }
+
+    @Test
+    void onOrderEvent_addsNewOrderOnceEvenIfRepeated() throws Exception {
+        load(order(1, "PENDING", "PICKUP", 0));
+        long version = service.snapshot().getVersion();
+
+        placed(order(3, "PENDING", "PICKUP", 9), cartItem(5L, "Cheese"));
+        placed(order(3, "PENDING", "PICKUP", 9), cartItem(5L, "Cheese"));
+
+        KitchenFeedDto changes = service.changesSince(version);
+        assertFalse(changes.isReset());
+        assertEquals(version + 1, changes.getVersion());
+        assertEquals(List.of(3L), changes.getOrders().stream().map(KitchenOrderDto::getOrderId).toList());
+    }
+
+    @Test
+    void onOrderEvent_buildsOrderFromPayloadWithoutReadingIt() throws Exception {
+        load(order(1, "PENDING", "PICKUP", 0));
+        CartItem custom = cartItem(null, "ignored");
+        custom.setSizeId(2L);
+        custom.setCrustTypeId(3L);
+        custom.setToppingIdsLeft(new Long[]{7L});
+
+        placed(order(3, "PENDING", "DELIVERY", 9), cartItem(5L, "Cheese"), custom);
+
+        KitchenOrderDto added = service.snapshot().getOrders().get(1);
+        assertEquals(3L, added.getOrderId());
+        assertEquals("PENDING", added.getStatus());
+        assertEquals("DELIVERY", added.getDeliveryMethod());
+        assertEquals(PLACED_AT.plusMinutes(9).toInstant(ZoneOffset.UTC), added.getPlacedAt());
+        assertEquals("Cheese", added.getItems().get(0).getName());
+        assertEquals(new BigDecimal("25.00"), added.getItems().get(0).getLineTotal());
+        OrderItemDto pizza = added.getItems().get(1);
+        assertEquals("Custom Pizza", pizza.getName());
+        assertEquals("Large", pizza.getSizeName());
+        assertEquals("Thin", pizza.getCrustName());
+        assertEquals(List.of(7), pizza.getToppingIdsLeft());
+        verify(orderRepository, times(1)).findItemsByOrderIds(any());
+    }
+
+    @Test
+    void changesSince_versionFromBeforeARestart_returnsWholeQueue() {
+        load(order(1, "PENDING", "DELIVERY", 0));
+        long beforeRestart = service.snapshot().getVersion();
+
+        service = newService(Clock.fixed(NOW.plusSeconds(60), ZoneOffset.UTC));
+        load(order(1, "PENDING", "DELIVERY", 0));
+        service.transition(1L, OrderStatus.PREPARING, 42L);
+
+        assertTrue(service.changesSince(beforeRestart).isReset());
+    }
+
+    @Test
+    void transition_movesOrderAndRecordsStatusChangedEvent() {
+        load(order(1, "PENDING", "DELIVERY", 0));
+
+        TransitionResult result = service.transition(1L, OrderStatus.PREPARING, 42L);
+
+        assertEquals(Outcome.UPDATED, result.outcome());
+        assertEquals("PREPARING", result.order().getStatus());
+        assertEquals(NOW, result.order().getUpdatedAt());
+        ArgumentCaptor<NewMessage> event = ArgumentCaptor.forClass(NewMessage.class);
+        verify(orderRepository).updateStatus(eq(1L), eq(OrderStatus.PENDING), eq(OrderStatus.PREPARING), eq(42L),
+                event.capture(), eq(LocalDateTime.ofInstant(NOW, ZoneOffset.UTC)));
+        assertEquals(OrderLifecycleEvent.ORDER_STATUS_CHANGED, event.getValue().eventType());
+        assertTrue(event.getValue().payload().contains("\"toStatus\":\"PREPARING\""));
+        assertEquals("PREPARING", service.snapshot().getOrders().get(0).getStatus());
+    }
+
+    @Test
+    void transition_skippingAStep_isRejected() {
+        load(order(1, "PENDING", "DELIVERY", 0));
+
+        assertEquals(Outcome.INVALID_TRANSITION, service.transition(1L, OrderStatus.READY, 42L).outcome());
+        verify(orderRepository, never()).updateStatus(anyLong(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void transition_pickupGoesFromReadyToCompletedAndLeavesQueue() {
+        load(order(1, "READY", "PICKUP", 0));
+
+        assertEquals(Outcome.INVALID_TRANSITION, service.transition(1L, OrderStatus.OUT_FOR_DELIVERY, 42L).outcome());
+        assertEquals(Outcome.UPDATED, service.transition(1L, OrderStatus.COMPLETED, 42L).outcome());
+
+        assertTrue(service.snapshot().getOrders().isEmpty());
+        assertEquals(Outcome.NOT_FOUND, service.transition(1L, OrderStatus.COMPLETED, 42L).outcome());
+    }
+
+    @Test
+    void transition_changedByAnotherInstance_isConflict() {
+        load(order(1, "PENDING", "DELIVERY", 0));
+        when(orderRepository.updateStatus(anyLong(), any(), any(), any(), any(), any())).thenReturn(false);
+
+        assertEquals(Outcome.CONFLICT, service.transition(1L, OrderStatus.PREPARING, 42L).outcome());
+        assertEquals("PENDING", service.snapshot().getOrders().get(0).getStatus());
+    }
+
+    @Test
+    void awaitChanges_isCalledOnNextChange() {
+        load(order(1, "PENDING", "DELIVERY", 0));
+        long version = service.snapshot().getVersion();
+        List<KitchenFeedDto> received = new ArrayList<>();
+
+        service.awaitChanges(version, received::add);
+        assertTrue(received.isEmpty());
+
+        service.transition(1L, OrderStatus.PREPARING, 42L);
+
+        assertEquals(1, received.size());
+        assertEquals("PREPARING", received.get(0).getOrders().get(0).getStatus());
+    }
+
+    @Test
+    void awaitChanges_stopped_isNotCalled() {
+        load(order(1, "PENDING", "DELIVERY", 0));
+        List<KitchenFeedDto> received = new ArrayList<>();
+
+        service.awaitChanges(service.snapshot().getVersion(), received::add).run();
+        service.transition(1L, OrderStatus.PREPARING, 42L);
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void changesSince_olderThanChangeLog_returnsWholeQueue() throws Exception {
+        load(order(1, "PENDING", "DELIVERY", 0));
+        var field = KitchenQueueService.class.getDeclaredField("changeLogSize");
+        field.setAccessible(true);
+        field.set(service, 1);
+        long version = service.snapshot().getVersion();
+
+        service.transition(1L, OrderStatus.PREPARING, 42L);
+        service.transition(1L, OrderStatus.READY, 42L);
+
+        assertTrue(service.changesSince(version).isReset());
+        assertFalse(service.changesSince(version + 1).isReset());
+    }
+}
@@ -0,0 +1,65 @@
+package com.pizzastore.service;
+
+import com.pizzastore.service.MetricsService.Kind;
+import com.pizzastore.service.MetricsService.TimerStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsServiceTest {
+
+    private MetricsService metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsService(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void stop_countsCallsAndErrors() {
+        metrics.stop(Kind.HTTP, "GET /api/menu", metrics.start(Kind.HTTP, "GET /api/menu"), false);
+        metrics.stop(Kind.HTTP, "GET /api/menu", metrics.start(Kind.HTTP, "GET /api/menu"), true);
+
+        TimerStats stats = metrics.snapshot(Kind.HTTP).get(0);
+        assertEquals("GET /api/menu", stats.name());
+        assertEquals(2, stats.count());
+        assertEquals(1, stats.errors());
+        assertEquals(0, stats.inFlight());
+    }
+
+    @Test
+    void start_withoutStop_showsInFlight() {
+        metrics.start(Kind.SQL, "OrderRepository.save");
+
+        TimerStats stats = metrics.snapshot(Kind.SQL).get(0);
+        assertEquals(1, stats.inFlight());
+        assertEquals(0, stats.count());
+    }
+
+    @Test
+    void stop_recordsLatencyPercentiles() {
+        long tenMsAgo = System.nanoTime() - 10_000_000L;
+        metrics.stop(Kind.SQL, "OrderRepository.save", tenMsAgo, false);
+
+        TimerStats stats = metrics.snapshot(Kind.SQL).get(0);
+        assertTrue(stats.maxMs() >= 10, "max " + stats.maxMs());
+        assertTrue(stats.p99Ms() >= 9, "p99 " + stats.p99Ms());
+        assertTrue(stats.p50Ms() > 0, "p50 " + stats.p50Ms());
+    }
+
+    @Test
+    void snapshot_onlyReturnsRequestedKind_slowestFirst() {
+        metrics.stop(Kind.HTTP, "GET /api/menu", System.nanoTime() - 1_000_000L, false);
+        metrics.stop(Kind.HTTP, "POST /api/checkout/process", System.nanoTime() - 50_000_000L, false);
+        metrics.stop(Kind.SQL, "OrderRepository.save", System.nanoTime(), false);
+
+        List<TimerStats> http = metrics.snapshot(Kind.HTTP);
+        assertEquals(2, http.size());
+        assertEquals("POST /api/checkout/process", http.get(0).name());
+        assertEquals("GET /api/menu", http.get(1).name());
+    }
+}
@@ -0,0 +1,122 @@
+package com.pizzastore.service;
+
+import com.pizzastore.event.OrderEventSink;
+import com.pizzastore.event.OrderLifecycleEvent;
+import com.pizzastore.repository.OrderOutboxRepository;
+import com.pizzastore.repository.OrderOutboxRepository.OutboxMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.lang.reflect.Field;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OrderEventRelayTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-15T12:00:00Z");
+    private static final LocalDateTime PLACED_AT = LocalDateTime.of(2025, 3, 15, 11, 59, 58);
+
+    private OrderOutboxRepository outbox;
+    private OrderEventSink first;
+    private OrderEventSink second;
+    private OrderEventRelay relay;
+
+    /**
+     * Outbox rows waiting to be drained, handed out batchSize at a time.
+     */
+    private final List<OutboxMessage> pending = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        outbox = mock(OrderOutboxRepository.class);
+        first = mock(OrderEventSink.class);
+        second = mock(OrderEventSink.class);
+        relay = new OrderEventRelay(outbox, List.of(first, second), Clock.fixed(NOW, ZoneOffset.UTC));
+        set("batchSize", 2);
+
+        when(outbox.drainBatch(any(), any(), anyInt(), any())).thenAnswer(inv -> {
+            int limit = inv.getArgument(2);
+            List<OutboxMessage> batch = new ArrayList<>(pending.subList(0, Math.min(limit, pending.size())));
+            if (!batch.isEmpty()) {
+                ((Consumer<List<OutboxMessage>>) inv.getArgument(3)).accept(batch);
+                pending.removeAll(batch);
+            }
+            return batch;
+        });
+    }
+
+    private void set(String field, Object value) throws Exception {
+        Field f = OrderEventRelay.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(relay, value);
+    }
+
+    private void queue(long outboxId, long orderId, int attempts) {
+        pending.add(new OutboxMessage(outboxId, orderId, OrderLifecycleEvent.ORDER_PLACED,
+                "{\"customerId\":1}", PLACED_AT, attempts));
+    }
+
+    @Test
+    void relay_nothingDue_publishesNothing() {
+        assertEquals(0, relay.relay());
+
+        verify(outbox, times(1)).drainBatch(eq(OrderEventRelay.EVENT_TYPES), any(), eq(2), any());
+        verifyNoInteractions(first, second);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relay_drainsEveryBatchToEverySinkInOrder() {
+        queue(1, 101, 0);
+        queue(2, 102, 0);
+        queue(3, 103, 0);
+
+        assertEquals(3, relay.relay());
+
+        ArgumentCaptor<List<OrderLifecycleEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(first, times(2)).publish(captor.capture());
+        List<OrderLifecycleEvent> delivered = captor.getAllValues().stream().flatMap(List::stream).toList();
+        assertEquals(List.of(1L, 2L, 3L), delivered.stream().map(OrderLifecycleEvent::eventId).toList());
+        assertEquals(new OrderLifecycleEvent(1, 101, OrderLifecycleEvent.ORDER_PLACED, "{\"customerId\":1}", PLACED_AT),
+                delivered.get(0));
+        verify(second, times(2)).publish(any());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void relay_sinkFailure_keepsBatchAndBacksOff() {
+        queue(1, 101, 1);
+        queue(2, 102, 3);
+        doThrow(new IllegalStateException("webhook down")).when(second).publish(any());
+
+        assertEquals(0, relay.relay());
+
+        LocalDateTime now = LocalDateTime.ofInstant(NOW, ZoneOffset.UTC);
+        verify(outbox).rescheduleAll(eq(List.of(1L, 2L)), eq(now.plusSeconds(8)), anyString());
+        assertEquals(2, pending.size());
+    }
+
+    @Test
+    void relay_outboxUnavailable_isRetriedNextPoll() {
+        doThrow(new RuntimeException("db down")).when(outbox).drainBatch(any(), any(), anyInt(), any());
+
+        assertEquals(0, relay.relay());
+
+        verify(outbox, never()).rescheduleAll(any(), any(), any());
+        verifyNoInteractions(first, second);
+    }
+}
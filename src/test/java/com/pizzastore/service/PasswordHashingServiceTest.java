@@ -0,0 +1,88 @@
+package com.pizzastore.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PasswordHashingServiceTest {
+
+    private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void encodeAndMatches_delegateToEncoder() {
+        service = new PasswordHashingService(passwordEncoder, 1, 1, 5000);
+        when(passwordEncoder.encode("secret")).thenReturn("hash");
+        when(passwordEncoder.matches("secret", "hash")).thenReturn(true);
+
+        assertEquals("hash", service.encode("secret"));
+        assertTrue(service.matches("secret", "hash"));
+
+        PasswordHashingService.Stats stats = service.stats();
+        assertEquals(2, stats.completed());
+        assertEquals(0, stats.rejected());
+    }
+
+    @Test
+    void saturatedPool_rejectsImmediately() throws Exception {
+        service = new PasswordHashingService(passwordEncoder, 1, 1, 5000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(passwordEncoder.encode(any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+
+        Future<String> running = callers.submit(() -> service.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> queued = callers.submit(() -> service.encode("b"));
+        while (service.stats().queued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(PasswordHashingService.BusyException.class, () -> service.encode("c"));
+        assertEquals(1, service.stats().rejected());
+
+        release.countDown();
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void slowHash_timesOutAsBusy() {
+        service = new PasswordHashingService(passwordEncoder, 1, 1, 50);
+        when(passwordEncoder.matches(any(), any())).thenAnswer(inv -> {
+            Thread.sleep(5000);
+            return true;
+        });
+
+        assertThrows(PasswordHashingService.BusyException.class, () -> service.matches("a", "hash"));
+        assertEquals(1, service.stats().timedOut());
+    }
+
+    @Test
+    void encoderFailure_propagatesToCaller() {
+        service = new PasswordHashingService(passwordEncoder, 1, 1, 5000);
+        when(passwordEncoder.matches(any(), any())).thenThrow(new IllegalArgumentException("bad hash"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.matches("a", "not-a-hash"));
+    }
+}
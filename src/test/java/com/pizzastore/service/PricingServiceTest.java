@@ -0,0 +1,106 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.CrustType;
+import com.pizzastore.model.PizzaSize;
+import com.pizzastore.model.Product;
+import com.pizzastore.model.Topping;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.CrustTypeRepository;
+import com.pizzastore.repository.PizzaSizeRepository;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.ToppingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PricingServiceTest {
+
+    private CatalogCache catalogCache;
+    private ProductRepository productRepository;
+    private ToppingRepository toppingRepository;
+    private PricingService pricingService;
+
+    @BeforeEach
+    void setUp() {
+        catalogCache = new CatalogCache();
+        productRepository = mock(ProductRepository.class);
+        PizzaSizeRepository sizes = mock(PizzaSizeRepository.class);
+        CrustTypeRepository crusts = mock(CrustTypeRepository.class);
+        toppingRepository = mock(ToppingRepository.class);
+
+        when(productRepository.findAll()).thenReturn(List.of(new Product(1L, 1L, "Pepperoni", new BigDecimal("12.99"), true)));
+        when(sizes.findAll()).thenReturn(List.of(new PizzaSize(3L, "Large", new BigDecimal("4.00"))));
+        when(crusts.findAll()).thenReturn(List.of(new CrustType(2L, "Thin", BigDecimal.ZERO)));
+        when(toppingRepository.findAll()).thenReturn(List.of(
+                new Topping(1L, "Pepperoni", new BigDecimal("1.49")),
+                new Topping(6L, "Mushrooms", new BigDecimal("0.99"))));
+        pricingService = new PricingService(catalogCache, productRepository, sizes, crusts, toppingRepository);
+    }
+
+    private static CartItem item(Long productId, Long[] full, Long[] left, Long[] right) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setSizeId(3L);
+        item.setCrustTypeId(2L);
+        item.setToppingIdsFull(full);
+        item.setToppingIdsLeft(left);
+        item.setToppingIdsRight(right);
+        item.setQuantity(1);
+        return item;
+    }
+
+    @Test
+    void unitPrice_addsProductSizeCrustAndToppings() {
+        assertEquals(new BigDecimal("18.48"), pricingService.unitPrice(item(1L, new Long[]{1L}, null, null)));
+    }
+
+    @Test
+    void unitPrice_halfToppingCostsHalfRoundedToTheCent() {
+        // half of 0.99 is 0.495, rounded to 0.50
+        assertEquals(new BigDecimal("17.49"), pricingService.unitPrice(item(1L, null, new Long[]{6L}, null)));
+    }
+
+    @Test
+    void unitPrice_toppingOnWholeAndHalf_chargedOnce() {
+        assertEquals(new BigDecimal("18.48"),
+                pricingService.unitPrice(item(1L, new Long[]{1L}, new Long[]{1L}, new Long[]{1L})));
+    }
+
+    @Test
+    void unitPrice_customPizzaStartsFromTheBuildYourOwnBasePrice() {
+        assertEquals(new BigDecimal("17.48"), pricingService.unitPrice(item(null, new Long[]{1L}, null, null)));
+    }
+
+    @Test
+    void unitPrice_customPizzaWithoutSize_isRejected() {
+        CartItem item = item(null, null, null, null);
+        item.setSizeId(null);
+
+        assertThrows(IllegalArgumentException.class, () -> pricingService.unitPrice(item));
+    }
+
+    @Test
+    void unitPrice_unknownTopping_isRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> pricingService.unitPrice(item(1L, null, null, new Long[]{42L})));
+    }
+
+    @Test
+    void unitPrice_buildsTableOncePerCatalogVersion() {
+        pricingService.unitPrice(item(1L, null, null, null));
+        pricingService.unitPrice(item(1L, null, null, null));
+        verify(productRepository, times(1)).findAll();
+
+        when(productRepository.findAll()).thenReturn(List.of(new Product(1L, 1L, "Pepperoni", new BigDecimal("13.99"), true)));
+        catalogCache.invalidate();
+
+        assertEquals(new BigDecimal("17.99"), pricingService.unitPrice(item(1L, null, null, null)));
+        verify(productRepository, times(2)).findAll();
+    }
+}
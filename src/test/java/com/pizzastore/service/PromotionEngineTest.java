@@ -0,0 +1,227 @@
+package com.pizzastore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzastore.model.CartItem;
+import com.pizzastore.model.Product;
+import com.pizzastore.model.Promotion;
+import com.pizzastore.repository.CatalogCache;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.PromoCodeIndex;
+import com.pizzastore.repository.PromotionRepository;
+import com.pizzastore.service.PromotionEngine.Eligible;
+import com.pizzastore.service.PromotionEngine.Evaluation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PromotionEngineTest {
+
+    /** A Friday. */
+    private static final Instant FRIDAY_5_30_PM = Instant.parse("2025-03-14T17:30:00Z");
+
+    private PromotionRepository promotionRepository;
+    private PromoCodeIndex promoCodeIndex;
+    private ProductRepository productRepository;
+    private CatalogCache catalogCache;
+
+    @BeforeEach
+    void setUp() {
+        promotionRepository = mock(PromotionRepository.class);
+        promoCodeIndex = new PromoCodeIndex(promotionRepository);
+        productRepository = mock(ProductRepository.class);
+        catalogCache = new CatalogCache();
+        // Products 1 and 2 are pizzas (category 1), product 3 is a side (category 2)
+        when(productRepository.findAll()).thenReturn(List.of(
+                new Product(1L, 1L, "Cheese", new BigDecimal("10.00"), true),
+                new Product(2L, 1L, "Supreme", new BigDecimal("20.00"), true),
+                new Product(3L, 2L, "Wings", new BigDecimal("8.00"), false)));
+    }
+
+    private PromotionEngine engine(Instant now) {
+        return new PromotionEngine(promoCodeIndex, productRepository, catalogCache, new ObjectMapper(),
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private void givenPromotions(Promotion... promotions) {
+        when(promotionRepository.findAllIncludingExpired()).thenReturn(List.of(promotions));
+        promoCodeIndex.invalidate();
+    }
+
+    private static Promotion promo(long id, double discountValue, String rule) {
+        Promotion promotion = new Promotion();
+        promotion.setPromotionId(id);
+        promotion.setCode("PROMO" + id);
+        promotion.setDiscountValue(discountValue);
+        promotion.setRuleDefinition(rule);
+        return promotion;
+    }
+
+    private static CartItem item(Long productId, Long sizeId, double price, int quantity) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setSizeId(sizeId);
+        item.setPrice(price);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    @Test
+    void withoutRule_takesDiscountValueOffCappedAtSubtotal() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion promotion = promo(1, 15.0, null);
+
+        assertEquals(Evaluation.applied(1500), engine.evaluate(promotion, List.of(item(2L, null, 20.0, 1))));
+        assertEquals(Evaluation.applied(800), engine.evaluate(promotion, List.of(item(3L, null, 8.0, 1))));
+    }
+
+    @Test
+    void minOrder_appliesToEveryPromotion() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion promotion = promo(1, 5.0, "{\"type\": \"PERCENT_OFF\", \"percent\": 10}");
+        promotion.setMinOrderAmt(25.0);
+
+        assertEquals("Minimum order of $25.00 required for this promo.",
+                engine.evaluate(promotion, List.of(item(2L, null, 20.0, 1))).failure());
+    }
+
+    @Test
+    void percentOff_byCategoryAndSize_discountsOnlyQualifyingItems() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion promotion = promo(1, 0, "{\"type\": \"PERCENT_OFF\", \"percent\": 25, \"categoryIds\": [1], \"sizeIds\": [3]}");
+        List<CartItem> cart = List.of(
+                item(1L, 3L, 14.0, 2),   // large cheese: qualifies
+                item(2L, 1L, 20.0, 1),   // small supreme: wrong size
+                item(3L, null, 8.0, 1)); // wings: wrong category
+
+        assertEquals(Evaluation.applied(700), engine.evaluate(promotion, cart)); // 25% of 28.00
+
+        assertEquals(PromotionEngine.NO_QUALIFYING_ITEMS,
+                engine.evaluate(promotion, List.of(item(3L, null, 8.0, 1))).failure());
+    }
+
+    @Test
+    void productFilter_customPizza_neverQualifies() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion promotion = promo(1, 0, "{\"type\": \"BOGO\", \"productIds\": [1, 2]}");
+
+        assertEquals(PromotionEngine.NO_QUALIFYING_ITEMS,
+                engine.evaluate(promotion, List.of(item(null, 3L, 15.0, 2))).failure());
+        // 10.00 cheese and 15.00 custom: only the cheese counts, so no pair
+        assertEquals(PromotionEngine.NEEDS_TWO_ITEMS,
+                engine.evaluate(promotion, List.of(item(1L, null, 10.0, 1), item(null, 3L, 15.0, 1))).failure());
+    }
+
+    @Test
+    void sizeFilter_itemWithoutSize_neverQualifies() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion promotion = promo(1, 0, "{\"type\": \"PERCENT_OFF\", \"percent\": 50, \"sizeIds\": [3]}");
+
+        assertEquals(PromotionEngine.NO_QUALIFYING_ITEMS,
+                engine.evaluate(promotion, List.of(item(3L, null, 8.0, 1))).failure());
+        assertEquals(Evaluation.applied(700),
+                engine.evaluate(promotion, List.of(item(null, 3L, 14.0, 1), item(3L, null, 8.0, 1))));
+    }
+
+    @Test
+    void percentOff_withoutPercent_usesDiscountValue() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion promotion = promo(1, 10, "{\"type\": \"PERCENT_OFF\"}");
+
+        assertEquals(Evaluation.applied(305), engine.evaluate(promotion, List.of(item(2L, null, 30.49, 1))));
+    }
+
+    @Test
+    void bogo_makesTheCheaperUnitOfEachPairFree() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion promotion = promo(1, 0, "{\"type\": \"BOGO\", \"productIds\": [1, 2]}");
+
+        // Lined up 20, 10, 10, 10: the second and fourth are free
+        assertEquals(Evaluation.applied(2000), engine.evaluate(promotion,
+                List.of(item(1L, null, 10.0, 3), item(2L, null, 20.0, 1), item(3L, null, 8.0, 4))));
+        assertEquals(PromotionEngine.NEEDS_TWO_ITEMS,
+                engine.evaluate(promotion, List.of(item(1L, null, 10.0, 1), item(3L, null, 8.0, 2))).failure());
+    }
+
+    @Test
+    void timeWindow_appliesOnlyOnTheGivenDaysAndHours() {
+        Promotion happyHour = promo(1, 5, "{\"days\": [\"FRI\"], \"from\": \"16:00\", \"to\": \"19:00\"}");
+        List<CartItem> cart = List.of(item(2L, null, 20.0, 1));
+
+        assertTrue(engine(FRIDAY_5_30_PM).evaluate(happyHour, cart).applies());
+        assertEquals(PromotionEngine.NOT_NOW,
+                engine(FRIDAY_5_30_PM.plusSeconds(2 * 3600)).evaluate(happyHour, cart).failure());
+        assertEquals(PromotionEngine.NOT_NOW,
+                engine(FRIDAY_5_30_PM.plusSeconds(24 * 3600)).evaluate(happyHour, cart).failure());
+    }
+
+    @Test
+    void timeWindow_pastMidnight_belongsToTheDayItStarted() {
+        Promotion lateNight = promo(1, 5, "{\"days\": [\"friday\"], \"from\": \"22:00\", \"to\": \"02:00\"}");
+        List<CartItem> cart = List.of(item(2L, null, 20.0, 1));
+        Instant saturday1Am = Instant.parse("2025-03-15T01:00:00Z");
+        Instant friday1Am = Instant.parse("2025-03-14T01:00:00Z");
+
+        assertTrue(engine(saturday1Am).evaluate(lateNight, cart).applies());
+        assertEquals(PromotionEngine.NOT_NOW, engine(friday1Am).evaluate(lateNight, cart).failure());
+    }
+
+    @Test
+    void invalidRule_neverApplies() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+
+        assertEquals(PromotionEngine.NOT_AVAILABLE,
+                engine.evaluate(promo(1, 5, "{\"type\": \"HALF_PRICE\"}"), List.of(item(2L, null, 20.0, 1))).failure());
+        assertEquals(PromotionEngine.NOT_AVAILABLE,
+                engine.evaluate(promo(2, 5, "not json"), List.of(item(2L, null, 20.0, 1))).failure());
+    }
+
+    @Test
+    void evaluateById_dropsPromotionsRemovedFromTheIndex() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        givenPromotions(promo(1, 5, null));
+        engine.refresh();
+        List<CartItem> cart = List.of(item(2L, null, 20.0, 1));
+
+        assertEquals(Evaluation.applied(500), engine.evaluate(1L, cart));
+
+        givenPromotions();
+        assertEquals(PromotionEngine.NOT_AVAILABLE, engine.evaluate(1L, cart).failure());
+    }
+
+    @Test
+    void catalogChange_recompilesCategoryRules() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion sides = promo(1, 0, "{\"type\": \"PERCENT_OFF\", \"percent\": 50, \"categoryIds\": [2]}");
+        List<CartItem> cart = List.of(item(1L, null, 10.0, 1));
+        assertFalse(engine.evaluate(sides, cart).applies());
+
+        // Cheese moves to the sides category
+        when(productRepository.findAll()).thenReturn(List.of(
+                new Product(1L, 2L, "Cheese", new BigDecimal("10.00"), true)));
+        catalogCache.invalidate();
+
+        assertEquals(Evaluation.applied(500), engine.evaluate(sides, cart));
+    }
+
+    @Test
+    void eligible_listsQualifyingPromotionsBiggestDiscountFirst() {
+        PromotionEngine engine = engine(FRIDAY_5_30_PM);
+        Promotion five = promo(1, 5, null);
+        Promotion bogo = promo(2, 0, "{\"type\": \"BOGO\"}");
+        Promotion wings = promo(3, 0, "{\"type\": \"PERCENT_OFF\", \"percent\": 50, \"productIds\": [3]}");
+        givenPromotions(five, bogo, wings);
+
+        List<Eligible> eligible = engine.eligible(List.of(item(2L, null, 20.0, 2)));
+
+        assertEquals(List.of(new Eligible(2, "PROMO2", null, 2000), new Eligible(1, "PROMO1", null, 500)), eligible);
+    }
+}
@@ -0,0 +1,138 @@
+package com.pizzastore.service;
+
+import com.pizzastore.service.QueryStatsService.SlowQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryStatsServiceTest {
+
+    private static final long MS = 1_000_000L;
+
+    private QueryStatsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new QueryStatsService();
+    }
+
+    private void set(String field, Object value) throws Exception {
+        Field f = QueryStatsService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(service, value);
+    }
+
+    // --- fingerprint ---
+
+    @Test
+    void fingerprint_replacesLiteralsAndNormalisesWhitespace() {
+        assertEquals("select * from orders where customer_id = ? and status = ?",
+                QueryStatsService.fingerprint("SELECT *\n  FROM orders WHERE customer_id = 42 AND status = 'it''s'"));
+    }
+
+    @Test
+    void fingerprint_collapsesInListsOfAnyLength() {
+        assertEquals(QueryStatsService.fingerprint("select * from order_items where order_id in (?, ?)"),
+                QueryStatsService.fingerprint("select * from order_items where order_id in (?, ?, ?, ?)"));
+    }
+
+    @Test
+    void fingerprint_collapsesMultiRowValues() {
+        assertEquals("insert into order_items (order_id, quantity) values (?+)+",
+                QueryStatsService.fingerprint("insert into order_items (order_id, quantity) values (?, ?), (?, ?), (?, ?)"));
+    }
+
+    @Test
+    void fingerprint_keepsDigitsInsideIdentifiers() {
+        assertEquals("select street_addr_1 from addresses",
+                QueryStatsService.fingerprint("select street_addr_1 from addresses"));
+    }
+
+    // --- per-request budget ---
+
+    @Test
+    void endRequest_withinBudget_returnsFalse() {
+        service.beginRequest();
+        service.record("select 1", MS);
+
+        assertFalse(service.endRequest("GET /api/menu"));
+    }
+
+    @Test
+    void endRequest_tooManyQueries_returnsTrue() {
+        service.beginRequest();
+        for (int i = 0; i < 21; i++) {
+            service.record("select * from order_custom_item_topping where order_item_id = " + i, MS);
+        }
+
+        assertTrue(service.endRequest("GET /api/orders/history"));
+    }
+
+    @Test
+    void endRequest_tooMuchDbTime_returnsTrue() {
+        service.beginRequest();
+        service.record("select * from orders", 600 * MS);
+
+        assertTrue(service.endRequest("GET /api/orders/history"));
+    }
+
+    @Test
+    void endRequest_clearsScope_soNextRequestStartsFromZero() throws Exception {
+        set("maxQueriesPerRequest", 1);
+        service.beginRequest();
+        service.record("select 1", MS);
+        service.record("select 2", MS);
+        service.endRequest("GET /api/menu");
+
+        service.beginRequest();
+        service.record("select 1", MS);
+        assertFalse(service.endRequest("GET /api/menu"));
+    }
+
+    @Test
+    void record_outsideRequest_isNotCountedAgainstAnyBudget() {
+        service.record("select 1", MS);
+
+        assertFalse(service.endRequest("GET /api/menu"));
+    }
+
+    // --- slow query aggregation ---
+
+    @Test
+    void slowQueries_groupsByFingerprint_mostTotalTimeFirst() {
+        service.record("select * from orders where customer_id = 1", 150 * MS);
+        service.record("select * from orders where customer_id = 2", 250 * MS);
+        service.record("select * from products where product_id = 7", 120 * MS);
+        service.record("select * from products where product_id = 8", 5 * MS); // fast, ignored
+
+        List<SlowQuery> slow = service.slowQueries();
+        assertEquals(2, slow.size());
+
+        SlowQuery orders = slow.get(0);
+        assertEquals("select * from orders where customer_id = ?", orders.fingerprint());
+        assertEquals(2, orders.count());
+        assertEquals(400.0, orders.totalMs());
+        assertEquals(200.0, orders.meanMs());
+        assertEquals(250.0, orders.maxMs());
+
+        assertEquals(1, slow.get(1).count());
+    }
+
+    @Test
+    void slowQueries_boundedNumberOfFingerprints() throws Exception {
+        set("maxFingerprints", 2);
+        service.record("select * from a", 200 * MS);
+        service.record("select * from b", 200 * MS);
+        service.record("select * from c", 200 * MS);
+        service.record("select * from a", 200 * MS);
+
+        List<SlowQuery> slow = service.slowQueries();
+        assertEquals(2, slow.size());
+        assertEquals("select * from a", slow.get(0).fingerprint());
+        assertEquals(2, slow.get(0).count());
+    }
+}
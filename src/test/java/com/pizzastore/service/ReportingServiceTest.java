@@ -0,0 +1,123 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.Product;
+import com.pizzastore.repository.ProductRepository;
+import com.pizzastore.repository.ReportingRepository;
+import com.pizzastore.repository.ReportingRepository.OrderTotals;
+import com.pizzastore.repository.ReportingRepository.ProductUnits;
+import com.pizzastore.repository.SalesRollupRepository.Dimension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReportingServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-15T12:00:00Z");
+    private static final LocalDateTime MARCH_START = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+    private ReportingRepository reportingRepository;
+    private ProductRepository productRepository;
+    private ReportingService service;
+
+    @BeforeEach
+    void setUp() {
+        reportingRepository = mock(ReportingRepository.class);
+        productRepository = mock(ProductRepository.class);
+        service = new ReportingService(reportingRepository, productRepository, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        when(productRepository.findAll()).thenReturn(List.of(
+                new Product(1L, 1L, "Margherita", new BigDecimal("12.99"), true),
+                new Product(2L, 1L, "Pepperoni", new BigDecimal("13.99"), true)
+        ));
+        when(reportingRepository.findOrderTotals(any())).thenReturn(new OrderTotals(0, BigDecimal.ZERO));
+        when(reportingRepository.findProductUnits()).thenReturn(List.of());
+    }
+
+    private void refreshOnEveryCall() throws Exception {
+        Field field = ReportingService.class.getDeclaredField("refreshIntervalMs");
+        field.setAccessible(true);
+        field.set(service, 0L);
+    }
+
+    private Object valueOf(List<Map<String, Object>> reports, String name) {
+        return reports.stream()
+                .filter(r -> name.equals(r.get("name")))
+                .findFirst()
+                .map(r -> r.get("value"))
+                .orElseThrow();
+    }
+
+    @Test
+    void getReports_noOrders_returnsZeros() {
+        List<Map<String, Object>> reports = service.getReports();
+
+        assertEquals(5, reports.size());
+        assertEquals(0L, valueOf(reports, "Total Orders"));
+        assertEquals(new BigDecimal("0.00"), valueOf(reports, "Revenue This Month"));
+        assertEquals(new BigDecimal("0.00"), valueOf(reports, "Average Order Value"));
+        assertEquals("N/A", valueOf(reports, "Top Selling Pizza"));
+        assertEquals(0L, valueOf(reports, "Active Customers"));
+    }
+
+    @Test
+    void getReports_computesFiguresFromRollups() {
+        when(reportingRepository.findOrderTotals(null)).thenReturn(new OrderTotals(4, new BigDecimal("80.00")));
+        when(reportingRepository.findOrderTotals(MARCH_START)).thenReturn(new OrderTotals(3, new BigDecimal("60.00")));
+        when(reportingRepository.findProductUnits()).thenReturn(List.of(
+                new ProductUnits(Dimension.PRODUCT, 1L, 5),
+                new ProductUnits(Dimension.PRODUCT, 2L, 2)));
+        when(reportingRepository.countActiveCustomers(LocalDateTime.of(2025, 2, 13, 12, 0))).thenReturn(1L);
+
+        List<Map<String, Object>> reports = service.getReports();
+
+        assertEquals(4L, valueOf(reports, "Total Orders"));
+        assertEquals(new BigDecimal("60.00"), valueOf(reports, "Revenue This Month"));
+        assertEquals(new BigDecimal("20.00"), valueOf(reports, "Average Order Value"));
+        assertEquals("Margherita", valueOf(reports, "Top Selling Pizza"));
+        assertEquals(1L, valueOf(reports, "Active Customers"));
+    }
+
+    @Test
+    void getReports_withinRefreshInterval_reusesSummary() {
+        service.getReports();
+        service.getReports();
+
+        verify(reportingRepository, times(1)).findProductUnits();
+    }
+
+    @Test
+    void getReports_afterRefreshInterval_readsRollupsAgain() throws Exception {
+        refreshOnEveryCall();
+
+        service.getReports();
+        service.getReports();
+
+        verify(reportingRepository, times(2)).findProductUnits();
+    }
+
+    @Test
+    void getTopProducts_ranksProductsAndCustomPizzas() {
+        when(reportingRepository.findProductUnits()).thenReturn(List.of(
+                new ProductUnits(Dimension.PRODUCT, 1L, 3),
+                new ProductUnits(Dimension.PRODUCT, 2L, 8),
+                new ProductUnits(Dimension.CUSTOM, 0L, 5)));
+
+        List<ReportingService.ProductSales> top = service.getTopProducts(2);
+
+        assertEquals(2, top.size());
+        assertEquals(new ReportingService.ProductSales("Pepperoni", 8), top.get(0));
+        assertEquals(new ReportingService.ProductSales(ReportingService.CUSTOM_PIZZA, 5), top.get(1));
+    }
+}
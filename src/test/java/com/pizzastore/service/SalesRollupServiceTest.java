@@ -0,0 +1,162 @@
+package com.pizzastore.service;
+
+import com.pizzastore.event.OrderPlacedEvent;
+import com.pizzastore.model.CartItem;
+import com.pizzastore.repository.SalesRollupRepository;
+import com.pizzastore.repository.SalesRollupRepository.Dimension;
+import com.pizzastore.repository.SalesRollupRepository.RollupDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class SalesRollupServiceTest {
+
+    private static final Instant STARTED = Instant.parse("2025-03-15T12:00:00Z");
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 3, 15, 12, 0);
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 3, 15, 0, 0);
+
+    private SalesRollupRepository repository;
+    private SalesRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SalesRollupRepository.class);
+        service = new SalesRollupService(repository, Clock.fixed(STARTED, ZoneOffset.UTC));
+    }
+
+    private static CartItem item(Long productId, int quantity, double price) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        item.setPrice(price);
+        return item;
+    }
+
+    private static OrderPlacedEvent order(long orderId, String total, CartItem... items) {
+        return new OrderPlacedEvent(orderId, 1L, HOUR.plusMinutes(10), new BigDecimal(total), "DELIVERY", List.of(items));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RollupDelta> flushed() {
+        ArgumentCaptor<List<RollupDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).addAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private static RollupDelta find(List<RollupDelta> deltas, Dimension d, long productId) {
+        return deltas.stream()
+                .filter(x -> x.dimension() == d && x.productId() == productId)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void flush_firstTime_rebuildsTheDaysBeforeToday() {
+        service.flush();
+
+        verify(repository).rebuildBefore(DAY);
+    }
+
+    @Test
+    void flush_justAfterMidnight_leavesYesterdayToTheLiveCounters() {
+        Instant justAfterMidnight = Instant.parse("2025-03-16T00:02:00Z");
+        service = new SalesRollupService(repository, Clock.fixed(justAfterMidnight, ZoneOffset.UTC));
+
+        service.flush();
+
+        verify(repository).rebuildBefore(DAY);
+    }
+
+    @Test
+    void flush_sumsOrdersIntoDayAndProductBuckets() {
+        service.onOrderPlaced(order(1, "27.00", item(1L, 2, 12.5)));
+        service.onOrderPlaced(order(2, "15.10", item(1L, 1, 12.5), item(null, 1, 1.48)));
+
+        assertEquals(3, service.flush());
+
+        List<RollupDelta> deltas = flushed();
+        RollupDelta day = find(deltas, Dimension.ORDER, 0);
+        assertEquals(DAY, day.bucketStart());
+        assertEquals(2, day.orderCount());
+        assertEquals(new BigDecimal("42.10"), day.revenue());
+
+        RollupDelta product = find(deltas, Dimension.PRODUCT, 1L);
+        assertEquals(3, product.units());
+        assertEquals(new BigDecimal("37.50"), product.revenue());
+
+        RollupDelta custom = find(deltas, Dimension.CUSTOM, 0);
+        assertEquals(1, custom.units());
+        assertEquals(new BigDecimal("1.48"), custom.revenue());
+    }
+
+    @Test
+    void flush_nothingNew_writesNoRows() {
+        service.onOrderPlaced(order(1, "27.00", item(1L, 2, 12.5)));
+        service.flush();
+        reset(repository);
+
+        assertEquals(0, service.flush());
+        verify(repository).addAll(List.of());
+    }
+
+    @Test
+    void flush_writeFails_keepsDeltasForNextFlush() {
+        service.onOrderPlaced(order(1, "27.00", item(1L, 2, 12.5)));
+        doThrow(new RuntimeException("db down")).doNothing().when(repository).addAll(anyList());
+
+        assertEquals(0, service.flush());
+        assertEquals(2, service.flush());
+        verify(repository, times(2)).addAll(anyList());
+    }
+
+    @Test
+    void flush_rebuildFails_holdsCountersUntilRebuildSucceeds() {
+        doThrow(new RuntimeException("db down")).doNothing().when(repository).rebuildBefore(any());
+        service.onOrderPlaced(order(1, "27.00", item(1L, 2, 12.5)));
+
+        assertEquals(0, service.flush());
+        verify(repository, never()).addAll(anyList());
+
+        assertEquals(2, service.flush());
+    }
+
+    @Test
+    void onOrderPlaced_orderFromEarlierToday_isCountedLive() {
+        service.onOrderPlaced(new OrderPlacedEvent(1L, 1L, HOUR.minusHours(3), new BigDecimal("10.00"), "DELIVERY",
+                List.of(item(1L, 1, 10.0))));
+
+        assertEquals(2, service.flush());
+    }
+
+    @Test
+    void onOrderPlaced_orderFromAnEarlierDay_isLeftToRebuild() {
+        service.onOrderPlaced(new OrderPlacedEvent(1L, 1L, DAY.minusHours(1), new BigDecimal("10.00"), "DELIVERY",
+                List.of(item(1L, 1, 10.0))));
+
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void onOrderPlaced_repeatedEvent_isCountedOnce() {
+        service.onOrderPlaced(order(1, "27.00", item(1L, 2, 12.5)));
+        service.onOrderPlaced(order(1, "27.00", item(1L, 2, 12.5)));
+
+        service.flush();
+
+        List<RollupDelta> deltas = flushed();
+        assertEquals(1, find(deltas, Dimension.ORDER, 0).orderCount());
+        assertEquals(2, find(deltas, Dimension.PRODUCT, 1L).units());
+    }
+}
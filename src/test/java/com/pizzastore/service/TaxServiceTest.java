@@ -0,0 +1,100 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.RestaurantInfo;
+import com.pizzastore.repository.RestaurantInfoRepository;
+import com.pizzastore.repository.TaxRateRepository;
+import com.pizzastore.repository.TaxRateRepository.TaxRate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TaxServiceTest {
+
+    private TaxRateRepository taxRateRepository;
+    private RestaurantInfoRepository restaurantInfoRepository;
+    private TaxService taxService;
+
+    @BeforeEach
+    void setUp() {
+        taxRateRepository = mock(TaxRateRepository.class);
+        restaurantInfoRepository = mock(RestaurantInfoRepository.class);
+        taxService = new TaxService(taxRateRepository, restaurantInfoRepository);
+
+        when(taxRateRepository.findAll()).thenReturn(List.of(
+                new TaxRate("MO", null, null, new BigDecimal("0.04225")),
+                new TaxRate("MO", "63101", "63199", new BigDecimal("0.09679")),
+                new TaxRate("mo", "64101", "64199", new BigDecimal("0.08850")),
+                new TaxRate("IL", "60601", "60661", new BigDecimal("0.10250"))));
+        RestaurantInfo restaurant = new RestaurantInfo();
+        restaurant.setState("MO");
+        restaurant.setZipCode("63105");
+        when(restaurantInfoRepository.findRestaurantInfo()).thenReturn(List.of(restaurant));
+    }
+
+    @Test
+    void beforeLoading_everythingUsesTheDefaultRate() {
+        assertEquals(80_000, taxService.ratePpm("MO", "63105"));
+        assertEquals(80_000, taxService.restaurantRatePpm());
+        verifyNoInteractions(taxRateRepository);
+    }
+
+    @Test
+    void ratePpm_findsTheZipRange() {
+        taxService.refresh();
+
+        assertEquals(96_790, taxService.ratePpm("MO", "63101"));
+        assertEquals(96_790, taxService.ratePpm("mo", "63199-1234"));
+        assertEquals(88_500, taxService.ratePpm("MO", "64150"));
+        assertEquals(102_500, taxService.ratePpm("IL", "60601"));
+    }
+
+    @Test
+    void ratePpm_zipOutsideEveryRange_usesStateRate() {
+        taxService.refresh();
+
+        assertEquals(42_250, taxService.ratePpm("MO", "63200"));
+        assertEquals(42_250, taxService.ratePpm("MO", "not a zip"));
+    }
+
+    @Test
+    void ratePpm_noStateRate_usesDefault() {
+        taxService.refresh();
+
+        assertEquals(80_000, taxService.ratePpm("IL", "62701"));
+        assertEquals(80_000, taxService.ratePpm("TX", "75001"));
+        assertEquals(80_000, taxService.ratePpm(null, null));
+    }
+
+    @Test
+    void restaurantRatePpm_usesTheRestaurantsZip() {
+        taxService.refresh();
+
+        assertEquals(96_790, taxService.restaurantRatePpm());
+    }
+
+    @Test
+    void refresh_failure_keepsLoadedRates() {
+        taxService.refresh();
+        when(taxRateRepository.findAll()).thenThrow(new RuntimeException("db down"));
+
+        taxService.refresh();
+
+        assertEquals(96_790, taxService.ratePpm("MO", "63101"));
+    }
+
+    @Test
+    void refresh_overlappingRange_isIgnored() {
+        when(taxRateRepository.findAll()).thenReturn(List.of(
+                new TaxRate("KS", "66001", "66200", new BigDecimal("0.09")),
+                new TaxRate("KS", "66100", "66300", new BigDecimal("0.10"))));
+        taxService.refresh();
+
+        assertEquals(90_000, taxService.ratePpm("KS", "66150"));
+        assertEquals(80_000, taxService.ratePpm("KS", "66250"));
+    }
+}
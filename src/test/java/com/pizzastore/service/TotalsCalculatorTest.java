@@ -0,0 +1,48 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.Money;
+import com.pizzastore.service.TotalsCalculator.Totals;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotalsCalculatorTest {
+
+    @Test
+    void totals_taxesSubtotalAfterDiscount() {
+        assertEquals(new Totals(2000, 500, 120, 1620), TotalsCalculator.totals(2000, 500, 80_000));
+    }
+
+    @Test
+    void totals_roundsTaxHalfUpToTheCent() {
+        // 10.31 × 0.08 = 0.8248 → 0.82
+        assertEquals(82, TotalsCalculator.totals(1031, 0, 80_000).tax());
+        assertEquals(1, TotalsCalculator.totals(7, 0, 80_000).tax()); // 0.56 cents → 1
+        assertEquals(0, TotalsCalculator.totals(6, 0, 80_000).tax()); // 0.48 cents → 0
+    }
+
+    @Test
+    void totals_discountNeverGoesBelowZero() {
+        Totals totals = TotalsCalculator.totals(300, 500, 80_000);
+
+        assertEquals(300, totals.discount());
+        assertEquals(0, totals.tax());
+        assertEquals(0, totals.total());
+    }
+
+    @Test
+    void placed_taxIsWhatTheStoredTotalCharged() {
+        assertEquals(new Totals(3000, 500, 222, 2722), TotalsCalculator.placed(3000, 500, 2722));
+    }
+
+    @Test
+    void money_convertsAtTheEdges() {
+        assertEquals(1049, Money.cents(10.49));
+        assertEquals(1049, Money.cents(new BigDecimal("10.485")));
+        assertEquals(0, Money.cents((Double) null));
+        assertEquals(new BigDecimal("16.20"), Money.toBigDecimal(1620));
+        assertEquals(16.2, Money.toDouble(1620));
+    }
+}
@@ -0,0 +1,53 @@
+package com.pizzastore.service;
+
+import com.pizzastore.model.LoginType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Email domain routing, run on every identify and sign-in request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Thread)
+public class UserTypeResolverBenchmark {
+
+    private UserTypeResolver resolver;
+
+    @Setup
+    public void setUp() throws Exception {
+        resolver = new UserTypeResolver();
+        Field field = UserTypeResolver.class.getDeclaredField("companyEmailDomain");
+        field.setAccessible(true);
+        field.set(resolver, "work.com");
+    }
+
+    @Benchmark
+    public LoginType resolveCustomer() {
+        return resolver.resolve("jane.doe@gmail.com");
+    }
+
+    @Benchmark
+    public LoginType resolveWorker() {
+        return resolver.resolve("Bob.Smith@WORK.com");
+    }
+
+    @Benchmark
+    public LoginType resolveMalformed() {
+        return resolver.resolve("not-an-email");
+    }
+}
@@ -0,0 +1,143 @@
+-- Stand-in for the production PostgreSQL schema, used by the load test (H2 in PostgreSQL mode).
+-- Only the tables and columns the application actually reads and writes are modelled.
+
+CREATE TABLE customers (
+    customer_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email         VARCHAR(255) NOT NULL UNIQUE,
+    first_name    VARCHAR(100),
+    last_name     VARCHAR(100),
+    phone_number  VARCHAR(30),
+    password_hash VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE employees (
+    employee_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email         VARCHAR(255) NOT NULL UNIQUE,
+    first_name    VARCHAR(100),
+    last_name     VARCHAR(100),
+    password_hash VARCHAR(255) NOT NULL,
+    role          VARCHAR(50)
+);
+
+CREATE TABLE addresses (
+    address_id    INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    customer_id   INTEGER REFERENCES customers (customer_id),
+    street_addr_1 VARCHAR(255),
+    street_addr_2 VARCHAR(255),
+    city          VARCHAR(100),
+    state         VARCHAR(20),
+    zip_code      VARCHAR(20)
+);
+
+CREATE TABLE product_categories (
+    category_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    category_name VARCHAR(100) NOT NULL
+);
+
+CREATE TABLE products (
+    product_id      INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    category_id     INTEGER REFERENCES product_categories (category_id),
+    product_name    VARCHAR(100) NOT NULL,
+    base_price      NUMERIC(10, 2) NOT NULL,
+    is_customizable BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE TABLE pizza_sizes (
+    size_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    size_name VARCHAR(50) NOT NULL,
+    price     NUMERIC(10, 2) NOT NULL
+);
+
+CREATE TABLE crust_types (
+    crust_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    crust_name VARCHAR(50) NOT NULL,
+    price      NUMERIC(10, 2) NOT NULL
+);
+
+CREATE TABLE toppings (
+    topping_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    topping_name VARCHAR(50) NOT NULL,
+    extra_cost   NUMERIC(10, 2) NOT NULL
+);
+
+CREATE TABLE promotions (
+    promotion_id      INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    code              VARCHAR(50) NOT NULL,
+    discount_value    NUMERIC(10, 2),
+    promotion_desc    VARCHAR(255),
+    promotion_summary VARCHAR(255),
+    exp_dt            DATE,
+    min_order_amt     NUMERIC(10, 2)
+);
+
+CREATE TABLE orders (
+    order_id        INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    customer_id     INTEGER REFERENCES customers (customer_id),
+    address_id      INTEGER REFERENCES addresses (address_id),
+    promotion_id    INTEGER REFERENCES promotions (promotion_id),
+    employee_id     INTEGER REFERENCES employees (employee_id),
+    order_timestamp TIMESTAMP NOT NULL,
+    total_amount    NUMERIC(10, 2) NOT NULL,
+    discount_amount NUMERIC(10, 2),
+    status          VARCHAR(30) NOT NULL,
+    delivery_method VARCHAR(20) NOT NULL
+);
+CREATE INDEX orders_customer_ts_idx ON orders (customer_id, order_timestamp, order_id);
+CREATE INDEX orders_ts_idx ON orders (order_timestamp);
+
+CREATE TABLE order_items (
+    order_item_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id      INTEGER NOT NULL REFERENCES orders (order_id),
+    product_id    INTEGER NOT NULL REFERENCES products (product_id),
+    size_id       INTEGER REFERENCES pizza_sizes (size_id),
+    crust_id      INTEGER REFERENCES crust_types (crust_id),
+    sauce_name    VARCHAR(50),
+    quantity      INTEGER NOT NULL,
+    price_per     NUMERIC(10, 2) NOT NULL,
+    item_notes    VARCHAR(255)
+);
+CREATE INDEX order_items_order_idx ON order_items (order_id);
+
+-- OrderRepository reserves custom item ids from this sequence before inserting them
+CREATE SEQUENCE order_custom_item_order_item_id_seq;
+CREATE TABLE order_custom_item (
+    order_item_id INTEGER DEFAULT nextval('order_custom_item_order_item_id_seq') PRIMARY KEY,
+    order_id      INTEGER NOT NULL REFERENCES orders (order_id),
+    size_id       INTEGER REFERENCES pizza_sizes (size_id),
+    crust_id      INTEGER REFERENCES crust_types (crust_id),
+    sauce_name    VARCHAR(50),
+    quantity      INTEGER NOT NULL,
+    price_per     NUMERIC(10, 2) NOT NULL
+);
+CREATE INDEX order_custom_item_order_idx ON order_custom_item (order_id);
+
+CREATE TABLE order_custom_item_topping (
+    custom_topping_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_item_id     INTEGER NOT NULL REFERENCES order_custom_item (order_item_id),
+    pizza_half        VARCHAR(10) NOT NULL,
+    topping_id        INTEGER NOT NULL REFERENCES toppings (topping_id)
+);
+CREATE INDEX order_custom_item_topping_item_idx ON order_custom_item_topping (order_item_id);
+
+CREATE TABLE payment_methods (
+    pay_id     INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id   INTEGER NOT NULL REFERENCES orders (order_id),
+    address_id INTEGER REFERENCES addresses (address_id),
+    cc_number  VARCHAR(30),
+    exp_month  INTEGER,
+    exp_year   INTEGER,
+    ccv_number VARCHAR(10)
+);
+
+-- Read by TaxService for the restaurant's location; left empty, so carts are taxed at the default rate
+CREATE TABLE restaurant (
+    id            INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name          VARCHAR(100),
+    street_addr_1 VARCHAR(100),
+    street_addr_2 VARCHAR(100),
+    city          VARCHAR(50),
+    state         VARCHAR(2),
+    zip_code      VARCHAR(10),
+    phone_number  VARCHAR(20),
+    description   VARCHAR(500)
+);
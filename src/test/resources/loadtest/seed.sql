@@ -0,0 +1,78 @@
+-- Deterministic seed data for the load test. Row ids come out as 1..N because every
+-- table starts empty, and later inserts rely on that (e.g. customer n owns address n).
+-- Every customer's password is "Pizza123!" (BCrypt strength 4, to keep sign-in cheap).
+
+INSERT INTO product_categories (category_name) VALUES ('Pizzas'), ('Sides'), ('Drinks');
+
+INSERT INTO products (category_id, product_name, base_price, is_customizable) VALUES
+    (1, 'Cheese', 10.99, TRUE),
+    (1, 'Pepperoni', 12.99, TRUE),
+    (1, 'Margherita', 12.49, TRUE),
+    (1, 'Meat Lovers', 15.99, TRUE),
+    (1, 'Veggie', 13.99, TRUE),
+    (1, 'BBQ Chicken', 14.99, TRUE),
+    (2, 'Garlic Knots', 5.99, FALSE),
+    (2, 'Wings', 9.99, FALSE),
+    (2, 'Caesar Salad', 7.49, FALSE),
+    (3, 'Soda', 1.99, FALSE),
+    (3, 'Iced Tea', 2.49, FALSE),
+    (3, 'Water', 1.49, FALSE);
+
+INSERT INTO pizza_sizes (size_name, price) VALUES
+    ('Small', 0.00), ('Medium', 2.00), ('Large', 4.00), ('X-Large', 6.00);
+
+INSERT INTO crust_types (crust_name, price) VALUES
+    ('Hand Tossed', 0.00), ('Thin', 0.00), ('Deep Dish', 2.50);
+
+INSERT INTO toppings (topping_name, extra_cost) VALUES
+    ('Pepperoni', 1.49), ('Sausage', 1.49), ('Bacon', 1.79), ('Ham', 1.49), ('Chicken', 1.99),
+    ('Mushrooms', 0.99), ('Onions', 0.79), ('Green Peppers', 0.79), ('Olives', 0.99), ('Jalapenos', 0.79);
+
+INSERT INTO promotions (code, discount_value, promotion_desc, promotion_summary, exp_dt, min_order_amt) VALUES
+    ('SAVE5', 5.00, 'Five dollars off', '$5 off', DATEADD('YEAR', 1, CURRENT_DATE), 20.00),
+    ('EXPIRED', 10.00, 'Old promotion', '$10 off', DATEADD('YEAR', -1, CURRENT_DATE), 0.00);
+
+INSERT INTO employees (email, first_name, last_name, password_hash, role) VALUES
+    ('manager@work.com', 'Morgan', 'Manager', '$2a$04$Xm.svbGsD0wTexR8CGqN4.asSSqrMoZPb5Z9U5eoIDe71no3wi3D6', 'Manager');
+
+-- 500 customers, each with one saved address
+INSERT INTO customers (email, first_name, last_name, phone_number, password_hash)
+SELECT 'customer' || "X" || '@example.com', 'First' || "X", 'Last' || "X", '555-' || LPAD(CAST("X" AS VARCHAR), 4, '0'),
+       '$2a$04$Xm.svbGsD0wTexR8CGqN4.asSSqrMoZPb5Z9U5eoIDe71no3wi3D6'
+FROM SYSTEM_RANGE(1, 500);
+
+INSERT INTO addresses (customer_id, street_addr_1, street_addr_2, city, state, zip_code)
+SELECT "X", "X" || ' Main St', NULL, 'Springfield', 'IL', CAST(62700 + MOD("X", 50) AS VARCHAR)
+FROM SYSTEM_RANGE(1, 500);
+
+-- 50,000 historical orders (100 per customer) spread over the last ~2 years
+INSERT INTO orders (customer_id, address_id, promotion_id, employee_id, order_timestamp,
+                    total_amount, discount_amount, status, delivery_method)
+SELECT MOD("X" - 1, 500) + 1, MOD("X" - 1, 500) + 1, NULL, NULL,
+       DATEADD('MINUTE', -"X" * 21, CURRENT_TIMESTAMP),
+       CAST(15 + MOD("X" * 7, 60) AS NUMERIC(10, 2)) + 0.99, 0.00, 'COMPLETED',
+       CASE WHEN MOD("X", 3) = 0 THEN 'DELIVERY' ELSE 'PICKUP' END
+FROM SYSTEM_RANGE(1, 50000);
+
+-- Two regular items per order
+INSERT INTO order_items (order_id, product_id, size_id, crust_id, sauce_name, quantity, price_per, item_notes)
+SELECT "X", MOD("X", 6) + 1, MOD("X", 4) + 1, MOD("X", 3) + 1, 'Regular', MOD("X", 2) + 1, 12.99, NULL
+FROM SYSTEM_RANGE(1, 50000);
+INSERT INTO order_items (order_id, product_id, size_id, crust_id, sauce_name, quantity, price_per, item_notes)
+SELECT "X", 7 + MOD("X", 6), NULL, NULL, NULL, 1, 4.99, NULL
+FROM SYSTEM_RANGE(1, 50000);
+
+-- A custom pizza on every fourth order, with one whole-pizza and two half-pizza toppings
+INSERT INTO order_custom_item (order_id, size_id, crust_id, sauce_name, quantity, price_per)
+SELECT "X" * 4, MOD("X", 4) + 1, MOD("X", 3) + 1, 'Light', 1, 16.49
+FROM SYSTEM_RANGE(1, 12500);
+INSERT INTO order_custom_item_topping (order_item_id, pizza_half, topping_id)
+SELECT "X", 'FULL', MOD("X", 10) + 1 FROM SYSTEM_RANGE(1, 12500);
+INSERT INTO order_custom_item_topping (order_item_id, pizza_half, topping_id)
+SELECT "X", 'LEFT', MOD("X" + 3, 10) + 1 FROM SYSTEM_RANGE(1, 12500);
+INSERT INTO order_custom_item_topping (order_item_id, pizza_half, topping_id)
+SELECT "X", 'RIGHT', MOD("X" + 6, 10) + 1 FROM SYSTEM_RANGE(1, 12500);
+
+INSERT INTO payment_methods (order_id, address_id, cc_number, exp_month, exp_year, ccv_number)
+SELECT "X", MOD("X" - 1, 500) + 1, '4111111111111111', MOD("X", 12) + 1, 30, '123'
+FROM SYSTEM_RANGE(1, 50000);